@@ -0,0 +1,101 @@
+/*
+ * Class AggregationBenchmark
+ * Fork/join aggregations over the post columns on pools of 1 to 8 threads, to check that they scale with cores
+ * Compare each statistic's score across the threads parameter; past the number of cores it should stop improving
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analyticshub.Aggregators;
+import analyticshub.ParallelAggregation;
+import analyticshub.Post;
+import analyticshub.PostColumns;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class AggregationBenchmark {
+
+    @Param({ "1000" })
+    public int users;
+
+    @Param({ "2000000" })
+    public int posts;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private PostColumns columns;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        PostGenerator generator = new PostGenerator(users, 42);
+        List<Post> generated = new ArrayList<>(posts);
+        for (int postid = 1; postid <= posts; postid++) {
+            generated.add(generator.next(postid));
+        }
+        columns = new PostColumns();
+        columns.beginRebuild();
+        for (Post post : generated) {
+            columns.addRebuilt(post);
+        }
+        columns.finishRebuild();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long sumLikes() {
+        return ParallelAggregation.run(columns, Aggregators.sum(Aggregators.LIKES), pool);
+    }
+
+    @Benchmark
+    public Map<String, Long> likesByAuthor() {
+        return ParallelAggregation.run(columns, Aggregators.byAuthor(Aggregators.sum(Aggregators.LIKES)), pool);
+    }
+
+    @Benchmark
+    public long[] postsByHour() {
+        return ParallelAggregation.run(columns, Aggregators.histogram(Aggregators.HOUR_OF_DAY, 24), pool);
+    }
+
+    @Benchmark
+    public List<Post> topSharedPosts() {
+        return ParallelAggregation.run(columns, Aggregators.topK(Aggregators.SHARES, 100), pool);
+    }
+
+    @Benchmark
+    public double engagement() {
+        return ParallelAggregation.run(columns, Aggregators.ratio(Aggregators.SHARES, Aggregators.LIKES), pool);
+    }
+}
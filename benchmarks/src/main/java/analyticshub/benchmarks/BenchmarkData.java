@@ -0,0 +1,138 @@
+/*
+ * Class BenchmarkData
+ * Embedded database seeded with deterministic synthetic users and posts for the benchmarks
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import analyticshub.ConnectionPool;
+import analyticshub.DatabaseConnection;
+import analyticshub.Model;
+import analyticshub.Post;
+import analyticshub.PooledConnection;
+
+final class BenchmarkData {
+
+    // Same seed every run, so two runs with the same parameters benchmark the same rows
+    static final long SEED = 20230501L;
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int SEED_COMMIT_INTERVAL = 10;
+    private static final String INSERT_USER = "INSERT INTO user_profiles (username, password, first_name, last_name, is_vip) VALUES (?, ?, ?, ?, ?)";
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Open a fresh in-memory H2 database in MySQL mode with the application schema
+     * Each call gets its own database, so benchmarks in one JVM never see each other's rows
+     * @param poolSize maximum number of pooled connections
+     * @return pool for the new database
+     */
+    static ConnectionPool openDatabase(int poolSize) throws SQLException {
+        String url = "jdbc:h2:mem:bench" + DATABASES.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+        ConnectionPool pool = new ConnectionPool(url, "sa", "", poolSize, 0, 30_000, 10 * 60_000, 60 * 60_000, 64);
+        DatabaseConnection.createTables(pool);
+        return pool;
+    }
+
+    /**
+     * Drop the in-memory database and close the pool
+     * @param pool pool from openDatabase
+     */
+    static void closeDatabase(ConnectionPool pool) throws SQLException {
+        try (PooledConnection pooled = pool.borrow();
+                Statement statement = pooled.getConnection().createStatement()) {
+            statement.execute("SHUTDOWN");
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * Delete every post, the schema and users stay
+     * @param pool pool from openDatabase
+     */
+    static void truncatePosts(ConnectionPool pool) throws SQLException {
+        try (PooledConnection pooled = pool.borrow();
+                Statement statement = pooled.getConnection().createStatement()) {
+            statement.execute("TRUNCATE TABLE social_media_posts");
+        }
+    }
+
+    /**
+     * Insert users user1..userN and posts 1..postCount owned by them
+     * @param pool pool from openDatabase
+     * @param model model over the same pool, the posts go through its bulk import
+     * @param users number of users
+     * @param postCount number of posts
+     */
+    static void seed(ConnectionPool pool, Model model, int users, int postCount) throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = pooled.prepare(INSERT_USER);
+            for (int i = 1; i <= users; i++) {
+                statement.setString(1, username(i));
+                statement.setString(2, "password" + i);
+                statement.setString(3, "First" + i);
+                statement.setString(4, "Last" + i);
+                statement.setBoolean(5, i % 10 == 0);
+                statement.addBatch();
+                if (i % SEED_BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        }
+        model.bulkImport(posts(1, postCount, users, SEED), SEED_BATCH_SIZE, SEED_COMMIT_INTERVAL);
+    }
+
+    /**
+     * @param i user number, starting at 1
+     * @return username of the i-th seeded user
+     */
+    static String username(int i) {
+        return "user" + i;
+    }
+
+    /**
+     * Synthetic posts with consecutive postids, see PostGenerator
+     * @param firstPostid postid of the first post
+     * @param count number of posts
+     * @param users posts are owned by users 1..users
+     * @param seed random seed
+     * @return posts, generated one at a time
+     */
+    static Iterator<Post> posts(int firstPostid, int count, int users, long seed) {
+        return new PostGenerator(users, seed).posts(firstPostid, count);
+    }
+
+    /**
+     * Write synthetic posts 1..count to a CSV file in the import format
+     * @param count number of posts
+     * @return temporary file, deleted on exit
+     */
+    static Path writeCsv(int count) throws IOException {
+        Path file = Files.createTempFile("posts", ".csv");
+        file.toFile().deleteOnExit();
+        new PostGenerator(1, SEED).writeCsv(file, 1, count);
+        return file;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Class BulkImportBenchmark
+ * Inserting posts one row per executeBatch against JDBC batches of growing size
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analyticshub.ConnectionPool;
+import analyticshub.ImportResult;
+import analyticshub.Model;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkImportBenchmark {
+
+    private static final int USERS = 100;
+
+    // posts inserted by one benchmark call
+    @Param({ "10000" })
+    public int rows;
+
+    // 1 is the single row insert
+    @Param({ "1", "100", "1000" })
+    public int batchSize;
+
+    @Param({ "10" })
+    public int commitInterval;
+
+    private ConnectionPool pool;
+    private Model model;
+    private int nextPostid;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkData.openDatabase(2);
+        model = new Model(pool);
+        BenchmarkData.seed(pool, model, USERS, 0);
+    }
+
+    // Start every iteration on an empty table, so the index does not grow for the whole run
+    @Setup(Level.Iteration)
+    public void emptyTable() throws SQLException {
+        BenchmarkData.truncatePosts(pool);
+        // drops the posts the previous iteration added to the in-memory leaderboard
+        model.rebuildLeaderboard();
+        nextPostid = 1;
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        model.close();
+        BenchmarkData.closeDatabase(pool);
+    }
+
+    @Benchmark
+    public ImportResult bulkImport() {
+        ImportResult result = model.bulkImport(BenchmarkData.posts(nextPostid, rows, USERS, nextPostid), batchSize, commitInterval);
+        nextPostid += rows;
+        return result;
+    }
+}
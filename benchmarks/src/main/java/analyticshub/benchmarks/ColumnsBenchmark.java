@@ -0,0 +1,100 @@
+/*
+ * Class ColumnsBenchmark
+ * Scans over every post, run on the off-heap PostColumns or on a list of Post objects
+ * Likes per author and the top N posts of everyone, the latter also read from the leaderboard for reference
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analyticshub.Leaderboard;
+import analyticshub.Post;
+import analyticshub.PostColumns;
+import analyticshub.RankedPosts;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:MaxDirectMemorySize=4g")
+public class ColumnsBenchmark {
+
+    @Param({ "1000" })
+    public int users;
+
+    @Param({ "1000000" })
+    public int posts;
+
+    @Param({ "100" })
+    public int topN;
+
+    private List<Post> objects;
+    private PostColumns columns;
+    private Leaderboard leaderboard;
+
+    @Setup
+    public void setUp() {
+        PostGenerator generator = new PostGenerator(users, 42);
+        objects = new ArrayList<>(posts);
+        for (int postid = 1; postid <= posts; postid++) {
+            objects.add(generator.next(postid));
+        }
+        columns = new PostColumns();
+        columns.beginRebuild();
+        for (Post post : objects) {
+            columns.addRebuilt(post);
+        }
+        columns.finishRebuild();
+        leaderboard = new Leaderboard();
+        leaderboard.beginRebuild();
+        for (Post post : objects) {
+            leaderboard.addRebuilt(post);
+        }
+        leaderboard.finishRebuild();
+    }
+
+    @Benchmark
+    public long[] likesByAuthorColumns() {
+        return columns.likesByAuthor();
+    }
+
+    @Benchmark
+    public Map<String, Long> likesByAuthorObjects() {
+        Map<String, Long> totals = new HashMap<>();
+        for (Post post : objects) {
+            totals.merge(post.getAuthor(), (long) post.getLikes(), Long::sum);
+        }
+        return totals;
+    }
+
+    @Benchmark
+    public RankedPosts topColumns() {
+        return columns.top(topN, null);
+    }
+
+    @Benchmark
+    public RankedPosts topLeaderboard() {
+        return leaderboard.top(topN);
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Class CommandLine
+ * "--name value" options of the data generator and the load driver, and the database they connect to
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import analyticshub.ConnectionPool;
+import analyticshub.DatabaseConnection;
+
+final class CommandLine {
+    private static final long BORROW_TIMEOUT_MILLIS = 30_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 10 * 60_000;
+    private static final long MAX_LIFETIME_MILLIS = 30 * 60_000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final Map<String, String> options = new HashMap<>();
+
+    /**
+     * Constructor
+     * @param args arguments as "--name value" pairs
+     * @throws IllegalArgumentException if an argument is not a name followed by a value
+     */
+    CommandLine(String[] args) {
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+    }
+
+    boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        return has(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    long getLong(String name, long defaultValue) {
+        return has(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    /**
+     * Connection pool for --url, --user, --password and --pool, or the application database without --url
+     * @return pool, the tables are not created yet
+     */
+    ConnectionPool openPool() {
+        if (!has("url")) {
+            return DatabaseConnection.createPool();
+        }
+        int size = getInt("pool", 10);
+        return new ConnectionPool(get("url", null), get("user", "root"), get("password", ""), size, Math.min(2, size),
+                BORROW_TIMEOUT_MILLIS, IDLE_TIMEOUT_MILLIS, MAX_LIFETIME_MILLIS, STATEMENT_CACHE_SIZE);
+    }
+}
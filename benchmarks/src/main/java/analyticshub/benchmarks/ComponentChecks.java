@@ -0,0 +1,480 @@
+/*
+ * Class ComponentChecks
+ * Checks of the algorithms behind the stores, run by StoreConformance after the engines:
+ * CSV parsing of quoted fields, line breaks and malformed rows, the byte date parser against LocalDateTime,
+ * quantile sketch error bounds, merges and files, HyperLogLog accuracy and merges, and the leaderboard's
+ * rank order, keyset pages and rebuild replay against a plain sorted list
+ * Random inputs come from fixed seeds, so a failure repeats on every run
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import analyticshub.CsvPostReader;
+import analyticshub.HyperLogLog;
+import analyticshub.Leaderboard;
+import analyticshub.MemoryStorage;
+import analyticshub.Model;
+import analyticshub.Post;
+import analyticshub.PostColumns;
+import analyticshub.PostDates;
+import analyticshub.PostSketches;
+import analyticshub.QuantileSketch;
+import analyticshub.RankedPosts;
+
+final class ComponentChecks {
+    // ranking order: likes descending, then postid ascending
+    private static final Comparator<Post> RANK_ORDER =
+            Comparator.comparingInt(Post::getLikes).reversed().thenComparingInt(Post::getPostid);
+
+    private final String name;
+    private final List<String> failures = new ArrayList<>();
+
+    private ComponentChecks(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Run every check
+     * @return true if every check passed
+     */
+    static boolean run() throws SQLException, IOException {
+        boolean passed = checkCsv().report();
+        passed &= checkDates().report();
+        passed &= checkQuantileSketch().report();
+        passed &= checkSketchFile().report();
+        passed &= checkHyperLogLog().report();
+        passed &= checkLeaderboard().report();
+        return passed;
+    }
+
+    private boolean report() {
+        for (String failure : failures) {
+            System.out.println("FAIL " + name + ": " + failure);
+        }
+        System.out.println((failures.isEmpty() ? "PASS " : "FAIL ") + name);
+        return failures.isEmpty();
+    }
+
+    private void check(boolean condition, String description) {
+        if (!condition) {
+            failures.add(description);
+        }
+    }
+
+    private void checkEquals(Object expected, Object actual, String description) {
+        if (!expected.equals(actual)) {
+            failures.add(description + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    /**
+     * Quoted fields holding commas, doubled quotes and line breaks, CRLF and LF records, a blank line,
+     * a last record without a line break, and one record for each way a row is malformed
+     */
+    static ComponentChecks checkCsv() throws IOException {
+        ComponentChecks checks = new ComponentChecks("csv");
+        String records = "1,plain,alice,10,2,01/02/2023 10:15\r\n"
+                + "2,\"has, comma\",\"quoted \"\"name\"\"\",0,0,1/2/2023 9:05\n"
+                + "3,\"line one\r\nline two\",bob,5,1,\"15/03/2023 23:59\"\n"
+                + "\n"
+                + "4,too,few,fields\n"
+                + "5,x,y,notanumber,1,01/01/2023 00:00\n"
+                + "6,x,y,1,1,31/02/2023 00:00\n"
+                + "7,\"closed\"junk,y,1,1,01/01/2023 00:00\n"
+                + "8,x,y,99999999999,1,01/01/2023 00:00\n"
+                + "9,\"\",,\"7\",0,01/01/2023 00:00\n"
+                + "10,x,y,1,1,01/01/2023 00:00,extra\n"
+                + "11,last,z,1,1, 01/01/2023 00:00 ";
+        List<String> expected = List.of(
+                "1,plain,alice,10,2,01/02/2023 10:15",
+                "2,has, comma,quoted \"name\",0,0,01/02/2023 09:05",
+                "3,line one\r\nline two,bob,5,1,15/03/2023 23:59",
+                "9,,,7,0,01/01/2023 00:00",
+                "11,last,z,1,1,01/01/2023 00:00");
+
+        Path file = Files.createTempFile("posts", ".csv");
+        try {
+            Files.write(file, ("postid,content,author,likes,shares,date-time\r\n" + records).getBytes(StandardCharsets.UTF_8));
+            try (CsvPostReader reader = new CsvPostReader(file, 7)) {
+                List<String> read = new ArrayList<>();
+                while (reader.hasNext()) {
+                    Post post = reader.next();
+                    checks.checkEquals(7, post.getUserid(), "userid of an imported post");
+                    read.add(describe(post));
+                }
+                checks.checkEquals(expected, read, "records read from a file");
+                checks.checkEquals(6L, reader.getMalformedRows(), "malformed records");
+                // the header is row 1, a quoted line break stays in its row and blank lines are not rows
+                checks.checkEquals(List.of(5L, 6L, 7L, 8L, 9L, 11L), reader.getMalformedRowNumbers(), "malformed row numbers");
+            }
+
+            Files.write(file, "postid,content,author,likes,shares,date-time\n".getBytes(StandardCharsets.UTF_8));
+            try (CsvPostReader reader = new CsvPostReader(file, 7)) {
+                checks.check(!reader.hasNext(), "record read from a file with only a header");
+            }
+        } finally {
+            Files.delete(file);
+        }
+
+        // a chunk of records cut by the import pipeline, which has no header
+        try (CsvPostReader reader = new CsvPostReader(ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8)), 7)) {
+            List<String> read = new ArrayList<>();
+            reader.forEachRemaining(post -> read.add(describe(post)));
+            checks.checkEquals(expected, read, "records read from a buffer");
+        }
+        byte[] unterminated = "1,\"never closed,a,1,1,01/01/2023 00:00\n2,b,c,1,1,01/01/2023 00:00\n".getBytes(StandardCharsets.UTF_8);
+        try (CsvPostReader reader = new CsvPostReader(ByteBuffer.wrap(unterminated), 7)) {
+            checks.check(!reader.hasNext(), "record read after an unterminated quote");
+            checks.checkEquals(1L, reader.getMalformedRows(), "records lost to an unterminated quote");
+        }
+        return checks;
+    }
+
+    /**
+     * The byte parser used by imports must agree with parse(String), which is LocalDateTime's strict formatter,
+     * on random well-formed and damaged dates; both must read back what format writes
+     */
+    static ComponentChecks checkDates() {
+        ComponentChecks checks = new ComponentChecks("dates");
+        Random random = new Random(20230501L);
+        String damage = "0123456789/: x";
+        for (int i = 0; i < 200_000 && checks.failures.size() < 10; i++) {
+            StringBuilder text = new StringBuilder();
+            if (random.nextInt(10) == 0) {
+                text.append(' ');
+            }
+            // day, month, hour and minute of up to 3 digits and a year of up to 5, separated as DD/MM/YYYY HH:MM
+            for (int part = 0; part < 5; part++) {
+                int digits = random.nextInt(part == 2 ? 6 : 4);
+                for (int d = 0; d < digits; d++) {
+                    text.append((char) ('0' + random.nextInt(part == 2 ? 10 : 4)));
+                }
+                if (part < 4) {
+                    text.append("// :".charAt(part));
+                }
+            }
+            if (random.nextInt(10) == 0) {
+                text.append(' ');
+            }
+            if (random.nextInt(20) == 0) {
+                text.setCharAt(random.nextInt(text.length()), damage.charAt(random.nextInt(damage.length())));
+            }
+            String date = text.toString();
+            byte[] bytes = date.getBytes(StandardCharsets.US_ASCII);
+            long parsed = PostDates.parse(bytes, 0, bytes.length);
+            long expected;
+            try {
+                expected = PostDates.parse(date);
+            } catch (DateTimeParseException e) {
+                expected = PostDates.NONE;
+            }
+            checks.checkEquals(expected, parsed, "byte parse of '" + date + "'");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            // minutes from 0001 to 9999
+            long timestamp = (random.nextLong(-62_135_596_800L, 253_402_300_740L) / 60) * 60_000L;
+            String formatted = PostDates.format(timestamp);
+            byte[] bytes = formatted.getBytes(StandardCharsets.US_ASCII);
+            checks.checkEquals(timestamp, PostDates.parse(formatted), "parse of '" + formatted + "'");
+            checks.checkEquals(timestamp, PostDates.parse(bytes, 0, bytes.length), "byte parse of '" + formatted + "'");
+            checks.checkEquals(timestamp, PostDates.toTimestamp(PostDates.toLocalDateTime(timestamp)), "LocalDateTime of " + timestamp);
+        }
+        return checks;
+    }
+
+    /**
+     * Every quantile within the relative accuracy of the exact value of that rank, over skewed, uniform and
+     * signed values; merges and removals match a sketch fed the same values, and the binary form reads back
+     */
+    static ComponentChecks checkQuantileSketch() throws IOException {
+        ComponentChecks checks = new ComponentChecks("quantile sketch");
+        Random random = new Random(7);
+        double[] quantiles = { 0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1 };
+        for (int distribution = 0; distribution < 4; distribution++) {
+            long[] values = new long[50_000];
+            for (int i = 0; i < values.length; i++) {
+                switch (distribution) {
+                    case 0:
+                        // long-tailed, like likes
+                        values[i] = (long) Math.exp(random.nextDouble() * 16);
+                        break;
+                    case 1:
+                        values[i] = random.nextInt(1000);
+                        break;
+                    case 2:
+                        values[i] = random.nextLong(-1_000_000, 1_000_000);
+                        break;
+                    default:
+                        values[i] = random.nextInt(3) == 0 ? 0 : Long.MAX_VALUE - random.nextInt(1000);
+                        break;
+                }
+            }
+            QuantileSketch sketch = new QuantileSketch();
+            QuantileSketch firstHalf = new QuantileSketch();
+            QuantileSketch secondHalf = new QuantileSketch();
+            for (int i = 0; i < values.length; i++) {
+                sketch.add(values[i]);
+                (i % 2 == 0 ? firstHalf : secondHalf).add(values[i]);
+            }
+            long[] sorted = values.clone();
+            Arrays.sort(sorted);
+            for (double quantile : quantiles) {
+                double exact = sorted[(int) (quantile * (sorted.length - 1))];
+                double estimate = sketch.quantile(quantile);
+                checks.check(Math.abs(estimate - exact) <= QuantileSketch.DEFAULT_RELATIVE_ACCURACY * Math.abs(exact) * (1 + 1e-9),
+                        "distribution " + distribution + " quantile " + quantile + ": " + estimate + " for " + exact);
+            }
+            firstHalf.merge(secondHalf);
+            checks.checkEquals(sketch, firstHalf, "merged halves of distribution " + distribution);
+
+            // removing the second half leaves what the first half alone counts
+            QuantileSketch evens = new QuantileSketch();
+            for (int i = 0; i < values.length; i += 2) {
+                evens.add(values[i]);
+            }
+            for (int i = 1; i < values.length; i += 2) {
+                checks.check(sketch.remove(values[i]), "value " + values[i] + " not removed");
+            }
+            checks.checkEquals(evens, sketch, "sketch after removing the odd values of distribution " + distribution);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            sketch.writeTo(new DataOutputStream(bytes));
+            QuantileSketch read = QuantileSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            checks.checkEquals(sketch, read, "sketch read back of distribution " + distribution);
+        }
+        QuantileSketch empty = new QuantileSketch();
+        checks.check(Double.isNaN(empty.quantile(0.5)) && !empty.remove(1), "empty sketch");
+        return checks;
+    }
+
+    /**
+     * Percentiles saved by one model are answered by another before it has loaded any post
+     */
+    static ComponentChecks checkSketchFile() throws SQLException, IOException {
+        ComponentChecks checks = new ComponentChecks("sketch file");
+        MemoryStorage storage = new MemoryStorage();
+        Model model = new Model(storage);
+        Path file = Files.createTempFile("sketches", ".bin");
+        try {
+            Random random = new Random(11);
+            for (int i = 0; i < 5000; i++) {
+                storage.getPostStore().addPost(i % 20 + 1, "content", "author", (int) Math.exp(random.nextDouble() * 10),
+                        random.nextInt(50), 1_700_000_000_000L);
+            }
+            model.rebuildLeaderboard();
+            checks.check(model.saveSketches(file), "sketches not saved");
+
+            Model restarted = new Model(new MemoryStorage());
+            try {
+                checks.check(restarted.loadSketches(file), "sketches not loaded");
+                for (Integer userid : Arrays.asList(null, 1, 7, 20)) {
+                    for (PostSketches.Metric metric : PostSketches.Metric.values()) {
+                        checks.checkEquals(Arrays.toString(model.getPercentiles(metric, userid, 0.5, 0.9, 0.99)),
+                                Arrays.toString(restarted.getPercentiles(metric, userid, 0.5, 0.9, 0.99)),
+                                metric + " percentiles of user " + userid + " after loading the file");
+                    }
+                }
+            } finally {
+                restarted.close();
+            }
+        } finally {
+            Files.delete(file);
+            model.close();
+        }
+        return checks;
+    }
+
+    /**
+     * Estimates within three standard errors from one value to a million, merges counting the union
+     * of their values as one sketch fed both would
+     */
+    static ComponentChecks checkHyperLogLog() {
+        ComponentChecks checks = new ComponentChecks("hyperloglog");
+        for (int precision : new int[] { HyperLogLog.DEFAULT_PRECISION, 12 }) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            checks.check(sketch.isEmpty() && sketch.estimate() == 0, "empty sketch of precision " + precision);
+            int added = 0;
+            for (int target : new int[] { 1, 10, 100, 1000, 10_000, 100_000, 1_000_000 }) {
+                while (added < target) {
+                    sketch.add("author " + added++);
+                }
+                // adding the same values again changes nothing
+                sketch.add("author 0");
+                double error = Math.abs(sketch.estimate() - target) / (double) target;
+                checks.check(error <= 3 * sketch.getRelativeError() || Math.abs(sketch.estimate() - target) <= 1,
+                        "precision " + precision + ": " + sketch.estimate() + " for " + target + " values");
+            }
+        }
+
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) {
+            // 0 to 39999 in the first, 20000 to 59999 in the second
+            if (i < 40_000) {
+                first.add("author " + i);
+            }
+            if (i >= 20_000) {
+                second.add("author " + i);
+            }
+            both.add("author " + i);
+        }
+        long firstEstimate = first.estimate();
+        HyperLogLog union = first.copy();
+        union.merge(second);
+        checks.checkEquals(both, union, "merged sketch");
+        checks.checkEquals(both.estimate(), union.estimate(), "estimate of the merged sketch");
+        checks.checkEquals(firstEstimate, first.estimate(), "sketch changed by merging into its copy");
+        union.merge(second);
+        checks.checkEquals(both, union, "sketch merged twice");
+        try {
+            first.merge(new HyperLogLog(12));
+            checks.failures.add("sketches of different precisions merged");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        return checks;
+    }
+
+    /**
+     * Rank order, per-user rankings and keyset pages against a sorted list, after random adds, likes changes
+     * and deletes with tied likes and negative postids; changes made during a rebuild, such as a post deleted
+     * and added again, are kept in the order they were made
+     */
+    static ComponentChecks checkLeaderboard() {
+        ComponentChecks checks = new ComponentChecks("leaderboard");
+        Random random = new Random(3);
+        Leaderboard leaderboard = new Leaderboard();
+        PostColumns columns = new PostColumns();
+        Map<Integer, Post> expected = new HashMap<>();
+        leaderboard.beginRebuild();
+        columns.beginRebuild();
+        for (int i = 0; i < 20_000; i++) {
+            int postid = random.nextInt(6000) - 1000;
+            int operation = random.nextInt(10);
+            if (i == 10_000) {
+                leaderboard.finishRebuild();
+                columns.finishRebuild();
+                checks.checkEquals(Arrays.toString(totals(expected.values())), Arrays.toString(leaderboard.getTotals()),
+                        "totals after replaying the changes made during a rebuild");
+                checks.checkEquals(expected.size(), columns.size(), "column posts after replaying the changes made during a rebuild");
+            }
+            if (i < 10_000 && operation < 3) {
+                // read by the rebuild, so a change below made meanwhile must win over it
+                Post stored = expected.get(postid);
+                if (stored != null) {
+                    leaderboard.addRebuilt(stored);
+                    columns.addRebuilt(stored);
+                }
+            } else if (operation < 8) {
+                // few distinct likes, so most posts tie with others
+                Post post = new Post(postid, random.nextInt(5) + 1, "content " + i, "author", random.nextInt(50), 0, 0L);
+                expected.put(postid, post);
+                leaderboard.add(post);
+                columns.add(post);
+            } else {
+                expected.remove(postid);
+                leaderboard.remove(postid);
+                columns.remove(postid);
+            }
+        }
+        checks.check(leaderboard.isLoaded() && columns.isLoaded(), "rebuild did not finish");
+
+        // the rebuild found an old copy of a post that was then deleted and added again
+        leaderboard.beginRebuild();
+        columns.beginRebuild();
+        Post old = new Post(5000, 1, "old", "author", 1, 0, 0L);
+        leaderboard.addRebuilt(old);
+        columns.addRebuilt(old);
+        for (Post post : expected.values()) {
+            leaderboard.addRebuilt(post);
+            columns.addRebuilt(post);
+        }
+        leaderboard.remove(5000);
+        columns.remove(5000);
+        Post again = new Post(5000, 2, "again", "author", 99, 0, 0L);
+        leaderboard.add(again);
+        columns.add(again);
+        expected.put(5000, again);
+        leaderboard.finishRebuild();
+        columns.finishRebuild();
+
+        List<Post> ranked = new ArrayList<>(expected.values());
+        ranked.sort(RANK_ORDER);
+        int[] all = ranked.stream().mapToInt(Post::getPostid).toArray();
+        checks.checkEquals(expected.size(), leaderboard.size(), "ranked posts");
+        checks.checkEquals(Arrays.toString(Arrays.copyOf(all, 100)), Arrays.toString(postidsOf(leaderboard.top(100))), "top 100");
+        checks.checkEquals(Arrays.toString(Arrays.copyOf(all, 100)), Arrays.toString(postidsOf(columns.top(100, null))),
+                "top 100 of the columns");
+        checks.checkEquals(Arrays.toString(all), Arrays.toString(pages(leaderboard, null, 37)), "keyset pages of all posts");
+        for (int userid = 1; userid <= 6; userid++) {
+            int owner = userid;
+            int[] own = ranked.stream().filter(post -> post.getUserid() == owner).mapToInt(Post::getPostid).toArray();
+            checks.checkEquals(Arrays.toString(Arrays.copyOf(own, Math.min(own.length, 25))),
+                    Arrays.toString(postidsOf(leaderboard.top(25, userid))), "top 25 of user " + userid);
+            checks.checkEquals(Arrays.toString(Arrays.copyOf(own, Math.min(own.length, 25))),
+                    Arrays.toString(postidsOf(columns.top(25, userid))), "top 25 of the columns of user " + userid);
+            checks.checkEquals(Arrays.toString(own), Arrays.toString(pages(leaderboard, userid, 10)), "keyset pages of user " + userid);
+        }
+        checks.checkEquals(Arrays.toString(totals(ranked)), Arrays.toString(leaderboard.getTotals()), "totals");
+        checks.checkEquals("again", leaderboard.top(1).getContent(0), "post deleted and added again during a rebuild");
+        return checks;
+    }
+
+    // { number of posts, sum of likes, sum of postids }, as Leaderboard.getTotals
+    private static long[] totals(Collection<Post> posts) {
+        return new long[] { posts.size(), posts.stream().mapToLong(Post::getLikes).sum(),
+                posts.stream().mapToLong(Post::getPostid).sum() };
+    }
+
+    // every post of a ranking, read page by page from the keyset of the last post of the page before
+    private static int[] pages(Leaderboard leaderboard, Integer userid, int pageSize) {
+        List<Integer> postids = new ArrayList<>();
+        RankedPosts page = leaderboard.page(userid, false, 0, 0, pageSize);
+        while (!page.isEmpty()) {
+            for (int rank = 0; rank < page.size(); rank++) {
+                postids.add(page.getPostid(rank));
+            }
+            int last = page.size() - 1;
+            page = leaderboard.page(userid, true, page.getLikes(last), page.getPostid(last), pageSize);
+        }
+        return postids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int[] postidsOf(RankedPosts posts) {
+        int[] postids = new int[posts.size()];
+        for (int i = 0; i < postids.length; i++) {
+            postids[i] = posts.getPostid(i);
+        }
+        return postids;
+    }
+
+    private static String describe(Post post) {
+        return post.getPostid() + "," + post.getContent() + "," + post.getAuthor() + "," + post.getLikes() + ","
+                + post.getShares() + "," + PostDates.format(post.getTimestamp());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Class CsvBenchmark
+ * CSV import and export paths: parsing alone, the parallel import pipeline and exporting one post
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import analyticshub.ConnectionPool;
+import analyticshub.CsvPostReader;
+import analyticshub.ImportResult;
+import analyticshub.Model;
+import analyticshub.Post;
+import analyticshub.PostExport;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvBenchmark {
+
+    // rows in the generated CSV file, also the posts the export reads from
+    @Param({ "100000" })
+    public int rows;
+
+    private Path csv;
+
+    /**
+     * Database holding every post of the CSV file, for the export
+     */
+    @State(Scope.Benchmark)
+    public static class SeededDatabase {
+        private ConnectionPool pool;
+        private Model model;
+        private Path export;
+
+        @Setup
+        public void setUp(CsvBenchmark benchmark) throws SQLException, IOException {
+            pool = BenchmarkData.openDatabase(2);
+            model = new Model(pool);
+            BenchmarkData.seed(pool, model, 1, benchmark.rows);
+            export = Files.createTempFile("export", ".csv");
+            export.toFile().deleteOnExit();
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException, IOException {
+            model.close();
+            BenchmarkData.closeDatabase(pool);
+            Files.deleteIfExists(export);
+        }
+    }
+
+    /**
+     * Database emptied before every import, since each import inserts the same postids
+     */
+    @State(Scope.Benchmark)
+    public static class EmptyDatabase {
+        private ConnectionPool pool;
+        private Model model;
+
+        @Setup
+        public void setUp() throws SQLException {
+            pool = BenchmarkData.openDatabase(8);
+            model = new Model(pool);
+            BenchmarkData.seed(pool, model, 1, 0);
+        }
+
+        @Setup(Level.Invocation)
+        public void emptyTable() throws SQLException {
+            BenchmarkData.truncatePosts(pool);
+            // drops the posts the previous import added to the in-memory leaderboard
+            model.rebuildLeaderboard();
+        }
+
+        @TearDown
+        public void tearDown() throws SQLException {
+            model.close();
+            BenchmarkData.closeDatabase(pool);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        csv = BenchmarkData.writeCsv(rows);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(csv);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        try (CsvPostReader reader = new CsvPostReader(csv, 1)) {
+            while (reader.readRecord()) {
+                blackhole.consume(reader.getPostid());
+                blackhole.consume(reader.getContent());
+                blackhole.consume(reader.getAuthor());
+                blackhole.consume(reader.getLikes());
+                blackhole.consume(reader.getShares());
+                blackhole.consume(reader.getTimestamp());
+            }
+        }
+    }
+
+    @Benchmark
+    public ImportResult importCsv(EmptyDatabase database) {
+        return database.model.importCsv(csv.toFile(), 1);
+    }
+
+    // The dashboard export: read one post and write it out
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void exportPost(SeededDatabase database) throws IOException {
+        Post post = database.model.getPostByPostid(1 + ThreadLocalRandom.current().nextInt(rows));
+        try (BufferedWriter writer = Files.newBufferedWriter(database.export, StandardCharsets.UTF_8)) {
+            PostExport.write(writer, post);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Class DataGenerator
+ * Generate synthetic users and posts at deployment volumes, into a CSV file or through the Model
+ * Usage: java DataGenerator --posts N [--users N] [--seed S] [--first-postid N]
+ *                           [--csv file | --url jdbc-url --user name --password secret]
+ * Without --csv or --url the posts go to the application database
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import analyticshub.ConnectionPool;
+import analyticshub.DatabaseConnection;
+import analyticshub.ImportResult;
+import analyticshub.Model;
+import analyticshub.User;
+
+public class DataGenerator {
+
+    private static final int DEFAULT_USERS = 1000;
+    private static final int BATCH_SIZE = 1000;
+    private static final int COMMIT_INTERVAL = 10;
+
+    public static void main(String[] args) {
+        try {
+            CommandLine options = new CommandLine(args);
+            if (!options.has("posts")) {
+                throw new IllegalArgumentException("--posts is required");
+            }
+            int posts = options.getInt("posts", 0);
+            int users = options.getInt("users", DEFAULT_USERS);
+            long seed = options.getLong("seed", BenchmarkData.SEED);
+            int firstPostid = options.getInt("first-postid", 1);
+            long start = System.nanoTime();
+
+            if (options.has("csv")) {
+                // An imported file belongs to the importing user, so the CSV has no owners
+                Path file = Path.of(options.get("csv", null));
+                new PostGenerator(1, seed).writeCsv(file, firstPostid, posts);
+                System.out.println("Wrote " + posts + " posts to " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+                return;
+            }
+
+            ConnectionPool pool = options.openPool();
+            Model model = new Model(pool);
+            try {
+                DatabaseConnection.createTables(pool);
+                int[] userids = registerUsers(model, users);
+                ImportResult result = model.bulkImport(new PostGenerator(userids, seed).posts(firstPostid, posts),
+                        BATCH_SIZE, COMMIT_INTERVAL);
+                System.out.println("Inserted " + users + " users and " + result + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } finally {
+                model.close();
+                pool.close();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DataGenerator --posts N [--users N] [--seed S] [--first-postid N] [--csv file | --url jdbc-url --user name --password secret]");
+            System.exit(2);
+        } catch (SQLException | IOException e) {
+            // Database and file errors
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Register users user1..userN with password "password", keeping the ones that exist already
+     * @param model model to register through
+     * @param users number of users
+     * @return userids of the users, in order
+     * @throws SQLException if a user cannot be registered or read back
+     */
+    static int[] registerUsers(Model model, int users) throws SQLException {
+        int[] userids = new int[users];
+        for (int i = 1; i <= users; i++) {
+            String username = BenchmarkData.username(i);
+            model.registerUser(username, LoadDriver.PASSWORD, "First" + i, "Last" + i);
+            User user = model.getUserByUsername(username);
+            if (user == null) {
+                throw new SQLException("User " + username + " was not registered");
+            }
+            userids[i - 1] = user.getUserid();
+        }
+        return userids;
+    }
+}
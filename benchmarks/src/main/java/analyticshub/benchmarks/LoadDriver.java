@@ -0,0 +1,299 @@
+/*
+ * Class LoadDriver
+ * Closed-loop load test: many threads replay the Model calls behind the Controller's handlers, each thread
+ * sending its next request as soon as the last one returns, then report throughput and latency percentiles
+ * Usage: java LoadDriver [--threads N] [--duration seconds] [--warmup seconds] [--users N] [--posts N]
+ *                        [--mix login=30,post=25,...] [--top-n N] [--think-ms N] [--leaderboard true|false]
+ *                        [--generate-posts N] [--url jdbc-url --user name --password secret --pool N]
+ * The users and posts are the ones written by DataGenerator, or by --generate-posts before the run
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.StringWriter;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import analyticshub.ConnectionPool;
+import analyticshub.DatabaseConnection;
+import analyticshub.ImportResult;
+import analyticshub.Metrics;
+import analyticshub.MetricsSnapshot;
+import analyticshub.Model;
+import analyticshub.Post;
+import analyticshub.PostExport;
+import analyticshub.User;
+
+public class LoadDriver {
+
+    // password of every generated user
+    static final String PASSWORD = "password";
+
+    private static final String DEFAULT_MIX = "login=30,post=25,top=15,usertop=10,export=10,add=8,register=2";
+    private static final String[] ACTIONS = { "login", "post", "top", "usertop", "export", "add", "register" };
+    // page size of the top posts table, as in the Controller
+    private static final int TOP_POSTS_PAGE_SIZE = 200;
+    private static final int GENERATE_BATCH_SIZE = 1000;
+    private static final int GENERATE_COMMIT_INTERVAL = 10;
+    private static final double[] PERCENTILES = { 50, 95, 99 };
+
+    private final Model model;
+    private final int users;
+    private final int posts;
+    private final int topN;
+    private final long thinkMillis;
+    private final String[] mixActions;
+    private final int[] mixCumulativeWeights;
+    // registered usernames stay unique across runs against the same database
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicInteger registered = new AtomicInteger();
+
+    /**
+     * Constructor
+     * @param model model under load
+     * @param users usernames user1..userN log in, userids 1..N are queried
+     * @param posts postids 1..N are read
+     * @param topN number of top posts requested
+     * @param thinkMillis pause of a thread between two requests, 0 for none
+     * @param mix relative weight of each action, as "name=weight,..."
+     */
+    LoadDriver(Model model, int users, int posts, int topN, long thinkMillis, String mix) {
+        this.model = model;
+        this.users = users;
+        this.posts = posts;
+        this.topN = topN;
+        this.thinkMillis = thinkMillis;
+
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2 || !isAction(pair[0].trim())) {
+                throw new IllegalArgumentException("Invalid mix entry " + entry + ", actions are " + String.join(", ", ACTIONS));
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.merge(pair[0].trim(), weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no action with a positive weight");
+        }
+        mixActions = weights.keySet().toArray(new String[0]);
+        mixCumulativeWeights = new int[mixActions.length];
+        int total = 0;
+        for (int i = 0; i < mixActions.length; i++) {
+            total += weights.get(mixActions[i]);
+            mixCumulativeWeights[i] = total;
+        }
+    }
+
+    private static boolean isAction(String name) {
+        for (String action : ACTIONS) {
+            if (action.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        try {
+            CommandLine options = new CommandLine(args);
+            int threads = options.getInt("threads", 32);
+            long durationSeconds = options.getLong("duration", 60);
+            long warmupSeconds = options.getLong("warmup", 10);
+            int users = options.getInt("users", 1000);
+
+            ConnectionPool pool = options.openPool();
+            Model model = new Model(pool);
+            try {
+                DatabaseConnection.createTables(pool);
+                int posts = options.getInt("posts", 0);
+                if (options.has("generate-posts")) {
+                    posts = options.getInt("generate-posts", 0);
+                    int[] userids = DataGenerator.registerUsers(model, users);
+                    ImportResult result = model.bulkImport(new PostGenerator(userids, BenchmarkData.SEED).posts(1, posts),
+                            GENERATE_BATCH_SIZE, GENERATE_COMMIT_INTERVAL);
+                    System.out.println("Generated " + users + " users and " + result);
+                }
+                if (posts <= 0) {
+                    throw new IllegalArgumentException("--posts or --generate-posts is required");
+                }
+                // The app answers top N from the in-memory leaderboard once it has loaded
+                if (Boolean.parseBoolean(options.get("leaderboard", "true"))) {
+                    model.loadLeaderboard();
+                }
+
+                LoadDriver driver = new LoadDriver(model, users, posts, options.getInt("top-n", 100),
+                        options.getLong("think-ms", 0), options.get("mix", DEFAULT_MIX));
+                if (warmupSeconds > 0) {
+                    System.out.println("Warming up for " + warmupSeconds + " s");
+                    driver.run(threads, warmupSeconds);
+                }
+                System.out.println("Running " + threads + " threads for " + durationSeconds + " s");
+                long start = System.nanoTime();
+                Metrics results = driver.run(threads, durationSeconds);
+                System.out.print(report(results.snapshot(), threads, System.nanoTime() - start));
+                System.out.print(model.getMetrics().snapshot().toText());
+            } finally {
+                model.close();
+                pool.close();
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadDriver [--threads N] [--duration seconds] [--warmup seconds] [--users N] [--posts N] "
+                    + "[--mix " + DEFAULT_MIX + "] [--top-n N] [--think-ms N] [--leaderboard true|false] [--generate-posts N] "
+                    + "[--url jdbc-url --user name --password secret --pool N]");
+            System.exit(2);
+        } catch (SQLException | InterruptedException e) {
+            // Database errors
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Send requests from the given number of threads until the duration ends
+     * @param threads number of concurrent clients
+     * @param durationSeconds how long to run
+     * @return calls, errors and latencies per action
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    Metrics run(int threads, long durationSeconds) throws InterruptedException {
+        Metrics results = new Metrics();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(threads,
+                r -> new Thread(r, "load-client-" + threadNumber.incrementAndGet()));
+        for (int i = 0; i < threads; i++) {
+            // each client has its own random source, so they do not contend on one
+            long seed = BenchmarkData.SEED + i;
+            clients.execute(() -> runClient(new Random(seed), new PostGenerator(users, seed), results, deadline));
+        }
+        clients.shutdown();
+        clients.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+        return results;
+    }
+
+    private void runClient(Random random, PostGenerator generator, Metrics results, long deadline) {
+        while (System.nanoTime() < deadline) {
+            String action = pickAction(random);
+            long start = System.nanoTime();
+            boolean failed;
+            try {
+                failed = !execute(action, random, generator);
+            } catch (Exception e) {
+                failed = true;
+            }
+            results.operation(action).record(System.nanoTime() - start, failed);
+            if (thinkMillis > 0) {
+                try {
+                    Thread.sleep(thinkMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private String pickAction(Random random) {
+        int weight = random.nextInt(mixCumulativeWeights[mixCumulativeWeights.length - 1]);
+        for (int i = 0; ; i++) {
+            if (weight < mixCumulativeWeights[i]) {
+                return mixActions[i];
+            }
+        }
+    }
+
+    /**
+     * Make the Model calls one Controller handler makes
+     * @param action name of the action
+     * @param random source of the usernames, postids and userids to ask for
+     * @param generator source of new posts
+     * @return false if the Model reported a failure, such as a missing user or post
+     * @throws Exception if the Model threw
+     */
+    private boolean execute(String action, Random random, PostGenerator generator) throws Exception {
+        switch (action) {
+            case "login": {
+                // handleLogin: read the user, then check the password
+                User user = model.getUserByUsername(BenchmarkData.username(1 + random.nextInt(users)));
+                return user != null && user.getPassword().equals(PASSWORD);
+            }
+            case "post":
+                // handleConfirmRetrieve
+                return model.getPostByPostid(1 + random.nextInt(posts)) != null;
+            case "top":
+                // handleRetrieveTopPostsAll: open the cursor and read the first page of the table
+                model.openTopPosts(topN, TOP_POSTS_PAGE_SIZE).nextPage();
+                return true;
+            case "usertop":
+                model.openUserPosts(1 + random.nextInt(users), topN, TOP_POSTS_PAGE_SIZE).nextPage();
+                return true;
+            case "export": {
+                // handleConfirmExport, writing to memory instead of a chosen file
+                Post post = model.getPostByPostid(1 + random.nextInt(posts));
+                if (post == null) {
+                    return false;
+                }
+                PostExport.write(new StringWriter(), post);
+                return true;
+            }
+            case "add": {
+                // handleConfirmAdd, the database assigns the postid
+                Post post = generator.next(0);
+                return model.addPost(post.getUserid(), post.getContent(), post.getAuthor(),
+                        post.getLikes(), post.getShares(), post.getTimestamp());
+            }
+            case "register":
+                // handleConfirmRegist
+                return model.registerUser("load-" + runId + "-" + registered.incrementAndGet(), PASSWORD, "Load", "Test");
+            default:
+                throw new IllegalStateException("Unknown action " + action);
+        }
+    }
+
+    /**
+     * Format the results as a table, one line per action and a total line
+     * @param snapshot results of the run
+     * @param threads number of clients
+     * @param elapsedNanos wall time of the run
+     * @return report text
+     */
+    static String report(MetricsSnapshot snapshot, int threads, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%-10s %10s %8s %10s", "action", "calls", "errors", "ops/s"));
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, " %9s", "p" + (int) percentile + " ms"));
+        }
+        text.append(String.format(Locale.ROOT, " %9s%n", "max ms"));
+
+        long calls = 0;
+        long errors = 0;
+        for (Map.Entry<String, MetricsSnapshot.OperationStats> entry : snapshot.getOperations().entrySet()) {
+            MetricsSnapshot.OperationStats stats = entry.getValue();
+            calls += stats.getCalls();
+            errors += stats.getErrors();
+            text.append(String.format(Locale.ROOT, "%-10s %10d %8d %10.1f", entry.getKey(),
+                    stats.getCalls(), stats.getErrors(), stats.getCalls() / seconds));
+            for (double percentile : PERCENTILES) {
+                text.append(String.format(Locale.ROOT, " %9.3f", stats.getPercentileMillis(percentile)));
+            }
+            text.append(String.format(Locale.ROOT, " %9.3f%n", stats.getMaxMillis()));
+        }
+        text.append(String.format(Locale.ROOT, "%-10s %10d %8d %10.1f   (%d threads, %.1f s)%n",
+                "total", calls, errors, calls / seconds, threads, seconds));
+        return text.toString();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Class PostGenerator
+ * Deterministic synthetic posts shaped like a real feed: Zipf distributed likes, shares and authors,
+ * a few very active users, log-normal content lengths and daytime-heavy timestamps
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import analyticshub.Post;
+import analyticshub.PostDates;
+
+public final class PostGenerator {
+    public static final String CSV_HEADER = "postid,content,author,likes,shares,datetime\n";
+
+    private static final int MAX_LIKES = 1_000_000;
+    private static final int MAX_SHARES = 100_000;
+    private static final int AUTHORS = 50_000;
+    // most posts get a handful of likes, a few go viral; shares are rarer and more skewed still
+    private static final double LIKES_EXPONENT = 1.2;
+    private static final double SHARES_EXPONENT = 1.5;
+    private static final double AUTHORS_EXPONENT = 1.0;
+    private static final double USERS_EXPONENT = 1.0;
+    // words per post: median e^2.3, about 10 words, rarely more than 40
+    private static final double WORDS_LOG_MEAN = 2.3;
+    private static final double WORDS_LOG_SIGMA = 0.6;
+    private static final int MAX_WORDS = 60;
+    private static final double HASHTAG_PROBABILITY = 0.3;
+    private static final int DAYS = 365;
+    private static final LocalDateTime LAST_DAY = LocalDateTime.of(2023, 12, 31, 0, 0);
+    // relative number of posts per hour of the day, quiet at night and busiest in the evening
+    private static final int[] HOUR_WEIGHTS = {
+        2, 1, 1, 1, 1, 2, 4, 6, 8, 8, 8, 9, 10, 9, 8, 8, 9, 10, 12, 14, 14, 12, 8, 4
+    };
+    private static final String[] WORDS = {
+        "data", "analytics", "hub", "post", "share", "like", "trend", "weekly", "report", "launch",
+        "team", "update", "news", "today", "great", "new", "release", "event", "photo", "video",
+        "coffee", "morning", "weekend", "travel", "music", "game", "match", "win", "food", "recipe",
+        "city", "beach", "sunset", "friends", "family", "work", "project", "idea", "thanks", "love",
+        "happy", "busy", "finally", "again", "best", "first", "last", "big", "small", "live",
+        "check", "out", "this", "my", "our", "the", "a", "with", "for", "and"
+    };
+
+    // shared by every generator, the likes table alone holds a million entries
+    private static final ZipfDistribution LIKES = new ZipfDistribution(MAX_LIKES + 1, LIKES_EXPONENT);
+    private static final ZipfDistribution SHARES = new ZipfDistribution(MAX_SHARES + 1, SHARES_EXPONENT);
+    private static final ZipfDistribution AUTHOR_RANKS = new ZipfDistribution(AUTHORS, AUTHORS_EXPONENT);
+    private static final int HOUR_WEIGHT_TOTAL = Arrays.stream(HOUR_WEIGHTS).sum();
+
+    private final int[] userids;
+    private final ZipfDistribution userRanks;
+    private final Random random;
+    private final long firstDay;
+
+    /**
+     * Constructor for posts owned by users 1..users
+     * @param users number of users
+     * @param seed random seed, the same seed generates the same posts
+     */
+    public PostGenerator(int users, long seed) {
+        this(consecutive(users), seed);
+    }
+
+    /**
+     * Constructor
+     * @param userids owners of the posts, the first ones own the most posts
+     * @param seed random seed, the same seed generates the same posts
+     */
+    public PostGenerator(int[] userids, long seed) {
+        if (userids.length == 0) {
+            throw new IllegalArgumentException("No users to own the posts");
+        }
+        this.userids = userids.clone();
+        this.userRanks = new ZipfDistribution(userids.length, USERS_EXPONENT);
+        this.random = new Random(seed);
+        this.firstDay = PostDates.toTimestamp(LAST_DAY.minusDays(DAYS - 1));
+    }
+
+    private static int[] consecutive(int users) {
+        int[] userids = new int[users];
+        for (int i = 0; i < users; i++) {
+            userids[i] = i + 1;
+        }
+        return userids;
+    }
+
+    /**
+     * Generate one post
+     * @param postid postid of the post
+     * @return new post
+     */
+    public Post next(int postid) {
+        int likes = LIKES.sample(random) - 1;
+        int shares = Math.min(likes, SHARES.sample(random) - 1);
+        int userid = userids[userRanks.sample(random) - 1];
+        String author = "author" + AUTHOR_RANKS.sample(random);
+        return new Post(postid, userid, content(), author, likes, shares, timestamp());
+    }
+
+    private String content() {
+        long words = Math.round(Math.exp(WORDS_LOG_MEAN + WORDS_LOG_SIGMA * random.nextGaussian()));
+        words = Math.max(1, Math.min(MAX_WORDS, words));
+        StringBuilder content = new StringBuilder((int) words * 7);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                content.append(' ');
+            }
+            content.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        if (random.nextDouble() < HASHTAG_PROBABILITY) {
+            content.append(" #").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return content.toString();
+    }
+
+    private long timestamp() {
+        int weight = random.nextInt(HOUR_WEIGHT_TOTAL);
+        int hour = 0;
+        while (weight >= HOUR_WEIGHTS[hour]) {
+            weight -= HOUR_WEIGHTS[hour++];
+        }
+        // PostDates keep minutes, so a post lands on a whole minute
+        long minute = (random.nextInt(DAYS) * 24L + hour) * 60 + random.nextInt(60);
+        return firstDay + minute * 60_000;
+    }
+
+    /**
+     * Posts with consecutive postids, generated one at a time so the count can exceed memory
+     * @param firstPostid postid of the first post
+     * @param count number of posts
+     * @return posts, the iterator shares this generator's random state
+     */
+    public Iterator<Post> posts(int firstPostid, int count) {
+        return new Iterator<Post>() {
+            private int generated;
+
+            @Override
+            public boolean hasNext() {
+                return generated < count;
+            }
+
+            @Override
+            public Post next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return PostGenerator.this.next(firstPostid + generated++);
+            }
+        };
+    }
+
+    /**
+     * Write posts to a CSV file in the import format (postid,content,author,likes,shares,datetime)
+     * @param file destination, replaced if it exists
+     * @param firstPostid postid of the first post
+     * @param count number of posts
+     * @throws IOException if the file cannot be written
+     */
+    public void writeCsv(Path file, int firstPostid, int count) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(CSV_HEADER);
+            for (Iterator<Post> posts = posts(firstPostid, count); posts.hasNext();) {
+                Post post = posts.next();
+                writer.write(post.getPostid() + "," + post.getContent() + "," + post.getAuthor() + ","
+                        + post.getLikes() + "," + post.getShares() + "," + PostDates.format(post.getTimestamp()) + "\n");
+            }
+        }
+    }
+}
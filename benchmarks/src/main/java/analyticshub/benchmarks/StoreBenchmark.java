@@ -0,0 +1,139 @@
+/*
+ * Class StoreBenchmark
+ * The PostStore calls the Model makes, against each storage engine directly, so engines compare without the leaderboard
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analyticshub.ImportResult;
+import analyticshub.LogStorage;
+import analyticshub.MemoryStorage;
+import analyticshub.Post;
+import analyticshub.PostStore;
+import analyticshub.PostWriter;
+import analyticshub.RankedPosts;
+import analyticshub.StorageEngine;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StoreBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final long HOUR = 60 * 60_000L;
+
+    @Param({ "memory", "embedded", "log" })
+    public String engine;
+
+    @Param({ "100000" })
+    public int posts;
+
+    @Param({ "1000" })
+    public int users;
+
+    @Param({ "100" })
+    public int pageSize;
+
+    private StorageEngine storage;
+    private PostStore store;
+    private long firstTimestamp;
+    private long lastTimestamp;
+
+    @Setup
+    public void setUp() throws SQLException {
+        switch (engine) {
+            case "memory":
+                storage = new MemoryStorage();
+                break;
+            case "embedded":
+                storage = StoreConformance.openEmbedded();
+                break;
+            case "log":
+                storage = StoreConformance.openLog(LogStorage.DEFAULT_SEGMENT_SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+        store = storage.getPostStore();
+
+        ImportResult result = new ImportResult();
+        List<Post> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        firstTimestamp = Long.MAX_VALUE;
+        try (PostWriter writer = store.openWriter()) {
+            for (Iterator<Post> generated = BenchmarkData.posts(1, posts, users, BenchmarkData.SEED); generated.hasNext(); ) {
+                Post post = generated.next();
+                firstTimestamp = Math.min(firstTimestamp, post.getTimestamp());
+                lastTimestamp = Math.max(lastTimestamp, post.getTimestamp());
+                batch.add(post);
+                if (batch.size() == SEED_BATCH_SIZE || !generated.hasNext()) {
+                    writer.writeBatch(batch, result, new ArrayList<>());
+                    batch.clear();
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        storage.close();
+        if (storage instanceof LogStorage) {
+            StoreConformance.deleteLog(((LogStorage) storage).getDirectory());
+        }
+    }
+
+    @Benchmark
+    public Post getPostByPostid() throws SQLException {
+        return store.getPostByPostid(1 + ThreadLocalRandom.current().nextInt(posts));
+    }
+
+    @Benchmark
+    public RankedPosts topPostsAll() throws SQLException {
+        return store.readPostPage(null, false, 0, 0, pageSize);
+    }
+
+    @Benchmark
+    public RankedPosts topPostsUser() throws SQLException {
+        return store.readPostPage(1 + ThreadLocalRandom.current().nextInt(users), false, 0, 0, pageSize);
+    }
+
+    // the page after a post picked at random, like a cursor deep into the ranking
+    @Benchmark
+    public RankedPosts keysetPage() throws SQLException {
+        Post post = store.getPostByPostid(1 + ThreadLocalRandom.current().nextInt(posts));
+        return store.readPostPage(null, true, post.getLikes(), post.getPostid(), pageSize);
+    }
+
+    @Benchmark
+    public List<Post> postsInAnHour() throws SQLException {
+        long from = ThreadLocalRandom.current().nextLong(firstTimestamp, lastTimestamp + 1);
+        return store.retrievePostsBetween(from, from + HOUR, pageSize);
+    }
+}
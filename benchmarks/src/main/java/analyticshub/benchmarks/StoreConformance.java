@@ -0,0 +1,489 @@
+/*
+ * Class StoreConformance
+ * Checks that every storage engine behaves the same behind the UserStore and PostStore interfaces:
+ * missing rows, duplicate usernames and postids, rank order with ties, keyset pages, time ranges, totals,
+ * and import sessions that commit or roll back; the log engine is also reopened after compaction, a torn write
+ * and a retired segment whose delete failed
+ * A model over each engine then adds a post without an author, as older databases hold, and rebuilds from the store
+ * Post columns are written to a snapshot file and read back, and truncated or corrupt snapshots must fail cleanly
+ * ComponentChecks then checks the parsers, sketches and leaderboard those engines feed
+ * Usage: java StoreConformance [--url jdbc-url --user name --password secret]
+ * The memory, embedded and log engines always run, each on a fresh database; --url adds a MySQL database,
+ * which must have no posts, its rows are left behind
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import analyticshub.ConnectionPool;
+import analyticshub.DatabaseConnection;
+import analyticshub.ImportResult;
+import analyticshub.JdbcStorage;
+import analyticshub.LogStorage;
+import analyticshub.MemoryStorage;
+import analyticshub.Model;
+import analyticshub.Post;
+import analyticshub.PostColumns;
+import analyticshub.PostStore;
+import analyticshub.PostWriter;
+import analyticshub.RankedPosts;
+import analyticshub.SharesScope;
+import analyticshub.StorageEngine;
+import analyticshub.User;
+import analyticshub.UserStore;
+
+public class StoreConformance {
+
+    // small segments, so a few hundred posts span several of them
+    private static final int LOG_SEGMENT_SIZE = 4096;
+    // minute-aligned, DATETIME columns keep no milliseconds
+    private static final long MINUTE = 60_000L;
+    private static final long BASE_TIME = 28_000_000L * MINUTE;
+
+    private final StorageEngine storage;
+    // usernames stay unique across runs against the same MySQL database
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final List<String> failures = new ArrayList<>();
+
+    StoreConformance(StorageEngine storage) {
+        this.storage = storage;
+    }
+
+    public static void main(String[] args) {
+        try {
+            CommandLine options = new CommandLine(args);
+            boolean passed = run(new MemoryStorage());
+            passed &= run(openEmbedded());
+            passed &= run(openLog(LOG_SEGMENT_SIZE));
+            passed &= checkLogRecovery();
+            passed &= checkSnapshot();
+            passed &= ComponentChecks.run();
+            if (options.has("url")) {
+                ConnectionPool pool = options.openPool();
+                DatabaseConnection.createTables(pool);
+                passed &= run(new JdbcStorage("mysql", pool, false, true));
+            }
+            System.out.println(passed ? "All engines passed" : "Some engines failed");
+            System.exit(passed ? 0 : 1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: StoreConformance [--url jdbc-url --user name --password secret]");
+            System.exit(2);
+        } catch (SQLException | IOException e) {
+            // Database errors
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Embedded engine over a fresh in-memory H2 database, set up like DatabaseConnection's embedded engine
+     * @return engine owning its pool
+     */
+    static StorageEngine openEmbedded() throws SQLException {
+        ConnectionPool pool = BenchmarkData.openDatabase(4);
+        return new JdbcStorage("embedded", pool, true, true);
+    }
+
+    /**
+     * Log engine in a new temporary directory, compacted only when asked
+     * @param segmentSize size of the segment files
+     * @return engine over an empty log
+     */
+    static LogStorage openLog(int segmentSize) throws SQLException {
+        try {
+            return new LogStorage(Files.createTempDirectory("postlog"), segmentSize, false);
+        } catch (IOException ex) {
+            throw new SQLException("Failed to create a log directory", ex);
+        }
+    }
+
+    /**
+     * Delete the directory of a closed log from openLog
+     * @param directory directory of the segment files
+     */
+    static void deleteLog(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Reopen a log after deletes, compaction and a torn write at its end, and check nothing committed was lost
+     * and nothing deleted came back
+     * @return true if every check passed
+     */
+    static boolean checkLogRecovery() throws SQLException, IOException {
+        Path directory = Files.createTempDirectory("postlog");
+        StoreConformance suite = new StoreConformance(null);
+        LogStorage storage = new LogStorage(directory, LOG_SEGMENT_SIZE, false);
+        int posts = 300;
+        long[] totals;
+        Path first;
+        byte[] firstSegment;
+        try {
+            storage.getUserStore().registerUser("author", "secret", "First", "Last");
+            for (int i = 1; i <= posts; i++) {
+                storage.getPostStore().addPost(1, "post number " + i, "author " + i, i, i % 7, BASE_TIME + i * MINUTE);
+            }
+            // most of the older segments become garbage
+            for (int postid = 1; postid <= posts; postid++) {
+                if (postid % 4 != 0) {
+                    storage.getPostStore().deletePostByPostid(postid);
+                }
+            }
+            storage.getUserStore().updateVIP("author");
+            try (Stream<Path> files = Files.list(directory)) {
+                first = files.min(Path::compareTo).orElseThrow();
+            }
+            firstSegment = Files.readAllBytes(first);
+            suite.check(storage.compact() > 0, "nothing compacted");
+            totals = storage.getPostStore().getTotals();
+        } finally {
+            storage.close();
+        }
+
+        // a write cut short: a record header promising more bytes than follow
+        try (Stream<Path> files = Files.list(directory)) {
+            Path last = files.max(Path::compareTo).orElseThrow();
+            try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                int end = segment.limit();
+                while (end > 0 && segment.get(end - 1) == 0) {
+                    end--;
+                }
+                segment.putInt(end + 1, 100).putInt(end + 5, 12345).put(end + 9, (byte) 1);
+            }
+        }
+
+        // a compacted segment whose delete failed, still marked retired, and a marker whose segment is gone
+        Path firstMarker = first.resolveSibling(first.getFileName() + ".deleted");
+        Path orphanMarker = directory.resolve("99999999.seg.deleted");
+        suite.check(!Files.exists(first), "compacted segment not deleted");
+        Files.write(first, firstSegment);
+        Files.createFile(firstMarker);
+        Files.createFile(orphanMarker);
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            storage = new LogStorage(directory, LOG_SEGMENT_SIZE, false);
+            try {
+                suite.checkEquals(Arrays.toString(totals), Arrays.toString(storage.getPostStore().getTotals()),
+                        "totals after reopening");
+                Post kept = storage.getPostStore().getPostByPostid(posts);
+                suite.check(kept != null && kept.getContent().equals("post number " + posts), "kept post lost on reopening");
+                suite.check(storage.getPostStore().getPostByPostid(1) == null, "deleted post back after compaction");
+                suite.check(!Files.exists(first) && !Files.exists(firstMarker) && !Files.exists(orphanMarker),
+                        "retired segment or marker left after reopening");
+                suite.check(storage.getUserStore().getUserByUsername("author").getIsvip(), "user update lost on reopening");
+                Post added = storage.getPostStore().addPost(1, "after reopening", "author", 0, 0, BASE_TIME);
+                suite.check(added.getPostid() > posts + reopen, "postid reused after reopening");
+                totals = storage.getPostStore().getTotals();
+            } finally {
+                storage.close();
+            }
+        }
+        deleteLog(directory);
+        for (String failure : suite.failures) {
+            System.out.println("FAIL log recovery: " + failure);
+        }
+        System.out.println((suite.failures.isEmpty() ? "PASS " : "FAIL ") + "log recovery");
+        return suite.failures.isEmpty();
+    }
+
+    /**
+     * Write post columns to a snapshot and read them back, then read the snapshot cut short and with random bytes
+     * changed, which must fail with an IOException rather than with another exception or by exhausting memory
+     * @return true if every check passed
+     */
+    static boolean checkSnapshot() throws SQLException, IOException {
+        StoreConformance suite = new StoreConformance(null);
+        MemoryStorage storage = new MemoryStorage();
+        PostStore store = storage.getPostStore();
+        for (int i = 1; i <= 200; i++) {
+            store.addPost(i % 5 + 1, i % 17 == 0 ? null : "post number " + i, i % 13 == 0 ? null : "author " + i % 30,
+                    i % 41, i % 7, BASE_TIME + i * MINUTE);
+        }
+        for (int postid = 3; postid <= 200; postid += 11) {
+            store.deletePostByPostid(postid);
+        }
+        PostColumns columns = PostColumns.load(store);
+        Path file = Files.createTempFile("columns", ".snapshot");
+        try {
+            columns.writeSnapshot(file);
+            PostColumns read = PostColumns.readSnapshot(file);
+            suite.checkEquals(Arrays.toString(columns.getTotals()), Arrays.toString(read.getTotals()), "snapshot totals");
+            for (int postid = 0; postid <= 201; postid++) {
+                suite.checkEquals(describe(columns.getPostByPostid(postid)), describe(read.getPostByPostid(postid)),
+                        "snapshot post " + postid);
+            }
+            suite.checkEquals(Arrays.toString(postidsOf(columns.top(20, 2))), Arrays.toString(postidsOf(read.top(20, 2))),
+                    "snapshot rank order of user 2");
+
+            byte[] bytes = Files.readAllBytes(file);
+            Random random = new Random(42);
+            for (int attempt = 0; attempt < 300; attempt++) {
+                byte[] corrupt;
+                if (attempt < 100) {
+                    corrupt = Arrays.copyOf(bytes, random.nextInt(bytes.length));
+                } else {
+                    corrupt = bytes.clone();
+                    // the header's counts first, then anywhere
+                    int limit = attempt < 200 ? 16 : corrupt.length;
+                    for (int i = 0; i < 4; i++) {
+                        corrupt[8 + random.nextInt(limit - 8)] = (byte) random.nextInt(256);
+                    }
+                }
+                Files.write(file, corrupt);
+                try {
+                    PostColumns.readSnapshot(file);
+                } catch (IOException e) {
+                    // expected, unless the change left a valid snapshot
+                } catch (RuntimeException | OutOfMemoryError e) {
+                    suite.failures.add("corrupt snapshot " + attempt + ": " + e);
+                }
+            }
+        } finally {
+            Files.delete(file);
+            storage.close();
+        }
+        for (String failure : suite.failures) {
+            System.out.println("FAIL snapshot: " + failure);
+        }
+        System.out.println((suite.failures.isEmpty() ? "PASS " : "FAIL ") + "snapshot");
+        return suite.failures.isEmpty();
+    }
+
+    private static String describe(Post post) {
+        return post == null ? "none" : post.getPostid() + "," + post.getUserid() + "," + post.getContent() + ","
+                + post.getAuthor() + "," + post.getLikes() + "," + post.getShares() + "," + post.getTimestamp();
+    }
+
+    /**
+     * Run every check against one engine and close it
+     * @param storage engine under test, with no posts
+     * @return true if every check passed
+     */
+    static boolean run(StorageEngine storage) throws SQLException, IOException {
+        StoreConformance suite = new StoreConformance(storage);
+        try {
+            if (storage.getPostStore().getTotals()[0] != 0) {
+                throw new IllegalArgumentException("The " + storage.getName() + " database already has posts");
+            }
+            suite.checkUsers(storage.getUserStore());
+            suite.checkPosts(storage.getPostStore());
+            suite.checkImport(storage.getPostStore());
+            suite.checkNullAuthor(new Model(storage));
+        } finally {
+            storage.close();
+        }
+        if (storage instanceof LogStorage) {
+            deleteLog(((LogStorage) storage).getDirectory());
+        }
+        for (String failure : suite.failures) {
+            System.out.println("FAIL " + storage.getName() + ": " + failure);
+        }
+        System.out.println((suite.failures.isEmpty() ? "PASS " : "FAIL ") + storage.getName());
+        return suite.failures.isEmpty();
+    }
+
+    private void check(boolean condition, String description) {
+        if (!condition) {
+            failures.add(description);
+        }
+    }
+
+    private void checkEquals(Object expected, Object actual, String description) {
+        if (!expected.equals(actual)) {
+            failures.add(description + ": expected " + expected + ", got " + actual);
+        }
+    }
+
+    private void checkUsers(UserStore users) throws SQLException {
+        String alice = "alice-" + runId;
+        String bob = "bob-" + runId;
+        check(!users.isUsernameTaken(alice), "unregistered username is taken");
+        check(users.getUserByUsername(alice) == null, "unregistered user is found");
+        check(users.registerUser(alice, "secret", "Alice", "Smith"), "registerUser failed");
+        check(!users.registerUser(alice, "other", "Other", "User"), "duplicate username registered");
+        check(users.isUsernameTaken(alice), "registered username is not taken");
+
+        User user = users.getUserByUsername(alice);
+        if (user == null) {
+            failures.add("registered user is not found");
+            return;
+        }
+        checkEquals("secret", user.getPassword(), "password");
+        checkEquals("Alice", user.getFirstName(), "first name");
+        checkEquals("Smith", user.getLastName(), "last name");
+        check(!user.getIsvip(), "new user is a VIP");
+
+        check(users.updateVIP(alice), "updateVIP failed");
+        check(users.getUserByUsername(alice).getIsvip(), "updateVIP did not stick");
+        check(!users.updateVIP("missing-" + runId), "updateVIP of a missing user succeeded");
+
+        check(users.registerUser(bob, "secret", "Bob", "Jones"), "second registerUser failed");
+        check(users.getUserByUsername(bob).getUserid() != user.getUserid(), "two users share a userid");
+        check(!users.editUser(bob, alice, "pw", "Bob", "Jones"), "renamed onto a taken username");
+
+        String carol = "carol-" + runId;
+        check(users.editUser(alice, carol, "changed", "Carol", "Brown"), "editUser failed");
+        check(!users.isUsernameTaken(alice), "old username still taken after rename");
+        User renamed = users.getUserByUsername(carol);
+        check(renamed != null && renamed.getUserid() == user.getUserid() && renamed.getPassword().equals("changed")
+                && renamed.getIsvip(), "renamed user lost its userid, password or VIP status");
+        check(!users.editUser("missing-" + runId, "x-" + runId, "pw", "X", "Y"), "editUser of a missing user succeeded");
+    }
+
+    private void checkPosts(PostStore posts) throws SQLException {
+        check(posts.getPostByPostid(1) == null, "post in an empty store");
+        check(!posts.deletePostByPostid(1), "deleted a post from an empty store");
+        checkEquals(0, posts.readPostPage(null, false, 0, 0, 10).size(), "top posts of an empty store");
+
+        // likes 5, 9, 5, 7, 9: ties are ranked by postid
+        int[] likes = { 5, 9, 5, 7, 9 };
+        int[] postids = new int[likes.length];
+        for (int i = 0; i < likes.length; i++) {
+            Post post = posts.addPost(i % 2 + 1, "content " + i, "author " + i, likes[i], i, BASE_TIME + i * MINUTE);
+            if (post == null) {
+                failures.add("addPost returned no post");
+                return;
+            }
+            postids[i] = post.getPostid();
+            check(i == 0 || postids[i] > postids[i - 1], "postids are not increasing");
+        }
+
+        Post stored = posts.getPostByPostid(postids[3]);
+        check(stored != null && stored.getUserid() == 2 && stored.getContent().equals("content 3")
+                && stored.getAuthor().equals("author 3") && stored.getLikes() == 7 && stored.getShares() == 3
+                && stored.getTimestamp() == BASE_TIME + 3 * MINUTE, "stored post differs from the added one");
+        check(posts.isPostidExist(postids[3]), "added post does not exist");
+
+        int[] ranked = { postids[1], postids[4], postids[3], postids[0], postids[2] };
+        checkEquals(Arrays.toString(ranked), Arrays.toString(postidsOf(posts.readPostPage(null, false, 0, 0, 10))), "rank order");
+        checkEquals(Arrays.toString(Arrays.copyOf(ranked, 2)), Arrays.toString(postidsOf(posts.readPostPage(null, false, 0, 0, 2))),
+                "first page");
+        checkEquals(Arrays.toString(Arrays.copyOfRange(ranked, 2, 4)),
+                Arrays.toString(postidsOf(posts.readPostPage(null, true, 9, postids[4], 2))), "keyset page");
+        checkEquals(Arrays.toString(new int[] { postids[4], postids[0], postids[2] }),
+                Arrays.toString(postidsOf(posts.readPostPage(1, false, 0, 0, 10))), "user 1 rank order");
+        checkEquals(0, posts.readPostPage(3, false, 0, 0, 10).size(), "posts of a user with none");
+
+        List<Post> range = posts.retrievePostsBetween(BASE_TIME + MINUTE, BASE_TIME + 4 * MINUTE, 10);
+        checkEquals(Arrays.toString(new int[] { postids[1], postids[2], postids[3] }), Arrays.toString(postidsOf(range)),
+                "time range, oldest first, end exclusive");
+        checkEquals(2, posts.retrievePostsBetween(BASE_TIME, BASE_TIME + 10 * MINUTE, 2).size(), "time range limit");
+
+        // shares are 0 to 4, user 1 has the even ones
+        checkEquals("{0=1, 1=1, 2=1, 3=1, 4=1}", posts.countShares(SharesScope.all()).toString(), "shares counts");
+        checkEquals("{0=1, 2=1, 4=1}", posts.countShares(new SharesScope(1, null, null)).toString(), "shares counts of user 1");
+        checkEquals("{1=1, 3=1}", posts.countShares(new SharesScope(2, BASE_TIME + MINUTE, BASE_TIME + 4 * MINUTE)).toString(),
+                "shares counts of user 2 in a time range");
+
+        checkEquals(Arrays.toString(new long[] { 5, 35, Arrays.stream(postids).asLongStream().sum() }),
+                Arrays.toString(posts.getTotals()), "totals");
+        checkEquals(5, posts.readAllPosts().size(), "readAllPosts");
+        List<Post> visited = new ArrayList<>();
+        posts.forEachPost(visited::add);
+        checkEquals(Arrays.stream(postids).sum(), visited.stream().mapToInt(Post::getPostid).sum(), "forEachPost");
+
+        check(posts.deletePostByPostid(postids[1]), "deletePostByPostid failed");
+        check(!posts.deletePostByPostid(postids[1]), "deleted the same post twice");
+        check(posts.getPostByPostid(postids[1]) == null, "deleted post is still found");
+        checkEquals(postids[4], posts.readPostPage(null, false, 0, 0, 1).getPostid(0), "top post after delete");
+        // keyset of a post that no longer exists
+        checkEquals(postids[4], posts.readPostPage(null, true, 9, postids[1], 1).getPostid(0), "keyset of a deleted post");
+
+        for (int postid : postids) {
+            posts.deletePostByPostid(postid);
+        }
+        checkEquals(Arrays.toString(new long[3]), Arrays.toString(posts.getTotals()), "totals after deleting everything");
+    }
+
+    private void checkImport(PostStore posts) throws SQLException {
+        int first = 1_000_000;
+        ImportResult result = new ImportResult();
+        List<Post> uncommitted = new ArrayList<>();
+        try (PostWriter writer = posts.openWriter()) {
+            checkEquals(3, writer.writeBatch(importedPosts(first, 3), result, uncommitted), "rows written");
+            writer.commit();
+            // the duplicate of `first` is rejected alone, the batch around it is kept
+            List<Post> batch = importedPosts(first + 3, 2);
+            batch.add(1, importedPosts(first, 1).get(0));
+            checkEquals(2, writer.writeBatch(batch, result, uncommitted), "rows written around a duplicate postid");
+            checkEquals(1L, result.getRowsFailed(), "rejected duplicate postids");
+            writer.commit();
+        }
+        checkEquals(5, uncommitted.size(), "posts handed back for the leaderboard");
+        for (int postid = first; postid < first + 5; postid++) {
+            check(posts.isPostidExist(postid), "committed post " + postid + " is missing");
+        }
+
+        try (PostWriter writer = posts.openWriter()) {
+            writer.writeBatch(importedPosts(first + 5, 3), result, new ArrayList<>());
+        }
+        check(!posts.isPostidExist(first + 5), "post kept although its session closed before commit");
+        checkEquals(5L, posts.getTotals()[0], "posts after a rolled back session");
+
+        Post added = posts.addPost(1, "after import", "author", 1, 0, BASE_TIME);
+        check(added != null && added.getPostid() >= first + 5, "postid assigned after an import collides with imported ones");
+    }
+
+    private void checkNullAuthor(Model model) throws SQLException {
+        try {
+            model.rebuildLeaderboard();
+            long authors = model.getDistinctAuthors((Integer) null);
+            check(model.addPost(1, "no author", null, 3, 0, BASE_TIME), "post without an author not added");
+            checkEquals(Arrays.toString(model.getStorage().getPostStore().getTotals()),
+                    Arrays.toString(model.getLeaderboard().getTotals()), "leaderboard totals after a post without an author");
+            checkEquals(authors, model.getDistinctAuthors((Integer) null), "distinct authors after a post without an author");
+            // read back from the store, as when a database with such rows is opened
+            model.rebuildLeaderboard();
+            long posts = model.getStorage().getPostStore().getTotals()[0];
+            checkEquals(posts, (long) model.getLeaderboard().size(), "leaderboard posts after rebuilding");
+            checkEquals(posts, (long) model.getPostColumns().size(), "column posts after rebuilding");
+            checkEquals(authors, model.getDistinctAuthors((Integer) null), "distinct authors after rebuilding");
+        } catch (RuntimeException e) {
+            failures.add("post without an author: " + e);
+        } finally {
+            model.close();
+        }
+    }
+
+    private static List<Post> importedPosts(int firstPostid, int count) {
+        List<Post> posts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            posts.add(new Post(firstPostid + i, 1, "imported " + i, "importer", i, 0, BASE_TIME + i * MINUTE));
+        }
+        return posts;
+    }
+
+    private static int[] postidsOf(RankedPosts posts) {
+        int[] postids = new int[posts.size()];
+        for (int i = 0; i < postids.length; i++) {
+            postids[i] = posts.getPostid(i);
+        }
+        return postids;
+    }
+
+    private static int[] postidsOf(List<Post> posts) {
+        return posts.stream().mapToInt(Post::getPostid).toArray();
+    }
+}
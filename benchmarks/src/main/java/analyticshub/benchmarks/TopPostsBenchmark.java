@@ -0,0 +1,81 @@
+/*
+ * Class TopPostsBenchmark
+ * Top N posts by likes, answered by the in-memory leaderboard or by an ORDER BY query
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import analyticshub.ConnectionPool;
+import analyticshub.Model;
+import analyticshub.RankedPosts;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopPostsBenchmark {
+
+    @Param({ "1000" })
+    public int users;
+
+    @Param({ "100000" })
+    public int posts;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int topN;
+
+    // false reads every top N from the database, as the app does until the leaderboard has loaded
+    @Param({ "true", "false" })
+    public boolean leaderboard;
+
+    private ConnectionPool pool;
+    private Model model;
+
+    @Setup
+    public void setUp() throws SQLException {
+        pool = BenchmarkData.openDatabase(4);
+        model = new Model(pool);
+        BenchmarkData.seed(pool, model, users, posts);
+        if (leaderboard) {
+            model.rebuildLeaderboard();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        model.close();
+        BenchmarkData.closeDatabase(pool);
+    }
+
+    @Benchmark
+    public RankedPosts retrieveTopPostsAll() {
+        return model.retrieveTopPostsAll(topN);
+    }
+
+    @Benchmark
+    public RankedPosts retrieveTopPostsUser() {
+        return model.retrieveTopPostsUser(topN, 1 + ThreadLocalRandom.current().nextInt(users));
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Class ZipfDistribution
+ * Zipf distributed ranks: rank k is drawn with probability proportional to 1 / k^exponent
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+final class ZipfDistribution {
+    // cumulative probability of ranks 1..k at index k - 1, the last entry is exactly 1
+    private final double[] cumulative;
+
+    /**
+     * Constructor, precomputes the cumulative distribution, one double per rank
+     * @param size number of ranks
+     * @param exponent skew, 0 is uniform and larger values favour the first ranks more
+     */
+    ZipfDistribution(int size, double exponent) {
+        if (size <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Invalid Zipf distribution: size " + size + ", exponent " + exponent);
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 1; k <= size; k++) {
+            sum += 1 / Math.pow(k, exponent);
+            cumulative[k - 1] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        cumulative[size - 1] = 1;
+    }
+
+    /**
+     * Draw a rank by binary search over the cumulative distribution
+     * @param random source of randomness
+     * @return rank between 1 and size
+     */
+    int sample(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (index >= 0 ? index : -index - 1) + 1;
+    }
+
+    // Getter of the number of ranks
+    int size() {
+        return cumulative.length;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Interface Aggregator
+ * A statistic over posts that can be computed in parts and merged, run by ParallelAggregation
+ * Each thread adds rows of the post columns to a state of its own, states are merged pairwise and the final
+ * state is turned into the result; see Aggregators for count, sum, min/max, histograms, top-K and their combinations
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+public interface Aggregator<S, R> {
+
+    /**
+     * @return empty state, mutable and used by one thread at a time
+     */
+    S newState();
+
+    /**
+     * Add one post to a state
+     * @param state state of the calling thread
+     * @param columns columns holding the post, read-locked by the aggregation
+     * @param row row of a live post
+     */
+    void add(S state, PostColumns columns, int row);
+
+    /**
+     * Combine the states of two disjoint sets of rows, left holding the lower rows
+     * @return merged state, either argument may be reused for it
+     */
+    S merge(S left, S right);
+
+    /**
+     * Turn the state of all rows into the result, the columns are still read-locked
+     * @param state merged state
+     * @param columns columns the rows came from, to decode rows or author codes
+     * @return result
+     */
+    R finish(S state, PostColumns columns);
+}
@@ -0,0 +1,352 @@
+/*
+ * Class Aggregators
+ * Ready-made aggregators over post columns and ways to combine them
+ * Fields read one value of a row; count, sum, min/max, histogram and top-K aggregate a field, while filter,
+ * groupBy, byAuthor, combine and all build new aggregators from others, so a new statistic is usually
+ * a one-line expression run by ParallelAggregation rather than a new SQL query
+ * e.g. likes per author: byAuthor(sum(LIKES)), engagement: ratio(SHARES, LIKES), posts per hour: histogram(HOUR_OF_DAY, 24)
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+public final class Aggregators {
+    private static final long HOUR_MILLIS = 60 * 60 * 1000L;
+    private static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    /**
+     * One value of a row, such as its likes
+     */
+    @FunctionalInterface
+    public interface Field {
+        long get(PostColumns columns, int row);
+    }
+
+    /**
+     * Whether a row is aggregated, see filter
+     */
+    @FunctionalInterface
+    public interface Condition {
+        boolean test(PostColumns columns, int row);
+    }
+
+    /**
+     * Adds a row to a state, see of
+     */
+    @FunctionalInterface
+    public interface Adder<S> {
+        void add(S state, PostColumns columns, int row);
+    }
+
+    public static final Field POSTID = PostColumns::getPostid;
+    public static final Field USERID = PostColumns::getUserid;
+    public static final Field LIKES = PostColumns::getLikes;
+    public static final Field SHARES = PostColumns::getShares;
+    public static final Field TIMESTAMP = PostColumns::getTimestamp;
+    // dictionary code of the author, see PostColumns.getAuthor
+    public static final Field AUTHOR = PostColumns::getAuthorCode;
+    // hour of the day 0 to 23, -1 for a post without a date; post times are UTC, see PostDates
+    public static final Field HOUR_OF_DAY = (columns, row) -> {
+        long timestamp = columns.getTimestamp(row);
+        return timestamp == PostDates.NONE ? -1 : Math.floorMod(timestamp, DAY_MILLIS) / HOUR_MILLIS;
+    };
+    // days since 1 January 1970, Long.MIN_VALUE for a post without a date
+    public static final Field DAY = (columns, row) -> {
+        long timestamp = columns.getTimestamp(row);
+        return timestamp == PostDates.NONE ? Long.MIN_VALUE : Math.floorDiv(timestamp, DAY_MILLIS);
+    };
+
+    private Aggregators() {
+    }
+
+    /**
+     * Aggregator from its four parts
+     * @param newState creates an empty state
+     * @param add adds a row to a state
+     * @param merge merges two states
+     * @param finish turns the merged state into the result
+     * @return aggregator
+     */
+    public static <S, R> Aggregator<S, R> of(Supplier<S> newState, Adder<S> add, BinaryOperator<S> merge,
+            BiFunction<S, PostColumns, R> finish) {
+        return new Aggregator<>() {
+            @Override
+            public S newState() {
+                return newState.get();
+            }
+
+            @Override
+            public void add(S state, PostColumns columns, int row) {
+                add.add(state, columns, row);
+            }
+
+            @Override
+            public S merge(S left, S right) {
+                return merge.apply(left, right);
+            }
+
+            @Override
+            public R finish(S state, PostColumns columns) {
+                return finish.apply(state, columns);
+            }
+        };
+    }
+
+    // Number of posts
+    public static Aggregator<long[], Long> count() {
+        return of(() -> new long[1], (state, columns, row) -> state[0]++, Aggregators::addLongs, (state, columns) -> state[0]);
+    }
+
+    // Sum of a field over the posts
+    public static Aggregator<long[], Long> sum(Field field) {
+        return of(() -> new long[1], (state, columns, row) -> state[0] += field.get(columns, row), Aggregators::addLongs,
+                (state, columns) -> state[0]);
+    }
+
+    // Smallest value of a field, empty when there are no posts
+    public static Aggregator<long[], OptionalLong> min(Field field) {
+        return extreme(field, -1);
+    }
+
+    // Largest value of a field, empty when there are no posts
+    public static Aggregator<long[], OptionalLong> max(Field field) {
+        return extreme(field, 1);
+    }
+
+    // state { value, posts seen }, sign 1 keeps the largest value and -1 the smallest
+    private static Aggregator<long[], OptionalLong> extreme(Field field, int sign) {
+        return of(() -> new long[2], (state, columns, row) -> {
+            long value = field.get(columns, row);
+            if (state[1]++ == 0 || Long.compare(value, state[0]) == sign) {
+                state[0] = value;
+            }
+        }, (left, right) -> {
+            if (right[1] > 0 && (left[1] == 0 || Long.compare(right[0], left[0]) == sign)) {
+                left[0] = right[0];
+            }
+            left[1] += right[1];
+            return left;
+        }, (state, columns) -> state[1] == 0 ? OptionalLong.empty() : OptionalLong.of(state[0]));
+    }
+
+    /**
+     * Number of posts at each value of a field from 0 to buckets - 1, posts with other values are not counted
+     * @param field bucket of a post, such as HOUR_OF_DAY
+     * @param buckets number of buckets
+     * @return aggregator of the counts indexed by bucket
+     */
+    public static Aggregator<long[], long[]> histogram(Field field, int buckets) {
+        return of(() -> new long[buckets], (state, columns, row) -> {
+            long bucket = field.get(columns, row);
+            if (bucket >= 0 && bucket < buckets) {
+                state[(int) bucket]++;
+            }
+        }, Aggregators::addLongs, (state, columns) -> state);
+    }
+
+    /**
+     * Posts with the highest values of a field, ties broken by postid ascending
+     * @param field value ranked, such as SHARES
+     * @param k number of posts
+     * @return aggregator of the posts, highest value first
+     */
+    public static Aggregator<PriorityQueue<long[]>, List<Post>> topK(Field field, int k) {
+        // { value, postid, row }, the worst of the kept posts at the head
+        Comparator<long[]> worstFirst = Comparator.<long[]>comparingLong(entry -> entry[0])
+                .thenComparing(Comparator.<long[]>comparingLong(entry -> entry[1]).reversed());
+        return of(() -> new PriorityQueue<>(worstFirst), (state, columns, row) -> {
+            long value = field.get(columns, row);
+            int postid = columns.getPostid(row);
+            long[] worst = state.peek();
+            // most rows rank below the kept ones once the queue is full, and are dropped without allocating
+            if (k > 0 && (state.size() < k || value > worst[0] || (value == worst[0] && postid < worst[1]))) {
+                offer(state, new long[] { value, postid, row }, k, worstFirst);
+            }
+        }, (left, right) -> {
+            PriorityQueue<long[]> into = left.size() >= right.size() ? left : right;
+            for (long[] entry : into == left ? right : left) {
+                offer(into, entry, k, worstFirst);
+            }
+            return into;
+        }, (state, columns) -> {
+            long[][] entries = state.toArray(new long[0][]);
+            Arrays.sort(entries, worstFirst.reversed());
+            List<Post> posts = new ArrayList<>(entries.length);
+            for (long[] entry : entries) {
+                posts.add(columns.getPost((int) entry[2]));
+            }
+            return posts;
+        });
+    }
+
+    private static void offer(PriorityQueue<long[]> kept, long[] entry, int k, Comparator<long[]> worstFirst) {
+        if (kept.size() < k) {
+            kept.add(entry);
+        } else if (k > 0 && worstFirst.compare(entry, kept.peek()) > 0) {
+            kept.poll();
+            kept.add(entry);
+        }
+    }
+
+    /**
+     * Aggregate only the posts meeting a condition
+     * @param condition condition on a row
+     * @param aggregator aggregator of the posts kept
+     * @return aggregator
+     */
+    public static <S, R> Aggregator<S, R> filter(Condition condition, Aggregator<S, R> aggregator) {
+        return of(aggregator::newState, (state, columns, row) -> {
+            if (condition.test(columns, row)) {
+                aggregator.add(state, columns, row);
+            }
+        }, aggregator::merge, aggregator::finish);
+    }
+
+    /**
+     * Aggregate the posts of each value of a field separately, such as per user
+     * @param key field grouped by
+     * @param aggregator aggregator of each group
+     * @return aggregator of the results by key
+     */
+    public static <S, R> Aggregator<HashMap<Long, S>, Map<Long, R>> groupBy(Field key, Aggregator<S, R> aggregator) {
+        return of(HashMap::new, (groups, columns, row) -> {
+            aggregator.add(groups.computeIfAbsent(key.get(columns, row), k -> aggregator.newState()), columns, row);
+        }, (left, right) -> {
+            HashMap<Long, S> into = left.size() >= right.size() ? left : right;
+            HashMap<Long, S> from = into == left ? right : left;
+            for (Map.Entry<Long, S> group : from.entrySet()) {
+                // keep the lower rows on the left of the merge
+                into.merge(group.getKey(), group.getValue(),
+                        (kept, other) -> into == left ? aggregator.merge(kept, other) : aggregator.merge(other, kept));
+            }
+            return into;
+        }, (groups, columns) -> {
+            Map<Long, R> results = new HashMap<>();
+            for (Map.Entry<Long, S> group : groups.entrySet()) {
+                results.put(group.getKey(), aggregator.finish(group.getValue(), columns));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Aggregate the posts of each author separately
+     * @param aggregator aggregator of each author's posts
+     * @return aggregator of the results by author name
+     */
+    public static <S, R> Aggregator<List<S>, Map<String, R>> byAuthor(Aggregator<S, R> aggregator) {
+        // author codes are dense, so the groups are a list indexed by code rather than a map
+        return of(ArrayList::new, (groups, columns, row) -> {
+            int code = columns.getAuthorCode(row);
+            while (groups.size() <= code) {
+                groups.add(null);
+            }
+            S state = groups.get(code);
+            if (state == null) {
+                state = aggregator.newState();
+                groups.set(code, state);
+            }
+            aggregator.add(state, columns, row);
+        }, (left, right) -> {
+            for (int code = 0; code < right.size(); code++) {
+                S other = right.get(code);
+                if (other == null) {
+                    continue;
+                }
+                if (code >= left.size()) {
+                    left.add(other);
+                } else {
+                    left.set(code, left.get(code) == null ? other : aggregator.merge(left.get(code), other));
+                }
+            }
+            return left;
+        }, (groups, columns) -> {
+            Map<String, R> results = new HashMap<>();
+            for (int code = 0; code < groups.size(); code++) {
+                if (groups.get(code) != null) {
+                    results.put(columns.getAuthor(code), aggregator.finish(groups.get(code), columns));
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Two aggregators run in the same pass, their results combined
+     * @param first first aggregator
+     * @param second second aggregator
+     * @param combiner combines the two results
+     * @return aggregator
+     */
+    @SuppressWarnings("unchecked")
+    public static <S1, R1, S2, R2, R> Aggregator<Object[], R> combine(Aggregator<S1, R1> first, Aggregator<S2, R2> second,
+            BiFunction<R1, R2, R> combiner) {
+        Aggregator<Object[], List<Object>> both = all(first, second);
+        return of(both::newState, both::add, both::merge, (state, columns) -> {
+            List<Object> results = both.finish(state, columns);
+            return combiner.apply((R1) results.get(0), (R2) results.get(1));
+        });
+    }
+
+    /**
+     * Sum of one field divided by the sum of another, such as shares per like
+     * @return aggregator of the ratio, 0 when the denominator sums to 0
+     */
+    public static Aggregator<Object[], Double> ratio(Field numerator, Field denominator) {
+        return combine(sum(numerator), sum(denominator), (n, d) -> d == 0 ? 0.0 : (double) n / d);
+    }
+
+    /**
+     * Several aggregators run in the same pass over the posts
+     * @param aggregators aggregators to run
+     * @return aggregator of their results, in the same order
+     */
+    @SuppressWarnings("unchecked")
+    public static Aggregator<Object[], List<Object>> all(Aggregator<?, ?>... aggregators) {
+        Aggregator<Object, Object>[] parts = (Aggregator<Object, Object>[]) aggregators.clone();
+        return of(() -> {
+            Object[] states = new Object[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                states[i] = parts[i].newState();
+            }
+            return states;
+        }, (states, columns, row) -> {
+            for (int i = 0; i < parts.length; i++) {
+                parts[i].add(states[i], columns, row);
+            }
+        }, (left, right) -> {
+            for (int i = 0; i < parts.length; i++) {
+                left[i] = parts[i].merge(left[i], right[i]);
+            }
+            return left;
+        }, (states, columns) -> {
+            List<Object> results = new ArrayList<>(parts.length);
+            for (int i = 0; i < parts.length; i++) {
+                results.add(parts[i].finish(states[i], columns));
+            }
+            return results;
+        });
+    }
+
+    // element-wise sum into the left array
+    private static long[] addLongs(long[] left, long[] right) {
+        for (int i = 0; i < left.length; i++) {
+            left[i] += right[i];
+        }
+        return left;
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * Class ApiServer
+ * HTTP/JSON API over Model for running the analytics without the JavaFX front end
+ * Every request gets its own thread, and each endpoint has its own limit on requests in flight so a burst
+ * of imports or lookups cannot take every database connection; requests over the limit get 503 at once
+ * 
+ * Endpoints:
+ *   POST   /api/login                  {"username","password"} -> user
+ *   GET    /api/users/{username}       -> user
+ *   POST   /api/posts                  {"userid","content","author","likes","shares","dateTime"} -> 201
+ *   GET    /api/posts/{postid}         -> post
+ *   DELETE /api/posts/{postid}         -> 204
+ *   GET    /api/posts/{postid}/export  -> CSV file of the post
+ *   GET    /api/top?n=N[&userid=U]     -> most liked posts in rank order
+ *   GET    /api/shares?buckets=fixed|log|quantile&param=P[&userid=U][&from=MS][&to=MS] -> shares distribution
+ *   GET    /api/percentiles?metric=likes|shares[&q=0.5,0.9,0.99][&userid=U] -> percentiles from the quantile sketches
+ *   GET    /api/authors[?userid=U|from=MS&to=MS] -> estimated number of distinct authors, 503 until the posts have loaded
+ *   POST   /api/import?userid=U        CSV body (postid,content,author,likes,shares,datetime) -> import counters
+ *   GET    /api/metrics                operation latencies and pool counters in the Prometheus text format
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ApiServer {
+    // requests in flight per endpoint, the connection pool holds 10 connections
+    private static final int LOGIN_LIMIT = 8;
+    private static final int LOOKUP_LIMIT = 8;
+    private static final int WRITE_LIMIT = 4;
+    private static final int EXPORT_LIMIT = 4;
+    // top N is served from the in-memory leaderboard and holds no connection
+    private static final int TOP_LIMIT = 32;
+    // an import already runs several writer threads, each with its own connection
+    private static final int IMPORT_LIMIT = 1;
+    private static final int METRICS_LIMIT = 2;
+    // cached or scanned in memory once the post columns have loaded
+    private static final int SHARES_LIMIT = 8;
+    // read from the in-memory sketches
+    private static final int PERCENTILES_LIMIT = 32;
+    private static final double[] DEFAULT_QUANTILES = { 0.5, 0.9, 0.99 };
+    // read from the in-memory HyperLogLog sketches, 503 until the post columns have loaded
+    private static final int AUTHORS_LIMIT = 32;
+
+    // largest JSON request body and largest N accepted
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_TOP_N = 10_000;
+    // seconds given to requests in flight when the server stops
+    private static final int STOP_DELAY_SECONDS = 5;
+
+    private final Model model;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<Route> routes = new ArrayList<>();
+
+    /**
+     * A request handler, params holds the {placeholders} of the route's path in order
+     */
+    private interface Endpoint {
+        void handle(HttpExchange exchange, List<String> params) throws Exception;
+    }
+
+    /**
+     * Method and path of an endpoint together with its limit on requests in flight
+     */
+    private static final class Route {
+        private final String method;
+        private final String[] segments;
+        private final Semaphore permits;
+        private final Endpoint endpoint;
+
+        private Route(String method, String path, int limit, Endpoint endpoint) {
+            this.method = method;
+            this.segments = split(path);
+            this.permits = new Semaphore(limit);
+            this.endpoint = endpoint;
+        }
+
+        /**
+         * Match a request path
+         * @param path request path split into segments
+         * @return values of the placeholders, or null if the path does not match
+         */
+        private List<String> match(String[] path) {
+            if (path.length != segments.length) {
+                return null;
+            }
+            List<String> params = new ArrayList<>();
+            for (int i = 0; i < segments.length; i++) {
+                if (segments[i].startsWith("{")) {
+                    params.add(path[i]);
+                } else if (!segments[i].equals(path[i])) {
+                    return null;
+                }
+            }
+            return params;
+        }
+    }
+
+    /**
+     * An error answered with an HTTP status and a JSON message
+     */
+    private static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+        private final int status;
+
+        private ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /**
+     * Constructor, the server does not accept requests until start
+     * @param model model the endpoints call, its leaderboard should be loaded
+     * @param address address and port to listen on
+     * @throws IOException if the port cannot be bound
+     */
+    public ApiServer(Model model, InetSocketAddress address) throws IOException {
+        this.model = model;
+        this.server = HttpServer.create(address, 0);
+
+        // a thread per request; virtual threads need Java 21, so idle platform threads are reused instead
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "api-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        routes.add(new Route("POST", "/api/login", LOGIN_LIMIT, this::login));
+        routes.add(new Route("GET", "/api/users/{username}", LOOKUP_LIMIT, this::getUser));
+        routes.add(new Route("POST", "/api/posts", WRITE_LIMIT, this::addPost));
+        routes.add(new Route("GET", "/api/posts/{postid}", LOOKUP_LIMIT, this::getPost));
+        routes.add(new Route("DELETE", "/api/posts/{postid}", WRITE_LIMIT, this::deletePost));
+        routes.add(new Route("GET", "/api/posts/{postid}/export", EXPORT_LIMIT, this::exportPost));
+        routes.add(new Route("GET", "/api/top", TOP_LIMIT, this::topPosts));
+        routes.add(new Route("GET", "/api/shares", SHARES_LIMIT, this::sharesDistribution));
+        routes.add(new Route("GET", "/api/percentiles", PERCENTILES_LIMIT, this::percentiles));
+        routes.add(new Route("GET", "/api/authors", AUTHORS_LIMIT, this::distinctAuthors));
+        routes.add(new Route("POST", "/api/import", IMPORT_LIMIT, this::importPosts));
+        routes.add(new Route("GET", "/api/metrics", METRICS_LIMIT, this::metrics));
+
+        server.createContext("/api/", this::dispatch);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Start accepting requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stop accepting requests, waiting a few seconds for those in flight
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdownNow();
+    }
+
+    // Getter of the address the server listens on, with the actual port if 0 was asked for
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    private void dispatch(HttpExchange exchange) {
+        try {
+            String[] path = split(exchange.getRequestURI().getPath());
+            boolean pathFound = false;
+            for (Route route : routes) {
+                List<String> params = route.match(path);
+                if (params == null) {
+                    continue;
+                }
+                pathFound = true;
+                if (route.method.equals(exchange.getRequestMethod())) {
+                    call(route, exchange, params);
+                    return;
+                }
+            }
+            if (pathFound) {
+                sendError(exchange, 405, "Method not allowed");
+            } else {
+                sendError(exchange, 404, "Not found");
+            }
+        } catch (IOException ex) {
+            // the client went away, nothing more can be sent
+            ex.printStackTrace();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void call(Route route, HttpExchange exchange, List<String> params) throws IOException {
+        if (!route.permits.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            sendError(exchange, 503, "Too many requests in flight, try again");
+            return;
+        }
+        try {
+            route.endpoint.handle(exchange, params);
+        } catch (ApiException ex) {
+            sendError(exchange, ex.status, ex.getMessage());
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            // invalid numbers, dates and JSON
+            sendError(exchange, 400, ex.getMessage());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            route.permits.release();
+        }
+    }
+
+    private void login(HttpExchange exchange, List<String> params) throws IOException {
+        Map<String, String> body = readJson(exchange);
+        String username = required(body, "username");
+        String password = required(body, "password");
+        User user = model.getUserByUsername(username);
+        if (user == null || !user.getPassword().equals(password)) {
+            throw new ApiException(401, "Invalid username or password");
+        }
+        sendJson(exchange, 200, new JsonWriter(256).user(user));
+    }
+
+    private void getUser(HttpExchange exchange, List<String> params) throws IOException {
+        User user = model.getUserByUsername(params.get(0));
+        if (user == null) {
+            throw new ApiException(404, "No user " + params.get(0));
+        }
+        sendJson(exchange, 200, new JsonWriter(256).user(user));
+    }
+
+    private void addPost(HttpExchange exchange, List<String> params) throws Exception {
+        Map<String, String> body = readJson(exchange);
+        int userid = Integer.parseInt(required(body, "userid"));
+        String content = required(body, "content");
+        String author = required(body, "author");
+        int likes = Integer.parseInt(required(body, "likes"));
+        int shares = Integer.parseInt(required(body, "shares"));
+        long timestamp = PostDates.parse(required(body, "dateTime"));
+        if (!model.addPost(userid, content, author, likes, shares, timestamp)) {
+            throw new ApiException(500, "Post could not be added");
+        }
+        sendJson(exchange, 201, new JsonWriter(32).beginObject().name("added").value(true).endObject());
+    }
+
+    private void getPost(HttpExchange exchange, List<String> params) throws IOException {
+        sendJson(exchange, 200, new JsonWriter(512).post(findPost(params.get(0))));
+    }
+
+    private void deletePost(HttpExchange exchange, List<String> params) throws IOException {
+        int postid = Integer.parseInt(params.get(0));
+        if (!model.deletePostByPostid(postid)) {
+            throw new ApiException(404, "No post " + postid);
+        }
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void exportPost(HttpExchange exchange, List<String> params) throws IOException {
+        Post post = findPost(params.get(0));
+        ExportEvent event = new ExportEvent();
+        event.begin();
+        // same layout as the export from the dashboard
+        byte[] body = (PostExport.HEADER + PostExport.toCsvRow(post)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"post-" + post.getPostid() + ".csv\"");
+        send(exchange, 200, "text/csv; charset=utf-8", body);
+        event.end();
+        if (event.shouldCommit()) {
+            event.postid = post.getPostid();
+            event.destination = String.valueOf(exchange.getRemoteAddress());
+            event.bytes = body.length;
+            event.commit();
+        }
+    }
+
+    private void topPosts(HttpExchange exchange, List<String> params) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        int topN = Integer.parseInt(required(query, "n"));
+        if (topN <= 0 || topN > MAX_TOP_N) {
+            throw new ApiException(400, "n must be between 1 and " + MAX_TOP_N);
+        }
+        String userid = query.get("userid");
+        RankedPosts posts = userid == null ? model.retrieveTopPostsAll(topN)
+                : model.retrieveTopPostsUser(topN, Integer.parseInt(userid));
+        sendJson(exchange, 200, new JsonWriter(posts.size() * 256 + 2).rankedPosts(posts));
+    }
+
+    private void sharesDistribution(HttpExchange exchange, List<String> params) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        SharesBuckets buckets = SharesBuckets.of(SharesBuckets.Kind.valueOf(required(query, "buckets").toUpperCase()),
+                Integer.parseInt(required(query, "param")));
+        SharesScope scope = new SharesScope(query.containsKey("userid") ? Integer.valueOf(query.get("userid")) : null,
+                query.containsKey("from") ? Long.valueOf(query.get("from")) : null,
+                query.containsKey("to") ? Long.valueOf(query.get("to")) : null);
+        SharesDistribution distribution = model.getSharesDistribution(scope, buckets);
+        if (distribution == null) {
+            throw new ApiException(503, "The shares distribution could not be read");
+        }
+        sendJson(exchange, 200, new JsonWriter(distribution.size() * 64 + 64).sharesDistribution(distribution));
+    }
+
+    private void percentiles(HttpExchange exchange, List<String> params) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        PostSketches.Metric metric = PostSketches.Metric.valueOf(required(query, "metric").toUpperCase());
+        Integer userid = query.containsKey("userid") ? Integer.valueOf(query.get("userid")) : null;
+        double[] quantiles = DEFAULT_QUANTILES;
+        if (query.containsKey("q")) {
+            String[] parts = query.get("q").split(",");
+            quantiles = new double[parts.length];
+            for (int i = 0; i < parts.length; i++) {
+                quantiles[i] = Double.parseDouble(parts[i].trim());
+            }
+        }
+        double[] values = model.getPercentiles(metric, userid, quantiles);
+        long posts = model.getPostSketches().getCount(userid);
+        sendJson(exchange, 200, new JsonWriter(quantiles.length * 48 + 64).percentiles(metric, posts, quantiles, values));
+    }
+
+    private void distinctAuthors(HttpExchange exchange, List<String> params) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        Long authors;
+        if (query.containsKey("from") || query.containsKey("to")) {
+            // authors are sketched per user and per day, not per user and day
+            if (query.containsKey("userid")) {
+                throw new ApiException(400, "Authors are counted by userid or by from and to, not both");
+            }
+            authors = model.getDistinctAuthors(Long.parseLong(required(query, "from")), Long.parseLong(required(query, "to")));
+        } else {
+            authors = model.getDistinctAuthors(query.containsKey("userid") ? Integer.valueOf(query.get("userid")) : null);
+        }
+        if (authors == null) {
+            // answered from sketches filled by the startup load, never by reading every post per request
+            exchange.getResponseHeaders().set("Retry-After", "5");
+            throw new ApiException(503, "The posts are still loading, try again");
+        }
+        sendJson(exchange, 200, new JsonWriter(32).beginObject().name("authors").value(authors.longValue()).endObject());
+    }
+
+    private void importPosts(HttpExchange exchange, List<String> params) throws IOException {
+        int userid = Integer.parseInt(required(readQuery(exchange), "userid"));
+        // the import pipeline maps the file into memory, so the upload is spooled to disk first
+        Path file = Files.createTempFile("import-", ".csv");
+        try {
+            try (InputStream in = exchange.getRequestBody()) {
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            ImportResult result = model.importCsv(file.toFile(), userid);
+            sendJson(exchange, 200, new JsonWriter(1024).importResult(result));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private void metrics(HttpExchange exchange, List<String> params) throws IOException {
+        String text = model.getMetrics().snapshot().toText();
+        send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Post findPost(String postidText) {
+        int postid = Integer.parseInt(postidText);
+        Post post = model.getPostByPostid(postid);
+        if (post == null) {
+            throw new ApiException(404, "No post " + postid);
+        }
+        return post;
+    }
+
+    private static String required(Map<String, String> values, String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new ApiException(400, "Missing " + name);
+        }
+        return value;
+    }
+
+    private static Map<String, String> readJson(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body over " + MAX_BODY_BYTES + " bytes");
+        }
+        return JsonReader.parseObject(new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> readQuery(HttpExchange exchange) {
+        Map<String, String> values = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return values;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            values.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    private static String[] split(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonWriter json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, new JsonWriter(64).beginObject().name("error").value(message).endObject());
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
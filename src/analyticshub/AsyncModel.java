@@ -0,0 +1,114 @@
+/*
+ * Class AsyncModel
+ * Runs Model calls on background threads so the JavaFX application thread never waits on the database
+ * Each call returns a CompletableFuture, results are handed back on the JavaFX thread with Platform.runLater
+ * The model may still be opening when calls are submitted, they wait on a worker until it is ready
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+public class AsyncModel {
+    private final CompletableFuture<Model> model;
+    private final ExecutorService executor;
+
+    /**
+     * Constructor
+     * @param model model the calls run against
+     * @param threads number of calls that may run at once, more than the connection pool size only adds waiting
+     */
+    public AsyncModel(Model model, int threads) {
+        this(CompletableFuture.completedFuture(model), threads);
+    }
+
+    /**
+     * Constructor for a model opened in the background
+     * @param model completed with the model once the database is ready, or exceptionally if it cannot be opened;
+     *              a failure is reported to every call
+     * @param threads number of calls that may run at once, more than the connection pool size only adds waiting
+     */
+    public AsyncModel(CompletableFuture<Model> model, int threads) {
+        this.model = model;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "model-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * A call against the model, run on a background thread
+     * @param <T> result type
+     */
+    public interface ModelCall<T> {
+        T call(Model model) throws Exception;
+    }
+
+    /**
+     * Run a call in the background
+     * Cancelling the returned future interrupts the worker, which abandons a pool wait straight away;
+     * a statement already sent finishes on the server but its result is dropped
+     * @param call work to run
+     * @return future completed with the call's result or exception
+     */
+    public <T> CompletableFuture<T> submit(ModelCall<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (result.isDone()) {
+                return; // cancelled while queued
+            }
+            try {
+                result.complete(call.call(model.join()));
+            } catch (CompletionException ex) {
+                result.completeExceptionally(ex.getCause() != null ? ex.getCause() : ex);
+            } catch (Exception | Error ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        result.whenComplete((value, ex) -> {
+            if (result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Hand the outcome of a future to the JavaFX thread, nothing is called if the future was cancelled
+     * @param future background call
+     * @param onSuccess receives the result on the JavaFX thread
+     * @param onFailure receives the cause of a failure on the JavaFX thread
+     */
+    public static <T> void onFxThread(CompletableFuture<T> future, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        future.whenComplete((value, ex) -> {
+            if (ex == null) {
+                Platform.runLater(() -> onSuccess.accept(value));
+                return;
+            }
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            if (!(cause instanceof CancellationException)) {
+                Platform.runLater(() -> onFailure.accept(cause));
+            }
+        });
+    }
+
+    /**
+     * Stop the workers, calls still running are interrupted
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+}
\ No newline at end of file
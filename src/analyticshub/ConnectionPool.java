@@ -0,0 +1,379 @@
+/*
+ * Class ConnectionPool
+ * Bounded pool of JDBC connections shared by the Model
+ * Connections are validated on borrow, evicted when idle for too long and retired after their max lifetime
+ * Each connection caches its prepared statements, the hit/miss counters are aggregated here
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConnectionPool implements AutoCloseable {
+    // connections used within this window are handed out again without a validation round trip
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>(); // most recently released first
+    private final ScheduledExecutorService housekeeper;
+    private int total;  // physical connections open or being opened
+    private int active; // connections currently borrowed
+    private boolean closed;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final AtomicLong statementEvictions = new AtomicLong();
+
+    /**
+     * Constructor
+     * @param url JDBC url of the database
+     * @param user database user
+     * @param password database password
+     * @param maxSize maximum number of open connections
+     * @param minIdle number of idle connections kept open by the idle eviction
+     * @param borrowTimeoutMillis how long borrow() waits for a free connection before failing
+     * @param idleTimeoutMillis idle connections older than this are closed
+     * @param maxLifetimeMillis connections older than this are retired, whether idle or not
+     * @param statementCacheSize prepared statements cached per connection, 0 disables the cache
+     */
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+            long borrowTimeoutMillis, long idleTimeoutMillis, long maxLifetimeMillis, int statementCacheSize) {
+        if (maxSize <= 0 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: max " + maxSize + ", min idle " + minIdle);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.minIdle = minIdle;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxLifetimeMillis = maxLifetimeMillis;
+        this.statementCacheSize = statementCacheSize;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, Math.min(idleTimeoutMillis, maxLifetimeMillis) / 2);
+        housekeeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection, waiting up to the borrow timeout when all connections are in use
+     * @return validated connection, close it to give it back to the pool
+     * @throws SQLException if no connection could be obtained in time or the database is unreachable
+     */
+    public PooledConnection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+        while (true) {
+            PooledConnection pooled = null;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                    pooled = idle.pollFirst();
+                    if (pooled != null || total < maxSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+                                + " ms waiting for a connection (" + active + " of " + maxSize + " in use)");
+                    }
+                    available.awaitNanos(remaining);
+                }
+                if (pooled == null) {
+                    total++; // reserve the slot, the connection is opened outside the lock
+                }
+                active++;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", ex);
+            } finally {
+                lock.unlock();
+            }
+
+            if (pooled == null) {
+                try {
+                    pooled = new PooledConnection(this, DriverManager.getConnection(url, user, password),
+                            statementCacheSize);
+                    createdCount.incrementAndGet();
+                } catch (SQLException ex) {
+                    discard(null);
+                    throw ex;
+                }
+            } else if (!isUsable(pooled)) {
+                discard(pooled);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            pooled.markBorrowed();
+            return pooled;
+        }
+    }
+
+    /**
+     * Give a borrowed connection back, called by PooledConnection.close()
+     * @param pooled connection being returned
+     */
+    void release(PooledConnection pooled) {
+        if (!pooled.reset()) {
+            discard(pooled);
+            return;
+        }
+        lock.lock();
+        try {
+            active--;
+            if (closed) {
+                total--;
+            } else {
+                idle.addFirst(pooled);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(pooled);
+    }
+
+    /**
+     * Check a borrowed connection before handing it out
+     * @param pooled idle connection just taken from the pool
+     * @return true if the connection is within its lifetime and still alive
+     */
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (now - pooled.getCreatedAt() > maxLifetimeMillis) {
+            return false;
+        }
+        if (now - pooled.getLastUsed() < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Drop a borrowed connection (or a failed connection attempt) and free its slot
+     * @param pooled connection to close, null when opening the connection failed
+     */
+    private void discard(PooledConnection pooled) {
+        lock.lock();
+        try {
+            total--;
+            active--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (pooled != null) {
+            destroy(pooled);
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        destroyedCount.incrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Close idle connections past the idle timeout or the max lifetime, keeping at least minIdle open
+     */
+    private void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            // the tail holds the connections that have been idle the longest
+            Iterator<PooledConnection> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                boolean expired = now - pooled.getCreatedAt() > maxLifetimeMillis;
+                boolean stale = now - pooled.getLastUsed() > idleTimeoutMillis && idle.size() > minIdle;
+                if (expired || stale) {
+                    it.remove();
+                    total--;
+                    evicted.add(pooled);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : evicted) {
+            destroy(pooled);
+        }
+    }
+
+    /**
+     * Close every idle connection and refuse new borrows, borrowed connections are closed when returned
+     */
+    @Override
+    public void close() {
+        List<PooledConnection> remaining;
+        lock.lock();
+        try {
+            closed = true;
+            remaining = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pooled : remaining) {
+            destroy(pooled);
+        }
+    }
+
+    // Getter of the number of borrowed connections
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getter of the number of idle connections
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getter of the number of open connections
+    public int getTotalCount() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Getter of the pool capacity
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Getter of the number of successful borrows
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    // Getter of the number of borrows that timed out
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    // Getter of the number of physical connections opened
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    // Getter of the number of physical connections closed
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    // Getter of the average time borrow() waited, in milliseconds
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    // Getter of the longest time borrow() waited, in milliseconds
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    void recordStatementHit() {
+        statementHits.incrementAndGet();
+    }
+
+    void recordStatementMiss() {
+        statementMisses.incrementAndGet();
+    }
+
+    void recordStatementEviction() {
+        statementEvictions.incrementAndGet();
+    }
+
+    // Getter of the number of prepared statements served from a connection's cache
+    public long getStatementCacheHits() {
+        return statementHits.get();
+    }
+
+    // Getter of the number of statements that had to be prepared
+    public long getStatementCacheMisses() {
+        return statementMisses.get();
+    }
+
+    // Getter of the number of statements closed to make room in a full cache
+    public long getStatementCacheEvictions() {
+        return statementEvictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount() + ", max=" + maxSize
+                + ", borrows=" + getBorrowCount() + ", timeouts=" + getTimeoutCount()
+                + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis())
+                + ", stmtHits=" + getStatementCacheHits() + ", stmtMisses=" + getStatementCacheMisses() + "]";
+    }
+}
\ No newline at end of file
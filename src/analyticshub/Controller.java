@@ -6,43 +6,78 @@
  * @version JavaSE-17
 */ 
 
+package analyticshub;
+
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import javafx.event.Event;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
 
 public class Controller {
-    private Model model;
+    // Top posts are read this many rows at a time as the table scrolls
+    private static final int TOP_POSTS_PAGE_SIZE = 200;
+    
+    private AsyncModel model;
     private UserView view;
     private User user;
+    private PostPageLoader topPostsLoader;
     
     /**
      * Constructor
-     * @param model
+     * @param model runs the database calls off the JavaFX thread
      * @param view
      */
-    public Controller(Model model, UserView view) {
+    public Controller(AsyncModel model, UserView view) {
         this.model = model;
         this.view = view;
     }
     
     /**
      * Constructor
-     * @param model
+     * @param model runs the database calls off the JavaFX thread
      * @param view
      * @param user
      */
-    public Controller(Model model, UserView view, User user) {
+    public Controller(AsyncModel model, UserView view, User user) {
         this.model = model;
         this.view = view;
         this.user = user;
     }
     
+    /**
+     * Run a database call in the background while the view shows a loading indicator
+     * The JavaFX thread only starts the call and handles its result, so the window never freezes
+     * @param message shown with the loading indicator
+     * @param call database work, runs on a model worker thread
+     * @param onSuccess receives the result on the JavaFX thread, not called if the user cancels
+     * @return future of the call
+     */
+    private <T> CompletableFuture<T> runInBackground(String message, AsyncModel.ModelCall<T> call, Consumer<T> onSuccess) {
+        CompletableFuture<T> future = model.submit(call);
+        view.showBusy(message, () -> future.cancel(true));
+        AsyncModel.onFxThread(future, result -> {
+            view.hideBusy();
+            onSuccess.accept(result);
+        }, ex -> {
+            view.hideBusy();
+            ex.printStackTrace();
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.setTitle("Database Error");
+            errorAlert.setHeaderText(null);
+            errorAlert.setContentText("The request failed: " + ex.getMessage());
+            errorAlert.showAndWait();
+        });
+        return future;
+    }
+    
     /**
      * 
      * Block space for Handling user lgoin
@@ -62,8 +97,18 @@ public class Controller {
         String password = view.getPassword();
         
         // Create user instance
-        user = model.getUserByUsername(username);
-        
+        runInBackground("Logging in", m -> m.getUserByUsername(username), found -> {
+            user = found;
+            completeLogin(username, password);
+        });
+    }
+    
+    /**
+     * Check the password of the user read at login and open the dashboard
+     * @param username login username
+     * @param password login password
+     */
+    private void completeLogin(String username, String password) {
         if (user != null && user.getPassword().equals(password)) {
         	// Check VIP status
         	if (!user.getIsvip()) {
@@ -76,18 +121,19 @@ public class Controller {
                 Optional<ButtonType> result = vipupgrade.showAndWait();
                 if (result.isPresent() && result.get() == ButtonType.OK) {
                     // User agrees to subscribe, update VIP status in the database
-                	if (upgradeVIP(username)) {
-                        // upgrade successful
-                    	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                        successAlert.setTitle("Upgrade Success");
-                        successAlert.setHeaderText(null);
-                        successAlert.setContentText("Please log out and log in again to access VIP functionalities");
-                        successAlert.showAndWait();
+                	runInBackground("Upgrading to VIP", m -> upgradeVIP(m, username), upgraded -> {
+                		if (upgraded) {
+                            // upgrade successful
+                        	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                            successAlert.setTitle("Upgrade Success");
+                            successAlert.setHeaderText(null);
+                            successAlert.setContentText("Please log out and log in again to access VIP functionalities");
+                            successAlert.showAndWait();
+                    	}
+                    	
+                        // log out and log in again to access VIP functionalities
                         view.showLoginScene();
-                	}
-                	
-                    // log out and log in again to access VIP functionalities
-                    view.showLoginScene();
+                	});
                 } else {
                 	view.showDashboardScene(user);
                 }
@@ -105,10 +151,11 @@ public class Controller {
     
     /**
      * upgrade user to vip provided with their username
+     * @param model model to update, called on a model worker thread
      * @param username
      * @return true for successfully upgrade to VIP
      */
-    private boolean upgradeVIP(String username) {
+    private boolean upgradeVIP(Model model, String username) {
         try {
             boolean ifSuccessful = model.updateVIP(username);
             if (ifSuccessful) {
@@ -162,22 +209,24 @@ public class Controller {
         
         if (isValidRegistrationInput(username, password, firstname, lastname)) {
             // check registration and input into database
-            if (registerUser(username, password, firstname, lastname)) {
-                // Registration successful
-            	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                successAlert.setTitle("Registration Success");
-                successAlert.setHeaderText(null);
-                successAlert.setContentText("Registration successful!");
-                successAlert.showAndWait();
-                view.showLoginScene();
-            } else {
-                // Registration failed
-                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                errorAlert.setTitle("Registration Error");
-                errorAlert.setHeaderText(null);
-                errorAlert.setContentText("Username already be taken.");
-                errorAlert.showAndWait();
-            }
+            runInBackground("Registering", m -> registerUser(m, username, password, firstname, lastname), registered -> {
+            	if (registered) {
+                    // Registration successful
+                	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                    successAlert.setTitle("Registration Success");
+                    successAlert.setHeaderText(null);
+                    successAlert.setContentText("Registration successful!");
+                    successAlert.showAndWait();
+                    view.showLoginScene();
+                } else {
+                    // Registration failed
+                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                    errorAlert.setTitle("Registration Error");
+                    errorAlert.setHeaderText(null);
+                    errorAlert.setContentText("Username already be taken.");
+                    errorAlert.showAndWait();
+                }
+            });
         } else {
             // Invalid input, show an error message
              Alert errorAlert = new Alert(Alert.AlertType.ERROR);
@@ -202,13 +251,14 @@ public class Controller {
     
     /** 
      * Method to check if username are in used
+     * @param model model to update, called on a model worker thread
      * @param username for new user setup
      * @param password for new user setup
      * @param firstname for new user setup
      * @param lastname for new user setup
      * @return true for successful register and recorded into user profile table
      */
-    private boolean registerUser(String username, String password, String firstname, String lastname) {
+    private boolean registerUser(Model model, String username, String password, String firstname, String lastname) {
         try {
             boolean ifSuccessful = model.registerUser(username, password, firstname, lastname);
             if (ifSuccessful) {
@@ -265,48 +315,55 @@ public class Controller {
             // check the filed to be amend and the filed not to be amended
         	
         	// Check if the new username exists
-        	if (isUsernamTaken(newusername)) {
-				// Update failed, username duplicate
-			    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-			    errorAlert.setTitle("Registration Error");
-			    errorAlert.setHeaderText(null);
-			    errorAlert.setContentText("Username already be taken.");
-			    errorAlert.showAndWait();
-			} else {
-				if(newusername.isEmpty()) {
-	        		newusername = user.getUsername();
-	        	}
-				
-	        	if (password.isEmpty()) {
-	        		password = user.getPassword();
-	        	}
-	        	
-	        	if (firstname.isEmpty()) {
-	        		firstname = user.getFirstName();
-	        	}
-	        	
-	        	if (lastname.isEmpty()) {
-	        		lastname = user.getLastName();
-	        	}
-	        	
-	            if (eidtUser(currentUsername, newusername, password, firstname, lastname)) {
-	                // Edit successful
-	            	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-	                successAlert.setTitle("Registration Success");
-	                successAlert.setHeaderText(null);
-	                successAlert.setContentText("Edit Profile successful!");
-	                successAlert.showAndWait();
-	                
-	                // Edit successful, update to the latest and back to Dashboard
-	                user = model.getUserByUsername(newusername);
-	                view.showDashboardScene(user);
-	            }
-			}
+        	runInBackground("Checking username", m -> isUsernamTaken(m, newusername), taken -> {
+        		if (taken) {
+    				// Update failed, username duplicate
+    			    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+    			    errorAlert.setTitle("Registration Error");
+    			    errorAlert.setHeaderText(null);
+    			    errorAlert.setContentText("Username already be taken.");
+    			    errorAlert.showAndWait();
+    			} else {
+    				saveProfile(currentUsername, newusername, password, firstname, lastname);
+    			}
+        	});
         } else {
         	System.out.print("Please fill in to edit your profile.");
         }
     }
     
+    /**
+     * Save the edited profile, fields left blank keep their current value
+     * @param currentUsername username before the edit
+     * @param newusername new username, may be blank
+     * @param password new password, may be blank
+     * @param firstname new first name, may be blank
+     * @param lastname new last name, may be blank
+     */
+    private void saveProfile(String currentUsername, String newusername, String password, String firstname, String lastname) {
+    	String username = newusername.isEmpty() ? user.getUsername() : newusername;
+    	String newPassword = password.isEmpty() ? user.getPassword() : password;
+    	String firstName = firstname.isEmpty() ? user.getFirstName() : firstname;
+    	String lastName = lastname.isEmpty() ? user.getLastName() : lastname;
+    	
+    	// Edit the profile and read it back in one background call
+    	runInBackground("Saving profile", m -> eidtUser(m, currentUsername, username, newPassword, firstName, lastName)
+    			? m.getUserByUsername(username) : null, updated -> {
+    		if (updated != null) {
+                // Edit successful
+            	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                successAlert.setTitle("Registration Success");
+                successAlert.setHeaderText(null);
+                successAlert.setContentText("Edit Profile successful!");
+                successAlert.showAndWait();
+                
+                // Edit successful, update to the latest and back to Dashboard
+                user = updated;
+                view.showDashboardScene(user);
+            }
+    	});
+    }
+    
     /** 
      * Method to check if one of the filed are enter
      * @param username for new user setup
@@ -321,10 +378,11 @@ public class Controller {
     
     /**
      * Check if username is in used
+     * @param model model to query, called on a model worker thread
      * @param username
      * @return true if username is in used
      */
-    private boolean isUsernamTaken(String username) {
+    private boolean isUsernamTaken(Model model, String username) {
         try {
             boolean ifSuccessful = model.isUsernameTaken(username);
             if (ifSuccessful) {
@@ -340,13 +398,14 @@ public class Controller {
     
     /** 
      * Method to check if username are duplicate
+     * @param model model to update, called on a model worker thread
      * @param username for new user setup
      * @param password for new user setup
      * @param firstname for new user setup
      * @param lastname for new user setup
      * @return true for successful register, false for register failed
      */
-    private boolean eidtUser(String currentusername, String username, String password, String firstname, String lastname) {
+    private boolean eidtUser(Model model, String currentusername, String username, String password, String firstname, String lastname) {
         boolean ifSuccessful = model.editUser(currentusername, username, password, firstname, lastname);
 		if (ifSuccessful) {
 			// Create a new user in the database using the Model class
@@ -402,23 +461,26 @@ public class Controller {
             
             if (isValidPostAdd(content, author, datetime)) {
                 // check registration and input into database
+            	long timestamp = PostDates.parse(datetime);
             	
-                if (addPost(userid, content, author, likes, shares, datetime)) {
-                    // Add post successful
-                	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                    successAlert.setTitle("Add Post Success");
-                    successAlert.setHeaderText(null);
-                    successAlert.setContentText("Registration successful!");
-                    successAlert.showAndWait();
-                    view.showDashboardScene(user);
-                } else {
-                    // Registration failed
-                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                    errorAlert.setTitle("Add Post Error");
-                    errorAlert.setHeaderText(null);
-                    errorAlert.setContentText("Connection Error");
-                    errorAlert.showAndWait();
-                }
+            	runInBackground("Adding post", m -> addPost(m, userid, content, author, likes, shares, timestamp), added -> {
+            		if (added) {
+                        // Add post successful
+                    	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                        successAlert.setTitle("Add Post Success");
+                        successAlert.setHeaderText(null);
+                        successAlert.setContentText("Registration successful!");
+                        successAlert.showAndWait();
+                        view.showDashboardScene(user);
+                    } else {
+                        // Registration failed
+                        Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                        errorAlert.setTitle("Add Post Error");
+                        errorAlert.setHeaderText(null);
+                        errorAlert.setContentText("Connection Error");
+                        errorAlert.showAndWait();
+                    }
+            	});
             } else {
                 // Invalid input, show an error message
                  Alert errorAlert = new Alert(Alert.AlertType.ERROR);
@@ -435,6 +497,13 @@ public class Controller {
             errorAlert.setHeaderText(null);
             errorAlert.setContentText("Only enter interger value for likes and shares entry");
             errorAlert.showAndWait();
+        } catch (DateTimeParseException ex) {
+        	// Invalid date, show an error message
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.setTitle("Add Post Error");
+            errorAlert.setHeaderText(null);
+            errorAlert.setContentText("Please enter the date and time in the format of DD/MM/YYYY HH:MM");
+            errorAlert.showAndWait();
         }
     }
     
@@ -452,18 +521,19 @@ public class Controller {
     
     /** 
      * Method to check if all filed are enter
+     * @param model model to update, called on a model worker thread
      * @param userid identification
      * @param content for the post
      * @param author for the post
      * @param likes for the post
      * @param shares for the post
-     * @param datetime for the post
+     * @param timestamp for the post, in epoch milliseconds
      * @return userid, content, author, likes, shares, datetime
      */
-    private boolean addPost(int userid, String content, String author, int likes, int shares, String datetime) {
+    private boolean addPost(Model model, int userid, String content, String author, int likes, int shares, long timestamp) {
         // Return true if registration is successful and insert new post into database
         try {
-            boolean ifSuccessful = model.addPost(userid, content, author, likes, shares, datetime);
+            boolean ifSuccessful = model.addPost(userid, content, author, likes, shares, timestamp);
             if (ifSuccessful) {
             	// Create a new post in the database using the Model class
                 return true;
@@ -513,33 +583,34 @@ public class Controller {
     		String retrievePostid = view.getRetrievePostid();
             int postid = Integer.parseInt(retrievePostid);
             
-            if (isPostidExist(postid)) {
-            	
-            	Post post = model.getPostByPostid(postid);
-            	
-            	String retrieveTest = new String();
-            	retrieveTest = ("Postid " + postid+ "\n"
-            			+ "Content " + post.getContent()+ "\n"
-            			+ "Author " + post.getAuthor()+ "\n"
-            			+ "Number of Likes " + post.getLikes() + "\n"
-            			+ "Number of Shares " + post.getShares()+ "\n"
-            			+ "Datetime " + post.getDateTime());
-            	
-            	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                successAlert.setTitle("Retrieve Post Success");
-                successAlert.setHeaderText(null);
-                successAlert.setContentText(retrieveTest);
-                successAlert.showAndWait();
-                //Return to Dashboard
-                view.showDashboardScene(user);
-            } else {
-                // Registration failed
-                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                errorAlert.setTitle("Add Post Error");
-                errorAlert.setHeaderText(null);
-                errorAlert.setContentText("This postid is not exist");
-                errorAlert.showAndWait();
-            }
+            // a missing post reads as null, so one query both checks and fetches it
+            runInBackground("Retrieving post", m -> m.getPostByPostid(postid), post -> {
+            	if (post != null) {
+                	
+                	String retrieveTest = new String();
+                	retrieveTest = ("Postid " + postid+ "\n"
+                			+ "Content " + post.getContent()+ "\n"
+                			+ "Author " + post.getAuthor()+ "\n"
+                			+ "Number of Likes " + post.getLikes() + "\n"
+                			+ "Number of Shares " + post.getShares()+ "\n"
+                			+ "Datetime " + post.getDateTime());
+                	
+                	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                    successAlert.setTitle("Retrieve Post Success");
+                    successAlert.setHeaderText(null);
+                    successAlert.setContentText(retrieveTest);
+                    successAlert.showAndWait();
+                    //Return to Dashboard
+                    view.showDashboardScene(user);
+                } else {
+                    // Registration failed
+                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                    errorAlert.setTitle("Add Post Error");
+                    errorAlert.setHeaderText(null);
+                    errorAlert.setContentText("This postid is not exist");
+                    errorAlert.showAndWait();
+                }
+            });
             
 		} catch (NumberFormatException ex) {
         	// Invalid input, show an error message
@@ -553,10 +624,11 @@ public class Controller {
     
     /**
      * check if postid exist in the social media post table
+     * @param model model to query, called on a model worker thread
      * @param postid
      * @return
      */
-    private boolean isPostidExist(int postid) {
+    private boolean isPostidExist(Model model, int postid) {
         // Return true if registration is successful and insert new post into database
         try {
             boolean ifSuccessful = model.isPostidExist(postid);
@@ -609,16 +681,22 @@ public class Controller {
 			String removePostid = view.getRemovePostid();
             int postid = Integer.parseInt(removePostid);
             
-            if (isPostidExist(postid)) {
-            	
-            	if (removePost(postid)) {
+            // null when the postid does not exist, otherwise whether the delete succeeded
+            runInBackground("Removing post", m -> isPostidExist(m, postid) ? Boolean.valueOf(removePost(m, postid)) : null, removed -> {
+            	if (removed == null) {
+                    // Registration failed
+                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                    errorAlert.setTitle("Add Post Error");
+                    errorAlert.setHeaderText(null);
+                    errorAlert.setContentText("This postid is not exist");
+                    errorAlert.showAndWait();
+            	} else if (removed) {
                     // Registration successful
                 	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
                     successAlert.setTitle("Registration Success");
                     successAlert.setHeaderText(null);
                     successAlert.setContentText("Registration successful!");
                     successAlert.showAndWait();
-                    view.showLoginScene();
                 } else {
                     // Registration failed
                     Alert errorAlert = new Alert(Alert.AlertType.ERROR);
@@ -627,15 +705,9 @@ public class Controller {
                     errorAlert.setContentText("Username already be taken.");
                     errorAlert.showAndWait();
                 }
-                    
-            } else {
-                // Registration failed
-                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                errorAlert.setTitle("Add Post Error");
-                errorAlert.setHeaderText(null);
-                errorAlert.setContentText("This postid is not exist");
-                errorAlert.showAndWait();
-            }
+            	// Return to Dashboard
+            	view.showDashboardScene(user);
+            });
             
 		} catch (NumberFormatException ex) {
         	// Invalid input, show an error message
@@ -644,20 +716,21 @@ public class Controller {
             errorAlert.setHeaderText(null);
             errorAlert.setContentText("Please only enter interger value");
             errorAlert.showAndWait();
+        	// Return to Dashboard
+        	view.showDashboardScene(user);
 		}
-    	// Return to Dashboard
-    	view.showDashboardScene(user);
     }
     
     /** 
      * Method to check if username are duplicate
+     * @param model model to update, called on a model worker thread
      * @param postid for new user setup
      * @param password for new user setup
      * @param firstname for new user setup
      * @param lastname for new user setup
      * @return true for successful register, false for register failed
      */
-    private boolean removePost(int postid) {
+    private boolean removePost(Model model, int postid) {
         boolean ifSuccessful = model.deletePostByPostid(postid);
 		if (ifSuccessful) {
 			// Create a new user in the database using the Model class
@@ -701,6 +774,10 @@ public class Controller {
      * @param e close and return to Dashboard Scene
      */
     public void handleCloseTopPosts(Event e) {
+    	if (topPostsLoader != null) {
+    		topPostsLoader.cancel();
+    		topPostsLoader = null;
+    	}
     	view.showDashboardScene(user);
     }
     
@@ -710,19 +787,19 @@ public class Controller {
      */
     public void handleDisplayTopPosts(Event e) {
     	
-    	HashMap<Integer, Post> topPosts = new HashMap<>();
-    	
     	try {
     		String retrieveTopNPost = view.getTopNPost();
-        	String retrieveUser = view.getRetrieveUser();
-            int topNPost = Integer.parseInt(retrieveTopNPost);
+        	String retrieveUser = view.getRetrieveUser().trim();
+            int topNPost = Integer.parseInt(retrieveTopNPost.trim());
+            if (topNPost <= 0) {
+            	throw new NumberFormatException("top N must be positive");
+            }
             
             if (retrieveUser.isEmpty()) {
-            	topPosts = handleRetrieveTopPostsUser(topNPost, user.getUserid());
-            	view.displayTopPostsScene(topPosts);
+            	// blank userid retrieves from all users
+            	handleRetrieveTopPostsAll(topNPost);
             } else {
-            	topPosts = handleRetrieveTopPostsAll(topNPost);
-            	view.displayTopPostsScene(topPosts);
+            	handleRetrieveTopPostsUser(topNPost, Integer.parseInt(retrieveUser));
             }
             
 		} catch (NumberFormatException ex) {
@@ -730,32 +807,40 @@ public class Controller {
             Alert errorAlert = new Alert(Alert.AlertType.ERROR);
             errorAlert.setTitle("Error");
             errorAlert.setHeaderText(null);
-            errorAlert.setContentText("Please only enter interger value for top N post");
+            errorAlert.setContentText("Please only enter positive interger value for top N post and userid");
             errorAlert.showAndWait();
 		}
-    	
-    	view.showDashboardScene(user);
     }
     
     /**
-     * 
-     * @param topNPost
-     * @return
+     * Read the first page of the top N posts of all users in the background and display them,
+     * later pages are read as the table scrolls
+     * @param topNPost number of posts
+     * @return future of the table's data source
      */
-    public HashMap<Integer, Post> handleRetrieveTopPostsAll(int topNPost) {
-    	HashMap<Integer, Post> topPosts = model.retrieveTopPostsAll(topNPost);
-        return topPosts;
+    public CompletableFuture<PostPageLoader> handleRetrieveTopPostsAll(int topNPost) {
+    	return displayTopPosts(m -> m.openTopPosts(topNPost, TOP_POSTS_PAGE_SIZE));
     }
     
     /**
-     * 
-     * @param topNPost
-     * @param userid
-     * @return
+     * Read the first page of the top N posts of one user in the background and display them,
+     * later pages are read as the table scrolls
+     * @param topNPost number of posts
+     * @param userid owner of the posts
+     * @return future of the table's data source
      */
-    public HashMap<Integer, Post> handleRetrieveTopPostsUser(int topNPost, int userid) {
-    	HashMap<Integer, Post> topPosts = model.retrieveTopPostsUser(topNPost, userid);
-        return topPosts;
+    public CompletableFuture<PostPageLoader> handleRetrieveTopPostsUser(int topNPost, int userid) {
+    	return displayTopPosts(m -> m.openUserPosts(userid, topNPost, TOP_POSTS_PAGE_SIZE));
+    }
+    
+    private CompletableFuture<PostPageLoader> displayTopPosts(Function<Model, PostCursor> openCursor) {
+    	return runInBackground("Retrieving top posts", m -> {
+    		PostCursor cursor = openCursor.apply(m);
+    		return new PostPageLoader(model, cursor, cursor.nextPage());
+    	}, loader -> {
+    		topPostsLoader = loader;
+    		view.displayTopPostsScene(loader);
+    	});
     }
     
     
@@ -796,66 +881,73 @@ public class Controller {
     		String exportFolder = view.getExportFolder();
             int postid = Integer.parseInt(exportPostid);
             
-            if (isPostidExist(postid)) {
-            	
-            	Post post = model.getPostByPostid(postid);
-            	
-            	File folder = new File(exportFolder);
-                if (!folder.exists() || !folder.isDirectory()) {
-                	Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                    errorAlert.setTitle("Folder Error");
-                    errorAlert.setHeaderText(null);
-                    errorAlert.setContentText("Folder does not exist or is invalid");
-                    errorAlert.showAndWait();
-                }
+            // a missing post reads as null, so one query both checks and fetches it
+            runInBackground("Retrieving post", m -> m.getPostByPostid(postid), post -> {
+            	if (post != null) {
+                	File folder = new File(exportFolder);
+                    if (!folder.exists() || !folder.isDirectory()) {
+                    	Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                        errorAlert.setTitle("Folder Error");
+                        errorAlert.setHeaderText(null);
+                        errorAlert.setContentText("Folder does not exist or is invalid");
+                        errorAlert.showAndWait();
+                    }
                 
-                File file = new File(folder, exportName + ".csv");
-                if (file.exists()) {
-                	Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                    errorAlert.setTitle("File Error");
-                    errorAlert.setHeaderText(null);
-                    errorAlert.setContentText("File already exist");
-                    errorAlert.showAndWait();
-                } else {
-                    try (FileWriter writer = new FileWriter(file)) {
-                    	
-                        writer.write("Post ID,Author,Content,Likes,Shares,Date_Time\n");
-                        writer.write(postid + "," + post.getAuthor() + "," + post.getContent() + ","
-                                + post.getLikes() + "," + post.getShares() + "," + post.getDateTime() + "\n");
-                        writer.close();
-                        // Inform the user that the export was successful
-                        Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                        successAlert.setTitle("Export Success");
-                        successAlert.setHeaderText(null);
-                        successAlert.setContentText("The post had been exported");
-                        successAlert.showAndWait();
-                        view.showDashboardScene(user);
-                    } catch (IOException e1) {
+                    File file = new File(folder, exportName + ".csv");
+                    if (file.exists()) {
                     	Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                        errorAlert.setTitle("Export Error");
+                        errorAlert.setTitle("File Error");
                         errorAlert.setHeaderText(null);
-                        errorAlert.setContentText("Export Error");
+                        errorAlert.setContentText("File already exist");
                         errorAlert.showAndWait();
+                    } else {
+                        ExportEvent event = new ExportEvent();
+                        event.begin();
+                        try (FileWriter writer = new FileWriter(file)) {
+                    	
+                            PostExport.write(writer, post);
+                            writer.close();
+                            event.end();
+                            if (event.shouldCommit()) {
+                                event.postid = postid;
+                                event.destination = file.getPath();
+                                event.bytes = file.length();
+                                event.commit();
+                            }
+                            // Inform the user that the export was successful
+                            Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                            successAlert.setTitle("Export Success");
+                            successAlert.setHeaderText(null);
+                            successAlert.setContentText("The post had been exported");
+                            successAlert.showAndWait();
+                            view.showDashboardScene(user);
+                        } catch (IOException e1) {
+                        	Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                            errorAlert.setTitle("Export Error");
+                            errorAlert.setHeaderText(null);
+                            errorAlert.setContentText("Export Error");
+                            errorAlert.showAndWait();
+                        }
                     }
-                }
             	
-            	String retrieveTest = new String();
+                	String retrieveTest = new String();
             	
-            	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                successAlert.setTitle("Retrieve Post Success");
-                successAlert.setHeaderText(null);
-                successAlert.setContentText(retrieveTest);
-                successAlert.showAndWait();
-                //Return to Dashboard
-                view.showDashboardScene(user);
-            } else {
-                // Registration failed
-                Alert errorAlert = new Alert(Alert.AlertType.ERROR);
-                errorAlert.setTitle("Add Post Error");
-                errorAlert.setHeaderText(null);
-                errorAlert.setContentText("This postid is not exist");
-                errorAlert.showAndWait();
-            }
+                	Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                    successAlert.setTitle("Retrieve Post Success");
+                    successAlert.setHeaderText(null);
+                    successAlert.setContentText(retrieveTest);
+                    successAlert.showAndWait();
+                    //Return to Dashboard
+                    view.showDashboardScene(user);
+                } else {
+                    // Registration failed
+                    Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                    errorAlert.setTitle("Add Post Error");
+                    errorAlert.setHeaderText(null);
+                    errorAlert.setContentText("This postid is not exist");
+                    errorAlert.showAndWait();
+                }
+            });
             
 		} catch (NumberFormatException ex) {
         	// Invalid input, show an error message
@@ -872,12 +964,12 @@ public class Controller {
      * 
      * Block space for Shares Distribution
      * 1. handleSharesDistribution
-     * 2. handleCancelImport
-     * 3. handleConfirmImport
+     * 2. handleShowSharesDistribution
+     * 3. handleCloseSharesDistribution
      * 
      */
     /**
-     * 
+     * Open the shares distribution of all posts in log-scale buckets, VIP users only
      * @param e
      */
     public void handleSharesDistribution(Event e) {
@@ -890,8 +982,56 @@ public class Controller {
             successAlert.showAndWait();
             view.showDashboardScene(user);
     	} else {
-    		// code 
+    		view.showSharesDistributionScene();
+    		handleShowSharesDistribution(e);
+    	}
+    }
+    
+    /**
+     * Compute the distribution for the buckets and scope entered and show it in the pie chart
+     * @param e
+     */
+    public void handleShowSharesDistribution(Event e) {
+    	SharesBuckets buckets;
+    	SharesScope scope;
+    	try {
+    		buckets = SharesBuckets.of(view.getSharesBucketKind(), Integer.parseInt(view.getSharesBucketParameter().trim()));
+    		String userid = view.getSharesUser().trim();
+    		String from = view.getSharesFrom().trim();
+    		String to = view.getSharesTo().trim();
+    		scope = new SharesScope(userid.isEmpty() ? null : Integer.parseInt(userid)
+    				, from.isEmpty() ? null : PostDates.parse(from)
+    				, to.isEmpty() ? null : PostDates.parse(to));
+    	} catch (IllegalArgumentException | DateTimeParseException ex) {
+    		// Invalid input, show an error message
+            Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+            errorAlert.setTitle("Error");
+            errorAlert.setHeaderText(null);
+            errorAlert.setContentText("Please enter an interger bucket parameter and userid, and dates as dd/MM/yyyy HH:mm: "
+            		+ ex.getMessage());
+            errorAlert.showAndWait();
+            return;
     	}
+    	
+    	runInBackground("Computing shares distribution", m -> m.getSharesDistribution(scope, buckets), distribution -> {
+    		if (distribution != null) {
+    			view.displaySharesDistribution(distribution);
+    		} else {
+    			Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+                errorAlert.setTitle("Shares Distribution Error");
+                errorAlert.setHeaderText(null);
+                errorAlert.setContentText("The shares distribution could not be read");
+                errorAlert.showAndWait();
+    		}
+    	});
+    }
+    
+    /**
+     * Close the shares distribution and go back to the dashboard
+     * @param e
+     */
+    public void handleCloseSharesDistribution(Event e) {
+    	view.showDashboardScene(user);
     }
     
 
@@ -919,14 +1059,17 @@ public class Controller {
             successAlert.showAndWait();
             view.showDashboardScene(user);
     	} else {
-            String importName = view.getImportName();
-            String importFolder = view.getImportFolder();
-            //bulkImportPosts(importFolder, importName);
+    		view.showImportPostScene();
     	}
     }
     
     /**
-    public void bulkImportPosts(String importFolder, String importName) throws SQLException {
+     * Find the CSV file to import, telling the user when it is missing
+     * @param importFolder folder holding the file
+     * @param importName file name without the .csv extension
+     * @return the file, null if the folder or file does not exist
+     */
+    private File findImportFile(String importFolder, String importName) {
         File folder = new File(importFolder);
         if (!folder.exists() || !folder.isDirectory()) {
             Alert errorAlert = new Alert(Alert.AlertType.ERROR);
@@ -934,6 +1077,7 @@ public class Controller {
             errorAlert.setHeaderText(null);
             errorAlert.setContentText("Folder does not exist or is invalid");
             errorAlert.showAndWait();
+            return null;
         }
         
         File file = new File(folder, importName + ".csv");
@@ -943,66 +1087,11 @@ public class Controller {
             errorAlert.setHeaderText(null);
             errorAlert.setContentText("File does not exist");
             errorAlert.showAndWait();
+            return null;
         }
-        
-        try {
-            Scanner myReader = new Scanner(file);
-            boolean isHeaderLine = true; // header
-            while (myReader.hasNextLine()) {
-                String line = myReader.nextLine();
-                
-                // skip the header line
-                if (isHeaderLine) {
-                    isHeaderLine = false;
-                    continue;
-                }
-                
-                // Split the line by comma
-                String[] data = line.split(",");
-                
-                if (data.length != 6) {
-                    System.out.println("Error parsing the line, skipping line: " + line);
-                    continue;
-                }
-                
-                try {
-                    int postid = Integer.parseInt(data[0]);
-                    String content = data[1];
-                    String author = data[2];
-                    int likes = Integer.parseInt(data[3]);
-                    int shares = Integer.parseInt(data[4]);
-                    String dateTime = data[5];
-                    
-                    if(bulkImport(postid, user.getUserid(), content, author, likes, shares, dateTime)) {
-                        System.out.println("Successfully import line: " + line);
-                    }
-                    
-                    
-                } catch (NumberFormatException e) {
-                    // file exception for integer parameters
-                    System.out.println("Error parsing integer value, skipping line: " + line);
-                }
-            }
-        
-            myReader.close();
-
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
+        return file;
     }
     
-    
-    private boolean bulkImport(int postid, int userid, String content, String author, int likes, int shares, String dateTime) throws SQLException {
-        boolean ifSuccessful = model.bulkImport(postid, userid, content, author, likes, shares, dateTime);
-        if (ifSuccessful) {
-            // Create a new user in the database using the Model class
-            return true;
-        } else {
-            return false;
-        }
-    }
-    */
-    
     /**
      * 
      * @param e
@@ -1012,14 +1101,25 @@ public class Controller {
     }
     
     /**
-     * 
-     * @param e
+     * Handling Import Post Scene confirm event
+     * @param e import the file in the background and report the result, return to Dashboard after
      */
     public void handleConfirmImport(Event e) {
-    	//String importName = view.getImportName();
-		//String importFolder = view.getImportFolder();
-		view.showDashboardScene(user);
-		//bulkImportPosts(importFolder, importName);
+    	String importName = view.getImportName();
+		String importFolder = view.getImportFolder();
+		File file = findImportFile(importFolder, importName);
+		
+		if (file != null) {
+			int userid = user.getUserid();
+			runInBackground("Importing " + file.getName(), m -> m.importCsv(file, userid), result -> {
+				Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+	            successAlert.setTitle("Import Complete");
+	            successAlert.setHeaderText(null);
+	            successAlert.setContentText(result.toString());
+	            successAlert.showAndWait();
+	            view.showDashboardScene(user);
+			});
+		}
     }
     
     /**
@@ -0,0 +1,435 @@
+/*
+ * Class CsvPostReader
+ * Streaming reader for post import files (postid,content,author,likes,shares,datetime)
+ * Maps the file window by window and parses RFC 4180 fields straight from the mapped bytes:
+ * numeric and date fields are parsed without creating Strings, quoted fields may hold commas, quotes and line breaks
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+public class CsvPostReader implements Iterator<Post>, AutoCloseable {
+    // the file is mapped this many bytes at a time, a single record must fit in one window
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_MALFORMED_KEPT = 100;
+    private static final int FIELD_COUNT = 6;
+
+    // parseRecord results
+    private static final int RECORD = 0;
+    private static final int MALFORMED = 1;
+    private static final int BLANK = 2;
+    private static final int NEED_MORE = 3;
+    private static final int END = 4;
+
+    // parseField results
+    private static final int END_OF_FIELD = 0;
+    private static final int END_OF_RECORD = 1;
+    private static final int FIELD_NEEDS_MORE = 2;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int userid;
+
+    private ByteBuffer buffer;
+    private long bufferStart; // file offset of buffer index 0
+    private int limit;
+    private int pos;
+
+    private byte[] scratch = new byte[256];
+    private int scratchLength;
+    private boolean fieldValid;
+    private boolean fieldEmpty;
+
+    private boolean headerPending;
+    private long rowNumber;
+    private long malformedRows;
+    private final List<Long> malformedRowNumbers = new ArrayList<>();
+    private boolean lookahead;
+    private boolean hasRecord;
+
+    // fields of the current record
+    private int postid;
+    private String content;
+    private String author;
+    private int likes;
+    private int shares;
+    private long timestamp;
+
+    /**
+     * Constructor, opens the file and skips its header line
+     * @param file CSV file to import
+     * @param userid owner of the imported posts
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvPostReader(Path file, int userid) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.userid = userid;
+        this.headerPending = true;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Constructor for a chunk of whole records already in memory, as cut by the import pipeline
+     * @param records buffer holding complete records and no header line
+     * @param userid owner of the imported posts
+     */
+    public CsvPostReader(ByteBuffer records, int userid) {
+        this.channel = null;
+        this.buffer = records;
+        this.fileSize = records.limit();
+        this.limit = records.limit();
+        this.userid = userid;
+        this.headerPending = false;
+    }
+
+    /**
+     * Find where the record that ends at or after target finishes, tracking quotes from a record start
+     * @param buffer bytes to scan
+     * @param from offset of a record start
+     * @param target earliest offset the boundary may be at
+     * @param limit end of the bytes to scan
+     * @return offset just past the line break ending that record, -1 if it ends beyond limit
+     */
+    static int nextRecordBoundary(ByteBuffer buffer, int from, int target, int limit) {
+        boolean quoted = false;
+        for (int p = from; p < limit; p++) {
+            byte b = buffer.get(p);
+            if (b == '"') {
+                // a doubled quote toggles twice, so escaped quotes keep the state
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted && p >= target) {
+                return p + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Read the next well-formed record, malformed records are counted and skipped
+     * @return true if a record was read, false at the end of the file
+     * @throws UncheckedIOException if the file cannot be read or a record is larger than a window
+     */
+    public boolean readRecord() {
+        while (true) {
+            switch (parseRecord()) {
+                case RECORD:
+                    rowNumber++;
+                    if (headerPending) {
+                        headerPending = false;
+                        continue;
+                    }
+                    return true;
+                case MALFORMED:
+                    rowNumber++;
+                    if (headerPending) {
+                        headerPending = false;
+                        continue;
+                    }
+                    malformedRows++;
+                    if (malformedRowNumbers.size() < MAX_MALFORMED_KEPT) {
+                        malformedRowNumbers.add(rowNumber);
+                    }
+                    continue;
+                case BLANK:
+                    continue;
+                case NEED_MORE:
+                    remap();
+                    continue;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Parse the record starting at pos
+     * @return RECORD, MALFORMED, BLANK, END, or NEED_MORE with pos unchanged when the record crosses the window end
+     */
+    private int parseRecord() {
+        if (pos >= limit) {
+            return isLastWindow() ? END : NEED_MORE;
+        }
+        int start = pos;
+        boolean valid = true;
+        int field = 0;
+        while (true) {
+            int result = parseField(field);
+            if (result == FIELD_NEEDS_MORE) {
+                pos = start;
+                return NEED_MORE;
+            }
+            if (field == 0 && result == END_OF_RECORD && fieldEmpty) {
+                return BLANK;
+            }
+            valid &= fieldValid;
+            field++;
+            if (result == END_OF_RECORD) {
+                return valid && field == FIELD_COUNT ? RECORD : MALFORMED;
+            }
+        }
+    }
+
+    /**
+     * Parse one field at pos and store it in the matching record field
+     * @param index column of the field
+     * @return END_OF_FIELD, END_OF_RECORD or FIELD_NEEDS_MORE
+     */
+    private int parseField(int index) {
+        boolean numeric = index == 0 || index == 3 || index == 4;
+        boolean lastWindow = isLastWindow();
+        int p = pos;
+        long value = 0;
+        boolean digits = false;
+        scratchLength = 0;
+        fieldValid = index < FIELD_COUNT;
+        fieldEmpty = false;
+
+        if (p < limit && buffer.get(p) == '"') {
+            // Quoted field, "" stands for one quote
+            p++;
+            while (true) {
+                if (p >= limit) {
+                    if (!lastWindow) {
+                        return FIELD_NEEDS_MORE;
+                    }
+                    fieldValid = false; // unterminated quote
+                    break;
+                }
+                byte b = buffer.get(p++);
+                if (b == '"') {
+                    if (p >= limit && !lastWindow) {
+                        return FIELD_NEEDS_MORE;
+                    }
+                    if (p < limit && buffer.get(p) == '"') {
+                        append((byte) '"');
+                        p++;
+                        continue;
+                    }
+                    break;
+                }
+                append(b);
+            }
+            if (numeric) {
+                for (int i = 0; i < scratchLength; i++) {
+                    int digit = scratch[i] - '0';
+                    if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE) {
+                        fieldValid = false;
+                        break;
+                    }
+                    digits = true;
+                }
+            }
+        } else {
+            // Unquoted field, numeric columns are accumulated digit by digit
+            int fieldStart = p;
+            while (p < limit) {
+                byte b = buffer.get(p);
+                if (b == ',' || b == '\n' || b == '\r') {
+                    break;
+                }
+                if (numeric) {
+                    int digit = b - '0';
+                    if (digit < 0 || digit > 9 || (value = value * 10 + digit) > Integer.MAX_VALUE) {
+                        fieldValid = false;
+                        value = 0;
+                    }
+                    digits = true;
+                } else {
+                    append(b);
+                }
+                p++;
+            }
+            fieldEmpty = p == fieldStart;
+        }
+
+        // Anything between a closing quote and the delimiter makes the field malformed
+        while (p < limit) {
+            byte b = buffer.get(p);
+            if (b == ',' || b == '\n' || b == '\r') {
+                break;
+            }
+            fieldValid = false;
+            p++;
+        }
+
+        int result;
+        if (p >= limit) {
+            if (!lastWindow) {
+                return FIELD_NEEDS_MORE;
+            }
+            result = END_OF_RECORD;
+        } else if (buffer.get(p) == ',') {
+            p++;
+            result = END_OF_FIELD;
+        } else {
+            if (buffer.get(p) == '\r') {
+                p++;
+                if (p >= limit && !lastWindow) {
+                    return FIELD_NEEDS_MORE;
+                }
+            }
+            if (p < limit && buffer.get(p) == '\n') {
+                p++;
+            }
+            result = END_OF_RECORD;
+        }
+        pos = p;
+
+        if (numeric && !digits) {
+            fieldValid = false;
+        }
+        if (fieldValid) {
+            store(index, (int) value);
+        }
+        return result;
+    }
+
+    private void store(int index, int value) {
+        switch (index) {
+            case 0:
+                postid = value;
+                break;
+            case 1:
+                content = new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+                break;
+            case 2:
+                author = new String(scratch, 0, scratchLength, StandardCharsets.UTF_8);
+                break;
+            case 3:
+                likes = value;
+                break;
+            case 4:
+                shares = value;
+                break;
+            default:
+                timestamp = PostDates.parse(scratch, 0, scratchLength);
+                fieldValid = timestamp != PostDates.NONE;
+                break;
+        }
+    }
+
+    private void append(byte b) {
+        if (scratchLength == scratch.length) {
+            scratch = Arrays.copyOf(scratch, scratchLength * 2);
+        }
+        scratch[scratchLength++] = b;
+    }
+
+    private boolean isLastWindow() {
+        return bufferStart + limit >= fileSize;
+    }
+
+    /**
+     * Map the next window of the file, starting at the first unparsed byte
+     */
+    private void remap() {
+        long start = bufferStart + pos;
+        long size = Math.min(WINDOW_SIZE, fileSize - start);
+        if (start == bufferStart && size == limit) {
+            throw new UncheckedIOException(new IOException("CSV record at row " + (rowNumber + 1)
+                    + " is larger than " + WINDOW_SIZE + " bytes"));
+        }
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        bufferStart = start;
+        limit = (int) size;
+        pos = 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!lookahead) {
+            hasRecord = readRecord();
+            lookahead = true;
+        }
+        return hasRecord;
+    }
+
+    @Override
+    public Post next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        lookahead = false;
+        return toPost();
+    }
+
+    /**
+     * Create a Post from the current record
+     * @return post owned by the importing user
+     */
+    public Post toPost() {
+        return new Post(postid, userid, content, author, likes, shares, timestamp);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    // Getter of postid of the current record
+    public int getPostid() {
+        return postid;
+    }
+
+    // Getter of content of the current record
+    public String getContent() {
+        return content;
+    }
+
+    // Getter of author of the current record
+    public String getAuthor() {
+        return author;
+    }
+
+    // Getter of likes of the current record
+    public int getLikes() {
+        return likes;
+    }
+
+    // Getter of shares of the current record
+    public int getShares() {
+        return shares;
+    }
+
+    // Getter of timestamp of the current record, in epoch milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // Getter of the number of records skipped because they were malformed
+    public long getMalformedRows() {
+        return malformedRows;
+    }
+
+    // Getter of the row numbers (header is row 1) of the first malformed records
+    public List<Long> getMalformedRowNumbers() {
+        return malformedRowNumbers;
+    }
+
+    // Getter of the offset of the next record in the current window, for a chunk the bytes read so far
+    int getPosition() {
+        return pos;
+    }
+}
\ No newline at end of file
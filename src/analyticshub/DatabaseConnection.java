@@ -0,0 +1,125 @@
+/*
+ * Class DatabaseConnection
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+public class DatabaseConnection {
+	
+    // server-side prepared statements, so the pooled statement cache skips re-parsing on the server too
+    // rewritten batches, so executeBatch sends one multi-row INSERT instead of a round trip per row
+    // cursor fetch, so a statement with a fetch size streams its rows instead of loading the whole result
+    private static final String URL = "jdbc:mysql://127.0.0.1:3306/gmcc?useServerPrepStmts=true&rewriteBatchedStatements=true&useCursorFetch=true";
+    private static final String USER = "root";
+    private static final String PASSWORD = "test";
+    
+    // Connection pool settings
+    private static final int POOL_MAX_SIZE = 10;
+    private static final int POOL_MIN_IDLE = 2;
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = 5_000;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 10 * 60_000;
+    private static final long POOL_MAX_LIFETIME_MILLIS = 30 * 60_000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    
+    // Storage engine, chosen with -Danalyticshub.storage=mysql|embedded|memory|log
+    public static final String STORAGE_PROPERTY = "analyticshub.storage";
+    private static final String DEFAULT_STORAGE = "mysql";
+    // Embedded H2 database files, chosen with -Danalyticshub.embedded.path=<path without extension>
+    public static final String EMBEDDED_PATH_PROPERTY = "analyticshub.embedded.path";
+    private static final String DEFAULT_EMBEDDED_PATH = "data/analyticshub";
+    // Segment files of the log engine, chosen with -Danalyticshub.log.path=<directory>
+    public static final String LOG_PATH_PROPERTY = "analyticshub.log.path";
+    private static final String DEFAULT_LOG_PATH = "data/postlog";
+    // Saved quantile sketches, chosen with -Danalyticshub.sketches.path=<file>
+    public static final String SKETCHES_PATH_PROPERTY = "analyticshub.sketches.path";
+    private static final String DEFAULT_SKETCHES_DIRECTORY = "data";
+    
+    public static Connection connect() throws SQLException {
+        return DriverManager.getConnection(URL, USER, PASSWORD);
+    }
+    
+    /**
+     * Create the connection pool used by the Model, connections are opened on first borrow
+     * @return pool for the application database
+     */
+    public static ConnectionPool createPool() {
+        return new ConnectionPool(URL, USER, PASSWORD, POOL_MAX_SIZE, POOL_MIN_IDLE,
+                POOL_BORROW_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_MAX_LIFETIME_MILLIS, STATEMENT_CACHE_SIZE);
+    }
+    
+    /**
+     * Database Setup
+     * Create the tables and indexes by running the pending schema migrations
+     * @param pool pool to borrow the setup connection from
+     * @throws SQLException
+     */
+    public static void createTables(ConnectionPool pool) throws SQLException {
+        try {
+            SchemaMigrations.migrate(pool);
+        } catch (SQLException ex) {
+        	throw new SQLException("Failed to create tables.", ex);
+        }
+    }
+    
+    /**
+     * Open the storage engine named by the analyticshub.storage system property, mysql when unset
+     * mysql: the MySQL server above, embedded: an H2 database in this process, stored in files on local disk,
+     * memory: users and posts kept in memory until exit, log: an append-only log of memory-mapped files on local disk
+     * The tables of the JDBC engines are created or migrated before the engine is returned
+     * @return storage engine, closing it closes its connections
+     * @throws SQLException if the database cannot be opened
+     * @throws IllegalArgumentException if the engine name is unknown
+     */
+    public static StorageEngine openStorage() throws SQLException {
+        String engine = System.getProperty(STORAGE_PROPERTY, DEFAULT_STORAGE);
+        switch (engine) {
+            case "mysql":
+                return openJdbcStorage(engine, createPool(), false);
+            case "embedded":
+                // MODE=MySQL so the same SQL runs; this process is the only writer, so it assigns the ids
+                // H2 refuses paths relative to the working directory unless they are made absolute
+                String path = Paths.get(System.getProperty(EMBEDDED_PATH_PROPERTY, DEFAULT_EMBEDDED_PATH)).toAbsolutePath().toString();
+                ConnectionPool pool = new ConnectionPool("jdbc:h2:file:" + path + ";MODE=MySQL", "sa", "", POOL_MAX_SIZE, POOL_MIN_IDLE,
+                        POOL_BORROW_TIMEOUT_MILLIS, POOL_IDLE_TIMEOUT_MILLIS, POOL_MAX_LIFETIME_MILLIS, STATEMENT_CACHE_SIZE);
+                return openJdbcStorage(engine, pool, true);
+            case "memory":
+                return new MemoryStorage();
+            case "log":
+                return new LogStorage(Paths.get(System.getProperty(LOG_PATH_PROPERTY, DEFAULT_LOG_PATH)),
+                        LogStorage.DEFAULT_SEGMENT_SIZE, true);
+            default:
+                throw new IllegalArgumentException("Unknown storage engine " + engine + ", expected mysql, embedded, memory or log");
+        }
+    }
+    
+    /**
+     * File the quantile sketches of a storage engine are saved to between runs
+     * @param storage engine whose posts are sketched
+     * @return file, null for the memory engine whose posts do not outlive the process
+     */
+    public static Path sketchesPath(StorageEngine storage) {
+        if (storage instanceof MemoryStorage) {
+            return null;
+        }
+        String path = System.getProperty(SKETCHES_PATH_PROPERTY);
+        return path != null ? Paths.get(path) : Paths.get(DEFAULT_SKETCHES_DIRECTORY, "sketches-" + storage.getName() + ".bin");
+    }
+    
+    private static StorageEngine openJdbcStorage(String name, ConnectionPool pool, boolean assignIds) throws SQLException {
+        try {
+            createTables(pool);
+            return new JdbcStorage(name, pool, assignIds, true);
+        } catch (SQLException ex) {
+            pool.close();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Class DistinctAuthors
+ * HyperLogLog counts of the distinct authors of the posts, over all posts, per user and per day, kept current
+ * as the post columns change
+ * Every added or imported post adds its author to the global sketch, its user's and its day's; a count over
+ * several users or days merges their sketches. A deleted post's author cannot be taken out of a sketch, so it
+ * is still counted until the columns are next rebuilt, which recounts every sketch
+ * Posts without an author, which older databases may hold, are not counted, as COUNT(DISTINCT author) skips NULL
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class DistinctAuthors implements PostColumns.Listener {
+    // a user's or a day's sketch is 4 KB, within about 1.6% of the true count
+    public static final int PARTITION_PRECISION = 12;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final PostColumns columns;
+    // guarded by this
+    private HyperLogLog global = new HyperLogLog();
+    private Map<Integer, HyperLogLog> byUser = new HashMap<>();
+    // by days since 1 January 1970, see Aggregators.DAY
+    private NavigableMap<Long, HyperLogLog> byDay = new TreeMap<>();
+    // hashes by author code, so an author's name is hashed once
+    private long[] authorHashes = new long[0];
+    private long removedSinceRebuild;
+
+    /**
+     * Constructor, registers with the columns to follow their changes and counts the rows they already hold
+     * @param columns post columns whose authors are counted
+     */
+    DistinctAuthors(PostColumns columns) {
+        this.columns = columns;
+        columns.addListener(this);
+        // the columns' lock first, as when the columns call the listener methods
+        columns.readLock().lock();
+        try {
+            synchronized (this) {
+                addLiveRows();
+            }
+        } finally {
+            columns.readLock().unlock();
+        }
+    }
+
+    private void addLiveRows() {
+        for (int row = 0; row < columns.getRowCount(); row++) {
+            if (columns.isLive(row)) {
+                rowAdded(row);
+            }
+        }
+    }
+
+    /**
+     * @param timestamp milliseconds since 1 January 1970 UTC
+     * @return day of the timestamp, as the per day counts are keyed
+     */
+    public static long dayOf(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MILLIS);
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        int code = columns.getAuthorCode(row);
+        if (columns.getAuthor(code) == null) {
+            return;
+        }
+        long hash = authorHash(code);
+        global.addHash(hash);
+        byUser.computeIfAbsent(columns.getUserid(row), userid -> new HyperLogLog(PARTITION_PRECISION)).addHash(hash);
+        long day = Aggregators.DAY.get(columns, row);
+        if (day != Long.MIN_VALUE) {
+            byDay.computeIfAbsent(day, d -> new HyperLogLog(PARTITION_PRECISION)).addHash(hash);
+        }
+    }
+
+    private long authorHash(int code) {
+        if (code >= authorHashes.length) {
+            int length = Math.max(code + 1, authorHashes.length * 2);
+            long[] grown = new long[length];
+            System.arraycopy(authorHashes, 0, grown, 0, authorHashes.length);
+            // 0 marks a hash not computed yet, an author hashing to 0 is merely hashed again
+            authorHashes = grown;
+        }
+        long hash = authorHashes[code];
+        if (hash == 0) {
+            hash = HyperLogLog.hash(columns.getAuthor(code));
+            authorHashes[code] = hash;
+        }
+        return hash;
+    }
+
+    // the author stays counted until the next rebuild
+    @Override
+    public synchronized void rowRemoved(int row) {
+        removedSinceRebuild++;
+    }
+
+    /**
+     * Recount every sketch from the rebuilt columns, forgetting the authors of deleted posts
+     */
+    @Override
+    public synchronized void rebuilt() {
+        global = new HyperLogLog();
+        byUser = new HashMap<>();
+        byDay = new TreeMap<>();
+        // the author codes are renumbered by a rebuild
+        authorHashes = new long[0];
+        removedSinceRebuild = 0;
+        // the columns' write lock is held by this thread, so the rows can be read directly
+        addLiveRows();
+    }
+
+    // Estimated number of distinct authors over every post
+    public synchronized long count() {
+        return global.estimate();
+    }
+
+    /**
+     * @param userid owner of the posts
+     * @return estimated number of distinct authors of the user's posts
+     */
+    public synchronized long countByUser(int userid) {
+        HyperLogLog sketch = byUser.get(userid);
+        return sketch == null ? 0 : sketch.estimate();
+    }
+
+    /**
+     * @param userids owners of the posts
+     * @return estimated number of distinct authors of the posts of any of the users, each author counted once
+     */
+    public synchronized long countByUsers(Collection<Integer> userids) {
+        HyperLogLog union = new HyperLogLog(PARTITION_PRECISION);
+        for (Integer userid : userids) {
+            HyperLogLog sketch = byUser.get(userid);
+            if (sketch != null) {
+                union.merge(sketch);
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * @param fromDay first day, in days since 1 January 1970 UTC
+     * @param toDay last day, inclusive
+     * @return estimated number of distinct authors of the posts of those days, each author counted once
+     */
+    public synchronized long countByDays(long fromDay, long toDay) {
+        HyperLogLog union = new HyperLogLog(PARTITION_PRECISION);
+        if (fromDay <= toDay) {
+            for (HyperLogLog sketch : byDay.subMap(fromDay, true, toDay, true).values()) {
+                union.merge(sketch);
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * @param fromDay first day, in days since 1 January 1970 UTC
+     * @param toDay last day, inclusive
+     * @return estimated number of distinct authors of each day with posts, in day order
+     */
+    public synchronized NavigableMap<Long, Long> countPerDay(long fromDay, long toDay) {
+        NavigableMap<Long, Long> counts = new TreeMap<>();
+        if (fromDay <= toDay) {
+            for (Map.Entry<Long, HyperLogLog> day : byDay.subMap(fromDay, true, toDay, true).entrySet()) {
+                counts.put(day.getKey(), day.getValue().estimate());
+            }
+        }
+        return counts;
+    }
+
+    // Getter of the number of posts deleted since the last rebuild, whose authors may be overcounted
+    public synchronized long getRemovedSinceRebuild() {
+        return removedSinceRebuild;
+    }
+
+    // Getter of the memory held by the sketches' registers, in bytes
+    public synchronized long getSketchBytes() {
+        return (1L << global.getPrecision()) + ((long) byUser.size() + byDay.size()) * (1L << PARTITION_PRECISION);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DistinctAuthors[authors=" + global.estimate() + ", users=" + byUser.size() + ", days=" + byDay.size() + "]";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Class ExportEvent
+ * Java Flight Recorder event for one post exported to CSV, from the dashboard or the service API
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("analytics.Export")
+@Label("Post Export")
+@Category({ "Data Analytics Hub", "Export" })
+@Threshold("0 ms")
+@StackTrace(false)
+class ExportEvent extends jdk.jfr.Event {
+    @Label("Postid")
+    int postid;
+
+    @Label("Destination")
+    String destination;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+}
@@ -0,0 +1,165 @@
+/*
+ * Class HyperLogLog
+ * Approximate count of distinct values in a fixed amount of memory: each value's 64-bit hash picks one of 2^p
+ * registers by its top p bits, and the register keeps the longest run of leading zeros seen in the remaining bits
+ * With 2^p registers the count is within about 1.04 / sqrt(2^p) of the true one, 0.8% for the default p = 14
+ * The estimate is kept current as registers change, so reading it is O(1); sketches of the same precision
+ * merge by taking the larger of each register, which counts the union of their values
+ * A value cannot be removed, a sketch is rebuilt instead
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 14;
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 16;
+
+    private final int precision;
+    private final byte[] registers;
+    // sum of 2^-register over every register and the number of registers still 0, updated as registers grow
+    private double inverseSum;
+    private int zeroRegisters;
+
+    // Constructor with 2^14 registers, 16 KB
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructor
+     * @param precision p, the sketch has 2^p one-byte registers, between MIN_PRECISION and MAX_PRECISION
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.inverseSum = registers.length;
+        this.zeroRegisters = registers.length;
+    }
+
+    /**
+     * 64-bit hash of a string for addHash, FNV-1a over its UTF-8 bytes then the MurmurHash3 finalizer,
+     * so that the leading bits are as evenly spread as the trailing ones
+     * @param value string, such as an author
+     * @return hash
+     */
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Count a string
+     * @param value value, counted once however often it is added
+     */
+    public void add(String value) {
+        addHash(hash(value));
+    }
+
+    /**
+     * Count a value by its hash, see hash
+     * @param hash 64-bit hash of the value
+     * @return true if a register grew, false if the estimate is unchanged
+     */
+    public boolean addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // a sentinel bit caps the rank when every remaining bit is 0
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        return raise(index, rank);
+    }
+
+    private boolean raise(int index, int rank) {
+        int current = registers[index];
+        if (rank <= current) {
+            return false;
+        }
+        registers[index] = (byte) rank;
+        inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -current);
+        if (current == 0) {
+            zeroRegisters--;
+        }
+        return true;
+    }
+
+    /**
+     * Add the registers of another sketch, this one then counts the values of both
+     * @param other sketch of the same precision
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Sketches of different precisions cannot be merged");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            raise(i, other.registers[i]);
+        }
+    }
+
+    /**
+     * Estimated number of distinct values added, read in constant time
+     * Small counts use linear counting over the empty registers, which is more accurate while many are empty
+     * @return estimate
+     */
+    public long estimate() {
+        int m = registers.length;
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / inverseSum;
+        if (estimate <= 2.5 * m && zeroRegisters > 0) {
+            estimate = m * Math.log((double) m / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    // Getter of p, the sketch has 2^p registers
+    public int getPrecision() {
+        return precision;
+    }
+
+    // Getter of the typical relative error of estimate, one standard deviation
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    // true if nothing has been added
+    public boolean isEmpty() {
+        return zeroRegisters == registers.length;
+    }
+
+    // Copy, to merge into without changing this sketch
+    public HyperLogLog copy() {
+        HyperLogLog copy = new HyperLogLog(precision);
+        copy.merge(this);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog[precision=" + precision + ", estimate=" + estimate() + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HyperLogLog && Arrays.equals(((HyperLogLog) other).registers, registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+}
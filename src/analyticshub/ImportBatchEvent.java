@@ -0,0 +1,44 @@
+/*
+ * Class ImportBatchEvent
+ * Java Flight Recorder event for one batch written by the import pipeline
+ * The event spans the database write; the time a parser spent building the batch is a field, so a recording
+ * shows whether parsing or writing limits an import
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+@Name("analytics.ImportBatch")
+@Label("Import Batch")
+@Description("A batch of posts parsed from a CSV chunk and inserted with one executeBatch")
+@Category({ "Data Analytics Hub", "Import" })
+@Threshold("0 ms")
+@StackTrace(false)
+class ImportBatchEvent extends jdk.jfr.Event {
+    @Label("Rows")
+    int rows;
+
+    @Label("Bytes")
+    @Description("CSV bytes the rows were parsed from")
+    @DataAmount
+    long bytes;
+
+    @Label("Parse Time")
+    @Timespan
+    long parseTime;
+
+    @Label("Failed")
+    @Description("The batch was rolled back with its transaction")
+    boolean failed;
+}
@@ -0,0 +1,379 @@
+/*
+ * Class ImportPipeline
+ * Parallel CSV import in three stages connected by bounded queues:
+ * a reader cuts the mapped file into chunks on record boundaries, parser threads turn chunks into post batches,
+ * and writer threads insert the batches, each in its own PostWriter session
+ * Full queues block the stage in front of them, so a slow database throttles parsing instead of filling the heap
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImportPipeline {
+    private static final int WINDOW_SIZE = 256 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+
+    // end-of-stream markers, compared by identity
+    private static final ByteBuffer LAST_CHUNK = ByteBuffer.allocate(0);
+    private static final ParsedBatch LAST_BATCH = new ParsedBatch(Collections.emptyList(), 0, 0);
+
+    private final Model model;
+    private final PostStore store;
+    private final int parserThreads;
+    private final int writerThreads;
+    private final int batchSize;
+    private final int commitInterval;
+
+    // stage counters, times are spent blocked on a full queue (put) or an empty one (take)
+    private final AtomicLong chunksRead = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong readerBlockedNanos = new AtomicLong();
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong batchesParsed = new AtomicLong();
+    private final AtomicLong parserIdleNanos = new AtomicLong();
+    private final AtomicLong parserBlockedNanos = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong writerIdleNanos = new AtomicLong();
+
+    /**
+     * Posts parsed together, with what parsing them cost for the ImportBatchEvent
+     */
+    private static final class ParsedBatch {
+        private final List<Post> posts;
+        private final long bytes;
+        private final long parseNanos;
+
+        private ParsedBatch(List<Post> posts, long bytes, long parseNanos) {
+            this.posts = posts;
+            this.bytes = bytes;
+            this.parseNanos = parseNanos;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param model model doing the batch inserts
+     * @param store store the writers open their sessions on, it needs to allow at least writerThreads sessions
+     * @param parserThreads number of threads parsing chunks, around the number of spare cores
+     * @param writerThreads number of threads inserting batches, each holds one session
+     * @param batchSize rows per JDBC batch
+     * @param commitInterval batches per transaction on each writer
+     */
+    ImportPipeline(Model model, PostStore store, int parserThreads, int writerThreads, int batchSize, int commitInterval) {
+        if (parserThreads <= 0 || writerThreads <= 0 || writerThreads > store.getMaxWriters()) {
+            throw new IllegalArgumentException("Invalid import threads: " + parserThreads + " parsers, "
+                    + writerThreads + " writers, store allows " + store.getMaxWriters());
+        }
+        this.model = model;
+        this.store = store;
+        this.parserThreads = parserThreads;
+        this.writerThreads = writerThreads;
+        this.batchSize = batchSize;
+        this.commitInterval = commitInterval;
+    }
+
+    /**
+     * Import a CSV file with a header line, blocking until every stage has finished
+     * @param file CSV file (postid,content,author,likes,shares,datetime)
+     * @param userid owner of the imported posts
+     * @return rows inserted, rows rejected and rows per second
+     */
+    public ImportResult run(Path file, int userid) {
+        ImportResult result = new ImportResult();
+        BlockingQueue<ByteBuffer> chunks = new ArrayBlockingQueue<>(parserThreads * 2);
+        BlockingQueue<ParsedBatch> batches = new ArrayBlockingQueue<>(writerThreads * 2);
+        AtomicInteger runningParsers = new AtomicInteger(parserThreads);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(1 + parserThreads + writerThreads, r -> {
+            Thread thread = new Thread(r, "import-pipeline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            executor.execute(() -> read(file, chunks, result));
+            for (int i = 0; i < parserThreads; i++) {
+                executor.execute(() -> parse(chunks, batches, runningParsers, userid, result));
+            }
+            for (int i = 0; i < writerThreads; i++) {
+                executor.execute(() -> write(batches, result));
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            result.addFailure(-1, "Import interrupted");
+        }
+        result.finish();
+        return result;
+    }
+
+    /**
+     * Reader stage: map the file window by window and queue chunks of whole records
+     */
+    private void read(Path file, BlockingQueue<ByteBuffer> chunks, ImportResult result) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long offset = 0;
+            boolean header = true;
+            while (offset < size) {
+                int windowSize = (int) Math.min(WINDOW_SIZE, size - offset);
+                boolean lastWindow = offset + windowSize >= size;
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, offset, windowSize);
+
+                int start = 0;
+                if (header) {
+                    start = CsvPostReader.nextRecordBoundary(window, 0, 0, windowSize);
+                    if (start < 0) {
+                        break; // header only
+                    }
+                    header = false;
+                }
+                while (start < windowSize) {
+                    int end = CsvPostReader.nextRecordBoundary(window, start, start + CHUNK_SIZE, windowSize);
+                    if (end < 0) {
+                        if (!lastWindow) {
+                            break; // the partial record is read again from the next window
+                        }
+                        end = windowSize;
+                    }
+                    long blockedFrom = System.nanoTime();
+                    chunks.put(window.slice(start, end - start));
+                    readerBlockedNanos.addAndGet(System.nanoTime() - blockedFrom);
+                    chunksRead.incrementAndGet();
+                    bytesRead.addAndGet(end - start);
+                    start = end;
+                }
+                if (start == 0) {
+                    throw new IOException("CSV record at offset " + offset + " is larger than " + WINDOW_SIZE + " bytes");
+                }
+                offset += start;
+            }
+        } catch (IOException ex) {
+            result.addFailure(-1, "Import file could not be read: " + ex.getMessage());
+            ex.printStackTrace();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (int i = 0; i < parserThreads; i++) {
+                putQuietly(chunks, LAST_CHUNK);
+            }
+        }
+    }
+
+    /**
+     * Parser stage: turn chunks into batches of posts, the last parser to finish stops the writers
+     */
+    private void parse(BlockingQueue<ByteBuffer> chunks, BlockingQueue<ParsedBatch> batches,
+            AtomicInteger runningParsers, int userid, ImportResult result) {
+        try {
+            while (true) {
+                long idleFrom = System.nanoTime();
+                ByteBuffer chunk = chunks.take();
+                parserIdleNanos.addAndGet(System.nanoTime() - idleFrom);
+                if (chunk == LAST_CHUNK) {
+                    break;
+                }
+
+                CsvPostReader reader = new CsvPostReader(chunk, userid);
+                List<Post> batch = new ArrayList<>(batchSize);
+                long batchStart = System.nanoTime();
+                int batchOffset = 0;
+                while (reader.readRecord()) {
+                    batch.add(reader.toPost());
+                    if (batch.size() == batchSize) {
+                        queueBatch(batches, new ParsedBatch(batch, reader.getPosition() - batchOffset,
+                                System.nanoTime() - batchStart));
+                        batch = new ArrayList<>(batchSize);
+                        batchStart = System.nanoTime();
+                        batchOffset = reader.getPosition();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    queueBatch(batches, new ParsedBatch(batch, chunk.limit() - batchOffset,
+                            System.nanoTime() - batchStart));
+                }
+                // row numbers inside a chunk do not match the file, only the count is reported
+                result.addMalformedRows(reader.getMalformedRows(), Collections.emptyList());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningParsers.decrementAndGet() == 0) {
+                for (int i = 0; i < writerThreads; i++) {
+                    putQuietly(batches, LAST_BATCH);
+                }
+            }
+        }
+    }
+
+    private void queueBatch(BlockingQueue<ParsedBatch> batches, ParsedBatch batch) throws InterruptedException {
+        long blockedFrom = System.nanoTime();
+        batches.put(batch);
+        parserBlockedNanos.addAndGet(System.nanoTime() - blockedFrom);
+        rowsParsed.addAndGet(batch.posts.size());
+        batchesParsed.incrementAndGet();
+    }
+
+    /**
+     * Writer stage: insert batches in one PostWriter session, committing every commitInterval batches
+     * If the session fails the writer keeps draining its queue so the other stages never block forever
+     */
+    private void write(BlockingQueue<ParsedBatch> batches, ImportResult result) {
+        PostWriter writer = null;
+        List<Post> uncommitted = new ArrayList<>();
+        long uncommittedRows = 0;
+        int uncommittedBatches = 0;
+        try {
+            while (true) {
+                long idleFrom = System.nanoTime();
+                ParsedBatch parsed = batches.take();
+                writerIdleNanos.addAndGet(System.nanoTime() - idleFrom);
+                if (parsed == LAST_BATCH) {
+                    break;
+                }
+                List<Post> batch = parsed.posts;
+                ImportBatchEvent event = new ImportBatchEvent();
+                event.begin();
+                boolean written = false;
+                try {
+                    if (writer == null) {
+                        writer = store.openWriter();
+                    }
+                    uncommittedRows += model.writeBatch(writer, batch, result, uncommitted);
+                    written = true;
+                    batchesWritten.incrementAndGet();
+                    commitEvent(event, parsed, false);
+                    if (++uncommittedBatches == commitInterval) {
+                        writer.commit();
+                        result.addInserted(uncommittedRows);
+                        model.postsCommitted(uncommitted);
+                        uncommittedRows = 0;
+                        uncommittedBatches = 0;
+                    }
+                } catch (SQLException ex) {
+                    // the transaction is lost, drop the session and start over on a new one
+                    // a written batch is already counted in uncommittedRows
+                    result.addAbortedRows(uncommittedRows + (written ? 0 : batch.size()), ex.getMessage());
+                    ex.printStackTrace();
+                    commitEvent(event, parsed, true);
+                    uncommitted.clear();
+                    uncommittedRows = 0;
+                    uncommittedBatches = 0;
+                    if (writer != null) {
+                        writer.close();
+                        writer = null;
+                    }
+                }
+            }
+            if (writer != null) {
+                writer.commit();
+                result.addInserted(uncommittedRows);
+                model.postsCommitted(uncommitted);
+            }
+        } catch (SQLException ex) {
+            result.addAbortedRows(uncommittedRows, ex.getMessage());
+            ex.printStackTrace();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static void commitEvent(ImportBatchEvent event, ParsedBatch parsed, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.rows = parsed.posts.size();
+            event.bytes = parsed.bytes;
+            event.parseTime = parsed.parseNanos;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    private static <T> void putQuietly(BlockingQueue<T> queue, T item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Getter of the chunks cut by the reader
+    public long getChunksRead() {
+        return chunksRead.get();
+    }
+
+    // Getter of the bytes handed to the parsers
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    // Getter of the rows the parsers queued for writing
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    // Getter of the batches the parsers queued for writing
+    public long getBatchesParsed() {
+        return batchesParsed.get();
+    }
+
+    // Getter of the batches the writers executed
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    // Getter of the time the reader waited for parsers, high means parsers are the bottleneck
+    public long getReaderBlockedMillis() {
+        return readerBlockedNanos.get() / 1_000_000;
+    }
+
+    // Getter of the total time parsers waited for chunks, high means the reader is the bottleneck
+    public long getParserIdleMillis() {
+        return parserIdleNanos.get() / 1_000_000;
+    }
+
+    // Getter of the total time parsers waited for writers, high means writers are the bottleneck
+    public long getParserBlockedMillis() {
+        return parserBlockedNanos.get() / 1_000_000;
+    }
+
+    // Getter of the total time writers waited for batches, high means parsers are the bottleneck
+    public long getWriterIdleMillis() {
+        return writerIdleNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportPipeline[parsers=" + parserThreads + ", writers=" + writerThreads
+                + ", chunks=" + getChunksRead() + ", bytes=" + getBytesRead()
+                + ", rowsParsed=" + getRowsParsed() + ", batches=" + getBatchesParsed() + "/" + getBatchesWritten()
+                + ", readerBlockedMs=" + getReaderBlockedMillis() + ", parserIdleMs=" + getParserIdleMillis()
+                + ", parserBlockedMs=" + getParserBlockedMillis() + ", writerIdleMs=" + getWriterIdleMillis() + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,131 @@
+/*
+ * Class ImportResult
+ * Counters for one bulk import: rows inserted, rows rejected, batches written and throughput
+ * Safe to update from several writer threads
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ImportResult {
+    // only the first few rejected rows are kept, the rest are just counted
+    private static final int MAX_ERRORS_KEPT = 100;
+
+    private final AtomicLong rowsInserted = new AtomicLong();
+    private final AtomicLong rowsFailed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+    private final long startNanos;
+    private volatile long elapsedNanos = -1;
+
+    /**
+     * Constructor, starts the clock
+     */
+    public ImportResult() {
+        this.startNanos = System.nanoTime();
+    }
+
+    void addInserted(long rows) {
+        rowsInserted.addAndGet(rows);
+    }
+
+    void addBatch() {
+        batches.incrementAndGet();
+    }
+
+    /**
+     * Record a rejected row
+     * @param postid postid of the row, or the line number when the row could not be parsed
+     * @param reason why the row was rejected
+     */
+    void addFailure(long postid, String reason) {
+        rowsFailed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS_KEPT) {
+                errors.add(postid + ": " + reason);
+            }
+        }
+    }
+
+    /**
+     * Record rows lost when their transaction could not be committed
+     * @param rows number of rows rolled back
+     * @param reason why the transaction failed
+     */
+    void addAbortedRows(long rows, String reason) {
+        rowsFailed.addAndGet(rows);
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS_KEPT) {
+                errors.add(rows + " rows rolled back: " + reason);
+            }
+        }
+    }
+
+    /**
+     * Record rows the CSV reader skipped before they reached the database
+     * @param rows number of malformed rows
+     * @param rowNumbers row numbers of the first malformed rows
+     */
+    void addMalformedRows(long rows, List<Long> rowNumbers) {
+        rowsFailed.addAndGet(rows);
+        synchronized (errors) {
+            for (Long rowNumber : rowNumbers) {
+                if (errors.size() == MAX_ERRORS_KEPT) {
+                    break;
+                }
+                errors.add("row " + rowNumber + ": malformed CSV record");
+            }
+        }
+    }
+
+    // Stop the clock, the import is complete
+    void finish() {
+        elapsedNanos = System.nanoTime() - startNanos;
+    }
+
+    // Getter of rows committed to the database
+    public long getRowsInserted() {
+        return rowsInserted.get();
+    }
+
+    // Getter of rows rejected by the parser or the database
+    public long getRowsFailed() {
+        return rowsFailed.get();
+    }
+
+    // Getter of JDBC batches executed
+    public long getBatches() {
+        return batches.get();
+    }
+
+    // Getter of the first rejected rows and their reasons
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    // Getter of the import duration in milliseconds, up to now while still running
+    public long getElapsedMillis() {
+        long elapsed = elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startNanos;
+        return elapsed / 1_000_000;
+    }
+
+    // Getter of the insert throughput
+    public double getRowsPerSecond() {
+        long millis = Math.max(1, getElapsedMillis());
+        return getRowsInserted() * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d rows (%d failed) in %d batches, %.1f s, %.0f rows/s",
+                getRowsInserted(), getRowsFailed(), getBatches(), getElapsedMillis() / 1000.0, getRowsPerSecond());
+    }
+}
\ No newline at end of file
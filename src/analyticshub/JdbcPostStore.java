@@ -0,0 +1,352 @@
+/*
+ * Class JdbcPostStore
+ * Posts in the social_media_posts table, one pooled connection borrowed per call
+ * Top N and keyset pages are served by the (userid, likes) and likes indexes
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class JdbcPostStore implements PostStore {
+    private static final String RANKED_COLUMNS = "postid, userid, content, author, likes, shares, date_time";
+    // rows fetched per round trip while a page or the leaderboard load is read, needs useCursorFetch on MySQL
+    private static final int FETCH_SIZE = 1000;
+    // pages start this small and grow, so a large page on a small table does not allocate up front
+    private static final int RANKED_INITIAL_CAPACITY = 1024;
+    private static final String INSERT_POST = "INSERT INTO social_media_posts (userid, content, author, likes, shares, date_time) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_POST_WITH_ID = "INSERT INTO social_media_posts (postid, userid, content, author, likes, shares, date_time) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final ConnectionPool pool;
+    // next postid when the store assigns them, null when the database's AUTO_INCREMENT does
+    private final AtomicInteger nextPostid;
+
+    /**
+     * Constructor
+     * @param pool connection pool, the tables must exist
+     * @param assignIds true to assign postids in this process instead of by AUTO_INCREMENT
+     * @throws SQLException if the highest postid cannot be read
+     */
+    JdbcPostStore(ConnectionPool pool, boolean assignIds) throws SQLException {
+        this.pool = pool;
+        this.nextPostid = assignIds ? new AtomicInteger(JdbcStorage.maxId(pool, "postid", "social_media_posts") + 1) : null;
+    }
+
+    @Override
+    public boolean isPostidExist(int postid) throws SQLException {
+        String query = "SELECT postid FROM social_media_posts WHERE postid = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setInt(1, postid);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    @Override
+    public Post addPost(int userid, String content, String author, int likes, int shares, long timestamp) throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            if (nextPostid != null) {
+                Post post = new Post(nextPostid.getAndIncrement(), userid, content, author, likes, shares, timestamp);
+                PreparedStatement statement = pooled.prepare(INSERT_POST_WITH_ID);
+                bindPost(statement, post);
+                return statement.executeUpdate() > 0 ? post : null;
+            }
+            PreparedStatement statement = pooled.prepare(INSERT_POST, Statement.RETURN_GENERATED_KEYS);
+            statement.setInt(1, userid);
+            statement.setString(2, content);
+            statement.setString(3, author);
+            statement.setInt(4, likes);
+            statement.setInt(5, shares);
+            statement.setObject(6, PostDates.toLocalDateTime(timestamp));
+
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                return keys.next() ? new Post(keys.getInt(1), userid, content, author, likes, shares, timestamp) : null;
+            }
+        }
+    }
+
+    @Override
+    public Post getPostByPostid(int postid) throws SQLException {
+        String query = "SELECT * FROM social_media_posts WHERE postid = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setInt(1, postid);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    // Retrieve post data from the result set
+                    int userid = resultSet.getInt("userid");
+                    String content = resultSet.getString("content");
+                    String author = resultSet.getString("author");
+                    int likes = resultSet.getInt("likes");
+                    int shares = resultSet.getInt("shares");
+                    long timestamp = PostDates.toTimestamp(resultSet.getObject("date_time", LocalDateTime.class));
+                    // create new Post to store the post information
+                    return new Post(postid, userid, content, author, likes, shares, timestamp);
+                } else {
+                    return null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean deletePostByPostid(int postid) throws SQLException {
+        String query = "DELETE FROM social_media_posts WHERE postid = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setInt(1, postid);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * The keyset predicate is written as a range on likes so the likes indexes serve it
+     */
+    @Override
+    public RankedPosts readPostPage(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) throws SQLException {
+        String where = userid != null ? "userid = ?" : "";
+        if (after) {
+            where += (where.isEmpty() ? "" : " AND ") + "likes <= ? AND (likes < ? OR postid > ?)";
+        }
+        String query = "SELECT " + RANKED_COLUMNS + " FROM social_media_posts"
+                + (where.isEmpty() ? "" : " WHERE " + where) + " ORDER BY likes DESC, postid LIMIT ?";
+        RankedPosts page = new RankedPosts(Math.min(pageSize, RANKED_INITIAL_CAPACITY));
+
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            int index = 1;
+            if (userid != null) {
+                statement.setInt(index++, userid);
+            }
+            if (after) {
+                statement.setInt(index++, afterLikes);
+                statement.setInt(index++, afterLikes);
+                statement.setInt(index++, afterPostid);
+            }
+            statement.setInt(index, pageSize);
+            statement.setFetchSize(Math.min(pageSize, FETCH_SIZE));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    // columns by position, in the order of RANKED_COLUMNS
+                    page.add(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3), resultSet.getString(4),
+                            resultSet.getInt(5), resultSet.getInt(6),
+                            PostDates.toTimestamp(resultSet.getObject(7, LocalDateTime.class)));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Uses the date_time index
+     */
+    @Override
+    public List<Post> retrievePostsBetween(long fromTimestamp, long toTimestamp, int limit) throws SQLException {
+        String query = "SELECT " + RANKED_COLUMNS + " FROM social_media_posts WHERE date_time >= ? AND date_time < ? ORDER BY date_time LIMIT ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setObject(1, PostDates.toLocalDateTime(fromTimestamp));
+            statement.setObject(2, PostDates.toLocalDateTime(toTimestamp));
+            statement.setInt(3, limit);
+            return readPosts(statement);
+        }
+    }
+
+    @Override
+    public List<Post> readAllPosts() throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare("SELECT " + RANKED_COLUMNS + " FROM social_media_posts");
+            statement.setFetchSize(FETCH_SIZE);
+            return readPosts(statement);
+        }
+    }
+
+    // streamed by the cursor fetch of the connection URL, FETCH_SIZE rows at a time
+    @Override
+    public void forEachPost(Consumer<Post> visitor) throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare("SELECT " + RANKED_COLUMNS + " FROM social_media_posts");
+            statement.setFetchSize(FETCH_SIZE);
+            visitPosts(statement, visitor);
+        }
+    }
+
+    // bound query selecting RANKED_COLUMNS
+    private static List<Post> readPosts(PreparedStatement statement) throws SQLException {
+        List<Post> posts = new ArrayList<>();
+        visitPosts(statement, posts::add);
+        return posts;
+    }
+
+    private static void visitPosts(PreparedStatement statement, Consumer<Post> visitor) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                visitor.accept(new Post(resultSet.getInt(1), resultSet.getInt(2), resultSet.getString(3), resultSet.getString(4),
+                        resultSet.getInt(5), resultSet.getInt(6),
+                        PostDates.toTimestamp(resultSet.getObject(7, LocalDateTime.class))));
+            }
+        }
+    }
+
+    @Override
+    public long[] getTotals() throws SQLException {
+        String query = "SELECT COUNT(*), COALESCE(SUM(likes), 0), COALESCE(SUM(postid), 0) FROM social_media_posts";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return new long[] { resultSet.getLong(1), resultSet.getLong(2), resultSet.getLong(3) };
+            }
+        }
+    }
+
+    /**
+     * One GROUP BY, read from the shares index when all posts are counted
+     */
+    @Override
+    public SortedMap<Integer, Long> countShares(SharesScope scope) throws SQLException {
+        StringBuilder query = new StringBuilder("SELECT shares, COUNT(*) FROM social_media_posts WHERE 1 = 1");
+        List<Object> values = new ArrayList<>();
+        if (scope.getUserid() != null) {
+            query.append(" AND userid = ?");
+            values.add(scope.getUserid());
+        }
+        if (scope.getFromTimestamp() != null) {
+            query.append(" AND date_time >= ?");
+            values.add(PostDates.toLocalDateTime(scope.getFromTimestamp()));
+        }
+        if (scope.getToTimestamp() != null) {
+            query.append(" AND date_time < ?");
+            values.add(PostDates.toLocalDateTime(scope.getToTimestamp()));
+        }
+        query.append(" GROUP BY shares");
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query.toString());
+            for (int i = 0; i < values.size(); i++) {
+                statement.setObject(i + 1, values.get(i));
+            }
+            SortedMap<Integer, Long> counts = new TreeMap<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    counts.put(resultSet.getInt(1), resultSet.getLong(2));
+                }
+            }
+            return counts;
+        }
+    }
+
+    @Override
+    public PostWriter openWriter() throws SQLException {
+        PooledConnection pooled = pool.borrow();
+        try {
+            pooled.getConnection().setAutoCommit(false);
+        } catch (SQLException ex) {
+            pooled.close();
+            throw ex;
+        }
+        return new Writer(pooled);
+    }
+
+    @Override
+    public int getMaxWriters() {
+        // each session holds one connection
+        return pool.getMaxSize();
+    }
+
+    private static void bindPost(PreparedStatement statement, Post post) throws SQLException {
+        statement.setInt(1, post.getPostid());
+        statement.setInt(2, post.getUserid());
+        statement.setString(3, post.getContent());
+        statement.setString(4, post.getAuthor());
+        statement.setInt(5, post.getLikes());
+        statement.setInt(6, post.getShares());
+        statement.setObject(7, PostDates.toLocalDateTime(post.getTimestamp()));
+    }
+
+    /**
+     * Import session holding one pooled connection with auto-commit off for its whole life
+     * The pool rolls back the open transaction when the connection is handed back
+     */
+    private final class Writer implements PostWriter {
+        private final PooledConnection pooled;
+
+        private Writer(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public int writeBatch(List<Post> batch, ImportResult result, List<Post> uncommitted) throws SQLException {
+            Connection connection = pooled.getConnection();
+            PreparedStatement statement = pooled.prepare(INSERT_POST_WITH_ID);
+            result.addBatch();
+            if (nextPostid != null) {
+                // later assigned postids go after the imported ones, as AUTO_INCREMENT does
+                for (Post post : batch) {
+                    nextPostid.accumulateAndGet(post.getPostid() + 1, Math::max);
+                }
+            }
+
+            Savepoint batchStart = connection.setSavepoint();
+            try {
+                for (Post post : batch) {
+                    bindPost(statement, post);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.releaseSavepoint(batchStart);
+                uncommitted.addAll(batch);
+                return batch.size();
+            } catch (SQLException ex) {
+                statement.clearBatch();
+                connection.rollback(batchStart);
+            }
+
+            // Replay the failed batch row by row to isolate the bad rows
+            int inserted = 0;
+            for (Post post : batch) {
+                Savepoint rowStart = connection.setSavepoint();
+                try {
+                    bindPost(statement, post);
+                    statement.executeUpdate();
+                    connection.releaseSavepoint(rowStart);
+                    uncommitted.add(post);
+                    inserted++;
+                } catch (SQLException ex) {
+                    connection.rollback(rowStart);
+                    result.addFailure(post.getPostid(), ex.getMessage());
+                }
+            }
+            return inserted;
+        }
+
+        @Override
+        public void commit() throws SQLException {
+            pooled.getConnection().commit();
+        }
+
+        @Override
+        public void close() {
+            pooled.close();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Class JdbcStorage
+ * Storage engine over a JDBC connection pool: the MySQL server, or an H2 database embedded in this process
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+public class JdbcStorage implements StorageEngine {
+    private final String name;
+    private final ConnectionPool pool;
+    private final boolean ownsPool;
+    private final JdbcUserStore users;
+    private final JdbcPostStore posts;
+
+    /**
+     * Constructor
+     * @param name engine name
+     * @param pool connection pool, the tables must exist
+     * @param assignIds true to assign postids and userids in this process instead of by AUTO_INCREMENT,
+     *        safe only when this process is the database's single writer, as with an embedded database
+     * @param ownsPool true to close the pool with the engine
+     * @throws SQLException if the highest ids cannot be read
+     */
+    public JdbcStorage(String name, ConnectionPool pool, boolean assignIds, boolean ownsPool) throws SQLException {
+        this.name = name;
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.users = new JdbcUserStore(pool, assignIds);
+        this.posts = new JdbcPostStore(pool, assignIds);
+    }
+
+    // highest id in a table, 0 when it is empty
+    static int maxId(ConnectionPool pool, String column, String table) throws SQLException {
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public UserStore getUserStore() {
+        return users;
+    }
+
+    @Override
+    public PostStore getPostStore() {
+        return posts;
+    }
+
+    // pool and statement cache gauges, read when a snapshot is taken
+    @Override
+    public void registerGauges(Metrics metrics) {
+        metrics.gauge("pool_active_connections", pool::getActiveCount);
+        metrics.gauge("pool_idle_connections", pool::getIdleCount);
+        metrics.gauge("pool_max_connections", pool::getMaxSize);
+        metrics.gauge("pool_borrows_total", pool::getBorrowCount);
+        metrics.gauge("pool_borrow_timeouts_total", pool::getTimeoutCount);
+        metrics.gauge("pool_borrow_wait_ms_avg", pool::getAverageWaitMillis);
+        metrics.gauge("pool_borrow_wait_ms_max", pool::getMaxWaitMillis);
+        metrics.gauge("pool_connections_created_total", pool::getCreatedCount);
+        metrics.gauge("pool_connections_destroyed_total", pool::getDestroyedCount);
+        metrics.gauge("statement_cache_hits_total", pool::getStatementCacheHits);
+        metrics.gauge("statement_cache_misses_total", pool::getStatementCacheMisses);
+        metrics.gauge("statement_cache_evictions_total", pool::getStatementCacheEvictions);
+    }
+
+    @Override
+    public void close() {
+        if (ownsPool) {
+            pool.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcStorage[" + name + ", " + pool + "]";
+    }
+}
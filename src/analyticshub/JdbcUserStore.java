@@ -0,0 +1,133 @@
+/*
+ * Class JdbcUserStore
+ * User profiles in the user_profiles table, one pooled connection borrowed per call
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class JdbcUserStore implements UserStore {
+    private static final String INSERT_USER = "INSERT INTO user_profiles (username, password, first_name, last_name, is_vip) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_USER_WITH_ID = "INSERT INTO user_profiles (userid, username, password, first_name, last_name, is_vip) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final ConnectionPool pool;
+    // next userid when the store assigns them, null when the database's AUTO_INCREMENT does
+    private final AtomicInteger nextUserid;
+
+    /**
+     * Constructor
+     * @param pool connection pool, the tables must exist
+     * @param assignIds true to assign userids in this process instead of by AUTO_INCREMENT
+     * @throws SQLException if the highest userid cannot be read
+     */
+    JdbcUserStore(ConnectionPool pool, boolean assignIds) throws SQLException {
+        this.pool = pool;
+        this.nextUserid = assignIds ? new AtomicInteger(JdbcStorage.maxId(pool, "userid", "user_profiles") + 1) : null;
+    }
+
+    @Override
+    public boolean isUsernameTaken(String username) throws SQLException {
+        String query = "SELECT username FROM user_profiles WHERE username = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setString(1, username);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    @Override
+    public User getUserByUsername(String username) throws SQLException {
+        String query = "SELECT * FROM user_profiles WHERE username = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setString(1, username);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    // Retrieve user data from the result set
+                    int userid = resultSet.getInt("userid");
+                    String password = resultSet.getString("password");
+                    String firstname = resultSet.getString("first_name");
+                    String lastname = resultSet.getString("last_name");
+                    boolean isvip = resultSet.getBoolean("is_vip");
+                    //create a User object
+                    return new User(userid, username, password, firstname, lastname, isvip);
+                } else {
+                    return null;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean registerUser(String username, String password, String firstName, String lastName) throws SQLException {
+        // Check if the username already been used
+        if (isUsernameTaken(username)) {
+            return false;
+        }
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement;
+            int index = 1;
+            if (nextUserid != null) {
+                statement = pooled.prepare(INSERT_USER_WITH_ID);
+                statement.setInt(index++, nextUserid.getAndIncrement());
+            } else {
+                statement = pooled.prepare(INSERT_USER);
+            }
+            statement.setString(index++, username);
+            statement.setString(index++, password);
+            statement.setString(index++, firstName);
+            statement.setString(index++, lastName);
+            statement.setBoolean(index, false); // Initially, the user is not VIP
+
+            int rowsAffected = statement.executeUpdate();
+            return rowsAffected > 0;
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            // registered by another caller since the check, the unique username index rejected it
+            return false;
+        }
+    }
+
+    @Override
+    public boolean updateVIP(String username) throws SQLException {
+        String query = "UPDATE user_profiles SET is_vip = ? WHERE username = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(query);
+            statement.setBoolean(1, true);
+            statement.setString(2, username);
+            int rowsUpdated = statement.executeUpdate();
+            return rowsUpdated > 0;
+        }
+    }
+
+    @Override
+    public boolean editUser(String currentUsername, String username, String password, String firstName, String lastName) throws SQLException {
+        // Update the user's profile, no row matches if the current username doesn't exist
+        String updateQuery = "UPDATE user_profiles SET username = ?, password = ?, first_name = ?, last_name = ? WHERE username = ?";
+        try (PooledConnection pooled = pool.borrow()) {
+            PreparedStatement statement = pooled.prepare(updateQuery);
+            statement.setString(1, username);
+            statement.setString(2, password);
+            statement.setString(3, firstName);
+            statement.setString(4, lastName);
+            statement.setString(5, currentUsername);
+
+            int rowsAffected = statement.executeUpdate();
+            return rowsAffected > 0;
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            // the new username belongs to another user
+            return false;
+        }
+    }
+}
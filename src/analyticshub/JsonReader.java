@@ -0,0 +1,172 @@
+/*
+ * Class JsonReader
+ * Reads the flat JSON objects sent to the service API, such as {"username":"a","password":"b"}
+ * Members must be strings, numbers, booleans or null; nested objects and arrays are rejected
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class JsonReader {
+    private final String text;
+    private int pos;
+
+    private JsonReader(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parse a flat object
+     * @param text JSON text
+     * @return member values as text, numbers and booleans as written, null for JSON null
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String text) {
+        JsonReader reader = new JsonReader(text);
+        Map<String, String> members = reader.object();
+        reader.skipSpace();
+        if (reader.pos != text.length()) {
+            throw reader.error("Unexpected text after the object");
+        }
+        return members;
+    }
+
+    private Map<String, String> object() {
+        Map<String, String> members = new HashMap<>();
+        expect('{');
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return members;
+        }
+        while (true) {
+            skipSpace();
+            String name = string();
+            skipSpace();
+            expect(':');
+            skipSpace();
+            members.put(name, value());
+            skipSpace();
+            char c = next();
+            if (c == '}') {
+                return members;
+            }
+            if (c != ',') {
+                throw error("Expected , or }");
+            }
+        }
+    }
+
+    private String value() {
+        char c = peek();
+        if (c == '"') {
+            return string();
+        }
+        if (text.startsWith("null", pos)) {
+            pos += 4;
+            return null;
+        }
+        if (text.startsWith("true", pos)) {
+            pos += 4;
+            return "true";
+        }
+        if (text.startsWith("false", pos)) {
+            pos += 5;
+            return "false";
+        }
+        int start = pos;
+        while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a string, number, boolean or null");
+        }
+        return text.substring(start, pos);
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    value.append(escaped);
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Incomplete \\u escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    throw error("Invalid escape \\" + escaped);
+            }
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= text.length()) {
+            throw error("Unexpected end of JSON");
+        }
+        return text.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            pos--;
+            throw error("Expected " + c);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
+    }
+}
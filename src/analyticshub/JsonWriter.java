@@ -0,0 +1,250 @@
+/*
+ * Class JsonWriter
+ * Writes JSON text straight into a StringBuilder for the service API
+ * Each response type has its own write method calling getters directly, so there is no reflection
+ * and no intermediate tree of maps
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.List;
+
+public class JsonWriter {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder out;
+    private boolean needsComma;
+
+    /**
+     * Constructor
+     * @param capacity initial size of the buffer in characters
+     */
+    public JsonWriter(int capacity) {
+        this.out = new StringBuilder(capacity);
+    }
+
+    public JsonWriter beginObject() {
+        separate();
+        out.append('{');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        out.append('}');
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        separate();
+        out.append('[');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        out.append(']');
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Write the name of the next member of an object, followed by one value or nested object
+     * @param name member name
+     * @return this writer
+     */
+    public JsonWriter name(String name) {
+        separate();
+        quote(name);
+        out.append(':');
+        needsComma = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) {
+        separate();
+        if (value == null) {
+            out.append("null");
+        } else {
+            quote(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(long value) {
+        separate();
+        out.append(value);
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(double value) {
+        separate();
+        // JSON has no NaN or Infinity
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            out.append("null");
+        } else {
+            out.append(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    public JsonWriter value(boolean value) {
+        separate();
+        out.append(value);
+        needsComma = true;
+        return this;
+    }
+
+    /**
+     * Write a user, the password is never included
+     * @param user user to write
+     * @return this writer
+     */
+    public JsonWriter user(User user) {
+        return beginObject()
+                .name("userid").value(user.getUserid())
+                .name("username").value(user.getUsername())
+                .name("firstName").value(user.getFirstName())
+                .name("lastName").value(user.getLastName())
+                .name("vip").value(Boolean.TRUE.equals(user.getIsvip()))
+                .endObject();
+    }
+
+    /**
+     * Write a post
+     * @param post post to write
+     * @return this writer
+     */
+    public JsonWriter post(Post post) {
+        return post(post.getPostid(), post.getUserid(), post.getContent(), post.getAuthor(),
+                post.getLikes(), post.getShares(), post.getTimestamp());
+    }
+
+    /**
+     * Write ranked posts as an array in rank order, read from the columns without creating Post objects
+     * @param posts posts to write
+     * @return this writer
+     */
+    public JsonWriter rankedPosts(RankedPosts posts) {
+        beginArray();
+        for (int rank = 0; rank < posts.size(); rank++) {
+            post(posts.getPostid(rank), posts.getUserid(rank), posts.getContent(rank), posts.getAuthor(rank),
+                    posts.getLikes(rank), posts.getShares(rank), posts.getTimestamp(rank));
+        }
+        return endArray();
+    }
+
+    private JsonWriter post(int postid, int userid, String content, String author, int likes, int shares, long timestamp) {
+        return beginObject()
+                .name("postid").value(postid)
+                .name("userid").value(userid)
+                .name("content").value(content)
+                .name("author").value(author)
+                .name("likes").value(likes)
+                .name("shares").value(shares)
+                .name("timestamp").value(timestamp)
+                .name("dateTime").value(PostDates.format(timestamp))
+                .endObject();
+    }
+
+    /**
+     * Write the counters of a bulk import
+     * @param result finished import
+     * @return this writer
+     */
+    public JsonWriter importResult(ImportResult result) {
+        beginObject()
+                .name("rowsInserted").value(result.getRowsInserted())
+                .name("rowsFailed").value(result.getRowsFailed())
+                .name("batches").value(result.getBatches())
+                .name("elapsedMillis").value(result.getElapsedMillis())
+                .name("rowsPerSecond").value(result.getRowsPerSecond())
+                .name("errors").beginArray();
+        List<String> errors = result.getErrors();
+        for (String error : errors) {
+            value(error);
+        }
+        return endArray().endObject();
+    }
+
+    /**
+     * A shares distribution as { total, source, buckets: [ { lower, upper, posts } ] }, an open last bucket has no upper
+     */
+    public JsonWriter sharesDistribution(SharesDistribution distribution) {
+        beginObject()
+                .name("total").value(distribution.getTotal())
+                .name("source").value(distribution.getSource())
+                .name("buckets").beginArray();
+        for (int i = 0; i < distribution.size(); i++) {
+            beginObject().name("lower").value(distribution.getLower(i));
+            if (distribution.getUpper(i) != Integer.MAX_VALUE) {
+                name("upper").value(distribution.getUpper(i));
+            }
+            name("posts").value(distribution.getPosts(i)).endObject();
+        }
+        return endArray().endObject();
+    }
+
+    /**
+     * Percentiles as { metric, posts, percentiles: [ { quantile, value } ] }, value is null when there are no posts
+     */
+    public JsonWriter percentiles(PostSketches.Metric metric, long posts, double[] quantiles, double[] values) {
+        beginObject()
+                .name("metric").value(metric.name().toLowerCase())
+                .name("posts").value(posts)
+                .name("percentiles").beginArray();
+        for (int i = 0; i < quantiles.length; i++) {
+            beginObject().name("quantile").value(quantiles[i]).name("value").value(values[i]).endObject();
+        }
+        return endArray().endObject();
+    }
+
+    private void separate() {
+        if (needsComma) {
+            out.append(',');
+        }
+    }
+
+    private void quote(String text) {
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Class LatencyHistogram
+ * Distribution of latencies in nanoseconds with about 12.5% precision, in the style of HdrHistogram
+ * Buckets are log-linear: every power of two is split into 8 equal sub-buckets, so 488 counters cover
+ * 1 ns to the largest long. Recording is one atomic increment and never takes a lock
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+    // 2^SUB_BITS sub-buckets per power of two
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Constructor, an empty histogram
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+    }
+
+    private LatencyHistogram(LatencyHistogram source) {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = source.counts.get(i);
+        }
+        this.counts = new AtomicLongArray(copy);
+        this.totalNanos.add(source.totalNanos.sum());
+        this.maxNanos.set(source.maxNanos.get());
+    }
+
+    /**
+     * Record one latency, safe to call from any number of threads at once
+     * @param nanos latency in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        totalNanos.add(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * Copy of the current counts for reading percentiles
+     * Recording may go on during the copy, so a snapshot can miss calls recorded meanwhile but never
+     * sees a partial one in its counts
+     * @return histogram that is no longer recorded into
+     */
+    public LatencyHistogram snapshot() {
+        return new LatencyHistogram(this);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // largest value that falls into a bucket
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    // Getter of the number of recorded latencies
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    // Getter of the largest recorded latency in nanoseconds
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    // Getter of the mean latency in nanoseconds, 0 when empty
+    public double getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * Latency that the given percentage of recorded latencies do not exceed
+     * @param percentile percentage between 0 and 100, such as 99 for p99
+     * @return upper end of the bucket holding that latency in nanoseconds, never above the max, 0 when empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Class Leaderboard
+ * In-memory ranking of all posts by likes, kept current as posts are added, deleted and imported
+ * Global and per-user rankings are ordered maps keyed by (likes DESC, postid ASC) packed into one long,
+ * so the top N posts of everyone or of one user are the first N entries, read in O(N)
+ * Every post is held on the heap: the Post with its author and content strings, plus an entry in each of the
+ * three maps and their boxed keys. That is about 300 bytes plus the content (a byte per character of Latin-1 text,
+ * two otherwise) per post on a 64-bit JVM, measured at 408 bytes for 100-character posts, so 10 million posts need
+ * around 4 GB of heap; size -Xmx for twice that, as a rebuild fills new maps while the old ones keep serving
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+public class Leaderboard {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private TreeMap<Long, Post> global = new TreeMap<>();
+    private Map<Integer, TreeMap<Long, Post>> byUser = new HashMap<>();
+    private Map<Integer, Post> byId = new HashMap<>();
+    private long likesTotal;
+    private long postidTotal;
+    private boolean loaded;
+
+    // adds and deletes made while a rebuild is reading the database, in the order they were made,
+    // replayed onto the new maps before they go live
+    private List<Consumer<Leaderboard>> pendingChanges;
+    // maps being filled by the rebuild in progress, only touched by the thread that began it
+    private Leaderboard rebuilding;
+
+    /**
+     * Sort key ordering posts by likes descending, then postid ascending
+     * ~likes reverses the order of likes without overflowing, flipping the sign bit of postid
+     * makes its unsigned low half sort like the signed value
+     */
+    static long rankKey(int likes, int postid) {
+        return ((long) ~likes << 32) | ((postid ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Add a committed post, replacing the entry with the same postid
+     * @param post post as stored in the database
+     */
+    public void add(Post post) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(fresh -> fresh.put(post));
+            }
+            put(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add posts committed together, such as one import transaction
+     * @param posts posts as stored in the database
+     */
+    public void addAll(List<Post> posts) {
+        lock.writeLock().lock();
+        try {
+            for (Post post : posts) {
+                if (pendingChanges != null) {
+                    pendingChanges.add(fresh -> fresh.put(post));
+                }
+                put(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a deleted post
+     * @param postid postid of the deleted post
+     */
+    public void remove(int postid) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(fresh -> fresh.delete(postid));
+            }
+            delete(postid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start recording changes before the database is read for a rebuild
+     * Adds and deletes that commit while the posts are read are replayed in order by finishRebuild, so none are lost
+     * @return false if another rebuild is already running
+     */
+    public boolean beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                return false;
+            }
+            pendingChanges = new ArrayList<>();
+            rebuilding = new Leaderboard();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a post read from the database to the ranking being rebuilt, by the thread that began the rebuild
+     * The new maps are built without the lock, readers keep using the old ones meanwhile
+     * @param post stored post
+     */
+    public void addRebuilt(Post post) {
+        rebuilding.put(post);
+    }
+
+    /**
+     * Replace the whole ranking with the posts given to addRebuilt since beginRebuild
+     */
+    public void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            Leaderboard fresh = rebuilding;
+            rebuilding = null;
+            for (Consumer<Leaderboard> change : pendingChanges) {
+                change.accept(fresh);
+            }
+            pendingChanges = null;
+            global = fresh.global;
+            byUser = fresh.byUser;
+            byId = fresh.byId;
+            likesTotal = fresh.likesTotal;
+            postidTotal = fresh.postidTotal;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop recording changes after a rebuild failed, the current ranking stays as it was
+     */
+    public void cancelRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = null;
+            rebuilding = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // callers hold the write lock, or own the instance during a rebuild
+    private void put(Post post) {
+        delete(post.getPostid());
+        // one boxed key shared by both rankings
+        Long key = rankKey(post.getLikes(), post.getPostid());
+        global.put(key, post);
+        byUser.computeIfAbsent(post.getUserid(), userid -> new TreeMap<>()).put(key, post);
+        byId.put(post.getPostid(), post);
+        likesTotal += post.getLikes();
+        postidTotal += post.getPostid();
+    }
+
+    private void delete(int postid) {
+        Post post = byId.remove(postid);
+        if (post == null) {
+            return;
+        }
+        long key = rankKey(post.getLikes(), postid);
+        global.remove(key);
+        TreeMap<Long, Post> userPosts = byUser.get(post.getUserid());
+        if (userPosts != null) {
+            userPosts.remove(key);
+            if (userPosts.isEmpty()) {
+                byUser.remove(post.getUserid());
+            }
+        }
+        likesTotal -= post.getLikes();
+        postidTotal -= postid;
+    }
+
+    /**
+     * Top N posts of all users
+     * @param topN number of posts
+     * @return posts in rank order
+     */
+    public RankedPosts top(int topN) {
+        lock.readLock().lock();
+        try {
+            return firstN(global, topN);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top N posts of one user
+     * @param topN number of posts
+     * @param userid owner of the posts
+     * @return posts in rank order, empty if the user has no posts
+     */
+    public RankedPosts top(int topN, int userid) {
+        lock.readLock().lock();
+        try {
+            TreeMap<Long, Post> userPosts = byUser.get(userid);
+            return userPosts == null ? new RankedPosts(0) : firstN(userPosts, topN);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Page of posts ranked right after (afterLikes, afterPostid), for PostCursor
+     * @param userid owner of the posts, null for all users
+     * @param after false for the first page
+     * @param afterLikes likes of the last post of the previous page
+     * @param afterPostid postid of the last post of the previous page
+     * @param pageSize maximum number of posts
+     * @return posts in rank order
+     */
+    public RankedPosts page(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) {
+        lock.readLock().lock();
+        try {
+            TreeMap<Long, Post> ranking = userid == null ? global : byUser.get(userid);
+            if (ranking == null) {
+                return new RankedPosts(0);
+            }
+            // the keyset need not be a post that still exists, tailMap starts at the next key either way
+            SortedMap<Long, Post> rest = after ? ranking.tailMap(rankKey(afterLikes, afterPostid), false) : ranking;
+            RankedPosts page = new RankedPosts(Math.min(pageSize, ranking.size()));
+            Iterator<Post> posts = rest.values().iterator();
+            for (int i = 0; i < pageSize && posts.hasNext(); i++) {
+                page.add(posts.next());
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static RankedPosts firstN(TreeMap<Long, Post> ranking, int topN) {
+        int count = Math.max(0, Math.min(topN, ranking.size()));
+        RankedPosts topPosts = new RankedPosts(count);
+        Iterator<Post> posts = ranking.values().iterator();
+        for (int i = 0; i < count; i++) {
+            topPosts.add(posts.next());
+        }
+        return topPosts;
+    }
+
+    // Getter of whether a rebuild has completed, until then the ranking is incomplete
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of the totals compared with the database by the consistency check
+     * @return { number of posts, sum of likes, sum of postids }
+     */
+    public long[] getTotals() {
+        lock.readLock().lock();
+        try {
+            return new long[] { byId.size(), likesTotal, postidTotal };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Getter of the number of ranked posts
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            return "Leaderboard[posts=" + byId.size() + ", users=" + byUser.size() + ", loaded=" + loaded + "]";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
\ No newline at end of file
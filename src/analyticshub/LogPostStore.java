@@ -0,0 +1,444 @@
+/*
+ * Class LogPostStore
+ * Posts as records of a SegmentLog, found through an in-memory postid to address index
+ * A post record has a fixed-width header (postid, userid, likes, shares, timestamp, content and author lengths)
+ * followed by the UTF-8 content and author; deleting a post appends a tombstone naming its postid
+ * Rankings and time ranges scan the index reading only the fixed-width headers, the Model answers rankings
+ * from its leaderboard once that has loaded
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+class LogPostStore implements PostStore {
+    // payload offsets of the fixed-width post header
+    private static final int POSTID = 0;
+    private static final int USERID = 4;
+    private static final int LIKES = 8;
+    private static final int SHARES = 12;
+    private static final int TIMESTAMP = 16;
+    private static final int CONTENT_LENGTH = 24;
+    private static final int AUTHOR_LENGTH = 28;
+    private static final int POST_HEADER = 32;
+
+    private final SegmentLog log;
+    private final ReentrantReadWriteLock lock;
+
+    private final Map<Integer, Long> addresses = new HashMap<>();
+    // deleted postids whose record may still be in an older segment, with that segment,
+    // their tombstones survive compaction until the segment is gone
+    private final Map<Integer, Integer> deletedFrom = new HashMap<>();
+    // postids held by import sessions that have not committed yet
+    private final Set<Integer> reserved = new HashSet<>();
+    private long likesTotal;
+    private long postidTotal;
+    private int nextPostid = 1;
+
+    /**
+     * Constructor, the log is replayed into the store by LogStorage
+     * @param log log holding the records
+     * @param lock lock of the whole engine, held for reading by reads and for writing by changes
+     */
+    LogPostStore(SegmentLog log, ReentrantReadWriteLock lock) {
+        this.log = log;
+        this.lock = lock;
+    }
+
+    // Replay, callers hold the write lock or are still opening the log
+
+    void replayPost(long address, ByteBuffer payload) {
+        index(payload.getInt(POSTID), address, payload.getInt(LIKES));
+    }
+
+    void replayTombstone(long address, ByteBuffer payload) {
+        unindex(payload.getInt(POSTID));
+        // a tombstone is never referenced itself
+        log.release(address);
+    }
+
+    private void index(int postid, long address, int likes) {
+        unindex(postid);
+        addresses.put(postid, address);
+        deletedFrom.remove(postid);
+        likesTotal += likes;
+        postidTotal += postid;
+        nextPostid = Math.max(nextPostid, postid + 1);
+    }
+
+    private boolean unindex(int postid) {
+        Long address = addresses.remove(postid);
+        if (address == null) {
+            return false;
+        }
+        likesTotal -= log.readInt(address, LIKES);
+        postidTotal -= postid;
+        deletedFrom.put(postid, SegmentLog.segmentOf(address));
+        log.release(address);
+        return true;
+    }
+
+    /**
+     * Move a record out of a segment being compacted if it is still needed
+     * @param address address of the record
+     * @param kind record kind
+     * @param payload the record's payload
+     * @param segmentId segment being compacted
+     * @return true if the record was copied to the end of the log
+     */
+    boolean relocate(long address, byte kind, ByteBuffer payload, int segmentId) throws IOException {
+        int postid = payload.getInt(POSTID);
+        if (kind == SegmentLog.POST) {
+            Long current = addresses.get(postid);
+            if (current == null || current != address) {
+                return false;
+            }
+            addresses.put(postid, log.relocate(address));
+            return true;
+        }
+        // a tombstone is kept while the record it hides is still on disk
+        Integer hidden = deletedFrom.get(postid);
+        if (hidden == null || addresses.containsKey(postid)) {
+            return false;
+        }
+        if (hidden == segmentId || !log.hasSegment(hidden)) {
+            deletedFrom.remove(postid);
+            return false;
+        }
+        log.release(log.relocate(address));
+        return true;
+    }
+
+    private static ByteBuffer encode(Post post) {
+        byte[] content = bytes(post.getContent());
+        byte[] author = bytes(post.getAuthor());
+        ByteBuffer record = SegmentLog.newRecord(SegmentLog.POST, POST_HEADER + length(content) + length(author));
+        record.putInt(post.getPostid());
+        record.putInt(post.getUserid());
+        record.putInt(post.getLikes());
+        record.putInt(post.getShares());
+        record.putLong(post.getTimestamp());
+        record.putInt(content == null ? -1 : content.length);
+        record.putInt(author == null ? -1 : author.length);
+        if (content != null) {
+            record.put(content);
+        }
+        if (author != null) {
+            record.put(author);
+        }
+        return record;
+    }
+
+    private static Post decode(ByteBuffer payload) {
+        int contentLength = payload.getInt(CONTENT_LENGTH);
+        int authorLength = payload.getInt(AUTHOR_LENGTH);
+        String content = string(payload, POST_HEADER, contentLength);
+        String author = string(payload, POST_HEADER + Math.max(0, contentLength), authorLength);
+        return new Post(payload.getInt(POSTID), payload.getInt(USERID), content, author,
+                payload.getInt(LIKES), payload.getInt(SHARES), payload.getLong(TIMESTAMP));
+    }
+
+    static byte[] bytes(String text) {
+        return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    // length -1 stands for null
+    static String string(ByteBuffer payload, int offset, int length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // appends a post and indexes it, callers hold the write lock
+    private void append(Post post) throws IOException {
+        index(post.getPostid(), log.append(encode(post)), post.getLikes());
+    }
+
+    private static SQLException failure(String message, IOException ex) {
+        return new SQLException(message + ": " + ex.getMessage(), ex);
+    }
+
+    @Override
+    public boolean isPostidExist(int postid) {
+        lock.readLock().lock();
+        try {
+            return addresses.containsKey(postid);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Post addPost(int userid, String content, String author, int likes, int shares, long timestamp) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            int postid = nextPostid;
+            while (reserved.contains(postid)) {
+                postid++;
+            }
+            Post post = new Post(postid, userid, content, author, likes, shares, timestamp);
+            append(post);
+            log.force();
+            return post;
+        } catch (IOException ex) {
+            throw failure("Failed to append post", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Post getPostByPostid(int postid) {
+        lock.readLock().lock();
+        try {
+            Long address = addresses.get(postid);
+            return address == null ? null : decode(log.read(address));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deletePostByPostid(int postid) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (!addresses.containsKey(postid)) {
+                return false;
+            }
+            ByteBuffer tombstone = SegmentLog.newRecord(SegmentLog.TOMBSTONE, 4);
+            tombstone.putInt(postid);
+            long address = log.append(tombstone);
+            log.force();
+            replayTombstone(address, log.read(address));
+            return true;
+        } catch (IOException ex) {
+            throw failure("Failed to append tombstone", ex);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public RankedPosts readPostPage(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) {
+        if (pageSize <= 0) {
+            return new RankedPosts(0);
+        }
+        long afterKey = after ? Leaderboard.rankKey(afterLikes, afterPostid) : Long.MIN_VALUE;
+        lock.readLock().lock();
+        try {
+            // keep the pageSize smallest rank keys, the largest kept one on top
+            PriorityQueue<Long> page = new PriorityQueue<>(pageSize + 1, Collections.reverseOrder());
+            for (Map.Entry<Integer, Long> entry : addresses.entrySet()) {
+                long address = entry.getValue();
+                if (userid != null && log.readInt(address, USERID) != userid) {
+                    continue;
+                }
+                long key = Leaderboard.rankKey(log.readInt(address, LIKES), entry.getKey());
+                if (after && key <= afterKey) {
+                    continue;
+                }
+                if (page.size() < pageSize) {
+                    page.add(key);
+                } else if (key < page.peek()) {
+                    page.poll();
+                    page.add(key);
+                }
+            }
+            List<Long> keys = new ArrayList<>(page);
+            Collections.sort(keys);
+            RankedPosts posts = new RankedPosts(keys.size());
+            for (long key : keys) {
+                // the low half of a rank key is the postid with its sign bit flipped
+                posts.add(decode(log.read(addresses.get((int) key ^ Integer.MIN_VALUE))));
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Post> retrievePostsBetween(long fromTimestamp, long toTimestamp, int limit) {
+        lock.readLock().lock();
+        try {
+            List<long[]> matches = new ArrayList<>();
+            for (Map.Entry<Integer, Long> entry : addresses.entrySet()) {
+                long timestamp = log.readLong(entry.getValue(), TIMESTAMP);
+                if (timestamp >= fromTimestamp && timestamp < toTimestamp) {
+                    matches.add(new long[] { timestamp, entry.getKey(), entry.getValue() });
+                }
+            }
+            matches.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            List<Post> posts = new ArrayList<>(Math.min(limit, matches.size()));
+            for (int i = 0; i < limit && i < matches.size(); i++) {
+                posts.add(decode(log.read(matches.get(i)[2])));
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Post> readAllPosts() {
+        lock.readLock().lock();
+        try {
+            List<Post> posts = new ArrayList<>(addresses.size());
+            for (long address : addresses.values()) {
+                posts.add(decode(log.read(address)));
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // each post is decoded from the log as it is visited
+    @Override
+    public void forEachPost(Consumer<Post> visitor) {
+        lock.readLock().lock();
+        try {
+            for (long address : addresses.values()) {
+                visitor.accept(decode(log.read(address)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] getTotals() {
+        lock.readLock().lock();
+        try {
+            return new long[] { addresses.size(), likesTotal, postidTotal };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<Integer, Long> countShares(SharesScope scope) {
+        lock.readLock().lock();
+        try {
+            SortedMap<Integer, Long> counts = new TreeMap<>();
+            for (long address : addresses.values()) {
+                if (scope.matches(log.readInt(address, USERID), log.readLong(address, TIMESTAMP))) {
+                    counts.merge(log.readInt(address, SHARES), 1L, Long::sum);
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PostWriter openWriter() {
+        return new Writer();
+    }
+
+    @Override
+    public int getMaxWriters() {
+        return Integer.MAX_VALUE;
+    }
+
+    // Getter of the number of posts
+    int size() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Import session: posts are held until commit, which appends them together and forces the log once
+     * Their postids are reserved meanwhile, so a duplicate is rejected at writeBatch like a primary key violation
+     * A crash during commit can keep a prefix of that commit's posts
+     */
+    private final class Writer implements PostWriter {
+        private final List<Post> pending = new ArrayList<>();
+
+        @Override
+        public int writeBatch(List<Post> batch, ImportResult result, List<Post> uncommitted) {
+            result.addBatch();
+            int inserted = 0;
+            lock.writeLock().lock();
+            try {
+                for (Post post : batch) {
+                    if (addresses.containsKey(post.getPostid()) || !reserved.add(post.getPostid())) {
+                        result.addFailure(post.getPostid(), "Duplicate postid " + post.getPostid());
+                        continue;
+                    }
+                    // later assigned postids go after the imported ones
+                    nextPostid = Math.max(nextPostid, post.getPostid() + 1);
+                    pending.add(post);
+                    uncommitted.add(post);
+                    inserted++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return inserted;
+        }
+
+        @Override
+        public void commit() throws SQLException {
+            lock.writeLock().lock();
+            try {
+                for (Post post : pending) {
+                    append(post);
+                    reserved.remove(post.getPostid());
+                }
+                pending.clear();
+                log.force();
+            } catch (IOException ex) {
+                throw failure("Failed to append imported posts", ex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                for (Post post : pending) {
+                    reserved.remove(post.getPostid());
+                }
+                pending.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Class LogStorage
+ * Storage engine persisting users and posts to an append-only, memory-mapped segment log in a local directory
+ * Opening replays the log into in-memory indexes, dropping a write a crash cut short; a background task
+ * compacts segments that are mostly garbage by copying their live records to the end of the log
+ * Only one process may open a directory at a time
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.DoubleSupplier;
+
+public class LogStorage implements StorageEngine {
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    // a sealed segment is compacted once less than this share of it is live
+    private static final double COMPACTION_LIVE_RATIO = 0.5;
+    private static final long COMPACTION_CHECK_MILLIS = 60 * 1000;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path directory;
+    private final SegmentLog log;
+    private final LogUserStore users;
+    private final LogPostStore posts;
+    private final ScheduledExecutorService compactor;
+    private final AtomicLong compactedSegments = new AtomicLong();
+
+    /**
+     * Constructor, opens or creates the log and replays it
+     * @param directory directory of the segment files
+     * @param segmentSize size of new segment files in bytes, a post with its content must fit in one
+     * @param compactInBackground true to check for segments to compact every minute, false to call compact instead
+     * @throws SQLException if the log cannot be opened
+     */
+    public LogStorage(Path directory, int segmentSize, boolean compactInBackground) throws SQLException {
+        long start = System.nanoTime();
+        this.directory = directory;
+        try {
+            log = new SegmentLog(directory, segmentSize);
+        } catch (IOException ex) {
+            throw new SQLException("Failed to open the post log in " + directory + ": " + ex.getMessage(), ex);
+        }
+        users = new LogUserStore(log, lock);
+        posts = new LogPostStore(log, lock);
+        try {
+            log.replay((address, kind, payload) -> {
+                switch (kind) {
+                    case SegmentLog.POST:
+                        posts.replayPost(address, payload);
+                        break;
+                    case SegmentLog.TOMBSTONE:
+                        posts.replayTombstone(address, payload);
+                        break;
+                    case SegmentLog.USER:
+                        users.replayUser(address, payload);
+                        break;
+                    default:
+                        throw new IOException("Unknown record kind " + kind);
+                }
+            });
+        } catch (IOException ex) {
+            closeLog();
+            throw new SQLException("Failed to replay the post log in " + directory + ": " + ex.getMessage(), ex);
+        }
+        System.out.println("Post log " + directory + " replayed " + log.getRecoveredRecords() + " records in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms, " + posts.size() + " posts, " + users.size() + " users"
+                + (log.getTruncatedBytes() > 0 ? ", cleared " + log.getTruncatedBytes() + " bytes of a torn write" : ""));
+
+        if (compactInBackground) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "post-log-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }, COMPACTION_CHECK_MILLIS, COMPACTION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    /**
+     * Compact every sealed segment that is mostly garbage: copy its live records to the end of the log and delete it
+     * Each segment is compacted under the write lock, so reads pause for one segment at a time
+     * @return number of segments deleted
+     * @throws SQLException if a record cannot be copied, the segment is then kept
+     */
+    public int compact() throws SQLException {
+        int compacted = 0;
+        lock.writeLock().lock();
+        try {
+            // segments compacted earlier whose files could not be deleted while they were mapped
+            log.deleteRetiredSegments();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        while (true) {
+            lock.writeLock().lock();
+            try {
+                Integer segmentId = log.compactionCandidates(COMPACTION_LIVE_RATIO).stream().findFirst().orElse(null);
+                if (segmentId == null) {
+                    return compacted;
+                }
+                log.scan(segmentId, (address, kind, payload) -> {
+                    if (kind == SegmentLog.USER) {
+                        users.relocate(address, payload);
+                    } else {
+                        posts.relocate(address, kind, payload, segmentId);
+                    }
+                });
+                log.deleteSegment(segmentId);
+                compacted++;
+                compactedSegments.incrementAndGet();
+            } catch (IOException ex) {
+                throw new SQLException("Failed to compact the post log: " + ex.getMessage(), ex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "log";
+    }
+
+    // Getter of the directory of the segment files
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public UserStore getUserStore() {
+        return users;
+    }
+
+    @Override
+    public PostStore getPostStore() {
+        return posts;
+    }
+
+    // segment and compaction gauges, read when a snapshot is taken
+    @Override
+    public void registerGauges(Metrics metrics) {
+        metrics.gauge("log_segments", () -> read(log::getSegmentCount));
+        metrics.gauge("log_used_bytes", () -> read(log::getUsedBytes));
+        metrics.gauge("log_live_bytes", () -> read(log::getLiveBytes));
+        metrics.gauge("log_compacted_segments_total", compactedSegments::get);
+        metrics.gauge("log_retired_segments", () -> read(log::getRetiredSegmentCount));
+    }
+
+    private double read(DoubleSupplier value) {
+        lock.readLock().lock();
+        try {
+            return value.getAsDouble();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdownNow();
+        }
+        lock.writeLock().lock();
+        try {
+            closeLog();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeLog() {
+        try {
+            log.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LogStorage[" + log + "]";
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Class LogUserStore
+ * User profiles as records of a SegmentLog, the last record of a userid is its current profile
+ * A user record is the userid, the VIP flag and four length-prefixed UTF-8 strings
+ * (username, password, first name, last name); changing a profile appends the whole profile again
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+class LogUserStore implements UserStore {
+    private final SegmentLog log;
+    private final ReentrantReadWriteLock lock;
+
+    private final Map<Integer, Long> addresses = new HashMap<>();
+    private final Map<String, Integer> useridsByUsername = new HashMap<>();
+    private int nextUserid = 1;
+
+    /**
+     * Constructor, the log is replayed into the store by LogStorage
+     * @param log log holding the records
+     * @param lock lock of the whole engine, held for reading by reads and for writing by changes
+     */
+    LogUserStore(SegmentLog log, ReentrantReadWriteLock lock) {
+        this.log = log;
+        this.lock = lock;
+    }
+
+    // Replay, callers hold the write lock or are still opening the log
+    void replayUser(long address, ByteBuffer payload) {
+        User user = decode(payload);
+        Long previous = addresses.put(user.getUserid(), address);
+        if (previous != null) {
+            useridsByUsername.remove(decode(log.read(previous)).getUsername(), user.getUserid());
+            log.release(previous);
+        }
+        useridsByUsername.put(user.getUsername(), user.getUserid());
+        nextUserid = Math.max(nextUserid, user.getUserid() + 1);
+    }
+
+    /**
+     * Move a record out of a segment being compacted if it is the user's current profile
+     * @param address address of the record
+     * @param payload the record's payload
+     * @return true if the record was copied to the end of the log
+     */
+    boolean relocate(long address, ByteBuffer payload) throws IOException {
+        int userid = payload.getInt(0);
+        Long current = addresses.get(userid);
+        if (current == null || current != address) {
+            return false;
+        }
+        addresses.put(userid, log.relocate(address));
+        return true;
+    }
+
+    private static ByteBuffer encode(User user) {
+        byte[][] fields = { LogPostStore.bytes(user.getUsername()), LogPostStore.bytes(user.getPassword()),
+                LogPostStore.bytes(user.getFirstName()), LogPostStore.bytes(user.getLastName()) };
+        int length = 5;
+        for (byte[] field : fields) {
+            length += 4 + LogPostStore.length(field);
+        }
+        ByteBuffer record = SegmentLog.newRecord(SegmentLog.USER, length);
+        record.putInt(user.getUserid());
+        record.put((byte) (user.getIsvip() ? 1 : 0));
+        for (byte[] field : fields) {
+            record.putInt(field == null ? -1 : field.length);
+            if (field != null) {
+                record.put(field);
+            }
+        }
+        return record;
+    }
+
+    private static User decode(ByteBuffer payload) {
+        String[] fields = new String[4];
+        int offset = 5;
+        for (int i = 0; i < fields.length; i++) {
+            int length = payload.getInt(offset);
+            fields[i] = LogPostStore.string(payload, offset + 4, length);
+            offset += 4 + Math.max(0, length);
+        }
+        return new User(payload.getInt(0), fields[0], fields[1], fields[2], fields[3], payload.get(4) != 0);
+    }
+
+    // appends the user's profile and indexes it, callers hold the write lock
+    private void append(User user) throws SQLException {
+        try {
+            long address = log.append(encode(user));
+            log.force();
+            replayUser(address, log.read(address));
+        } catch (IOException ex) {
+            throw new SQLException("Failed to append user: " + ex.getMessage(), ex);
+        }
+    }
+
+    // callers hold a lock
+    private User find(String username) {
+        Integer userid = useridsByUsername.get(username);
+        return userid == null ? null : decode(log.read(addresses.get(userid)));
+    }
+
+    @Override
+    public boolean isUsernameTaken(String username) {
+        lock.readLock().lock();
+        try {
+            return useridsByUsername.containsKey(username);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User getUserByUsername(String username) {
+        lock.readLock().lock();
+        try {
+            return find(username);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean registerUser(String username, String password, String firstName, String lastName) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (useridsByUsername.containsKey(username)) {
+                return false;
+            }
+            append(new User(nextUserid, username, password, firstName, lastName, false));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean updateVIP(String username) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            User user = find(username);
+            if (user == null) {
+                return false;
+            }
+            user.setIsvip(true);
+            append(user);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Renaming onto a username another user has fails, like the unique username index
+     */
+    @Override
+    public boolean editUser(String currentUsername, String username, String password, String firstName, String lastName) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            User user = find(currentUsername);
+            if (user == null || (!username.equals(currentUsername) && useridsByUsername.containsKey(username))) {
+                return false;
+            }
+            append(new User(user.getUserid(), username, password, firstName, lastName, user.getIsvip()));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Getter of the number of users
+    int size() {
+        lock.readLock().lock();
+        try {
+            return addresses.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
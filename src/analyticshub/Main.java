@@ -0,0 +1,150 @@
+/*
+ * Class Main
+ * Initialize Database, create MVC, set up initial scene
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import javafx.application.Application;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+public class Main extends Application {
+	
+	// background threads for database calls made by the UI, one request is normally in flight at a time
+	private static final int MODEL_THREADS = 4;
+	
+	// time from launch to the login window's first frame above which startup is reported as slow
+	private static final long FIRST_FRAME_BUDGET_MILLIS = 1500;
+	
+	// how often the operation latencies and pool counters are printed
+	private static final long METRICS_LOG_MILLIS = 60 * 1000;
+	
+	// startup phases are timed from here, the JVM's own startup before main is logged separately
+	private static final long LAUNCH_NANOS = System.nanoTime();
+	
+	// set by the database startup thread, read by stop on the JavaFX thread
+	private volatile StorageEngine storage;
+	private volatile Model model;
+	private AsyncModel asyncModel;
+
+    public static void main(String[] args) {
+    	logStartup("main, JVM up for " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms");
+        launch(args);
+    }
+
+    /**
+     * Show the login window straight away and open the database alongside it
+     * Calls made before the database is ready wait behind the busy indicator, a failure to open it
+     * is reported by the first call
+     */
+    @Override
+    public void start(Stage primaryStage) {
+    	logStartup("JavaFX started");
+        primaryStage.setTitle("Welcome to Data Analytics Hub");
+
+        // Connect, migrate and load the leaderboard off the JavaFX thread
+        CompletableFuture<Model> modelReady = new CompletableFuture<>();
+        Thread databaseStartup = new Thread(() -> openDatabase(modelReady), "database-startup");
+        databaseStartup.setDaemon(true);
+        databaseStartup.start();
+
+        // Create the model, view, and controller
+        UserView view = new UserView(primaryStage);
+        asyncModel = new AsyncModel(modelReady, MODEL_THREADS);
+        Controller controller = new Controller(asyncModel, view);
+
+        // Set the controller reference in the view
+        view.setController(controller);
+
+        // Set up the initial scene, the other scenes are built when first shown
+        view.showLoginScene();
+        logStartup("login scene built");
+        logFirstFrame(primaryStage.getScene());
+
+        primaryStage.show();
+    }
+    
+    /**
+     * Open the storage engine, migrate its schema and create the model, then load the leaderboard
+     * The model is handed over before the leaderboard loads, top N reads fall back to SQL until it has
+     * @param modelReady completed with the model, or exceptionally if the database cannot be opened
+     */
+    private void openDatabase(CompletableFuture<Model> modelReady) {
+    	try {
+    		// Open the storage engine chosen by -Danalyticshub.storage, its tables are created or migrated
+    		storage = DatabaseConnection.openStorage();
+    		logStartup(storage.getName() + " storage opened, schema migrated");
+    		
+    		model = new Model(storage);
+    		model.getMetrics().startLogging(METRICS_LOG_MILLIS);
+    		modelReady.complete(model);
+    		logStartup("model ready");
+    		
+    		// Percentiles from the last run, until the load below recounts them
+    		Path sketches = DatabaseConnection.sketchesPath(storage);
+    		if (sketches != null && model.loadSketches(sketches)) {
+    			logStartup("sketches read, " + model.getPostSketches());
+    		}
+    		
+    		// Load every post into the in-memory top N leaderboard
+    		model.loadLeaderboard();
+    		logStartup("leaderboard loaded, " + model.getLeaderboard().size() + " posts");
+    	} catch (SQLException | RuntimeException e) {
+    		// Handle database connection errors
+    		e.printStackTrace();
+    		modelReady.completeExceptionally(e);
+    	}
+    }
+    
+    // Log the first pulse that lays out the scene, the frame is rendered right after it
+    private static void logFirstFrame(Scene scene) {
+    	Runnable firstFrame = new Runnable() {
+    		@Override
+    		public void run() {
+    			scene.removePostLayoutPulseListener(this);
+    			long millis = logStartup("first frame");
+    			if (millis > FIRST_FRAME_BUDGET_MILLIS) {
+    				System.err.println("Startup: first frame took " + millis + " ms, budget is "
+    						+ FIRST_FRAME_BUDGET_MILLIS + " ms");
+    			}
+    		}
+    	};
+    	scene.addPostLayoutPulseListener(firstFrame);
+    }
+    
+    /**
+     * Print a startup phase with the time since launch
+     * @param phase phase that just completed
+     * @return milliseconds since launch
+     */
+    private static long logStartup(String phase) {
+    	long millis = (System.nanoTime() - LAUNCH_NANOS) / 1_000_000;
+    	System.out.println("Startup [" + Thread.currentThread().getName() + "] " + millis + " ms: " + phase);
+    	return millis;
+    }
+    
+    @Override
+    public void stop() {
+    	// Release the storage engine and its database connections on exit
+    	if (asyncModel != null) {
+    		asyncModel.close();
+    	}
+    	if (model != null) {
+    		Path sketches = DatabaseConnection.sketchesPath(storage);
+    		if (sketches != null) {
+    			model.saveSketches(sketches);
+    		}
+    		model.close();
+    	}
+    	if (storage != null) {
+    		storage.close();
+    	}
+    }
+}
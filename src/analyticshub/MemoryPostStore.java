@@ -0,0 +1,293 @@
+/*
+ * Class MemoryPostStore
+ * Posts held in ordered maps, lost when the process exits
+ * The rankings are keyed like the Leaderboard's, so top N and keyset pages read the first entries in O(N);
+ * a time index answers range queries. Posts are copied in and out
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+class MemoryPostStore implements PostStore {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Post> byId = new HashMap<>();
+    private final TreeMap<Long, Post> global = new TreeMap<>();
+    private final Map<Integer, TreeMap<Long, Post>> byUser = new HashMap<>();
+    // timestamp, then postid, so posts of the same minute keep a stable order
+    private final TreeMap<Long, TreeMap<Integer, Post>> byTime = new TreeMap<>();
+    private long likesTotal;
+    private long postidTotal;
+    private int nextPostid = 1;
+
+    @Override
+    public boolean isPostidExist(int postid) {
+        lock.readLock().lock();
+        try {
+            return byId.containsKey(postid);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Post addPost(int userid, String content, String author, int likes, int shares, long timestamp) {
+        lock.writeLock().lock();
+        try {
+            Post post = new Post(nextPostid++, userid, content, author, likes, shares, timestamp);
+            put(post);
+            return copy(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Post getPostByPostid(int postid) {
+        lock.readLock().lock();
+        try {
+            Post post = byId.get(postid);
+            return post == null ? null : copy(post);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deletePostByPostid(int postid) {
+        lock.writeLock().lock();
+        try {
+            return delete(postid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public RankedPosts readPostPage(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) {
+        lock.readLock().lock();
+        try {
+            TreeMap<Long, Post> ranking = userid == null ? global : byUser.get(userid);
+            if (ranking == null) {
+                return new RankedPosts(0);
+            }
+            SortedMap<Long, Post> rest = after ? ranking.tailMap(Leaderboard.rankKey(afterLikes, afterPostid), false) : ranking;
+            // size() of a tail map counts its entries, the whole ranking's size is O(1)
+            RankedPosts page = new RankedPosts(Math.max(0, Math.min(pageSize, ranking.size())));
+            Iterator<Post> posts = rest.values().iterator();
+            for (int i = 0; i < pageSize && posts.hasNext(); i++) {
+                page.add(posts.next());
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Post> retrievePostsBetween(long fromTimestamp, long toTimestamp, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Post> posts = new ArrayList<>();
+            if (fromTimestamp >= toTimestamp) {
+                return posts;
+            }
+            for (TreeMap<Integer, Post> minute : byTime.subMap(fromTimestamp, toTimestamp).values()) {
+                for (Post post : minute.values()) {
+                    if (posts.size() == limit) {
+                        return posts;
+                    }
+                    posts.add(copy(post));
+                }
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // copies, the visitor may hold on to them
+    @Override
+    public void forEachPost(Consumer<Post> visitor) {
+        lock.readLock().lock();
+        try {
+            for (Post post : byId.values()) {
+                visitor.accept(copy(post));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Post> readAllPosts() {
+        lock.readLock().lock();
+        try {
+            List<Post> posts = new ArrayList<>(byId.size());
+            for (Post post : byId.values()) {
+                posts.add(copy(post));
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long[] getTotals() {
+        lock.readLock().lock();
+        try {
+            return new long[] { byId.size(), likesTotal, postidTotal };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SortedMap<Integer, Long> countShares(SharesScope scope) {
+        lock.readLock().lock();
+        try {
+            // the narrowest index covering the scope, the scope filters the rest
+            Collection<Post> posts;
+            if (scope.getUserid() != null) {
+                TreeMap<Long, Post> ranking = byUser.get(scope.getUserid());
+                posts = ranking == null ? List.of() : ranking.values();
+            } else if (scope.getFromTimestamp() != null || scope.getToTimestamp() != null) {
+                List<Post> inRange = new ArrayList<>();
+                long from = scope.getFromTimestamp() == null ? Long.MIN_VALUE : scope.getFromTimestamp();
+                long to = scope.getToTimestamp() == null ? Long.MAX_VALUE : scope.getToTimestamp();
+                if (from < to) {
+                    for (TreeMap<Integer, Post> minute : byTime.subMap(from, to).values()) {
+                        inRange.addAll(minute.values());
+                    }
+                }
+                posts = inRange;
+            } else {
+                posts = byId.values();
+            }
+            SortedMap<Integer, Long> counts = new TreeMap<>();
+            for (Post post : posts) {
+                if (scope.matches(post.getUserid(), post.getTimestamp())) {
+                    counts.merge(post.getShares(), 1L, Long::sum);
+                }
+            }
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public PostWriter openWriter() {
+        return new Writer();
+    }
+
+    @Override
+    public int getMaxWriters() {
+        return Integer.MAX_VALUE;
+    }
+
+    // callers hold the write lock
+    private void put(Post post) {
+        long key = Leaderboard.rankKey(post.getLikes(), post.getPostid());
+        byId.put(post.getPostid(), post);
+        global.put(key, post);
+        byUser.computeIfAbsent(post.getUserid(), userid -> new TreeMap<>()).put(key, post);
+        byTime.computeIfAbsent(post.getTimestamp(), timestamp -> new TreeMap<>()).put(post.getPostid(), post);
+        likesTotal += post.getLikes();
+        postidTotal += post.getPostid();
+    }
+
+    private boolean delete(int postid) {
+        Post post = byId.remove(postid);
+        if (post == null) {
+            return false;
+        }
+        long key = Leaderboard.rankKey(post.getLikes(), postid);
+        global.remove(key);
+        TreeMap<Long, Post> userPosts = byUser.get(post.getUserid());
+        userPosts.remove(key);
+        if (userPosts.isEmpty()) {
+            byUser.remove(post.getUserid());
+        }
+        TreeMap<Integer, Post> minute = byTime.get(post.getTimestamp());
+        minute.remove(postid);
+        if (minute.isEmpty()) {
+            byTime.remove(post.getTimestamp());
+        }
+        likesTotal -= post.getLikes();
+        postidTotal -= postid;
+        return true;
+    }
+
+    private static Post copy(Post post) {
+        return new Post(post.getPostid(), post.getUserid(), post.getContent(), post.getAuthor(),
+                post.getLikes(), post.getShares(), post.getTimestamp());
+    }
+
+    /**
+     * Import session: rows are stored as they are written and removed again if the session closes before commit
+     * A postid that is already stored is rejected like a primary key violation
+     */
+    private final class Writer implements PostWriter {
+        private final List<Integer> uncommittedPostids = new ArrayList<>();
+
+        @Override
+        public int writeBatch(List<Post> batch, ImportResult result, List<Post> uncommitted) {
+            result.addBatch();
+            int inserted = 0;
+            lock.writeLock().lock();
+            try {
+                for (Post post : batch) {
+                    if (byId.containsKey(post.getPostid())) {
+                        result.addFailure(post.getPostid(), "Duplicate postid " + post.getPostid());
+                        continue;
+                    }
+                    put(copy(post));
+                    // later assigned postids go after the imported ones
+                    nextPostid = Math.max(nextPostid, post.getPostid() + 1);
+                    uncommittedPostids.add(post.getPostid());
+                    uncommitted.add(post);
+                    inserted++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return inserted;
+        }
+
+        @Override
+        public void commit() {
+            uncommittedPostids.clear();
+        }
+
+        @Override
+        public void close() {
+            if (uncommittedPostids.isEmpty()) {
+                return;
+            }
+            lock.writeLock().lock();
+            try {
+                for (int postid : uncommittedPostids) {
+                    delete(postid);
+                }
+                uncommittedPostids.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Class MemoryStorage
+ * Storage engine keeping users and posts in this process's memory only, for demos, tests and benchmarks
+ * Nothing is persisted: every start begins with no users and no posts
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+public class MemoryStorage implements StorageEngine {
+    private final MemoryUserStore users = new MemoryUserStore();
+    private final MemoryPostStore posts = new MemoryPostStore();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public UserStore getUserStore() {
+        return users;
+    }
+
+    @Override
+    public PostStore getPostStore() {
+        return posts;
+    }
+
+    @Override
+    public void registerGauges(Metrics metrics) {
+        metrics.gauge("memory_users", users::size);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryStorage[users=" + users.size() + "]";
+    }
+}
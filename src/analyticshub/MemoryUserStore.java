@@ -0,0 +1,72 @@
+/*
+ * Class MemoryUserStore
+ * User profiles held in a map by username, lost when the process exits
+ * Users are copied in and out, so callers cannot change a stored profile without editUser
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class MemoryUserStore implements UserStore {
+    private final Map<String, User> byUsername = new HashMap<>();
+    private int nextUserid = 1;
+
+    @Override
+    public synchronized boolean isUsernameTaken(String username) {
+        return byUsername.containsKey(username);
+    }
+
+    @Override
+    public synchronized User getUserByUsername(String username) {
+        User user = byUsername.get(username);
+        return user == null ? null : copy(user);
+    }
+
+    @Override
+    public synchronized boolean registerUser(String username, String password, String firstName, String lastName) {
+        if (byUsername.containsKey(username)) {
+            return false;
+        }
+        byUsername.put(username, new User(nextUserid++, username, password, firstName, lastName, false));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean updateVIP(String username) {
+        User user = byUsername.get(username);
+        if (user == null) {
+            return false;
+        }
+        user.setIsvip(true);
+        return true;
+    }
+
+    /**
+     * Renaming onto a username another user has fails, like the unique username index
+     */
+    @Override
+    public synchronized boolean editUser(String currentUsername, String username, String password, String firstName, String lastName) {
+        User user = byUsername.get(currentUsername);
+        if (user == null || (!username.equals(currentUsername) && byUsername.containsKey(username))) {
+            return false;
+        }
+        byUsername.remove(currentUsername);
+        byUsername.put(username, new User(user.getUserid(), username, password, firstName, lastName, user.getIsvip()));
+        return true;
+    }
+
+    private static User copy(User user) {
+        return new User(user.getUserid(), user.getUsername(), user.getPassword(), user.getFirstName(),
+                user.getLastName(), user.getIsvip());
+    }
+
+    // Getter of the number of users
+    synchronized int size() {
+        return byUsername.size();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Class Metrics
+ * Registry of per-operation call counts, error counts and latency histograms, plus gauges read on demand
+ * such as the connection pool and statement cache counters
+ * Recording never takes a lock, reading goes through snapshot
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+public class Metrics {
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private ScheduledExecutorService logger;
+
+    /**
+     * Counters of one operation, such as one Model method
+     */
+    public static final class Operation {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        /**
+         * Record one call
+         * @param nanos time the call took
+         * @param failed true if the call ended with an exception
+         */
+        public void record(long nanos, boolean failed) {
+            calls.increment();
+            if (failed) {
+                errors.increment();
+            }
+            latency.record(nanos);
+        }
+    }
+
+    /**
+     * Counters of an operation, created on first use
+     * @param name operation name
+     * @return counters to record calls into
+     */
+    public Operation operation(String name) {
+        return operations.computeIfAbsent(name, n -> new Operation());
+    }
+
+    /**
+     * Register a value read each time a snapshot is taken, replacing a gauge of the same name
+     * @param name gauge name
+     * @param value reads the current value, called on the thread taking the snapshot
+     */
+    public void gauge(String name, DoubleSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Read every operation and gauge
+     * @return counters, percentiles and gauge values as of now, sorted by name
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, MetricsSnapshot.OperationStats> stats = new TreeMap<>();
+        for (Map.Entry<String, Operation> entry : operations.entrySet()) {
+            Operation operation = entry.getValue();
+            stats.put(entry.getKey(), new MetricsSnapshot.OperationStats(operation.calls.sum(),
+                    operation.errors.sum(), operation.latency.snapshot()));
+        }
+        Map<String, Double> values = new TreeMap<>();
+        for (Map.Entry<String, DoubleSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsDouble());
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), stats, values);
+    }
+
+    /**
+     * Print a snapshot to standard output at a fixed period, until close
+     * @param periodMillis time between two snapshots
+     */
+    public synchronized void startLogging(long periodMillis) {
+        if (logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> System.out.print(snapshot().toText()),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic logging
+     */
+    public synchronized void close() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Class MetricsSnapshot
+ * Values of every operation and gauge of a Metrics registry at one moment
+ * toText writes them in the Prometheus text format, one metric per line with latencies in milliseconds
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+public class MetricsSnapshot {
+    private static final double[] PERCENTILES = { 50, 95, 99 };
+
+    private final long takenAt;
+    private final Map<String, OperationStats> operations;
+    private final Map<String, Double> gauges;
+
+    /**
+     * Calls, errors and latency distribution of one operation
+     */
+    public static final class OperationStats {
+        private final long calls;
+        private final long errors;
+        private final LatencyHistogram latency;
+
+        OperationStats(long calls, long errors, LatencyHistogram latency) {
+            this.calls = calls;
+            this.errors = errors;
+            this.latency = latency;
+        }
+
+        // Getter of the number of calls
+        public long getCalls() {
+            return calls;
+        }
+
+        // Getter of the number of calls that ended with an exception
+        public long getErrors() {
+            return errors;
+        }
+
+        // Getter of the latency distribution, no longer recorded into
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        // Getter of a latency percentile in milliseconds, such as 99 for p99
+        public double getPercentileMillis(double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1e6;
+        }
+
+        // Getter of the largest latency in milliseconds
+        public double getMaxMillis() {
+            return latency.getMaxNanos() / 1e6;
+        }
+    }
+
+    MetricsSnapshot(long takenAt, Map<String, OperationStats> operations, Map<String, Double> gauges) {
+        this.takenAt = takenAt;
+        this.operations = Collections.unmodifiableMap(operations);
+        this.gauges = Collections.unmodifiableMap(gauges);
+    }
+
+    // Getter of when the snapshot was taken, in epoch milliseconds
+    public long getTakenAt() {
+        return takenAt;
+    }
+
+    // Getter of the operations by name
+    public Map<String, OperationStats> getOperations() {
+        return operations;
+    }
+
+    // Getter of the gauge values by name
+    public Map<String, Double> getGauges() {
+        return gauges;
+    }
+
+    /**
+     * Write the snapshot as text, for the log and the metrics endpoint
+     * @return one line per value
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(256 + operations.size() * 512);
+        text.append("# metrics at ").append(PostDates.format(takenAt)).append('\n');
+        for (Map.Entry<String, OperationStats> entry : operations.entrySet()) {
+            String label = "{operation=\"" + entry.getKey() + "\"";
+            OperationStats stats = entry.getValue();
+            text.append("model_calls_total").append(label).append("} ").append(stats.getCalls()).append('\n');
+            text.append("model_errors_total").append(label).append("} ").append(stats.getErrors()).append('\n');
+            for (double percentile : PERCENTILES) {
+                text.append("model_latency_ms").append(label).append(",quantile=\"")
+                        .append(percentile / 100).append("\"} ")
+                        .append(format(stats.getPercentileMillis(percentile))).append('\n');
+            }
+            text.append("model_latency_ms_max").append(label).append("} ").append(format(stats.getMaxMillis())).append('\n');
+        }
+        for (Map.Entry<String, Double> entry : gauges.entrySet()) {
+            text.append(entry.getKey()).append(' ').append(format(entry.getValue())).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+                : String.format(Locale.ROOT, "%.3f", value);
+    }
+}
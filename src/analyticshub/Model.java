@@ -0,0 +1,758 @@
+/*
+ * Class Model
+ * Handles database interactions
+ * Encapsulates methods for retrieving users, editing profiles, creating and deleting posts, and retrieving post data
+ * The users and posts live in a StorageEngine; the model adds the leaderboard, metrics and import pipeline on top
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class Model {
+    // Bulk import tuning: rows per JDBC batch and batches per transaction
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int IMPORT_COMMIT_INTERVAL = 10;
+    // Parsers use the spare cores, writers are capped below the connection pool size
+    private static final int IMPORT_PARSER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int IMPORT_WRITER_THREADS = 4;
+    
+    // how often the leaderboard is compared with the database
+    private static final long LEADERBOARD_CHECK_MILLIS = 5 * 60 * 1000;
+    
+    private final StorageEngine storage;
+    private final UserStore userStore;
+    private final PostStore postStore;
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final PostColumns columns = new PostColumns();
+    private final SharesAnalytics sharesAnalytics;
+    private final PostSketches sketches;
+    private final DistinctAuthors distinctAuthors;
+    private final Metrics metrics = new Metrics();
+    private ScheduledExecutorService leaderboardChecker;
+    
+    /**
+     * Constructor
+     * @param storage storage engine holding the users and posts, see DatabaseConnection.openStorage
+     */
+    public Model(StorageEngine storage) {
+        this.storage = storage;
+        this.userStore = storage.getUserStore();
+        this.postStore = storage.getPostStore();
+        this.sharesAnalytics = new SharesAnalytics(columns, postStore);
+        this.sketches = new PostSketches(columns);
+        this.distinctAuthors = new DistinctAuthors(columns);
+        
+        // engine gauges such as pool counters, read when a snapshot is taken
+        storage.registerGauges(metrics);
+        metrics.gauge("leaderboard_posts", leaderboard::size);
+        metrics.gauge("columns_posts", columns::size);
+        metrics.gauge("columns_off_heap_bytes", columns::getOffHeapBytes);
+        metrics.gauge("shares_cached_scopes", sharesAnalytics::getCachedScopes);
+        metrics.gauge("likes_p50", () -> sketches.quantiles(PostSketches.Metric.LIKES, null, 0.5)[0]);
+        metrics.gauge("likes_p90", () -> sketches.quantiles(PostSketches.Metric.LIKES, null, 0.9)[0]);
+        metrics.gauge("likes_p99", () -> sketches.quantiles(PostSketches.Metric.LIKES, null, 0.99)[0]);
+        metrics.gauge("shares_p50", () -> sketches.quantiles(PostSketches.Metric.SHARES, null, 0.5)[0]);
+        metrics.gauge("shares_p90", () -> sketches.quantiles(PostSketches.Metric.SHARES, null, 0.9)[0]);
+        metrics.gauge("shares_p99", () -> sketches.quantiles(PostSketches.Metric.SHARES, null, 0.99)[0]);
+        metrics.gauge("distinct_authors", distinctAuthors::count);
+        metrics.gauge("distinct_authors_sketch_bytes", distinctAuthors::getSketchBytes);
+    }
+    
+    /**
+     * Constructor for a MySQL database, the pool stays open when the model is closed
+     * @param pool connection pool, a connection is borrowed for each operation
+     */
+    public Model(ConnectionPool pool) {
+        this(mysqlStorage(pool));
+    }
+    
+    private static StorageEngine mysqlStorage(ConnectionPool pool) {
+        try {
+            return new JdbcStorage("mysql", pool, false, false);
+        } catch (SQLException e) {
+            // not thrown, the highest ids are only read when the engine assigns them
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * Load every post into the in-memory leaderboard and post columns and schedule their consistency check
+     * Until the load completes, top N posts are read from the database
+     * @throws SQLException if the posts cannot be read
+     */
+    public void loadLeaderboard() throws SQLException {
+        rebuildLeaderboard();
+        if (leaderboardChecker == null) {
+            leaderboardChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "leaderboard-checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leaderboardChecker.scheduleWithFixedDelay(this::checkLeaderboard,
+                    LEADERBOARD_CHECK_MILLIS, LEADERBOARD_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Read every post from the store and replace the leaderboard and the post columns with them
+     * @throws SQLException if the posts cannot be read, the old ranking and columns are kept
+     */
+    public void rebuildLeaderboard() throws SQLException {
+        timed("rebuildLeaderboard", () -> {
+            if (!leaderboard.beginRebuild()) {
+                return null; // another thread is rebuilding already
+            }
+            // only rebuilds hold the leaderboard's rebuild, so the columns' is free
+            columns.beginRebuild();
+            long start = System.nanoTime();
+            boolean rebuilt = false;
+            try {
+                // streamed, each post goes into the new ranking and is copied into the new columns
+                postStore.forEachPost(post -> {
+                    leaderboard.addRebuilt(post);
+                    columns.addRebuilt(post);
+                });
+                leaderboard.finishRebuild();
+                columns.finishRebuild();
+                rebuilt = true;
+                System.out.println(leaderboard + ", " + columns + " rebuilt in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } finally {
+                if (!rebuilt) {
+                    leaderboard.cancelRebuild();
+                    columns.cancelRebuild();
+                }
+            }
+            return null;
+        });
+    }
+    
+    /**
+     * Compare the leaderboard with the database by row count, likes and postid totals, rebuilding it on a mismatch
+     * A post committed between the two reads can cause a false mismatch, which only costs an extra rebuild
+     * @return true if the leaderboard matched the database
+     */
+    public boolean checkLeaderboard() {
+        try {
+            return timed("checkLeaderboard", () -> {
+                long[] expected = postStore.getTotals();
+                long[] actual = leaderboard.getTotals();
+                if (Arrays.equals(expected, actual)) {
+                    return true;
+                }
+                System.out.println("Leaderboard out of date (posts, likes, postids): database " + Arrays.toString(expected)
+                        + ", memory " + Arrays.toString(actual) + ", rebuilding");
+                rebuildLeaderboard();
+                return false;
+            });
+        } catch (SQLException e) {
+            // Database errors
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Stop the leaderboard consistency check and the metrics logging, the storage engine stays open
+     */
+    public void close() {
+        if (leaderboardChecker != null) {
+            leaderboardChecker.shutdownNow();
+        }
+        metrics.close();
+    }
+    
+    // Getter of the storage engine holding the users and posts
+    public StorageEngine getStorage() {
+        return storage;
+    }
+    
+    // Getter of the in-memory leaderboard
+    public Leaderboard getLeaderboard() {
+        return leaderboard;
+    }
+    
+    // Getter of the off-heap post columns, scanned by the aggregations
+    public PostColumns getPostColumns() {
+        return columns;
+    }
+    
+    // Getter of the quantile sketches of likes and shares
+    public PostSketches getPostSketches() {
+        return sketches;
+    }
+    
+    // Getter of the call counts, errors and latencies of the model's operations
+    public Metrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Body of a model operation, may throw SQLException or nothing
+     * @param <T> result type
+     * @param <E> exception thrown
+     */
+    private interface DatabaseCall<T, E extends Exception> {
+        T run() throws E;
+    }
+    
+    /**
+     * Run an operation and record its call, latency and whether it threw in the metrics,
+     * and as a QueryEvent when Flight Recorder is recording
+     * Every database operation goes through here; methods that report errors as false or null
+     * catch outside of it, so their failures are still counted
+     * @param name operation name in the metrics, the method name
+     * @param call body of the method
+     * @return result of the call
+     * @throws E exception of the call, rethrown unchanged
+     */
+    private <T, E extends Exception> T timed(String name, DatabaseCall<T, E> call) throws E {
+        QueryEvent event = new QueryEvent();
+        event.begin();
+        long start = System.nanoTime();
+        T result = null;
+        boolean failed = true;
+        try {
+            result = call.run();
+            failed = false;
+            return result;
+        } finally {
+            metrics.operation(name).record(System.nanoTime() - start, failed);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = name;
+                event.rows = rowsOf(result);
+                event.failed = failed;
+                event.commit();
+            }
+        }
+    }
+    
+    // rows an operation returned or changed, judged from its result
+    private static int rowsOf(Object result) {
+        if (result instanceof RankedPosts) {
+            return ((RankedPosts) result).size();
+        }
+        if (result instanceof List) {
+            return ((List<?>) result).size();
+        }
+        if (result instanceof ImportResult) {
+            return (int) ((ImportResult) result).getRowsInserted();
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result ? 1 : 0;
+        }
+        if (result instanceof Integer) {
+            return (Integer) result; // writeBatch
+        }
+        return result == null ? 0 : 1;
+    }
+    
+    /**
+     * check if username exist
+     * @param username username that would like to be applied
+     * @return true if username already been used
+     * @throws SQLException
+     */
+    public boolean isUsernameTaken(String username) throws SQLException {
+        return timed("isUsernameTaken", () -> userStore.isUsernameTaken(username));
+    }
+    
+    /**
+     * Getter - get user information based on username
+     * @param username
+     * @return user (userid, username, password, firstname, lastname, isvip)
+     */
+    public User getUserByUsername(String username) {
+        try {
+            return timed("getUserByUsername", () -> userStore.getUserByUsername(username));
+        } catch (SQLException e) {
+        	 // Database errors
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * New User registration updated into user profile table
+     * @param username
+     * @param password
+     * @param firstName
+     * @param lastName
+     * @return true for 1 new user is added to the User Profile, false if the username already been used
+     * @throws SQLException
+     */
+    public boolean registerUser(String username, String password, String firstName, String lastName) throws SQLException {
+        try {
+            return timed("registerUser", () -> userStore.registerUser(username, password, firstName, lastName));
+        } catch (SQLException ex) {
+       	 	// Database errors
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    
+    /**
+     * Update user vip to true status
+     * @param userid user that would like to update to vip
+     * @return true if user vip had been updated
+     * @throws SQLException
+     */
+    public boolean updateVIP(String username) throws SQLException {
+        return timed("updateVIP", () -> userStore.updateVIP(username));
+    }
+    
+    
+    /**
+     * Update user profile for username, password, firstname, and lastname
+     * @param currentusername current username in used
+     * @param username new username the user would like to update
+     * @param password new password the user would like to update
+     * @param firstname first name the user would like to update
+     * @param lastname last name the user would like to update
+     * @return true if 1 line of user profile had been updated
+     */
+    public boolean editUser(String currentusername, String username, String password, String firstname, String lastname) {
+        try {
+            return timed("editUser", () -> userStore.editUser(currentusername, username, password, firstname, lastname));
+        } catch (SQLException ex) {
+        	// Database errors
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Check if post exist with postid
+     * @param postid provided postid to check for existing post
+     * @return return true if postid exist
+     * @throws SQLException
+     */
+    boolean isPostidExist(int postid) throws SQLException {
+        return timed("isPostidExist", () -> postStore.isPostidExist(postid));
+    }
+    
+    /**
+     * adding new post to the social media posts table
+     * @param userid record the who enter the post
+     * @param content the content of the post
+     * @param author provided author name of the post, can be different to the user's full name
+     * @param likes number of likes for this post
+     * @param shares number of shares for this post
+     * @param timestamp the date of this post in epoch milliseconds, see PostDates
+     * @return return true if the new post had been added to the social media table
+     * @throws SQLException
+     */
+    public boolean addPost(int userid, String content, String author, int likes, int shares, long timestamp) throws SQLException {
+        try {
+            return timed("addPost", () -> {
+                Post post = postStore.addPost(userid, content, author, likes, shares, timestamp);
+                if (post != null) {
+                    leaderboard.add(post);
+                    columns.add(post);
+                }
+                return post != null;
+            });
+        } catch (SQLException ex) {
+       	 	// Database errors
+            ex.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Retrieve post by postid and create a Post post to store the information
+     * @param postid provide postid to locate existing post
+     * @return return post (postid, userid, content, author, likes, shares, datetime)
+     * @throws SQLException
+     */
+    public Post getPostByPostid(int postid){
+        try {
+            return timed("getPostByPostid", () -> postStore.getPostByPostid(postid));
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * remove the post by postid
+     * @param postid provided postid for post to be removed
+     * @return true for successfully delete the post with provided postid
+     */
+    public boolean deletePostByPostid(int postid) {
+        try {
+            return timed("deletePostByPostid", () -> {
+                boolean deleted = postStore.deletePostByPostid(postid);
+                if (deleted) {
+                    leaderboard.remove(postid);
+                    columns.remove(postid);
+                }
+                return deleted;
+            });
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    
+    /**
+     * Retrieve top N likes posts and return
+     * @param topN number of top N posts would like to retrieve
+     * @return Top N posts with most likes, in rank order, ties broken by postid
+     */
+    public RankedPosts retrieveTopPostsAll(int topN) {
+        try {
+            return timed("retrieveTopPostsAll", () -> {
+                if (leaderboard.isLoaded()) {
+                    return leaderboard.top(topN);
+                }
+                return postStore.readPostPage(null, false, 0, 0, topN);
+            });
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return new RankedPosts(0);
+        }
+    }
+    
+    /**
+     * Retrieve top N likes posts by userid and return
+     * @param topN number of top N posts would like to retrieve
+     * @param userid top N posts of userid's posts
+     * @return Top N posts with most likes by defined userid, in rank order, ties broken by postid
+     */
+    public RankedPosts retrieveTopPostsUser(int topN, int userid) {
+        try {
+            return timed("retrieveTopPostsUser", () -> {
+                if (leaderboard.isLoaded()) {
+                    return leaderboard.top(topN, userid);
+                }
+                return postStore.readPostPage(userid, false, 0, 0, topN);
+            });
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return new RankedPosts(0);
+        }
+    }
+    
+    /**
+     * Open a cursor over the most liked posts of all users, read one page at a time
+     * @param limit total number of posts to return
+     * @param pageSize number of posts per page
+     * @return cursor positioned before the most liked post
+     */
+    public PostCursor openTopPosts(long limit, int pageSize) {
+        return new PostCursor(this, null, limit, pageSize);
+    }
+    
+    /**
+     * Open a cursor over one user's posts, most liked first, read one page at a time
+     * @param userid owner of the posts
+     * @param limit total number of posts to return
+     * @param pageSize number of posts per page
+     * @return cursor positioned before the user's most liked post
+     */
+    public PostCursor openUserPosts(int userid, long limit, int pageSize) {
+        return new PostCursor(this, userid, limit, pageSize);
+    }
+    
+    /**
+     * Read the page of posts ranked right after (afterLikes, afterPostid), from the leaderboard once it is loaded
+     * @param userid owner of the posts, null for all users
+     * @param after false for the first page, which has no keyset
+     * @param afterLikes likes of the last post of the previous page
+     * @param afterPostid postid of the last post of the previous page
+     * @param pageSize maximum number of posts
+     * @return posts in rank order
+     * @throws SQLException
+     */
+    RankedPosts readPostPage(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) throws SQLException {
+        return timed("readPostPage", () -> {
+            if (leaderboard.isLoaded()) {
+                return leaderboard.page(userid, after, afterLikes, afterPostid, pageSize);
+            }
+            return postStore.readPostPage(userid, after, afterLikes, afterPostid, pageSize);
+        });
+    }
+    
+    /**
+     * Retrieve posts in a time range, oldest first
+     * @param fromTimestamp start of the range in epoch milliseconds, inclusive
+     * @param toTimestamp end of the range in epoch milliseconds, exclusive
+     * @param limit maximum number of posts to return
+     * @return posts posted in the range
+     */
+    public List<Post> retrievePostsBetween(long fromTimestamp, long toTimestamp, int limit) {
+        try {
+            return timed("retrievePostsBetween", () -> postStore.retrievePostsBetween(fromTimestamp, toTimestamp, limit));
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Distribution of shares over buckets, for the shares distribution chart
+     * Served from cached counts kept current as posts change, computed by a scan of the post columns
+     * or one GROUP BY query the first time a scope is asked for
+     * @param scope posts to count: all, one user's, a time range or one user's in a range
+     * @param buckets how to group share counts: fixed width, log scale or quantiles
+     * @return distribution, null if the database could not be read
+     */
+    public SharesDistribution getSharesDistribution(SharesScope scope, SharesBuckets buckets) {
+        try {
+            return timed("getSharesDistribution", () -> sharesAnalytics.distribution(scope, buckets));
+        } catch (SQLException e) {
+       	 	// Database errors
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Percentiles of likes or shares per post, read from sketches kept current as posts change
+     * Each value is within 1% of the value of a post at that rank; at startup they come from the saved sketches
+     * until the posts have loaded
+     * @param metric likes or shares
+     * @param userid owner of the posts, null for all users
+     * @param quantiles quantiles between 0 and 1, such as 0.5, 0.9 and 0.99
+     * @return values in the order of the quantiles, NaN when there are no posts
+     */
+    public double[] getPercentiles(PostSketches.Metric metric, Integer userid, double... quantiles) {
+        return timed("getPercentiles", () -> sketches.quantiles(metric, userid, quantiles));
+    }
+    
+    /**
+     * Estimated number of distinct authors, from HyperLogLog sketches kept current as posts are added
+     * Authors of posts deleted since the posts were last loaded may still be counted
+     * @param userid owner of the posts, null for all users
+     * @return estimate, within about 1% for all users and 2% for one; null until the posts have loaded, see loadLeaderboard
+     */
+    public Long getDistinctAuthors(Integer userid) {
+        return timed("getDistinctAuthors", () -> !columns.isLoaded() ? null
+                : userid == null ? distinctAuthors.count() : distinctAuthors.countByUser(userid));
+    }
+    
+    /**
+     * Estimated number of distinct authors of the posts of several users, each author counted once
+     * @param userids owners of the posts
+     * @return estimate, null until the posts have loaded
+     */
+    public Long getDistinctAuthors(List<Integer> userids) {
+        return timed("getDistinctAuthors", () -> columns.isLoaded() ? distinctAuthors.countByUsers(userids) : null);
+    }
+    
+    /**
+     * Estimated number of distinct authors of the posts of a range of days, each author counted once
+     * @param fromTimestamp a time on the first day, days are UTC
+     * @param toTimestamp a time on the last day
+     * @return estimate, null until the posts have loaded
+     */
+    public Long getDistinctAuthors(long fromTimestamp, long toTimestamp) {
+        return timed("getDistinctAuthors", () -> columns.isLoaded()
+                ? distinctAuthors.countByDays(DistinctAuthors.dayOf(fromTimestamp), DistinctAuthors.dayOf(toTimestamp)) : null);
+    }
+    
+    /**
+     * Estimated number of distinct authors of each day of a range
+     * @param fromTimestamp a time on the first day, days are UTC
+     * @param toTimestamp a time on the last day
+     * @return estimates by day, in days since 1 January 1970, days without posts are left out; null until the posts have loaded
+     */
+    public NavigableMap<Long, Long> getDistinctAuthorsPerDay(long fromTimestamp, long toTimestamp) {
+        return timed("getDistinctAuthorsPerDay", () -> columns.isLoaded()
+                ? distinctAuthors.countPerDay(DistinctAuthors.dayOf(fromTimestamp), DistinctAuthors.dayOf(toTimestamp)) : null);
+    }
+    
+    /**
+     * Read the sketches saved by saveSketches, so percentiles are answered before the posts have loaded
+     * Call before loadLeaderboard; the load then recounts them exactly
+     * @param file sketch file, nothing is read if it does not exist
+     * @return true if the sketches were read
+     */
+    public boolean loadSketches(Path file) {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        try {
+            sketches.load(file);
+            return true;
+        } catch (IOException e) {
+            // A damaged file is ignored, the sketches are recounted when the posts load
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Save the sketches for the next startup
+     * @param file sketch file, its directory is created if missing
+     * @return true if the sketches were written
+     */
+    public boolean saveSketches(Path file) {
+        try {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null) {
+                Files.createDirectories(directory);
+            }
+            sketches.save(file);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * Compute a statistic over every post in parallel, see Aggregators for the statistics and how to combine them
+     * Served from the post columns only, no copy of the posts is made while they load
+     * @param aggregator statistic to compute
+     * @return result of the aggregator, null until the posts have loaded, see loadLeaderboard
+     */
+    public <R> R aggregate(Aggregator<?, R> aggregator) {
+        return timed("aggregate", () -> columns.isLoaded() ? ParallelAggregation.run(columns, aggregator) : null);
+    }
+    
+    /**
+     * Bulk import posts in batches, committing every commitInterval batches
+     * A batch that fails is rolled back and replayed row by row, so one bad row only drops itself
+     * @param posts posts to import, consumed one at a time so the source can be larger than memory
+     * @param batchSize number of rows sent in one executeBatch
+     * @param commitInterval number of batches per transaction
+     * @return rows inserted, rows rejected and rows per second
+     */
+    public ImportResult bulkImport(Iterator<Post> posts, int batchSize, int commitInterval) {
+        return timed("bulkImport", () -> {
+            ImportResult result = new ImportResult();
+            try (PostWriter writer = postStore.openWriter()) {
+                List<Post> batch = new ArrayList<>(batchSize);
+                List<Post> uncommitted = new ArrayList<>();
+                long uncommittedRows = 0;
+                int uncommittedBatches = 0;
+                try {
+                    while (posts.hasNext()) {
+                        batch.add(posts.next());
+                        if (batch.size() == batchSize) {
+                            uncommittedRows += writeBatch(writer, batch, result, uncommitted);
+                            batch.clear();
+                            if (++uncommittedBatches == commitInterval) {
+                                writer.commit();
+                                result.addInserted(uncommittedRows);
+                                postsCommitted(uncommitted);
+                                uncommittedRows = 0;
+                                uncommittedBatches = 0;
+                            }
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        uncommittedRows += writeBatch(writer, batch, result, uncommitted);
+                        batch.clear();
+                    }
+                    writer.commit();
+                    result.addInserted(uncommittedRows);
+                    postsCommitted(uncommitted);
+                } catch (SQLException ex) {
+                    // The open transaction is rolled back when the writer closes, batch only holds rows not yet written
+                    result.addAbortedRows(uncommittedRows + batch.size(), ex.getMessage());
+                    ex.printStackTrace();
+                }
+            } catch (SQLException ex) {
+                // Database errors
+                result.addFailure(-1, "Import aborted: " + ex.getMessage());
+                ex.printStackTrace();
+            }
+            result.finish();
+            return result;
+        });
+    }
+    
+    /**
+     * Bulk import posts from a stream, see bulkImport(Iterator, int, int)
+     * @param posts posts to import
+     * @param batchSize number of rows sent in one executeBatch
+     * @param commitInterval number of batches per transaction
+     * @return rows inserted, rows rejected and rows per second
+     */
+    public ImportResult bulkImport(Stream<Post> posts, int batchSize, int commitInterval) {
+        try (posts) {
+            return bulkImport(posts.iterator(), batchSize, commitInterval);
+        }
+    }
+    
+    /**
+     * Create a parallel import pipeline that reads, parses and inserts a CSV file on separate threads
+     * @param parserThreads number of threads parsing the file
+     * @param writerThreads number of threads inserting, each opens one PostWriter
+     * @param batchSize number of rows sent in one executeBatch
+     * @param commitInterval number of batches per transaction on each writer
+     * @return pipeline ready to run, its stage counters are readable while and after it runs
+     */
+    public ImportPipeline createImportPipeline(int parserThreads, int writerThreads, int batchSize, int commitInterval) {
+        return new ImportPipeline(this, postStore, parserThreads, writerThreads, batchSize, commitInterval);
+    }
+    
+    /**
+     * Import a CSV file of posts (postid,content,author,likes,shares,datetime), blocks until the import ends
+     * The file is parsed and inserted in parallel, bounded queues keep memory use flat
+     * @param file CSV file to import
+     * @param userid owner of the imported posts
+     * @return import counters
+     */
+    public ImportResult importCsv(File file, int userid) {
+        return timed("importCsv", () -> {
+            ImportPipeline pipeline = createImportPipeline(IMPORT_PARSER_THREADS, IMPORT_WRITER_THREADS,
+                    IMPORT_BATCH_SIZE, IMPORT_COMMIT_INTERVAL);
+            ImportResult result = pipeline.run(file.toPath(), userid);
+            System.out.println(result + " " + pipeline);
+            return result;
+        });
+    }
+    
+    /**
+     * Insert one batch of posts inside the writer's open transaction
+     * @param writer import session
+     * @param batch posts to insert
+     * @param result receives the rejected rows
+     * @param uncommitted receives the inserted posts, hand them to postsCommitted after the commit
+     * @return number of rows inserted, not yet committed
+     * @throws SQLException if the session itself failed
+     */
+    int writeBatch(PostWriter writer, List<Post> batch, ImportResult result, List<Post> uncommitted) throws SQLException {
+        return timed("writeBatch", () -> writer.writeBatch(batch, result, uncommitted));
+    }
+    
+    /**
+     * Publish imported posts to the leaderboard and the post columns once their transaction has committed
+     * @param committed posts collected by writeBatch, cleared afterwards
+     */
+    void postsCommitted(List<Post> committed) {
+        leaderboard.addAll(committed);
+        columns.addAll(committed);
+        committed.clear();
+    }
+    
+}
\ No newline at end of file
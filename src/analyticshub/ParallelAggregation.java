@@ -0,0 +1,88 @@
+/*
+ * Class ParallelAggregation
+ * Runs an Aggregator over every live post of the post columns with fork/join: the rows are split in halves
+ * until a range is small enough, each range is added to a state of its own and the states are merged
+ * on the way back up, so threads share nothing while they scan
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public final class ParallelAggregation {
+    // rows scanned by one task, large enough that splitting costs little next to the scan
+    static final int SPLIT_ROWS = 16 * 1024;
+
+    private ParallelAggregation() {
+    }
+
+    /**
+     * Aggregate every post on the common fork/join pool
+     * @param columns post columns to scan
+     * @param aggregator statistic to compute
+     * @return result of the aggregator
+     */
+    public static <S, R> R run(PostColumns columns, Aggregator<S, R> aggregator) {
+        return run(columns, aggregator, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Aggregate every post on a given pool
+     * The columns stay read-locked until the result is finished, so no post is added or removed meanwhile
+     * @param columns post columns to scan
+     * @param aggregator statistic to compute
+     * @param pool pool whose threads scan the rows
+     * @return result of the aggregator
+     */
+    public static <S, R> R run(PostColumns columns, Aggregator<S, R> aggregator, ForkJoinPool pool) {
+        columns.readLock().lock();
+        try {
+            // the pool's threads read under this thread's read lock, forking orders their reads after it
+            S state = pool.invoke(new Scan<>(columns, aggregator, 0, columns.getRowCount()));
+            return aggregator.finish(state, columns);
+        } finally {
+            columns.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aggregate rows from (inclusive) to (exclusive), splitting while the range is larger than SPLIT_ROWS
+     */
+    private static final class Scan<S> extends RecursiveTask<S> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient PostColumns columns;
+        private final transient Aggregator<S, ?> aggregator;
+        private final int from;
+        private final int to;
+
+        private Scan(PostColumns columns, Aggregator<S, ?> aggregator, int from, int to) {
+            this.columns = columns;
+            this.aggregator = aggregator;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected S compute() {
+            if (to - from <= SPLIT_ROWS) {
+                S state = aggregator.newState();
+                for (int row = from; row < to; row++) {
+                    if (columns.isLive(row)) {
+                        aggregator.add(state, columns, row);
+                    }
+                }
+                return state;
+            }
+            int middle = (from + to) >>> 1;
+            Scan<S> left = new Scan<>(columns, aggregator, from, middle);
+            left.fork();
+            S right = new Scan<>(columns, aggregator, middle, to).compute();
+            return aggregator.merge(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Class PooledConnection
+ * A connection borrowed from the ConnectionPool, close() hands it back instead of closing the socket
+ * Keeps an LRU cache of prepared statements keyed by SQL text for the life of the physical connection
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PooledConnection implements AutoCloseable {
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private final long createdAt;
+    private long lastUsed;
+    private boolean borrowed;
+
+    /**
+     * Constructor
+     * @param pool pool the connection belongs to
+     * @param connection physical database connection
+     * @param statementCacheSize number of prepared statements kept open, 0 disables the cache
+     */
+    PooledConnection(ConnectionPool pool, Connection connection, int statementCacheSize) {
+        this.pool = pool;
+        this.connection = connection;
+        this.createdAt = System.currentTimeMillis();
+        this.lastUsed = createdAt;
+        // access-ordered, so the eldest entry is the least recently used statement
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= statementCacheSize) {
+                    return false;
+                }
+                pool.recordStatementEviction();
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    // Getter of the underlying JDBC connection, only valid until close()
+    public Connection getConnection() {
+        return connection;
+    }
+
+    // Getter of the creation time in epoch milliseconds
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    // Getter of the last time the connection was returned, in epoch milliseconds
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Get a prepared statement for the SQL text, reusing the one prepared earlier on this connection
+     * The statement belongs to the cache: set every parameter before executing, close the ResultSet but not the statement
+     * @param sql statement text, also the cache key
+     * @return prepared statement bound to this connection
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null) {
+            pool.recordStatementHit();
+            return statement;
+        }
+        pool.recordStatementMiss();
+        statement = connection.prepareStatement(sql);
+        statements.put(sql, statement);
+        return statement;
+    }
+
+    /**
+     * Get a cached prepared statement that returns the keys generated by an INSERT
+     * @param sql statement text
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS or Statement.NO_GENERATED_KEYS
+     * @return prepared statement bound to this connection
+     * @throws SQLException
+     */
+    public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys != Statement.RETURN_GENERATED_KEYS) {
+            return prepare(sql);
+        }
+        // cached apart from the plain statement for the same SQL, the two are prepared differently
+        String key = "RETURN_GENERATED_KEYS " + sql;
+        PreparedStatement statement = statements.get(key);
+        if (statement != null) {
+            pool.recordStatementHit();
+            return statement;
+        }
+        pool.recordStatementMiss();
+        statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        statements.put(key, statement);
+        return statement;
+    }
+
+    void markBorrowed() {
+        borrowed = true;
+    }
+
+    /**
+     * Undo per-borrow state so the next borrower gets a clean connection
+     * @return false if the connection is no longer usable and should be discarded
+     */
+    boolean reset() {
+        lastUsed = System.currentTimeMillis();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Close the socket, called by the pool when the connection is evicted or broken
+     */
+    void closePhysical() {
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            // the connection is being dropped anyway
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            // the statement is no longer reachable from the cache
+        }
+    }
+
+    /**
+     * Return the connection to the pool, calling it more than once has no effect
+     */
+    @Override
+    public void close() {
+        if (borrowed) {
+            borrowed = false;
+            pool.release(this);
+        }
+    }
+}
\ No newline at end of file
@@ -4,6 +4,8 @@
  * @version JavaSE-17
 */ 
 
+package analyticshub;
+
 public class Post {
     private int postid;
     private int userid;
@@ -11,7 +13,7 @@ public class Post {
     private String author;  // come back to see if necessary when the userid is recorded, author is changeable
     private int likes;
     private int shares;
-    private String dateTime;
+    private long timestamp; // epoch milliseconds, see PostDates
 
     /**
      * Default Constructor
@@ -21,16 +23,16 @@ public class Post {
      * @param author: an anonymous ID (String) of the post author
      * @param likes: number of likes (non-negative integer) of the post
      * @param shares: number of users (non-negative integer) that shared the post
-     * @param dateTimes: the date and the time that the post was first posted, in the format of (DD/MM/YYYY HH:MM) 
+     * @param timestamp: the date and the time that the post was first posted, in epoch milliseconds (see PostDates)
      */
-    public Post(int postid, int userid, String content, String author, int likes, int shares, String dateTime) {
+    public Post(int postid, int userid, String content, String author, int likes, int shares, long timestamp) {
         this.postid = postid;
         this.userid = userid;
         this.content = content;
         this.author = author;
         this.likes = likes;
         this.shares = shares;
-        this.dateTime = dateTime;
+        this.timestamp = timestamp;
     }
     
     // Getter of postid
@@ -93,14 +95,19 @@ public class Post {
         this.shares = shares;
       }
     
-    // Getter of dateTime
-    public String getDateTime() {
-        return this.dateTime;
+    // Getter of timestamp
+    public long getTimestamp() {
+        return this.timestamp;
     }
     
-    // Setter of shares
-    public void setDateTime(String dateTime) {
-        this.dateTime = dateTime;
+    // Setter of timestamp
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
       }
     
+    // Getter of dateTime, formatted as DD/MM/YYYY HH:MM for display
+    public String getDateTime() {
+        return PostDates.format(this.timestamp);
+    }
+    
 }
@@ -0,0 +1,824 @@
+/*
+ * Class PostColumns
+ * Every post held column by column in direct (off-heap) buffers, for scans that aggregate over all posts
+ * Rows are appended in chunks of 65536, one buffer per column per chunk: postid, userid, likes, shares, timestamp,
+ * author code and content address, with a live flag that deletes clear. Authors are dictionary-encoded,
+ * contents are length-prefixed UTF-8 in off-heap pages. A post costs 37 bytes plus its content outside the heap,
+ * and the columns add no per-post objects for the GC to trace; size -XX:MaxDirectMemorySize for them
+ * Posts are loaded one at a time from PostStore.forEachPost. The heap still holds the author dictionary, and the
+ * Leaderboard keeps every post on the heap as well, see its class comment
+ * Direct memory headroom: a rebuild (at startup, and whenever the 5-minute check finds the leaderboard out of date)
+ * fills a new set of columns while scans keep using the old set, and writeSnapshot builds a compacted copy. The
+ * replaced buffers are only freed once the GC collects them, so -XX:MaxDirectMemorySize must be at least twice
+ * getOffHeapBytes(); the JDK runs a GC itself when a direct allocation would pass the limit, unless
+ * -XX:+DisableExplicitGC is set. beginRebuild warns when the headroom looks short
+ * Kept current like the Leaderboard, and written to or read from a snapshot file
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+public class PostColumns {
+    static final int CHUNK_SHIFT = 16;
+    static final int CHUNK_ROWS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_ROWS - 1;
+    private static final int CONTENT_PAGE_SIZE = 16 * 1024 * 1024;
+    // postid -> row lookup pages of 65536 postids, allocated when a postid in their range is added; negative postids
+    // fall in the upper half of the pages, as postid >>> POSTID_PAGE_SHIFT reads them unsigned
+    private static final int POSTID_PAGE_SHIFT = 16;
+    private static final int POSTID_PAGE_SIZE = 1 << POSTID_PAGE_SHIFT;
+    // "AHC1", then a format version
+    private static final int SNAPSHOT_MAGIC = 0x41484331;
+    private static final int SNAPSHOT_VERSION = 1;
+    // bytes of one row across the columns of a Chunk
+    private static final int ROW_BYTES = 4 + 4 + 4 + 4 + 8 + 4 + 8 + 1;
+
+    /**
+     * Columns of CHUNK_ROWS rows, each a direct buffer in native byte order
+     */
+    static final class Chunk {
+        final ByteBuffer postids = column(4);
+        final ByteBuffer userids = column(4);
+        final ByteBuffer likes = column(4);
+        final ByteBuffer shares = column(4);
+        final ByteBuffer timestamps = column(8);
+        final ByteBuffer authors = column(4);
+        final ByteBuffer contents = column(8);
+        // 1 while the row's post exists, so scans can multiply by it instead of branching
+        final ByteBuffer live = column(1);
+
+        private static ByteBuffer column(int width) {
+            return ByteBuffer.allocateDirect(CHUNK_ROWS * width).order(ByteOrder.nativeOrder());
+        }
+
+        private ByteBuffer[] all() {
+            return new ByteBuffer[] { postids, userids, likes, shares, timestamps, authors, contents, live };
+        }
+    }
+
+    /**
+     * Told of every change to the rows, while the write lock is held so no scan runs in between
+     * Aggregates derived from the columns keep themselves current this way
+     */
+    interface Listener {
+        // a row was added, its columns are written
+        void rowAdded(int row);
+
+        // a row is being removed, its columns are still readable
+        void rowRemoved(int row);
+
+        // every row was replaced by a rebuild
+        void rebuilt();
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private List<Chunk> chunks = new ArrayList<>();
+    private boolean loaded;
+    private int rowCount;
+    private int liveCount;
+    private long likesTotal;
+    private long sharesTotal;
+    private Map<String, Integer> authorCodes = new HashMap<>();
+    private List<String> authors = new ArrayList<>();
+    private List<ByteBuffer> contentPages = new ArrayList<>();
+    private ByteBuffer[] rowsByPostid = new ByteBuffer[1 << (32 - POSTID_PAGE_SHIFT)];
+
+    // adds and deletes made while a rebuild is reading the posts, in the order they were made,
+    // replayed before the new columns go live
+    private List<Consumer<PostColumns>> pendingChanges;
+    // columns being filled by the rebuild in progress, only touched by the thread that began it
+    private PostColumns rebuilding;
+
+    /**
+     * Columns of every post in a store
+     * @param store store to read
+     * @return columns holding a copy of the store's posts
+     * @throws java.sql.SQLException if the posts cannot be read
+     */
+    public static PostColumns load(PostStore store) throws java.sql.SQLException {
+        PostColumns columns = new PostColumns();
+        // one post at a time, each is copied into the columns and dropped
+        store.forEachPost(columns::put);
+        columns.loaded = true;
+        return columns;
+    }
+
+    /**
+     * Register a listener for changes to the rows
+     * @param listener listener, called with the write lock held
+     */
+    void addListener(Listener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a committed post, replacing the row with the same postid
+     * @param post post as stored
+     */
+    public void add(Post post) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(fresh -> fresh.put(post));
+            }
+            put(post);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add posts committed together, such as one import transaction
+     * @param posts posts as stored
+     */
+    public void addAll(List<Post> posts) {
+        lock.writeLock().lock();
+        try {
+            for (Post post : posts) {
+                if (pendingChanges != null) {
+                    pendingChanges.add(fresh -> fresh.put(post));
+                }
+                put(post);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Mark a deleted post's row as not live, the row itself is reclaimed by the next rebuild
+     * @param postid postid of the deleted post
+     */
+    public void remove(int postid) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(fresh -> fresh.delete(postid));
+            }
+            delete(postid);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start recording changes before the posts are read for a rebuild, see Leaderboard.beginRebuild
+     * @return false if another rebuild is already running
+     */
+    public boolean beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                return false;
+            }
+            pendingChanges = new ArrayList<>();
+            rebuilding = new PostColumns();
+            warnIfShortOfDirectMemory();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a post read from the store to the columns being rebuilt, by the thread that began the rebuild
+     * The new columns are built without the lock, scans keep using the old ones meanwhile
+     * @param post stored post, copied into the columns
+     */
+    public void addRebuilt(Post post) {
+        rebuilding.put(post);
+    }
+
+    /**
+     * Replace every column with the posts given to addRebuilt since beginRebuild, dropping the rows of deleted posts
+     * The replaced buffers are freed when the GC collects them, see the class comment for the headroom this needs
+     */
+    public void finishRebuild() {
+        lock.writeLock().lock();
+        try {
+            PostColumns fresh = rebuilding;
+            rebuilding = null;
+            for (Consumer<PostColumns> change : pendingChanges) {
+                change.accept(fresh);
+            }
+            pendingChanges = null;
+            replaceWith(fresh);
+            for (Listener listener : listeners) {
+                listener.rebuilt();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stop recording changes after a rebuild failed, the columns stay as they were
+     */
+    public void cancelRebuild() {
+        lock.writeLock().lock();
+        try {
+            pendingChanges = null;
+            rebuilding = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // the new columns will take about as much direct memory as the current ones, callers hold the lock
+    private void warnIfShortOfDirectMemory() {
+        long needed = offHeapBytes();
+        long free = maxDirectMemory() - usedDirectMemory();
+        if (needed > free) {
+            System.err.println("Post columns: the rebuild needs about " + (needed >> 20) + " MB of direct memory but only "
+                    + (Math.max(0, free) >> 20) + " MB is left below -XX:MaxDirectMemorySize, old columns not yet collected "
+                    + "count as used; raise the limit to at least twice " + (needed >> 20) + " MB");
+        }
+    }
+
+    // -XX:MaxDirectMemorySize, whose default is the maximum heap size; unlimited where the JVM does not say
+    private static long maxDirectMemory() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long max = Long.parseLong(hotspot.getVMOption("MaxDirectMemorySize").getValue());
+            return max > 0 ? max : Runtime.getRuntime().maxMemory();
+        } catch (RuntimeException ex) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static long usedDirectMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    // callers hold the write lock
+    private void replaceWith(PostColumns fresh) {
+        loaded = true;
+        chunks = fresh.chunks;
+        rowCount = fresh.rowCount;
+        liveCount = fresh.liveCount;
+        likesTotal = fresh.likesTotal;
+        sharesTotal = fresh.sharesTotal;
+        authorCodes = fresh.authorCodes;
+        authors = fresh.authors;
+        contentPages = fresh.contentPages;
+        rowsByPostid = fresh.rowsByPostid;
+    }
+
+    // callers hold the write lock, or own the instance during a rebuild
+    private void put(Post post) {
+        delete(post.getPostid());
+        if ((rowCount & CHUNK_MASK) == 0) {
+            chunks.add(new Chunk());
+        }
+        int row = rowCount++;
+        Chunk chunk = chunks.get(row >>> CHUNK_SHIFT);
+        int index = row & CHUNK_MASK;
+        chunk.postids.putInt(index << 2, post.getPostid());
+        chunk.userids.putInt(index << 2, post.getUserid());
+        chunk.likes.putInt(index << 2, post.getLikes());
+        chunk.shares.putInt(index << 2, post.getShares());
+        chunk.timestamps.putLong(index << 3, post.getTimestamp());
+        chunk.authors.putInt(index << 2, authorCode(post.getAuthor()));
+        chunk.contents.putLong(index << 3, appendContent(post.getContent()));
+        chunk.live.put(index, (byte) 1);
+        setRow(post.getPostid(), row);
+        liveCount++;
+        likesTotal += post.getLikes();
+        sharesTotal += post.getShares();
+        for (Listener listener : listeners) {
+            listener.rowAdded(row);
+        }
+    }
+
+    private void delete(int postid) {
+        int row = rowOf(postid);
+        if (row < 0) {
+            return;
+        }
+        for (Listener listener : listeners) {
+            listener.rowRemoved(row);
+        }
+        Chunk chunk = chunks.get(row >>> CHUNK_SHIFT);
+        int index = row & CHUNK_MASK;
+        chunk.live.put(index, (byte) 0);
+        setRow(postid, -1);
+        liveCount--;
+        likesTotal -= chunk.likes.getInt(index << 2);
+        sharesTotal -= chunk.shares.getInt(index << 2);
+    }
+
+    private int authorCode(String author) {
+        Integer code = authorCodes.get(author);
+        if (code == null) {
+            code = authors.size();
+            authorCodes.put(author, code);
+            authors.add(author);
+        }
+        return code;
+    }
+
+    // address of the length-prefixed content, page in the high half and offset in the low half
+    private long appendContent(String content) {
+        byte[] bytes = content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+        int size = 4 + (bytes == null ? 0 : bytes.length);
+        ByteBuffer page = contentPages.isEmpty() ? null : contentPages.get(contentPages.size() - 1);
+        if (page == null || page.remaining() < size) {
+            page = ByteBuffer.allocateDirect(Math.max(CONTENT_PAGE_SIZE, size)).order(ByteOrder.nativeOrder());
+            contentPages.add(page);
+        }
+        long address = ((long) (contentPages.size() - 1) << 32) | page.position();
+        page.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) {
+            page.put(bytes);
+        }
+        return address;
+    }
+
+    private String content(long address) {
+        ByteBuffer page = contentPages.get((int) (address >>> 32));
+        int offset = (int) address;
+        int length = page.getInt(offset);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        page.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // stores row + 1, so the zeroes of a new page read as no row
+    private void setRow(int postid, int row) {
+        int page = postid >>> POSTID_PAGE_SHIFT;
+        if (rowsByPostid[page] == null) {
+            if (row < 0) {
+                return;
+            }
+            rowsByPostid[page] = ByteBuffer.allocateDirect(POSTID_PAGE_SIZE * 4).order(ByteOrder.nativeOrder());
+        }
+        rowsByPostid[page].putInt((postid & (POSTID_PAGE_SIZE - 1)) << 2, row + 1);
+    }
+
+    /**
+     * @param postid postid of a post
+     * @return row of the post, -1 if it is not held
+     */
+    int rowOf(int postid) {
+        ByteBuffer page = rowsByPostid[postid >>> POSTID_PAGE_SHIFT];
+        return page == null ? -1 : page.getInt((postid & (POSTID_PAGE_SIZE - 1)) << 2) - 1;
+    }
+
+    // Getter of whether every stored post has been loaded, until then the columns only hold posts added since
+    public boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return loaded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Scans, callers hold the read lock and address rows 0 .. getRowCount() - 1
+
+    /**
+     * Lock to hold for reading while scanning rows, so no row is added or changed meanwhile
+     * Threads helping a scan need not take it while the scanning thread holds it
+     * @return read lock
+     */
+    public Lock readLock() {
+        return lock.readLock();
+    }
+
+    // Getter of the number of rows, including those of deleted posts
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    // Getter of the chunk holding a row, for loops over whole columns
+    Chunk chunk(int row) {
+        return chunks.get(row >>> CHUNK_SHIFT);
+    }
+
+    public boolean isLive(int row) {
+        return chunk(row).live.get(row & CHUNK_MASK) != 0;
+    }
+
+    public int getPostid(int row) {
+        return chunk(row).postids.getInt((row & CHUNK_MASK) << 2);
+    }
+
+    public int getUserid(int row) {
+        return chunk(row).userids.getInt((row & CHUNK_MASK) << 2);
+    }
+
+    public int getLikes(int row) {
+        return chunk(row).likes.getInt((row & CHUNK_MASK) << 2);
+    }
+
+    public int getShares(int row) {
+        return chunk(row).shares.getInt((row & CHUNK_MASK) << 2);
+    }
+
+    public long getTimestamp(int row) {
+        return chunk(row).timestamps.getLong((row & CHUNK_MASK) << 3);
+    }
+
+    public int getAuthorCode(int row) {
+        return chunk(row).authors.getInt((row & CHUNK_MASK) << 2);
+    }
+
+    /**
+     * @param code author code of a row
+     * @return the author's name
+     */
+    public String getAuthor(int code) {
+        return authors.get(code);
+    }
+
+    // Getter of the number of distinct authors ever added, codes run from 0 to this minus 1
+    public int getAuthorCount() {
+        return authors.size();
+    }
+
+    /**
+     * Decode one row back into a post
+     * @param row row of a post
+     * @return the post
+     */
+    public Post getPost(int row) {
+        Chunk chunk = chunk(row);
+        int index = row & CHUNK_MASK;
+        return new Post(chunk.postids.getInt(index << 2), chunk.userids.getInt(index << 2),
+                content(chunk.contents.getLong(index << 3)), authors.get(chunk.authors.getInt(index << 2)),
+                chunk.likes.getInt(index << 2), chunk.shares.getInt(index << 2), chunk.timestamps.getLong(index << 3));
+    }
+
+    /**
+     * Post by postid
+     * @param postid postid of the post
+     * @return the post, null if it is not held
+     */
+    public Post getPostByPostid(int postid) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(postid);
+            return row < 0 ? null : getPost(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return { number of posts, sum of likes, sum of shares }, kept current on every change
+     */
+    public long[] getTotals() {
+        lock.readLock().lock();
+        try {
+            return new long[] { liveCount, likesTotal, sharesTotal };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Getter of the number of posts
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Likes summed per author, in one pass over the author and likes columns
+     * @return total likes indexed by author code, see getAuthor
+     */
+    public long[] likesByAuthor() {
+        lock.readLock().lock();
+        try {
+            long[] totals = new long[authors.size()];
+            for (int first = 0; first < rowCount; first += CHUNK_ROWS) {
+                Chunk chunk = chunk(first);
+                int rows = Math.min(CHUNK_ROWS, rowCount - first);
+                for (int i = 0; i < rows; i++) {
+                    // deleted rows add 0, no branch
+                    totals[chunk.authors.getInt(i << 2)] += chunk.likes.getInt(i << 2) * chunk.live.get(i);
+                }
+            }
+            return totals;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Most liked posts, ties broken by postid, found in one pass over the likes column
+     * @param topN number of posts
+     * @param userid owner of the posts, null for all users
+     * @return posts in rank order
+     */
+    public RankedPosts top(int topN, Integer userid) {
+        lock.readLock().lock();
+        try {
+            // max-heap of the topN smallest rank keys seen so far
+            long[] heap = new long[Math.max(0, Math.min(topN, liveCount))];
+            int heapSize = 0;
+            for (int first = 0; first < rowCount && heap.length > 0; first += CHUNK_ROWS) {
+                Chunk chunk = chunk(first);
+                int rows = Math.min(CHUNK_ROWS, rowCount - first);
+                for (int i = 0; i < rows; i++) {
+                    if (chunk.live.get(i) == 0 || (userid != null && chunk.userids.getInt(i << 2) != userid)) {
+                        continue;
+                    }
+                    long key = Leaderboard.rankKey(chunk.likes.getInt(i << 2), chunk.postids.getInt(i << 2));
+                    if (heapSize < heap.length) {
+                        heap[heapSize] = key;
+                        siftUp(heap, heapSize++);
+                    } else if (key < heap[0]) {
+                        heap[0] = key;
+                        siftDown(heap, heapSize);
+                    }
+                }
+            }
+            long[] keys = Arrays.copyOf(heap, heapSize);
+            Arrays.sort(keys);
+            RankedPosts posts = new RankedPosts(keys.length);
+            for (long key : keys) {
+                // the low half of a rank key is the postid with its sign bit flipped
+                posts.add(getPost(rowOf((int) key ^ Integer.MIN_VALUE)));
+            }
+            return posts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            long swap = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = swap;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int largest = index;
+            int left = 2 * index + 1;
+            if (left < size && heap[left] > heap[largest]) {
+                largest = left;
+            }
+            if (left + 1 < size && heap[left + 1] > heap[largest]) {
+                largest = left + 1;
+            }
+            if (largest == index) {
+                return;
+            }
+            long swap = heap[largest];
+            heap[largest] = heap[index];
+            heap[index] = swap;
+            index = largest;
+        }
+    }
+
+    // Getter of the off-heap bytes held by the columns, content pages and postid lookup
+    public long getOffHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return offHeapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long offHeapBytes() {
+        long bytes = (long) chunks.size() * CHUNK_ROWS * ROW_BYTES;
+        for (ByteBuffer page : contentPages) {
+            bytes += page.capacity();
+        }
+        for (ByteBuffer page : rowsByPostid) {
+            bytes += page == null ? 0 : page.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the live rows to a snapshot file, replacing it
+     * Rows of deleted posts are dropped, the columns themselves are left as they are
+     * @param file snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public void writeSnapshot(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            // a compacted copy, so the file holds live rows only and its columns are contiguous
+            PostColumns live = new PostColumns();
+            for (int row = 0; row < rowCount; row++) {
+                if (isLive(row)) {
+                    live.put(getPost(row));
+                }
+            }
+            live.write(file);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(rowCount).putInt(authors.size());
+            writeFully(channel, header.flip());
+            for (String author : authors) {
+                byte[] bytes = author == null ? null : author.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(4 + (bytes == null ? 0 : bytes.length));
+                entry.putInt(bytes == null ? -1 : bytes.length);
+                if (bytes != null) {
+                    entry.put(bytes);
+                }
+                writeFully(channel, entry.flip());
+            }
+            for (int first = 0; first < rowCount; first += CHUNK_ROWS) {
+                int rows = Math.min(CHUNK_ROWS, rowCount - first);
+                for (ByteBuffer column : chunk(first).all()) {
+                    int width = column.capacity() / CHUNK_ROWS;
+                    writeFully(channel, column.duplicate().clear().limit(rows * width));
+                }
+            }
+            writeFully(channel, ByteBuffer.allocate(4).putInt(contentPages.size()).flip());
+            for (ByteBuffer page : contentPages) {
+                writeFully(channel, ByteBuffer.allocate(8).putInt(page.capacity()).putInt(page.position()).flip());
+                writeFully(channel, page.duplicate().flip());
+            }
+        }
+    }
+
+    /**
+     * Read columns from a snapshot file written by writeSnapshot
+     * Every count and size is checked against what is left of the file before anything is allocated for it,
+     * and every row against the dictionary and pages, so a truncated or corrupt file fails with an IOException
+     * @param file snapshot file
+     * @return columns holding the snapshot's posts
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static PostColumns readSnapshot(Path file) throws IOException {
+        PostColumns columns = new PostColumns();
+        int rowCount;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = readFully(channel, ByteBuffer.allocate(16));
+            if (header.getInt() != SNAPSHOT_MAGIC || header.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a post columns snapshot: " + file);
+            }
+            rowCount = header.getInt();
+            int authorCount = header.getInt();
+            // each author takes at least its 4-byte length, and each row ROW_BYTES of column data
+            checkSize(channel, authorCount, 4, "authors");
+            for (int code = 0; code < authorCount; code++) {
+                int length = readFully(channel, ByteBuffer.allocate(4)).getInt();
+                // -1 for no author
+                checkSize(channel, length == -1 ? 0 : length, 1, "author bytes");
+                String author = length < 0 ? null
+                        : new String(readFully(channel, ByteBuffer.allocate(length)).array(), StandardCharsets.UTF_8);
+                if (columns.authorCodes.put(author, code) != null) {
+                    throw new IOException("Post columns snapshot repeats the author " + author);
+                }
+                columns.authors.add(author);
+            }
+            checkSize(channel, rowCount, ROW_BYTES, "rows");
+            for (int first = 0; first < rowCount; first += CHUNK_ROWS) {
+                int rows = Math.min(CHUNK_ROWS, rowCount - first);
+                Chunk chunk = new Chunk();
+                for (ByteBuffer column : chunk.all()) {
+                    int width = column.capacity() / CHUNK_ROWS;
+                    readFully(channel, column.duplicate().clear().limit(rows * width));
+                }
+                columns.chunks.add(chunk);
+            }
+            int pageCount = readFully(channel, ByteBuffer.allocate(4)).getInt();
+            checkSize(channel, pageCount, 8, "content pages");
+            for (int i = 0; i < pageCount; i++) {
+                ByteBuffer sizes = readFully(channel, ByteBuffer.allocate(8));
+                int capacity = sizes.getInt();
+                int used = sizes.getInt();
+                // appendContent only makes a page larger than CONTENT_PAGE_SIZE for one content that fills it
+                if (used < 0 || used > capacity || capacity > Math.max(CONTENT_PAGE_SIZE, used)) {
+                    throw new IOException("Post columns snapshot has a content page of " + used + " of " + capacity + " bytes");
+                }
+                checkSize(channel, used, 1, "content bytes");
+                ByteBuffer page = ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+                readFully(channel, page.duplicate().limit(used));
+                columns.contentPages.add(page.position(used));
+            }
+        }
+        // the postid lookup and the totals are derived from the columns
+        columns.loaded = true;
+        columns.rowCount = rowCount;
+        for (int row = 0; row < rowCount; row++) {
+            columns.checkRow(row);
+            if (columns.isLive(row)) {
+                if (columns.rowOf(columns.getPostid(row)) >= 0) {
+                    throw new IOException("Post columns snapshot repeats the postid " + columns.getPostid(row));
+                }
+                columns.setRow(columns.getPostid(row), row);
+                columns.liveCount++;
+                columns.likesTotal += columns.getLikes(row);
+                columns.sharesTotal += columns.getShares(row);
+            }
+        }
+        return columns;
+    }
+
+    // a count read from a snapshot must not be negative, and its items of at least minBytes each must fit the file
+    private static void checkSize(FileChannel channel, int count, long minBytes, String what) throws IOException {
+        if (count < 0 || count * minBytes > channel.size() - channel.position()) {
+            throw new IOException("Post columns snapshot has " + count + " " + what + ", more than the file holds");
+        }
+    }
+
+    // the row's live flag, author code and content address must point inside the snapshot
+    private void checkRow(int row) throws IOException {
+        Chunk chunk = chunk(row);
+        int index = row & CHUNK_MASK;
+        byte live = chunk.live.get(index);
+        int code = chunk.authors.getInt(index << 2);
+        long address = chunk.contents.getLong(index << 3);
+        int page = (int) (address >>> 32);
+        int offset = (int) address;
+        boolean valid = (live == 0 || live == 1) && code >= 0 && code < authors.size()
+                && address >= 0 && page < contentPages.size() && offset >= 0
+                && offset <= contentPages.get(page).position() - 4;
+        if (valid) {
+            int length = contentPages.get(page).getInt(offset);
+            valid = length >= -1 && length <= contentPages.get(page).position() - 4 - offset;
+        }
+        if (!valid) {
+            throw new IOException("Post columns snapshot has a corrupt row " + row);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Post columns snapshot ends early");
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            return "PostColumns[posts=" + liveCount + ", rows=" + rowCount + ", authors=" + authors.size() + "]";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
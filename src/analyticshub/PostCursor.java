@@ -0,0 +1,82 @@
+/*
+ * Class PostCursor
+ * Pages through posts ranked by likes (likes DESC, postid ASC) without holding more than one page
+ * Each page continues after the last (likes, postid) seen rather than at an OFFSET, so every page costs
+ * the same however deep the cursor is, and posts added or deleted meanwhile never shift a page
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.SQLException;
+
+public class PostCursor {
+    private final Model model;
+    private final Integer userid; // null pages through every user's posts
+    private final long limit;
+    private final int pageSize;
+
+    private boolean started;
+    private boolean exhausted;
+    private int lastLikes;
+    private int lastPostid;
+    private long rowsRead;
+
+    /**
+     * Constructor, use Model.openTopPosts or Model.openUserPosts
+     * @param model model reading the pages
+     * @param userid owner of the posts, null for all users
+     * @param limit total number of posts to return over all pages
+     * @param pageSize maximum number of posts per page
+     */
+    PostCursor(Model model, Integer userid, long limit, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.model = model;
+        this.userid = userid;
+        this.limit = Math.max(0, limit);
+        this.pageSize = pageSize;
+        this.exhausted = this.limit == 0;
+    }
+
+    /**
+     * Read the next page
+     * @return next posts in rank order, empty once the cursor is exhausted
+     * @throws SQLException if the page cannot be read, the cursor stays where it was and may be retried
+     */
+    public RankedPosts nextPage() throws SQLException {
+        if (exhausted) {
+            return new RankedPosts(0);
+        }
+        int size = (int) Math.min(pageSize, limit - rowsRead);
+        RankedPosts page = model.readPostPage(userid, started, lastLikes, lastPostid, size);
+        started = true;
+        rowsRead += page.size();
+        if (!page.isEmpty()) {
+            int last = page.size() - 1;
+            lastLikes = page.getLikes(last);
+            lastPostid = page.getPostid(last);
+        }
+        // a short page means nothing ranks below the last post
+        exhausted = page.size() < size || rowsRead >= limit;
+        return page;
+    }
+
+    // Getter of whether another page may hold posts
+    public boolean hasMore() {
+        return !exhausted;
+    }
+
+    // Getter of the number of posts returned so far, also the rank of the first post of the next page
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    // Getter of the page size
+    public int getPageSize() {
+        return pageSize;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,165 @@
+/*
+ * Class PostDates
+ * Conversions for post timestamps: epoch milliseconds in memory, LocalDateTime in JDBC, DD/MM/YYYY HH:MM on screen and in CSV
+ * Post times are wall-clock times without a time zone, so they are mapped to epoch milliseconds as if they were UTC
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+public final class PostDates {
+    // Timestamp of a post without a date
+    public static final long NONE = Long.MIN_VALUE;
+
+    // Formatters are immutable and thread-safe, one instance each is shared by the whole application
+    private static final DateTimeFormatter DISPLAY_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+    private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("d/M/uuuu H:mm")
+            .withResolverStyle(ResolverStyle.STRICT);
+
+    private static final byte[] SEPARATORS = { '/', '/', ' ', ':' };
+    // digits of day, month, year, hour and minute, as INPUT_FORMAT reads them
+    private static final int[] MIN_DIGITS = { 1, 1, 4, 1, 2 };
+    private static final int[] MAX_DIGITS = { 19, 19, 4, 19, 2 };
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+    private PostDates() {
+    }
+
+    /**
+     * Parse a date typed by the user or read from a CSV file
+     * @param text date and time in the format of DD/MM/YYYY HH:MM, single digit day, month and hour are accepted
+     * @return epoch milliseconds
+     * @throws DateTimeParseException if the text is not a valid date and time
+     */
+    public static long parse(String text) {
+        return toTimestamp(LocalDateTime.parse(text.trim(), INPUT_FORMAT));
+    }
+
+    /**
+     * Parse DD/MM/YYYY HH:MM straight from bytes, without creating a String
+     * Accepts what parse(String) accepts: surrounding spaces, day, month and hour of one or more digits, a 4-digit
+     * year and 2-digit minutes; only years with a sign, which parse(String) allows, are rejected
+     * @param bytes buffer holding the date
+     * @param offset index of the first byte
+     * @param length number of bytes
+     * @return epoch milliseconds, or NONE if the bytes are not a valid date and time
+     */
+    public static long parse(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int p = offset;
+        // as String.trim
+        while (p < end && (bytes[p] & 0xFF) <= ' ') {
+            p++;
+        }
+        while (end > p && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        int day = 0;
+        int month = 0;
+        int year = 0;
+        int hour = 0;
+        int minute = 0;
+        for (int part = 0; part <= SEPARATORS.length; part++) {
+            int start = p;
+            int value = 0;
+            while (p < end && p - start < MAX_DIGITS[part] && bytes[p] >= '0' && bytes[p] <= '9') {
+                // capped, leading zeros aside any value this large is out of range
+                value = Math.min(value * 10 + (bytes[p++] - '0'), 100_000);
+            }
+            if (p - start < MIN_DIGITS[part]) {
+                return NONE;
+            }
+            switch (part) {
+                case 0:
+                    day = value;
+                    break;
+                case 1:
+                    month = value;
+                    break;
+                case 2:
+                    year = value;
+                    break;
+                case 3:
+                    hour = value;
+                    break;
+                default:
+                    minute = value;
+                    break;
+            }
+            if (part < SEPARATORS.length) {
+                if (p >= end || bytes[p] != SEPARATORS[part]) {
+                    return NONE;
+                }
+                p++;
+            }
+        }
+        if (p != end) {
+            return NONE;
+        }
+        return toTimestamp(year, month, day, hour, minute);
+    }
+
+    /**
+     * Build a timestamp from its fields, checking each one
+     * @return epoch milliseconds, or NONE if a field is out of range
+     */
+    private static long toTimestamp(int year, int month, int day, int hour, int minute) {
+        if (month < 1 || month > 12 || day < 1 || hour > 23 || minute > 59) {
+            return NONE;
+        }
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        int monthLength = month == 2 && leap ? 29 : DAYS_IN_MONTH[month - 1];
+        if (day > monthLength) {
+            return NONE;
+        }
+        // days from 1970-01-01 to the civil date, counting years from March so the leap day comes last
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long epochDay = era * 146097L + dayOfEra - 719468;
+        return (epochDay * 86_400L + hour * 3_600L + minute * 60L) * 1000L;
+    }
+
+    /**
+     * Format a timestamp for display and CSV export
+     * @param timestamp epoch milliseconds
+     * @return DD/MM/YYYY HH:MM, empty for a post without a date
+     */
+    public static String format(long timestamp) {
+        return timestamp == NONE ? "" : DISPLAY_FORMAT.format(toLocalDateTime(timestamp));
+    }
+
+    /**
+     * Convert for binding to a TIMESTAMP column
+     * @param timestamp epoch milliseconds
+     * @return wall-clock date and time, null for a post without a date
+     */
+    public static LocalDateTime toLocalDateTime(long timestamp) {
+        if (timestamp == NONE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(timestamp, 1000L), (int) Math.floorMod(timestamp, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Convert a value read from a TIMESTAMP column
+     * @param dateTime wall-clock date and time, may be null
+     * @return epoch milliseconds, NONE for null
+     */
+    public static long toTimestamp(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return NONE;
+        }
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000L + dateTime.getNano() / 1_000_000;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,40 @@
+/*
+ * Class PostExport
+ * CSV layout of an exported post, shared by the dashboard export and the service API
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.io.Writer;
+
+public final class PostExport {
+    public static final String HEADER = "Post ID,Author,Content,Likes,Shares,Date_Time\n";
+
+    private PostExport() {
+    }
+
+    /**
+     * CSV line of one post, fields are written as they are without quoting
+     * @param post post to export
+     * @return line ending with a line break
+     */
+    public static String toCsvRow(Post post) {
+        return post.getPostid() + "," + post.getAuthor() + "," + post.getContent() + ","
+                + post.getLikes() + "," + post.getShares() + "," + post.getDateTime() + "\n";
+    }
+
+    /**
+     * Write the header and one post
+     * @param writer destination
+     * @param post post to export
+     * @throws IOException if the writer fails
+     */
+    public static void write(Writer writer, Post post) throws IOException {
+        writer.write(HEADER);
+        writer.write(toCsvRow(post));
+    }
+}
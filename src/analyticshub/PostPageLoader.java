@@ -0,0 +1,126 @@
+/*
+ * Class PostPageLoader
+ * Data source of the top posts table: the rows are ranks, the posts behind them stay in RankedPosts pages
+ * Pages are read one at a time from a PostCursor in the background when the table scrolls near its last row,
+ * so only the rows the user has scrolled to are ever loaded
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+public class PostPageLoader {
+    private final AsyncModel model;
+    private final PostCursor cursor;
+    private final int pageSize;
+    private final List<RankedPosts> pages = new ArrayList<>();
+    private final ObservableList<Integer> ranks = FXCollections.observableArrayList();
+    private final ReadOnlyStringWrapper status = new ReadOnlyStringWrapper();
+    private CompletableFuture<RankedPosts> loading;
+
+    /**
+     * Constructor, may be called off the JavaFX thread since nothing is shown yet
+     * @param model runs the page reads in the background
+     * @param cursor cursor the first page was read from
+     * @param firstPage first page, already read so the table never opens empty
+     */
+    public PostPageLoader(AsyncModel model, PostCursor cursor, RankedPosts firstPage) {
+        this.model = model;
+        this.cursor = cursor;
+        this.pageSize = cursor.getPageSize();
+        addPage(firstPage);
+    }
+
+    /**
+     * Read the next page in the background unless one is being read or the cursor is exhausted
+     * Call on the JavaFX thread, the rows are appended there when the page arrives
+     */
+    public void loadNextPage() {
+        if (loading != null || !cursor.hasMore()) {
+            return;
+        }
+        status.set("Loaded " + ranks.size() + " posts, loading more...");
+        CompletableFuture<RankedPosts> future = model.submit(m -> cursor.nextPage());
+        loading = future;
+        AsyncModel.onFxThread(future, page -> {
+            loading = null;
+            addPage(page);
+        }, ex -> {
+            loading = null;
+            ex.printStackTrace();
+            status.set("Loaded " + ranks.size() + " posts, loading more failed: " + ex.getMessage());
+        });
+    }
+
+    private void addPage(RankedPosts page) {
+        // every page but the last is full, so rank / pageSize finds the page of a rank
+        int first = pages.size() * pageSize;
+        pages.add(page);
+        List<Integer> added = new ArrayList<>(page.size());
+        for (int i = 0; i < page.size(); i++) {
+            added.add(first + i);
+        }
+        ranks.addAll(added);
+        status.set(cursor.hasMore() ? "Loaded " + ranks.size() + " posts, scroll down for more"
+                : "All " + ranks.size() + " posts loaded");
+    }
+
+    /**
+     * Stop reading, a page being read is dropped
+     */
+    public void cancel() {
+        if (loading != null) {
+            loading.cancel(true);
+            loading = null;
+        }
+    }
+
+    // Getter of the rows of the table, rank 0 is the most liked post
+    public ObservableList<Integer> getRanks() {
+        return ranks;
+    }
+
+    // Getter of the text describing what has been loaded
+    public ReadOnlyStringProperty statusProperty() {
+        return status.getReadOnlyProperty();
+    }
+
+    // Getter of postid at a rank
+    public int getPostid(int rank) {
+        return pages.get(rank / pageSize).getPostid(rank % pageSize);
+    }
+
+    // Getter of content at a rank
+    public String getContent(int rank) {
+        return pages.get(rank / pageSize).getContent(rank % pageSize);
+    }
+
+    // Getter of author at a rank
+    public String getAuthor(int rank) {
+        return pages.get(rank / pageSize).getAuthor(rank % pageSize);
+    }
+
+    // Getter of likes at a rank
+    public int getLikes(int rank) {
+        return pages.get(rank / pageSize).getLikes(rank % pageSize);
+    }
+
+    // Getter of shares at a rank
+    public int getShares(int rank) {
+        return pages.get(rank / pageSize).getShares(rank % pageSize);
+    }
+
+    // Getter of timestamp at a rank, in epoch milliseconds
+    public long getTimestamp(int rank) {
+        return pages.get(rank / pageSize).getTimestamp(rank % pageSize);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,187 @@
+/*
+ * Class PostSketches
+ * Quantile sketches of likes and shares, over all posts and per user, kept current as the post columns change
+ * Every added, imported or deleted post updates the global sketch and its user's sketch; a rebuild of the columns
+ * recounts them. Sketches can be saved to a file and read back, so percentiles are answered at startup
+ * while the posts are still loading
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+public class PostSketches implements PostColumns.Listener {
+    // "AHQ1"
+    private static final int FILE_MAGIC = 0x41485131;
+
+    /**
+     * Value of a post that is sketched
+     */
+    public enum Metric { LIKES, SHARES }
+
+    private final PostColumns columns;
+    // guarded by this, indexed by Metric ordinal
+    private QuantileSketch[] global = newSketches();
+    private Map<Integer, QuantileSketch[]> byUser = new HashMap<>();
+
+    /**
+     * Constructor, registers with the columns to follow their changes
+     * @param columns post columns whose rows are sketched
+     */
+    PostSketches(PostColumns columns) {
+        this.columns = columns;
+        columns.addListener(this);
+    }
+
+    private static QuantileSketch[] newSketches() {
+        return new QuantileSketch[] { new QuantileSketch(), new QuantileSketch() };
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        QuantileSketch[] user = byUser.computeIfAbsent(columns.getUserid(row), userid -> newSketches());
+        int likes = columns.getLikes(row);
+        int shares = columns.getShares(row);
+        global[0].add(likes);
+        global[1].add(shares);
+        user[0].add(likes);
+        user[1].add(shares);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row) {
+        int likes = columns.getLikes(row);
+        int shares = columns.getShares(row);
+        global[0].remove(likes);
+        global[1].remove(shares);
+        QuantileSketch[] user = byUser.get(columns.getUserid(row));
+        if (user != null) {
+            user[0].remove(likes);
+            user[1].remove(shares);
+            if (user[0].getCount() == 0) {
+                byUser.remove(columns.getUserid(row));
+            }
+        }
+    }
+
+    /**
+     * Recount every sketch from the rebuilt columns, replacing any read from a file
+     */
+    @Override
+    public synchronized void rebuilt() {
+        global = newSketches();
+        byUser = new HashMap<>();
+        // the columns' write lock is held by this thread, so the rows can be read directly
+        for (int row = 0; row < columns.getRowCount(); row++) {
+            if (columns.isLive(row)) {
+                rowAdded(row);
+            }
+        }
+    }
+
+    /**
+     * Values of a metric at several quantiles
+     * @param metric likes or shares
+     * @param userid owner of the posts, null for all users
+     * @param quantiles quantiles between 0 and 1, such as 0.5, 0.9 and 0.99
+     * @return estimates in the order of the quantiles, within 1% of a value of that rank; NaN when there are no posts
+     */
+    public synchronized double[] quantiles(Metric metric, Integer userid, double... quantiles) {
+        QuantileSketch[] sketches = userid == null ? global : byUser.get(userid);
+        double[] values = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            values[i] = sketches == null ? Double.NaN : sketches[metric.ordinal()].quantile(quantiles[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @param userid owner of the posts, null for all users
+     * @return number of posts sketched
+     */
+    public synchronized long getCount(Integer userid) {
+        QuantileSketch[] sketches = userid == null ? global : byUser.get(userid);
+        return sketches == null ? 0 : sketches[0].getCount();
+    }
+
+    /**
+     * Write every sketch to a file, replacing it once the whole file is written
+     * @param file destination, its directory must exist
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void save(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(byUser.size());
+            global[0].writeTo(out);
+            global[1].writeTo(out);
+            for (Map.Entry<Integer, QuantileSketch[]> user : byUser.entrySet()) {
+                out.writeInt(user.getKey());
+                user.getValue()[0].writeTo(out);
+                user.getValue()[1].writeTo(out);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replace every sketch with those saved in a file, then add the rows the columns already hold
+     * Meant for startup, before the columns are loaded; their rebuild recounts the sketches exactly,
+     * and once they have loaded the file is not read into the sketches
+     * @param file file written by save
+     * @throws IOException if the file cannot be read or is not a sketch file, the sketches are then unchanged
+     */
+    public void load(Path file) throws IOException {
+        QuantileSketch[] readGlobal = newSketches();
+        Map<Integer, QuantileSketch[]> readByUser = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                throw new IOException("Not a sketch file: " + file);
+            }
+            int users = in.readInt();
+            readGlobal[0] = QuantileSketch.readFrom(in);
+            readGlobal[1] = QuantileSketch.readFrom(in);
+            for (int i = 0; i < users; i++) {
+                int userid = in.readInt();
+                readByUser.put(userid, new QuantileSketch[] { QuantileSketch.readFrom(in), QuantileSketch.readFrom(in) });
+            }
+        }
+        // the columns' lock first, as when the columns call the listener methods
+        columns.readLock().lock();
+        try {
+            if (columns.isLoaded()) {
+                return; // the sketches were already recounted from every post
+            }
+            synchronized (this) {
+                global = readGlobal;
+                byUser = readByUser;
+                // posts added since startup, which the file cannot hold
+                for (int row = 0; row < columns.getRowCount(); row++) {
+                    if (columns.isLive(row)) {
+                        rowAdded(row);
+                    }
+                }
+            }
+        } finally {
+            columns.readLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PostSketches[posts=" + global[0].getCount() + ", users=" + byUser.size() + "]";
+    }
+}
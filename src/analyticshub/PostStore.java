@@ -0,0 +1,101 @@
+/*
+ * Interface PostStore
+ * Where posts are kept, implemented by each storage engine
+ * Rankings order posts by likes descending, ties broken by postid ascending
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+public interface PostStore {
+
+    /**
+     * @param postid postid to look for
+     * @return true if a post has this postid
+     */
+    boolean isPostidExist(int postid) throws SQLException;
+
+    /**
+     * Add a post, the store assigns the postid
+     * @param timestamp date of the post in epoch milliseconds, see PostDates
+     * @return the post as stored, with its postid
+     */
+    Post addPost(int userid, String content, String author, int likes, int shares, long timestamp) throws SQLException;
+
+    /**
+     * @param postid postid of the post
+     * @return post, null if there is none
+     */
+    Post getPostByPostid(int postid) throws SQLException;
+
+    /**
+     * @param postid postid of the post
+     * @return false if there was no such post
+     */
+    boolean deletePostByPostid(int postid) throws SQLException;
+
+    /**
+     * Page of posts ranked right after (afterLikes, afterPostid), the keyset need not be a post that still exists
+     * @param userid owner of the posts, null for all users
+     * @param after false for the first page, which has no keyset
+     * @param afterLikes likes of the last post of the previous page
+     * @param afterPostid postid of the last post of the previous page
+     * @param pageSize maximum number of posts
+     * @return posts in rank order
+     */
+    RankedPosts readPostPage(Integer userid, boolean after, int afterLikes, int afterPostid, int pageSize) throws SQLException;
+
+    /**
+     * Posts in a time range, oldest first
+     * @param fromTimestamp start of the range in epoch milliseconds, inclusive
+     * @param toTimestamp end of the range in epoch milliseconds, exclusive
+     * @param limit maximum number of posts
+     * @return posts posted in the range
+     */
+    List<Post> retrievePostsBetween(long fromTimestamp, long toTimestamp, int limit) throws SQLException;
+
+    /**
+     * Every post, in no particular order, to build the leaderboard from
+     * @return all posts
+     */
+    List<Post> readAllPosts() throws SQLException;
+
+    /**
+     * Every post one at a time, in no particular order, so the leaderboard and the post columns are built
+     * without holding every post in a list first
+     * @param visitor receives each post, it must not call the store
+     */
+    void forEachPost(Consumer<Post> visitor) throws SQLException;
+
+    /**
+     * Totals compared with the leaderboard by the consistency check
+     * @return { number of posts, sum of likes, sum of postids }
+     */
+    long[] getTotals() throws SQLException;
+
+    /**
+     * Number of posts at each share count, the input of a shares distribution
+     * @param scope posts to count
+     * @return number of posts by share count, ascending
+     */
+    SortedMap<Integer, Long> countShares(SharesScope scope) throws SQLException;
+
+    /**
+     * Open a session for bulk inserts of posts that already have their postids
+     * Each session is used by one thread, several sessions may write at once
+     * @return session, close it when done
+     */
+    PostWriter openWriter() throws SQLException;
+
+    /**
+     * @return number of writer sessions that can be open at once
+     */
+    int getMaxWriters();
+}
@@ -0,0 +1,35 @@
+/*
+ * Interface PostWriter
+ * Bulk insert session of a PostStore: batches are written into an open transaction that commit() makes durable
+ * Closing the session rolls back whatever has not been committed
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.SQLException;
+import java.util.List;
+
+public interface PostWriter extends AutoCloseable {
+
+    /**
+     * Insert one batch of posts inside the open transaction
+     * A batch that fails as a whole is replayed row by row, so one bad row only drops itself
+     * @param batch posts to insert, with their postids
+     * @param result receives the batch and the rejected rows
+     * @param uncommitted receives the inserted posts, which become visible to others once commit returns
+     * @return number of rows inserted, not yet committed
+     * @throws SQLException if the session itself failed, the open transaction is lost
+     */
+    int writeBatch(List<Post> batch, ImportResult result, List<Post> uncommitted) throws SQLException;
+
+    /**
+     * Commit the batches written since the last commit
+     */
+    void commit() throws SQLException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,354 @@
+/*
+ * Class QuantileSketch
+ * Mergeable quantile sketch with bounded relative error, in the manner of DDSketch: values are counted in buckets
+ * whose bounds grow by a factor gamma = (1 + a) / (1 - a), so any quantile is answered within a relative error a
+ * of a value at that rank, by one walk over at most a few thousand bucket counts
+ * Unlike t-digest or KLL, a value can be removed again exactly, which deleting a post needs; sketches of the same
+ * accuracy merge by adding their counts. Counts are kept per bucket index from the lowest to the highest one used
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class QuantileSketch {
+    // quantiles are within 1% of a value at the requested rank
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+    private static final int FORMAT_VERSION = 1;
+    // bucket counts one sketch may need, 8 MB; an accuracy needing more is refused
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    // buckets of positive values and of the magnitudes of negative ones
+    private final Buckets positive = new Buckets();
+    private final Buckets negative = new Buckets();
+    private long zeroCount;
+
+    /**
+     * Counts by bucket index, indexes offset..offset + counts.length - 1, grown as values arrive
+     */
+    private static final class Buckets {
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        private void add(int index, long delta) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+            } else if (index < offset || index >= offset + counts.length) {
+                int low = Math.min(offset, index);
+                int high = Math.max(offset + counts.length - 1, index);
+                // grow by at least half, so values moving up or down one bucket at a time cost amortized O(1)
+                int length = Math.max(high - low + 1, counts.length + counts.length / 2);
+                int newOffset = index < offset ? high - length + 1 : low;
+                long[] grown = new long[length];
+                System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+                counts = grown;
+                offset = newOffset;
+            }
+            counts[index - offset] += delta;
+            total += delta;
+        }
+
+        private boolean remove(int index) {
+            int slot = index - offset;
+            if (slot < 0 || slot >= counts.length || counts[slot] == 0) {
+                return false;
+            }
+            counts[slot]--;
+            total--;
+            return true;
+        }
+
+        private void merge(Buckets other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        // only the buckets from the lowest to the highest non-empty one are written
+        private void write(DataOutput out) throws IOException {
+            int first = 0;
+            int last = counts.length - 1;
+            while (first <= last && counts[first] == 0) {
+                first++;
+            }
+            while (last >= first && counts[last] == 0) {
+                last--;
+            }
+            writeVarLong(out, last - first + 1);
+            if (last >= first) {
+                writeVarLong(out, zigZag(offset + first));
+                for (int i = first; i <= last; i++) {
+                    writeVarLong(out, counts[i]);
+                }
+            }
+        }
+
+        // a length or index outside the buckets a long can fall in is refused before anything is allocated
+        private void read(DataInput in, int maxIndex) throws IOException {
+            long length = readVarLong(in);
+            if (length < 0 || length > maxIndex + 1) {
+                throw new IOException("Corrupt quantile sketch: " + length + " buckets, at most " + (maxIndex + 1));
+            }
+            if (length > 0) {
+                long index = readVarLong(in);
+                long first = (index >>> 1) ^ -(index & 1);
+                if (first < 0 || first + length - 1 > maxIndex) {
+                    throw new IOException("Corrupt quantile sketch: buckets " + first + " to " + (first + length - 1));
+                }
+                offset = (int) first;
+                counts = new long[(int) length];
+                for (int i = 0; i < length; i++) {
+                    counts[i] = readVarLong(in);
+                    if (counts[i] < 0) {
+                        throw new IOException("Corrupt quantile sketch: negative count");
+                    }
+                    total += counts[i];
+                }
+            }
+        }
+    }
+
+    // Constructor with a relative accuracy of 1%
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * Constructor
+     * @param relativeAccuracy largest relative error of a quantile, between 0 and 1 exclusive
+     */
+    public QuantileSketch(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1");
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        if (maxIndex() >= MAX_BUCKETS) {
+            throw new IllegalArgumentException("Relative accuracy " + relativeAccuracy + " needs more than " + MAX_BUCKETS + " buckets");
+        }
+    }
+
+    // index of the bucket of the largest long magnitude, the smallest is 0 for 1; 2184 at 1% accuracy
+    private int maxIndex() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.ceil(Math.log(Long.MAX_VALUE) / logGamma));
+    }
+
+    // bucket i holds the values in (gamma^(i-1), gamma^i]
+    private int index(long magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    // the value of bucket i closest in relative terms to every value it holds
+    private double value(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Count a value
+     * @param value value, such as the likes of a post
+     */
+    public void add(long value) {
+        if (value > 0) {
+            positive.add(index(value), 1);
+        } else if (value < 0) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+    }
+
+    /**
+     * Stop counting a value that was added
+     * @param value value added before
+     * @return false if no value of its bucket is counted, the sketch is then unchanged
+     */
+    public boolean remove(long value) {
+        if (value > 0) {
+            return positive.remove(index(value));
+        } else if (value < 0) {
+            return negative.remove(index(-value));
+        } else if (zeroCount > 0) {
+            zeroCount--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Add the counts of another sketch, as if its values had been added to this one
+     * @param other sketch of the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Sketches of different accuracies cannot be merged");
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+    }
+
+    /**
+     * Value at a quantile, within the relative accuracy of a counted value of that rank
+     * @param quantile between 0 and 1, such as 0.5 for the median or 0.99 for p99
+     * @return estimate, NaN if nothing is counted
+     */
+    public double quantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1");
+        }
+        long count = getCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+        // most negative values first, from the largest magnitude down
+        for (int i = negative.counts.length - 1; i >= 0; i--) {
+            seen += negative.counts[i];
+            if (seen > rank) {
+                return -value(negative.offset + i);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positive.counts.length; i++) {
+            seen += positive.counts[i];
+            if (seen > rank) {
+                return value(positive.offset + i);
+            }
+        }
+        // not reached, the counts add up to count
+        return value(positive.offset + positive.counts.length - 1);
+    }
+
+    // Getter of the number of values counted
+    public long getCount() {
+        return positive.total + negative.total + zeroCount;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Write the sketch in its binary form: version, accuracy, then varint-encoded bucket counts
+     * @param out destination
+     * @throws IOException if writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeByte(FORMAT_VERSION);
+        out.writeDouble(relativeAccuracy);
+        writeVarLong(out, zeroCount);
+        positive.write(out);
+        negative.write(out);
+    }
+
+    /**
+     * Read a sketch written by writeTo
+     * @param in source
+     * @return sketch
+     * @throws IOException if reading fails or the data is not a sketch
+     */
+    public static QuantileSketch readFrom(DataInput in) throws IOException {
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unknown quantile sketch version " + version);
+        }
+        QuantileSketch sketch;
+        try {
+            sketch = new QuantileSketch(in.readDouble());
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Corrupt quantile sketch", ex);
+        }
+        sketch.zeroCount = readVarLong(in);
+        if (sketch.zeroCount < 0) {
+            throw new IOException("Corrupt quantile sketch: negative count");
+        }
+        sketch.positive.read(in, sketch.maxIndex());
+        sketch.negative.read(in, sketch.maxIndex());
+        return sketch;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // 7 bits per byte, high bit set on every byte but the last
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt quantile sketch");
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch[count=" + getCount() + ", accuracy=" + relativeAccuracy
+                + (getCount() == 0 ? "" : ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99))
+                + ", buckets=" + (positive.counts.length + negative.counts.length) + "]";
+    }
+
+    // Equal counts in equal buckets, regardless of how much room either sketch has allocated
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof QuantileSketch)) {
+            return false;
+        }
+        QuantileSketch sketch = (QuantileSketch) other;
+        return sketch.relativeAccuracy == relativeAccuracy && sketch.zeroCount == zeroCount
+                && sameCounts(positive, sketch.positive) && sameCounts(negative, sketch.negative);
+    }
+
+    private static boolean sameCounts(Buckets a, Buckets b) {
+        if (a.total != b.total) {
+            return false;
+        }
+        int low = Math.min(a.offset, b.offset);
+        int high = Math.max(a.offset + a.counts.length, b.offset + b.counts.length);
+        for (int index = low; index < high; index++) {
+            if (count(a, index) != count(b, index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long count(Buckets buckets, int index) {
+        int slot = index - buckets.offset;
+        return slot < 0 || slot >= buckets.counts.length ? 0 : buckets.counts[slot];
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new long[] { getCount(), zeroCount, Double.doubleToLongBits(relativeAccuracy) });
+    }
+}
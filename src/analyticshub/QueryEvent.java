@@ -0,0 +1,37 @@
+/*
+ * Class QueryEvent
+ * Java Flight Recorder event for one Model operation, committed by Model.timed
+ * Only operations of at least 1 ms are recorded by default; a .jfc settings file can lower the threshold
+ * with <event name="analytics.Query"><setting name="threshold">0 ms</setting></event>
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("analytics.Query")
+@Label("Model Query")
+@Description("A Model operation, read from the database or the in-memory leaderboard")
+@Category({ "Data Analytics Hub", "Database" })
+@Threshold("1 ms")
+@StackTrace(false)
+class QueryEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    @Description("Model method, the same name as in the metrics")
+    String operation;
+
+    @Label("Rows")
+    @Description("Rows returned or changed")
+    int rows;
+
+    @Label("Failed")
+    boolean failed;
+}
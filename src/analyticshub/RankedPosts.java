@@ -0,0 +1,207 @@
+/*
+ * Class RankedPosts
+ * Top N query result kept in rank order as parallel primitive arrays
+ * rank 0 is the most liked post, rankOf(postid) finds a post's rank through an int-keyed hash index
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Arrays;
+
+public class RankedPosts {
+    private static final int EMPTY = -1;
+
+    private int size;
+    private int[] postids;
+    private int[] userids;
+    private int[] likes;
+    private int[] shares;
+    private long[] timestamps;
+    private String[] contents;
+    private String[] authors;
+
+    // open-addressing table postid -> rank, built on the first lookup
+    private int[] indexKeys;
+    private int[] indexRanks;
+
+    /**
+     * Constructor
+     * @param capacity expected number of posts, the arrays grow past it if needed
+     */
+    public RankedPosts(int capacity) {
+        int initial = Math.max(capacity, 1);
+        postids = new int[initial];
+        userids = new int[initial];
+        likes = new int[initial];
+        shares = new int[initial];
+        timestamps = new long[initial];
+        contents = new String[initial];
+        authors = new String[initial];
+    }
+
+    /**
+     * Append the next post in rank order
+     * @param postid unique ID of the post
+     * @param userid owner of the post
+     * @param content content of the post
+     * @param author author of the post
+     * @param likes number of likes
+     * @param shares number of shares
+     * @param timestamp post time in epoch milliseconds
+     */
+    void add(int postid, int userid, String content, String author, int likes, int shares, long timestamp) {
+        if (size == postids.length) {
+            grow();
+        }
+        this.postids[size] = postid;
+        this.userids[size] = userid;
+        this.contents[size] = content;
+        this.authors[size] = author;
+        this.likes[size] = likes;
+        this.shares[size] = shares;
+        this.timestamps[size] = timestamp;
+        size++;
+        indexKeys = null;
+    }
+
+    /**
+     * Append a post in rank order
+     * @param post post to append
+     */
+    void add(Post post) {
+        add(post.getPostid(), post.getUserid(), post.getContent(), post.getAuthor(), post.getLikes(), post.getShares(),
+                post.getTimestamp());
+    }
+
+    private void grow() {
+        int capacity = postids.length * 2;
+        postids = Arrays.copyOf(postids, capacity);
+        userids = Arrays.copyOf(userids, capacity);
+        likes = Arrays.copyOf(likes, capacity);
+        shares = Arrays.copyOf(shares, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        contents = Arrays.copyOf(contents, capacity);
+        authors = Arrays.copyOf(authors, capacity);
+    }
+
+    // Getter of the number of ranked posts
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Getter of postid at a rank
+    public int getPostid(int rank) {
+        checkRank(rank);
+        return postids[rank];
+    }
+
+    // Getter of userid at a rank
+    public int getUserid(int rank) {
+        checkRank(rank);
+        return userids[rank];
+    }
+
+    // Getter of content at a rank
+    public String getContent(int rank) {
+        checkRank(rank);
+        return contents[rank];
+    }
+
+    // Getter of author at a rank
+    public String getAuthor(int rank) {
+        checkRank(rank);
+        return authors[rank];
+    }
+
+    // Getter of likes at a rank
+    public int getLikes(int rank) {
+        checkRank(rank);
+        return likes[rank];
+    }
+
+    // Getter of shares at a rank
+    public int getShares(int rank) {
+        checkRank(rank);
+        return shares[rank];
+    }
+
+    // Getter of timestamp at a rank, in epoch milliseconds
+    public long getTimestamp(int rank) {
+        checkRank(rank);
+        return timestamps[rank];
+    }
+
+    // Getter of the formatted date at a rank
+    public String getDateTime(int rank) {
+        return PostDates.format(getTimestamp(rank));
+    }
+
+    /**
+     * Create a Post for one rank, for callers that need the object
+     * @param rank 0 for the most liked post
+     * @return post at that rank
+     */
+    public Post getPost(int rank) {
+        checkRank(rank);
+        return new Post(postids[rank], userids[rank], contents[rank], authors[rank], likes[rank], shares[rank], timestamps[rank]);
+    }
+
+    /**
+     * Find the rank of a post
+     * @param postid post to look up
+     * @return rank of the post, -1 if it is not in the result
+     */
+    public int rankOf(int postid) {
+        if (indexKeys == null) {
+            buildIndex();
+        }
+        int mask = indexKeys.length - 1;
+        for (int slot = hash(postid) & mask; indexRanks[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (indexKeys[slot] == postid) {
+                return indexRanks[slot];
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int postid) {
+        return rankOf(postid) >= 0;
+    }
+
+    private void buildIndex() {
+        // power of two at least twice the size keeps the probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        int[] keys = new int[capacity];
+        int[] ranks = new int[capacity];
+        Arrays.fill(ranks, EMPTY);
+        int mask = capacity - 1;
+        for (int rank = 0; rank < size; rank++) {
+            int slot = hash(postids[rank]) & mask;
+            while (ranks[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = postids[rank];
+            ranks[slot] = rank;
+        }
+        indexRanks = ranks;
+        indexKeys = keys;
+    }
+
+    private static int hash(int postid) {
+        int h = postid * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void checkRank(int rank) {
+        if (rank < 0 || rank >= size) {
+            throw new IndexOutOfBoundsException("Rank " + rank + " out of " + size + " posts");
+        }
+    }
+}
\ No newline at end of file
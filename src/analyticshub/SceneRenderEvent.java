@@ -0,0 +1,65 @@
+/*
+ * Class SceneRenderEvent
+ * Java Flight Recorder event from a UserView show method being called until the scene has been laid out
+ * in the next pulse, which includes building the scene the first time it is shown
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import javafx.scene.Scene;
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+@Name("analytics.SceneRender")
+@Label("Scene Render")
+@Category({ "Data Analytics Hub", "JavaFX" })
+@Threshold("10 ms")
+@StackTrace(false)
+class SceneRenderEvent extends jdk.jfr.Event {
+    @Label("Scene")
+    String scene;
+
+    @Label("Built")
+    boolean built;
+
+    /**
+     * Start timing a scene change, on the JavaFX thread
+     * @param scene name of the scene
+     * @param built true if the scene is built by this call
+     * @return started event
+     */
+    static SceneRenderEvent begin(String scene, boolean built) {
+        SceneRenderEvent event = new SceneRenderEvent();
+        event.scene = scene;
+        event.built = built;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit the event once the next pulse has laid out the scene
+     * @param shown scene just set on the stage
+     */
+    void commitAfterLayout(Scene shown) {
+        if (!isEnabled()) {
+            return;
+        }
+        Runnable laidOut = new Runnable() {
+            @Override
+            public void run() {
+                shown.removePostLayoutPulseListener(this);
+                end();
+                if (shouldCommit()) {
+                    commit();
+                }
+            }
+        };
+        shown.addPostLayoutPulseListener(laidOut);
+    }
+}
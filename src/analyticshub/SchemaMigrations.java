@@ -0,0 +1,224 @@
+/*
+ * Class SchemaMigrations
+ * Versioned schema changes applied at startup, the applied versions are recorded in schema_version
+ * Every step checks before it changes anything, so a migration interrupted half way can simply run again
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SchemaMigrations {
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version ("
+            + "version INT PRIMARY KEY,"
+            + "description VARCHAR(255) NOT NULL,"
+            + "applied_at TIMESTAMP NOT NULL,"
+            + "duration_ms BIGINT NOT NULL"
+            + ")";
+
+    private static final String CREATE_USER_TABLE = "CREATE TABLE IF NOT EXISTS user_profiles ("
+            + "userid INT AUTO_INCREMENT PRIMARY KEY,"
+            + "username VARCHAR(255) NOT NULL,"
+            + "password VARCHAR(255) NOT NULL,"
+            + "first_name VARCHAR(255),"
+            + "last_name VARCHAR(255),"
+            + "is_vip BOOLEAN NOT NULL"
+            + ")";
+
+    private static final String CREATE_POST_TABLE = "CREATE TABLE IF NOT EXISTS social_media_posts ("
+            + "postid INT AUTO_INCREMENT PRIMARY KEY,"
+            + "userid INT NOT NULL,"
+            + "content TEXT,"
+            + "author VARCHAR(255),"
+            + "likes INT,"
+            + "shares INT,"
+            + "date_time TIMESTAMP"
+            + ")";
+
+    // at most this many duplicated values are named when a unique index cannot be created
+    private static final int MAX_DUPLICATES_REPORTED = 20;
+
+    // Append new migrations at the end, never edit one that has shipped
+    // (checks that only refuse to run, such as requireUnique, may be added to a shipped migration)
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create user_profiles and social_media_posts",
+                    execute(CREATE_USER_TABLE),
+                    execute(CREATE_POST_TABLE)),
+            new Migration(2, "Index username, userid and likes for login and top N posts",
+                    requireUnique("user_profiles", "username"),
+                    createIndex("user_profiles", "ux_user_profiles_username", true, "username"),
+                    createIndex("social_media_posts", "ix_posts_userid_likes", false, "userid, likes DESC"),
+                    createIndex("social_media_posts", "ix_posts_likes", false, "likes DESC")),
+            new Migration(3, "Index date_time for time range queries",
+                    createIndex("social_media_posts", "ix_posts_date_time", false, "date_time")),
+            new Migration(4, "Make likes and shares NOT NULL so keyset pages by likes see every post",
+                    execute("UPDATE social_media_posts SET likes = 0 WHERE likes IS NULL"),
+                    execute("UPDATE social_media_posts SET shares = 0 WHERE shares IS NULL"),
+                    execute("ALTER TABLE social_media_posts MODIFY likes INT NOT NULL DEFAULT 0"),
+                    execute("ALTER TABLE social_media_posts MODIFY shares INT NOT NULL DEFAULT 0")),
+            new Migration(5, "Index shares for the shares distribution",
+                    createIndex("social_media_posts", "ix_posts_shares", false, "shares"),
+                    createIndex("social_media_posts", "ix_posts_userid_shares", false, "userid, shares")));
+
+    /**
+     * Bring the schema up to the latest version
+     * @param pool pool to borrow the migration connection from
+     * @return schema version after the migrations
+     * @throws SQLException if a migration fails, later migrations are not attempted
+     */
+    public static int migrate(ConnectionPool pool) throws SQLException {
+        long start = System.nanoTime();
+        try (PooledConnection pooled = pool.borrow()) {
+            Connection connection = pooled.getConnection();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_VERSION_TABLE);
+            }
+
+            int version = currentVersion(connection);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version <= version) {
+                    continue;
+                }
+                long migrationStart = System.nanoTime();
+                for (Step step : migration.steps) {
+                    step.apply(connection);
+                }
+                long durationMillis = (System.nanoTime() - migrationStart) / 1_000_000;
+                recordVersion(connection, migration, durationMillis);
+                version = migration.version;
+                System.out.println("Schema migration V" + migration.version + " (" + migration.description
+                        + ") applied in " + durationMillis + " ms");
+            }
+
+            System.out.println("Schema at version " + version + ", checked in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return version;
+        }
+    }
+
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    private static void recordVersion(Connection connection, Migration migration, long durationMillis) throws SQLException {
+        String insert = "INSERT INTO schema_version (version, description, applied_at, duration_ms) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(insert)) {
+            statement.setInt(1, migration.version);
+            statement.setString(2, migration.description);
+            statement.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+            statement.setLong(4, durationMillis);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Step running a statement that is already safe to repeat, such as CREATE TABLE IF NOT EXISTS
+     * @param sql statement to run
+     * @return migration step
+     */
+    private static Step execute(String sql) {
+        return connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        };
+    }
+
+    /**
+     * Step creating an index unless an index with that name already exists on the table
+     * @param table indexed table
+     * @param name index name
+     * @param unique true for a unique index
+     * @param columns column list, DESC is allowed
+     * @return migration step
+     */
+    private static Step createIndex(String table, String name, boolean unique, String columns) {
+        return connection -> {
+            if (indexExists(connection, table, name)) {
+                return;
+            }
+            String sql = "CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + name + " ON " + table + " (" + columns + ")";
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        };
+    }
+
+    /**
+     * Step failing with the duplicated values when a column about to get a unique index holds any
+     * Duplicates are not merged or renamed automatically, each one is somebody's login; they are left to the administrator
+     * @param table table
+     * @param column column about to be indexed
+     * @return migration step
+     */
+    private static Step requireUnique(String table, String column) {
+        return connection -> {
+            String sql = "SELECT " + column + ", COUNT(*) FROM " + table + " GROUP BY " + column
+                    + " HAVING COUNT(*) > 1 ORDER BY " + column;
+            List<String> duplicates = new ArrayList<>();
+            int duplicated = 0;
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(sql)) {
+                while (resultSet.next()) {
+                    duplicated++;
+                    if (duplicates.size() < MAX_DUPLICATES_REPORTED) {
+                        duplicates.add("'" + resultSet.getString(1) + "' (" + resultSet.getLong(2) + " rows)");
+                    }
+                }
+            }
+            if (duplicated > 0) {
+                throw new SQLException(table + "." + column + " must be unique but " + duplicated
+                        + " values occur more than once: " + String.join(", ", duplicates)
+                        + (duplicated > duplicates.size() ? ", ..." : "")
+                        + ". Rename or delete the extra rows, then start again");
+            }
+        };
+    }
+
+    private static boolean indexExists(Connection connection, String table, String name) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // databases that fold unquoted names to upper case store the table that way
+        for (String tableName : new String[] { table, table.toUpperCase() }) {
+            try (ResultSet indexes = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, true)) {
+                while (indexes.next()) {
+                    if (name.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // One idempotent change to the schema
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final List<Step> steps;
+
+        private Migration(int version, String description, Step... steps) {
+            this.version = version;
+            this.description = description;
+            this.steps = List.of(steps);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,486 @@
+/*
+ * Class SegmentLog
+ * Append-only log of records in fixed-size segment files, each memory-mapped whole
+ * Records are [length int][crc32 int][kind byte][payload]; a record is addressed by its segment id (high 32 bits)
+ * and offset (low 32 bits). The unused end of a segment is zeroes, so on open each segment is scanned up to the
+ * first zero length or bad checksum: that is where a crash cut the last write short, and the tail is cleared
+ * A compacted segment is marked retired by an empty <segment>.deleted file before its file is deleted. Where a
+ * mapped file cannot be deleted (Windows keeps it until the mapping is collected) the delete is retried on the next
+ * compaction pass and at open, and a retired segment is never replayed
+ * Not thread-safe, LogStorage serializes writers against readers
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+class SegmentLog implements AutoCloseable {
+    static final byte POST = 1;
+    static final byte TOMBSTONE = 2;
+    static final byte USER = 3;
+
+    // "AHL1", then a format version
+    private static final int MAGIC = 0x41484C31;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER = 8;
+    static final int RECORD_HEADER = 9;
+    private static final String SUFFIX = ".seg";
+    private static final String RETIRED_SUFFIX = ".deleted";
+
+    /**
+     * Called for each record found when the log is opened or a segment is scanned
+     */
+    interface RecordVisitor {
+        void visit(long address, byte kind, ByteBuffer payload) throws IOException;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // end of the last record, the next append goes here
+        private int end = SEGMENT_HEADER;
+        // bytes of records still referenced, the rest is reclaimed by compaction
+        private long liveBytes;
+        // start of the bytes written since the last force
+        private int unforced = SEGMENT_HEADER;
+
+        private Segment(int id, Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private Segment active;
+    // files of retired segments whose delete failed, retried by deleteRetiredSegments
+    private final List<Path> retired = new ArrayList<>();
+    private long recoveredRecords;
+    private long truncatedBytes;
+
+    /**
+     * Open the log in a directory, creating it if needed; replay must be called before anything else
+     * @param directory directory of the segment files
+     * @param segmentSize size of new segment files in bytes, the largest record must fit in one
+     * @throws IOException if a segment cannot be mapped or is not a segment file
+     */
+    SegmentLog(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int id = Integer.parseInt(name.substring(0, name.length() - SUFFIX.length()));
+                if (Files.exists(retiredMarker(file))) {
+                    // compacted before the last exit, its records live in later segments
+                    retired.add(file);
+                } else {
+                    segments.put(id, map(id, file, false));
+                }
+            }
+        } catch (NumberFormatException ex) {
+            close();
+            throw new IOException("Unexpected file in the post log " + directory, ex);
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+        // nothing maps them yet, so they can be deleted now
+        deleteRetiredSegments();
+        // markers left by a crash between deleting a segment and its marker
+        try (DirectoryStream<Path> markers = Files.newDirectoryStream(directory, "*" + SUFFIX + RETIRED_SUFFIX)) {
+            for (Path marker : markers) {
+                String name = marker.getFileName().toString();
+                if (!Files.exists(directory.resolve(name.substring(0, name.length() - RETIRED_SUFFIX.length())))) {
+                    Files.deleteIfExists(marker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replay every record in append order, then open the last segment for appends
+     * @param visitor receives each record, oldest first
+     * @throws IOException if the visitor rejects a record
+     */
+    void replay(RecordVisitor visitor) throws IOException {
+        for (Segment segment : segments.values()) {
+            recover(segment, visitor, segment.id == segments.lastKey());
+        }
+        active = segments.isEmpty() ? createSegment(1) : segments.lastEntry().getValue();
+    }
+
+    private Segment map(int id, Path file, boolean create) throws IOException {
+        FileChannel channel = create
+                ? FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // mapping past the end of a new file grows it, the new bytes read as zeroes
+            long size = create ? segmentSize : channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (create) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.force(0, SEGMENT_HEADER);
+            } else if (size < SEGMENT_HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a post log segment: " + file);
+            }
+            return new Segment(id, file, channel, buffer);
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        Segment segment = map(id, directory.resolve(String.format("%08d%s", id, SUFFIX)), true);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Replay the valid records of a segment, and in the last one clear whatever follows them
+     * Sealed segments were forced before the next one was created, only the last can end in a torn write
+     */
+    private void recover(Segment segment, RecordVisitor visitor, boolean last) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = SEGMENT_HEADER;
+        while (true) {
+            int length = recordLength(buffer, position);
+            if (length < 0) {
+                break;
+            }
+            long address = address(segment.id, position);
+            segment.liveBytes += length;
+            recoveredRecords++;
+            visitor.visit(address, buffer.get(position + 8), buffer.slice(position + RECORD_HEADER, length - RECORD_HEADER));
+            position += length;
+        }
+        segment.end = position;
+        segment.unforced = position;
+        if (!last) {
+            return;
+        }
+
+        // a torn write leaves non-zero bytes after the last valid record
+        // searched backwards eight bytes at a time, a segment is mostly zeroes
+        int dirtyEnd = buffer.limit();
+        while (dirtyEnd - 8 >= position && buffer.getLong(dirtyEnd - 8) == 0) {
+            dirtyEnd -= 8;
+        }
+        while (dirtyEnd > position && buffer.get(dirtyEnd - 1) == 0) {
+            dirtyEnd--;
+        }
+        if (dirtyEnd > position) {
+            for (int i = position; i < dirtyEnd; i++) {
+                buffer.put(i, (byte) 0);
+            }
+            buffer.force(position, dirtyEnd - position);
+            truncatedBytes += dirtyEnd - position;
+        }
+    }
+
+    /**
+     * @return length of the complete, intact record at position, -1 at the end of the valid records
+     */
+    private static int recordLength(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.limit()) {
+            return -1;
+        }
+        int length = buffer.getInt(position);
+        if (length < RECORD_HEADER || length > buffer.limit() - position) {
+            return -1;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + 8, length - 8));
+        return (int) crc.getValue() == buffer.getInt(position + 4) ? length : -1;
+    }
+
+    static long address(int segmentId, int offset) {
+        return ((long) segmentId << 32) | offset;
+    }
+
+    static int segmentOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+    /**
+     * Buffer for a new record, the payload is written from position RECORD_HEADER on
+     * @param kind record kind
+     * @param payloadLength exact payload size in bytes
+     * @return buffer of the whole record
+     */
+    static ByteBuffer newRecord(byte kind, int payloadLength) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + payloadLength);
+        record.putInt(0, record.capacity());
+        record.put(8, kind);
+        record.position(RECORD_HEADER);
+        return record;
+    }
+
+    /**
+     * Append a record from newRecord, filling in its checksum
+     * The record is written through the mapping, force makes it durable
+     * @param record complete record
+     * @return address of the record
+     * @throws IOException if a new segment cannot be created, or the record is larger than a segment
+     */
+    long append(ByteBuffer record) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(8, record.capacity() - 8));
+        record.putInt(4, (int) crc.getValue());
+        return write(record.rewind());
+    }
+
+    private long write(ByteBuffer record) throws IOException {
+        int length = record.remaining();
+        if (length > segmentSize - SEGMENT_HEADER) {
+            throw new IOException("Record of " + length + " bytes is larger than a segment");
+        }
+        if (active.end + length > active.buffer.limit()) {
+            // seal the full segment, later appends go to a new one
+            force();
+            active = createSegment(active.id + 1);
+        }
+        int offset = active.end;
+        active.buffer.put(offset, record, record.position(), length);
+        active.end += length;
+        active.liveBytes += length;
+        return address(active.id, offset);
+    }
+
+    /**
+     * Make the records appended since the last force durable
+     */
+    void force() {
+        if (active.end > active.unforced) {
+            active.buffer.force(active.unforced, active.end - active.unforced);
+            active.unforced = active.end;
+        }
+    }
+
+    /**
+     * @param address address of a record
+     * @return kind of the record
+     */
+    byte kind(long address) {
+        return segments.get(segmentOf(address)).buffer.get(offsetOf(address) + 8);
+    }
+
+    /**
+     * Read a record, the view stays valid until its segment is compacted away
+     * @param address address of a record
+     * @return view of the record's payload
+     */
+    ByteBuffer read(long address) {
+        ByteBuffer buffer = segments.get(segmentOf(address)).buffer;
+        int offset = offsetOf(address);
+        return buffer.slice(offset + RECORD_HEADER, buffer.getInt(offset) - RECORD_HEADER);
+    }
+
+    /**
+     * Read a field of a record's payload without a view, for scans
+     * @param address address of a record
+     * @param offset offset of the field in the payload
+     * @return the int at that offset
+     */
+    int readInt(long address, int offset) {
+        return segments.get(segmentOf(address)).buffer.getInt(offsetOf(address) + RECORD_HEADER + offset);
+    }
+
+    /**
+     * @see #readInt(long, int)
+     */
+    long readLong(long address, int offset) {
+        return segments.get(segmentOf(address)).buffer.getLong(offsetOf(address) + RECORD_HEADER + offset);
+    }
+
+    /**
+     * Count a record as garbage once nothing references it, such as a replaced user or a deleted post
+     * @param address address of the record
+     */
+    void release(long address) {
+        Segment segment = segments.get(segmentOf(address));
+        segment.liveBytes -= segment.buffer.getInt(offsetOf(address));
+    }
+
+    /**
+     * Copy a record to the end of the log unchanged
+     * @param address address of the record
+     * @return its new address
+     * @throws IOException if a new segment cannot be created
+     */
+    long relocate(long address) throws IOException {
+        ByteBuffer buffer = segments.get(segmentOf(address)).buffer;
+        int offset = offsetOf(address);
+        return write(buffer.slice(offset, buffer.getInt(offset)));
+    }
+
+    /**
+     * Sealed segments whose live records fill less than the given share of the written bytes, emptiest first
+     * @param maxLiveRatio live bytes over written bytes, from 0 to 1
+     * @return segment ids
+     */
+    List<Integer> compactionCandidates(double maxLiveRatio) {
+        List<Segment> candidates = new ArrayList<>();
+        for (Segment segment : segments.values()) {
+            if (segment != active && segment.liveBytes < maxLiveRatio * (segment.end - SEGMENT_HEADER)) {
+                candidates.add(segment);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(a.liveBytes, b.liveBytes));
+        List<Integer> ids = new ArrayList<>(candidates.size());
+        for (Segment segment : candidates) {
+            ids.add(segment.id);
+        }
+        return ids;
+    }
+
+    /**
+     * Visit the records of one segment in append order
+     * @param segmentId segment to scan
+     * @param visitor receives each record
+     */
+    void scan(int segmentId, RecordVisitor visitor) throws IOException {
+        Segment segment = segments.get(segmentId);
+        for (int position = SEGMENT_HEADER; position < segment.end; ) {
+            int length = segment.buffer.getInt(position);
+            visitor.visit(address(segmentId, position), segment.buffer.get(position + 8),
+                    segment.buffer.slice(position + RECORD_HEADER, length - RECORD_HEADER));
+            position += length;
+        }
+    }
+
+    /**
+     * @param segmentId segment id
+     * @return true if the segment has not been deleted
+     */
+    boolean hasSegment(int segmentId) {
+        return segments.containsKey(segmentId);
+    }
+
+    /**
+     * Retire a sealed segment whose live records have all been relocated, then delete its file
+     * The records relocated out of it are forced first, so a crash never loses them; the retired marker is forced
+     * before the delete, so a file that cannot be deleted yet is not replayed at the next open
+     * @param segmentId segment to delete
+     * @throws IOException if the segment cannot be marked retired, it is then kept
+     */
+    void deleteSegment(int segmentId) throws IOException {
+        force();
+        Segment segment = segments.get(segmentId);
+        try (FileChannel marker = FileChannel.open(retiredMarker(segment.file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            marker.force(true);
+        }
+        segments.remove(segmentId);
+        // the mapping itself is released when the buffer is collected
+        segment.channel.close();
+        retired.add(segment.file);
+        deleteRetiredSegments();
+    }
+
+    /**
+     * Delete the files of retired segments, those still mapped where that prevents deleting them are kept for later
+     * @return number of retired segment files still on disk
+     */
+    int deleteRetiredSegments() {
+        for (Iterator<Path> files = retired.iterator(); files.hasNext(); ) {
+            Path file = files.next();
+            try {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(retiredMarker(file));
+                files.remove();
+            } catch (IOException ex) {
+                // AccessDeniedException on Windows while the old mapping is alive, retried on the next pass
+            }
+        }
+        return retired.size();
+    }
+
+    private static Path retiredMarker(Path segmentFile) {
+        return segmentFile.resolveSibling(segmentFile.getFileName() + RETIRED_SUFFIX);
+    }
+
+    // Getter of the number of retired segment files not deleted yet
+    int getRetiredSegmentCount() {
+        return retired.size();
+    }
+
+    // Getter of the number of segment files
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Getter of the bytes written in all segments, live or not
+    long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments.values()) {
+            used += segment.end - SEGMENT_HEADER;
+        }
+        return used;
+    }
+
+    // Getter of the bytes of records still referenced
+    long getLiveBytes() {
+        long live = 0;
+        for (Segment segment : segments.values()) {
+            live += segment.liveBytes;
+        }
+        return live;
+    }
+
+    // Getter of the number of records replayed when the log was opened
+    long getRecoveredRecords() {
+        return recoveredRecords;
+    }
+
+    // Getter of the bytes of torn writes cleared when the log was opened
+    long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (active != null) {
+            force();
+        }
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+        deleteRetiredSegments();
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentLog[" + directory + ", segments=" + segments.size() + ", usedBytes=" + getUsedBytes()
+                + ", liveBytes=" + getLiveBytes() + "]";
+    }
+}
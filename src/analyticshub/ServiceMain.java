@@ -0,0 +1,59 @@
+/*
+ * Class ServiceMain
+ * Entry point of the headless service: initialize Database and serve the Model over HTTP, without JavaFX
+ * Usage: java ServiceMain [port]
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+public class ServiceMain {
+	
+	private static final int DEFAULT_PORT = 8080;
+	// how often the operation latencies and pool counters are printed, also served at /api/metrics
+	private static final long METRICS_LOG_MILLIS = 60 * 1000;
+
+    public static void main(String[] args) {
+    	int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    	try {
+    		// Open the storage engine chosen by -Danalyticshub.storage, its tables are created or migrated
+    		StorageEngine storage = DatabaseConnection.openStorage();
+    		
+    		// Load every post into the in-memory top N leaderboard before serving
+    		Model model = new Model(storage);
+    		model.getMetrics().startLogging(METRICS_LOG_MILLIS);
+    		// Percentiles from the last run, until the load recounts them
+    		Path sketches = DatabaseConnection.sketchesPath(storage);
+    		if (sketches != null) {
+    			model.loadSketches(sketches);
+    		}
+    		model.loadLeaderboard();
+    		
+    		ApiServer server = new ApiServer(model, new InetSocketAddress(port));
+    		
+    		// Release the storage engine and its database connections on exit
+    		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+    			server.stop();
+    			if (sketches != null) {
+    				model.saveSketches(sketches);
+    			}
+    			model.close();
+    			storage.close();
+    		}, "service-shutdown"));
+    		
+    		server.start();
+    		System.out.println("Service listening on " + server.getAddress());
+    	} catch (SQLException | IOException | IllegalArgumentException e) {
+    		// Handle database connection, storage engine name and port errors
+    		e.printStackTrace();
+    		System.exit(1);
+    	}
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Class SharesAnalytics
+ * Computes shares distributions and caches the number of posts at each share count per scope
+ * Until the post columns have loaded, counts come from one GROUP BY in the store; afterwards from a scan of the
+ * columns, split across the common fork/join pool once there is more than one chunk of rows. Cached counts are
+ * kept current as rows are added and removed, so a repeated distribution costs one pass over the distinct share counts
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+class SharesAnalytics implements PostColumns.Listener {
+    // scopes whose counts are kept, the least recently used is dropped past this
+    private static final int MAX_CACHED_SCOPES = 64;
+
+    private final PostColumns columns;
+    private final PostStore store;
+    // guarded by this; changed by the listener methods while the columns' write lock is held
+    private final LinkedHashMap<SharesScope, TreeMap<Integer, Long>> cache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<SharesScope, TreeMap<Integer, Long>> eldest) {
+                    return size() > MAX_CACHED_SCOPES;
+                }
+            };
+
+    /**
+     * Constructor, registers with the columns to keep its cache current
+     * @param columns post columns scanned once loaded
+     * @param store store queried until then
+     */
+    SharesAnalytics(PostColumns columns, PostStore store) {
+        this.columns = columns;
+        this.store = store;
+        columns.addListener(this);
+    }
+
+    /**
+     * Distribution of the shares of the posts in a scope
+     * @param scope posts to count
+     * @param buckets how to group share counts
+     * @return distribution, its source tells whether it came from the cache, the columns or the database
+     * @throws SQLException if the columns are not loaded and the store cannot be read
+     */
+    SharesDistribution distribution(SharesScope scope, SharesBuckets buckets) throws SQLException {
+        synchronized (this) {
+            TreeMap<Integer, Long> counts = cache.get(scope);
+            if (counts != null) {
+                return withSource(buckets.apply(counts, scope), "cache");
+            }
+        }
+
+        columns.readLock().lock();
+        try {
+            if (columns.isLoaded()) {
+                TreeMap<Integer, Long> counts = scan(scope);
+                // no row can change before the read lock is released, so the counts are current when cached
+                synchronized (this) {
+                    cache.put(scope, counts);
+                    return withSource(buckets.apply(counts, scope), "columns");
+                }
+            }
+        } finally {
+            columns.readLock().unlock();
+        }
+        // not cached, rows added meanwhile would be counted twice
+        return withSource(buckets.apply(store.countShares(scope), scope), "database");
+    }
+
+    private static SharesDistribution withSource(SharesDistribution distribution, String source) {
+        distribution.setSource(source);
+        return distribution;
+    }
+
+    // callers hold the columns' read lock
+    private TreeMap<Integer, Long> scan(SharesScope scope) {
+        int rows = columns.getRowCount();
+        int chunks = (rows + PostColumns.CHUNK_ROWS - 1) / PostColumns.CHUNK_ROWS;
+        IntStream chunkIds = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            // helpers read the columns under the read lock of this thread
+            chunkIds = chunkIds.parallel();
+        }
+        return chunkIds.mapToObj(chunk -> countChunk(chunk, rows, scope))
+                .reduce(SharesAnalytics::merge)
+                .orElseGet(TreeMap::new);
+    }
+
+    private TreeMap<Integer, Long> countChunk(int chunkId, int rows, SharesScope scope) {
+        int first = chunkId * PostColumns.CHUNK_ROWS;
+        int count = Math.min(PostColumns.CHUNK_ROWS, rows - first);
+        PostColumns.Chunk chunk = columns.chunk(first);
+        ByteBuffer live = chunk.live;
+        ByteBuffer shares = chunk.shares;
+        int[] matched = new int[count];
+        int size = 0;
+        if (scope.equals(SharesScope.all())) {
+            for (int i = 0; i < count; i++) {
+                // written unconditionally, kept only when the row is live
+                matched[size] = shares.getInt(i << 2);
+                size += live.get(i);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if (live.get(i) != 0 && scope.matches(chunk.userids.getInt(i << 2), chunk.timestamps.getLong(i << 3))) {
+                    matched[size++] = shares.getInt(i << 2);
+                }
+            }
+        }
+        // sorted, equal share counts form runs
+        Arrays.sort(matched, 0, size);
+        TreeMap<Integer, Long> counts = new TreeMap<>();
+        for (int start = 0, end; start < size; start = end) {
+            end = start + 1;
+            while (end < size && matched[end] == matched[start]) {
+                end++;
+            }
+            counts.put(matched[start], (long) (end - start));
+        }
+        return counts;
+    }
+
+    private static TreeMap<Integer, Long> merge(TreeMap<Integer, Long> a, TreeMap<Integer, Long> b) {
+        TreeMap<Integer, Long> into = a.size() >= b.size() ? a : b;
+        TreeMap<Integer, Long> from = into == a ? b : a;
+        for (Map.Entry<Integer, Long> entry : from.entrySet()) {
+            into.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        return into;
+    }
+
+    @Override
+    public synchronized void rowAdded(int row) {
+        update(row, 1);
+    }
+
+    @Override
+    public synchronized void rowRemoved(int row) {
+        update(row, -1);
+    }
+
+    // the counts of every cached scope holding the row's post move by delta
+    private void update(int row, long delta) {
+        if (cache.isEmpty()) {
+            return;
+        }
+        int userid = columns.getUserid(row);
+        long timestamp = columns.getTimestamp(row);
+        int shares = columns.getShares(row);
+        for (Map.Entry<SharesScope, TreeMap<Integer, Long>> entry : cache.entrySet()) {
+            if (entry.getKey().matches(userid, timestamp)) {
+                // a count that drops to 0 is removed, so no empty bucket is shown
+                entry.getValue().merge(shares, delta, (count, change) -> count + change == 0 ? null : count + change);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rebuilt() {
+        cache.clear();
+    }
+
+    // Getter of the number of scopes whose counts are cached
+    synchronized int getCachedScopes() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Class SharesBuckets
+ * How a shares distribution groups share counts: fixed-width ranges, powers of a base, or ranges holding
+ * an equal share of the posts (quantiles)
+ * Buckets are cut from the number of posts at each share count, so every kind is derived from the same cached counts
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+public final class SharesBuckets {
+    // fixed-width buckets past this many are merged into the last one, so the chart stays readable
+    public static final int MAX_BUCKETS = 50;
+
+    public enum Kind { FIXED, LOG, QUANTILE }
+
+    private final Kind kind;
+    private final int parameter;
+
+    private SharesBuckets(Kind kind, int parameter) {
+        this.kind = kind;
+        this.parameter = parameter;
+    }
+
+    /**
+     * Buckets of equal width, starting at 0: [0, width - 1], [width, 2 width - 1] ...
+     * @param width share counts per bucket, at least 1
+     * @return bucket specification
+     */
+    public static SharesBuckets fixed(int width) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least 1");
+        }
+        return new SharesBuckets(Kind.FIXED, width);
+    }
+
+    /**
+     * Buckets growing by a factor: 0, [1, base - 1], [base, base^2 - 1] ...
+     * @param base factor between bucket bounds, at least 2
+     * @return bucket specification
+     */
+    public static SharesBuckets log(int base) {
+        if (base < 2) {
+            throw new IllegalArgumentException("Log bucket base must be at least 2");
+        }
+        return new SharesBuckets(Kind.LOG, base);
+    }
+
+    /**
+     * Buckets holding about the same number of posts each; a share count that alone holds more than one
+     * bucket's worth of posts gets a bucket of its own, so there can be fewer buckets than asked for
+     * @param count number of buckets, between 2 and MAX_BUCKETS
+     * @return bucket specification
+     */
+    public static SharesBuckets quantiles(int count) {
+        if (count < 2 || count > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Number of quantile buckets must be between 2 and " + MAX_BUCKETS);
+        }
+        return new SharesBuckets(Kind.QUANTILE, count);
+    }
+
+    /**
+     * Bucket specification by kind, as chosen in the view
+     * @param kind kind of buckets
+     * @param parameter width, base or number of buckets
+     * @return bucket specification
+     */
+    public static SharesBuckets of(Kind kind, int parameter) {
+        switch (kind) {
+            case FIXED:
+                return fixed(parameter);
+            case LOG:
+                return log(parameter);
+            default:
+                return quantiles(parameter);
+        }
+    }
+
+    /**
+     * Group the number of posts at each share count into buckets, empty buckets are left out
+     * @param counts number of posts by share count
+     * @param scope posts counted, kept with the result
+     * @return distribution
+     */
+    public SharesDistribution apply(SortedMap<Integer, Long> counts, SharesScope scope) {
+        long total = 0;
+        for (long count : counts.values()) {
+            total += count;
+        }
+        SharesDistribution distribution = new SharesDistribution(scope, this, total);
+        long before = 0;
+        long bucket = Long.MIN_VALUE;
+        for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+            int shares = entry.getKey();
+            long next = bucketOf(shares, before, total, distribution.size());
+            if (next != bucket) {
+                distribution.addBucket(lowerBound(shares, next), entry.getValue());
+                bucket = next;
+            } else {
+                distribution.addToLast(entry.getValue());
+            }
+            distribution.setLastUpper(upperBound(shares, next));
+            before += entry.getValue();
+        }
+        return distribution;
+    }
+
+    // identifies the bucket of a share count; consecutive share counts with the same value share a bucket
+    private long bucketOf(int shares, long before, long total, int buckets) {
+        switch (kind) {
+            case FIXED:
+                long index = Math.floorDiv(shares, parameter);
+                // a new bucket past the limit is merged into the last one
+                return buckets >= MAX_BUCKETS && index > 0 ? Long.MAX_VALUE : index;
+            case LOG:
+                return shares <= 0 ? 0 : powerAtMost(shares);
+            default:
+                // the quantile the share count's first post falls in
+                return before * parameter / total;
+        }
+    }
+
+    private long lowerBound(int shares, long bucket) {
+        switch (kind) {
+            case FIXED:
+                return bucket == Long.MAX_VALUE ? Math.floorDiv(shares, parameter) * (long) parameter : bucket * parameter;
+            case LOG:
+                return shares <= 0 ? shares : bucket;
+            default:
+                return shares;
+        }
+    }
+
+    private long upperBound(int shares, long bucket) {
+        switch (kind) {
+            case FIXED:
+                return bucket == Long.MAX_VALUE ? Integer.MAX_VALUE : bucket * parameter + parameter - 1;
+            case LOG:
+                return shares <= 0 ? 0 : Math.min(bucket * parameter - 1, Integer.MAX_VALUE);
+            default:
+                return shares;
+        }
+    }
+
+    // largest power of the base not above shares, which is positive
+    private long powerAtMost(int shares) {
+        long power = 1;
+        while (power * parameter <= shares) {
+            power *= parameter;
+        }
+        return power;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getParameter() {
+        return parameter;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SharesBuckets && ((SharesBuckets) other).kind == kind
+                && ((SharesBuckets) other).parameter == parameter;
+    }
+
+    @Override
+    public int hashCode() {
+        return kind.hashCode() * 31 + parameter;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case FIXED:
+                return "fixed width " + parameter;
+            case LOG:
+                return "log base " + parameter;
+            default:
+                return parameter + " quantiles";
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Class SharesDistribution
+ * Number of posts in each bucket of share counts, the data of the shares distribution pie chart
+ * Buckets are in ascending order of shares and each covers share counts lower to upper, both inclusive
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SharesDistribution {
+    private final SharesScope scope;
+    private final SharesBuckets buckets;
+    private final long total;
+    private final List<long[]> rows = new ArrayList<>();
+    private String source = "";
+
+    /**
+     * Constructor, buckets are added by SharesBuckets.apply
+     * @param scope posts counted
+     * @param buckets how share counts were grouped
+     * @param total number of posts counted
+     */
+    SharesDistribution(SharesScope scope, SharesBuckets buckets, long total) {
+        this.scope = scope;
+        this.buckets = buckets;
+        this.total = total;
+    }
+
+    // { lower, upper, posts }
+    void addBucket(long lower, long posts) {
+        rows.add(new long[] { lower, lower, posts });
+    }
+
+    void addToLast(long posts) {
+        rows.get(rows.size() - 1)[2] += posts;
+    }
+
+    void setLastUpper(long upper) {
+        rows.get(rows.size() - 1)[1] = upper;
+    }
+
+    // Setter of where the counts came from, shown with the chart
+    void setSource(String source) {
+        this.source = source;
+    }
+
+    // Getter of the number of non-empty buckets
+    public int size() {
+        return rows.size();
+    }
+
+    public long getLower(int bucket) {
+        return rows.get(bucket)[0];
+    }
+
+    public long getUpper(int bucket) {
+        return rows.get(bucket)[1];
+    }
+
+    public long getPosts(int bucket) {
+        return rows.get(bucket)[2];
+    }
+
+    /**
+     * @param bucket index of a bucket
+     * @return share of all counted posts in the bucket, between 0 and 1
+     */
+    public double getFraction(int bucket) {
+        return total == 0 ? 0 : (double) getPosts(bucket) / total;
+    }
+
+    /**
+     * @param bucket index of a bucket
+     * @return range of share counts, such as "10-99", "7" or "1000+"
+     */
+    public String getLabel(int bucket) {
+        long lower = getLower(bucket);
+        long upper = getUpper(bucket);
+        if (upper == Integer.MAX_VALUE) {
+            return lower + "+";
+        }
+        return lower == upper ? Long.toString(lower) : lower + "-" + upper;
+    }
+
+    // Getter of the number of posts counted
+    public long getTotal() {
+        return total;
+    }
+
+    public SharesScope getScope() {
+        return scope;
+    }
+
+    public SharesBuckets getBuckets() {
+        return buckets;
+    }
+
+    // Getter of where the counts came from: cache, columns or database
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("Shares distribution of " + scope + ", " + buckets + ", " + total + " posts:");
+        for (int i = 0; i < rows.size(); i++) {
+            text.append(' ').append(getLabel(i)).append('=').append(getPosts(i));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Class SharesScope
+ * Which posts a shares distribution counts: all posts, one user's, those in a time range, or one user's in a range
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.util.Objects;
+
+public final class SharesScope {
+    private static final SharesScope ALL = new SharesScope(null, null, null);
+
+    private final Integer userid;
+    private final Long fromTimestamp;
+    private final Long toTimestamp;
+
+    /**
+     * Constructor
+     * @param userid owner of the posts, null for all users
+     * @param fromTimestamp start of the range in epoch milliseconds, inclusive, null for no start
+     * @param toTimestamp end of the range in epoch milliseconds, exclusive, null for no end
+     */
+    public SharesScope(Integer userid, Long fromTimestamp, Long toTimestamp) {
+        this.userid = userid;
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    // Every post
+    public static SharesScope all() {
+        return ALL;
+    }
+
+    /**
+     * @param userid userid of a post
+     * @param timestamp timestamp of the post
+     * @return true if the scope counts the post
+     */
+    public boolean matches(int userid, long timestamp) {
+        return (this.userid == null || this.userid == userid)
+                && (fromTimestamp == null || timestamp >= fromTimestamp)
+                && (toTimestamp == null || timestamp < toTimestamp);
+    }
+
+    public Integer getUserid() {
+        return userid;
+    }
+
+    public Long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    public Long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SharesScope)) {
+            return false;
+        }
+        SharesScope scope = (SharesScope) other;
+        return Objects.equals(userid, scope.userid) && Objects.equals(fromTimestamp, scope.fromTimestamp)
+                && Objects.equals(toTimestamp, scope.toTimestamp);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(userid, fromTimestamp, toTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return (userid == null ? "all users" : "user " + userid)
+                + (fromTimestamp == null ? "" : ", from " + PostDates.format(fromTimestamp))
+                + (toTimestamp == null ? "" : ", before " + PostDates.format(toTimestamp));
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Interface StorageEngine
+ * A user store and a post store over the same storage, chosen at startup, see DatabaseConnection.openStorage
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+public interface StorageEngine extends AutoCloseable {
+
+    // Getter of the engine name, as selected at startup
+    String getName();
+
+    // Getter of the user store
+    UserStore getUserStore();
+
+    // Getter of the post store
+    PostStore getPostStore();
+
+    /**
+     * Register the engine's own gauges, such as connection pool counters
+     * @param metrics registry of the Model using the engine
+     */
+    void registerGauges(Metrics metrics);
+
+    /**
+     * Release the engine's connections or memory
+     */
+    @Override
+    void close();
+}
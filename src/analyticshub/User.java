@@ -4,6 +4,8 @@
  * @version JavaSE-17
 */ 
 
+package analyticshub;
+
 public class User {
 	private int userid; //primary Key
     private String username;
@@ -0,0 +1,46 @@
+/*
+ * Interface UserStore
+ * Where user profiles are kept, implemented by each storage engine
+ * Methods throw SQLException for storage failures and report a missing user as null or false
+ * 
+ * @author: Xuehua Lan
+ * @version JavaSE-17
+*/ 
+
+package analyticshub;
+
+import java.sql.SQLException;
+
+public interface UserStore {
+
+    /**
+     * @param username username to look for
+     * @return true if a user has this username
+     */
+    boolean isUsernameTaken(String username) throws SQLException;
+
+    /**
+     * @param username username of the user
+     * @return user (userid, username, password, firstname, lastname, isvip), null if there is none
+     */
+    User getUserByUsername(String username) throws SQLException;
+
+    /**
+     * Add a user who is not a VIP, the store assigns the userid
+     * @return false if the username is taken
+     */
+    boolean registerUser(String username, String password, String firstName, String lastName) throws SQLException;
+
+    /**
+     * Make a user a VIP
+     * @return false if there is no such user
+     */
+    boolean updateVIP(String username) throws SQLException;
+
+    /**
+     * Replace the username, password and names of a user
+     * @param currentUsername username the user has now
+     * @return false if there is no user with currentUsername, or another user has username
+     */
+    boolean editUser(String currentUsername, String username, String password, String firstName, String lastName) throws SQLException;
+}
@@ -6,17 +6,34 @@
  * @version JavaSE-17
 */ 
 
+package analyticshub;
+
 import java.sql.SQLException;
-import java.util.HashMap;
+import java.util.function.Function;
 
+import javafx.animation.PauseTransition;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.transformation.SortedList;
 import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Cursor;
 import javafx.scene.Scene;
+import javafx.scene.chart.PieChart;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
+import javafx.stage.Popup;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 public class UserView {
 	
+	// requests that finish faster than this never flash the loading indicator
+	private static final long BUSY_DELAY_MILLIS = 200;
+	// the next page of top posts is read when a row this close to the last loaded one is shown
+	private static final int TOP_POSTS_PREFETCH_ROWS = 50;
+	
 	private Controller controller;
 	
     private Stage primaryStage;
@@ -82,7 +99,11 @@ public class UserView {
     private TextField retrieveTopNPost;
     private TextField retrieveUser;
     private Button completeRetrieveTopButton;
+    private Button cancelRetrieveTopButton;
     private Button closeRetrieveTopButton;
+    private TableView<Integer> topPostsTable;
+    private Label topPostsStatus;
+    private PostPageLoader topPosts;
     
     private TextField exportPostid;
     private TextField exportName;
@@ -90,22 +111,42 @@ public class UserView {
     private Button confirmExportPostButton;
     private Button cancelExportPostButton;
     
+    private ChoiceBox<SharesBuckets.Kind> sharesBucketKind;
+    private TextField sharesBucketParameter;
+    private TextField sharesUser;
+    private TextField sharesFrom;
+    private TextField sharesTo;
+    private Button showSharesButton;
+    private Button closeSharesButton;
+    private PieChart sharesChart;
+    private Label sharesStatus;
+    
     private TextField importName;
     private TextField importFolder;
     private Button confirmImportPostButton;
     private Button cancelImportPostButton;
     
+    // loading indicator of the request running in the background
+    private Popup busyPopup;
+    private Scene busyScene;
+    private PauseTransition busyDelay;
+    
+    /**
+     * Constructor, scenes are built the first time they are shown and then reused
+     * @param primaryStage window the scenes are shown in
+     */
     public UserView(Stage primaryStage) {
         this.primaryStage = primaryStage;
-        
-        // Initialize the login, register, and dashboard scene
-        initializeLoginScene();
-        initializeViewRegister();
-        initializeViewDashboard();
-        initializeViewEditProfile();
-        
-        // Set the initial scene to the login scene
-        primaryStage.setScene(loginScene);
+    }
+    
+    /**
+     * Empty the input fields of a reused scene so it opens like a new one
+     * @param fields fields to clear
+     */
+    private static void clear(TextField... fields) {
+        for (TextField field : fields) {
+            field.clear();
+        }
     }
     
     /** 
@@ -115,6 +156,64 @@ public class UserView {
         this.controller = controller;
     }
     
+    /**
+     * Show that a request is running in the background
+     * The scene is disabled at once so the request cannot be sent twice, the loading indicator
+     * with its Cancel button only appears if the request takes longer than BUSY_DELAY_MILLIS
+     * @param message what is being done
+     * @param onCancel called when the user cancels the request
+     */
+    public void showBusy(String message, Runnable onCancel) {
+        hideBusy();
+        busyScene = primaryStage.getScene();
+        busyScene.getRoot().setDisable(true);
+        busyScene.setCursor(Cursor.WAIT);
+        
+        ProgressIndicator progress = new ProgressIndicator();
+        progress.setPrefSize(40, 40);
+        Button cancelButton = new Button("Cancel");
+        VBox layout = new VBox(10, progress, new Label(message), cancelButton);
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(20));
+        layout.setStyle("-fx-background-color: white; -fx-border-color: lightgray;");
+        Popup popup = new Popup();
+        popup.getContent().add(layout);
+        
+        // Set event handlers for buttons
+        cancelButton.setOnAction(e -> {
+        	hideBusy();
+        	onCancel.run();
+        });
+        
+        busyPopup = popup;
+        busyDelay = new PauseTransition(Duration.millis(BUSY_DELAY_MILLIS));
+        busyDelay.setOnFinished(e -> {
+        	popup.show(primaryStage);
+        	popup.setX(primaryStage.getX() + (primaryStage.getWidth() - popup.getWidth()) / 2);
+        	popup.setY(primaryStage.getY() + (primaryStage.getHeight() - popup.getHeight()) / 2);
+        });
+        busyDelay.play();
+    }
+    
+    /**
+     * Remove the loading indicator and enable the scene again
+     */
+    public void hideBusy() {
+        if (busyDelay != null) {
+            busyDelay.stop();
+            busyDelay = null;
+        }
+        if (busyPopup != null) {
+            busyPopup.hide();
+            busyPopup = null;
+        }
+        if (busyScene != null) {
+            busyScene.getRoot().setDisable(false);
+            busyScene.setCursor(Cursor.DEFAULT);
+            busyScene = null;
+        }
+    }
+    
     /** 
      * Login Scene - Main Page
      * Set content and style of the Login Scene
@@ -147,7 +246,12 @@ public class UserView {
 
     // Set and show Scene for Login Page
     public void showLoginScene() {
+        SceneRenderEvent render = SceneRenderEvent.begin("Login", loginScene == null);
+        if (loginScene == null) {
+            initializeLoginScene();
+        }
         primaryStage.setScene(loginScene);
+        render.commitAfterLayout(loginScene);
     }
     
     /** 
@@ -186,7 +290,12 @@ public class UserView {
     
     // Set and show Scene for Register page
     public void showRegisterScene() {
+    	SceneRenderEvent render = SceneRenderEvent.begin("Register", registerScene == null);
+    	if (registerScene == null) {
+    		initializeViewRegister();
+    	}
     	primaryStage.setScene(registerScene);
+    	render.commitAfterLayout(registerScene);
     }
     
     /** 
@@ -267,9 +376,13 @@ public class UserView {
      * @param username
      */
     public void showDashboardScene(User user) {
-    	System.out.print(user.getFirstName());
+    	SceneRenderEvent render = SceneRenderEvent.begin("Dashboard", dashboardScene == null);
+    	if (dashboardScene == null) {
+    		initializeViewDashboard();
+    	}
     	dashboardLabel.setText("Welcome, " + user.getFirstName() + " " + user.getLastName());
     	primaryStage.setScene(dashboardScene);
+    	render.commitAfterLayout(dashboardScene);
     }
     
     /** 
@@ -314,7 +427,12 @@ public class UserView {
      * @param username
      */
     public void showEditProfileScene(User user) {
+    	SceneRenderEvent render = SceneRenderEvent.begin("Edit Profile", editProfileScene == null);
+    	if (editProfileScene == null) {
+    		initializeViewEditProfile();
+    	}
     	primaryStage.setScene(editProfileScene);
+    	render.commitAfterLayout(editProfileScene);
     }
     
     /** 
@@ -357,8 +475,13 @@ public class UserView {
     }
     
     public void showAddPostScene() {
-    	initializeViewAddPost();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Add Post", addPostScene == null);
+    	if (addPostScene == null) {
+    		initializeViewAddPost();
+    	}
+    	clear(content, author, likes, shares, datetime);
     	primaryStage.setScene(addPostScene);
+    	render.commitAfterLayout(addPostScene);
     }
     
     /** 
@@ -394,8 +517,13 @@ public class UserView {
     }
     
     public void showRetrievePostScene() {
-    	initializeViewRetrievePost();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Retrieve Post", retrievePostScene == null);
+    	if (retrievePostScene == null) {
+    		initializeViewRetrievePost();
+    	}
+    	clear(retrievePostid);
     	primaryStage.setScene(retrievePostScene);
+    	render.commitAfterLayout(retrievePostScene);
     }
     
     /** 
@@ -431,8 +559,13 @@ public class UserView {
     }
     
     public void showRemovePostScene() {
-    	initializeViewRemovePost();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Remove Post", removePostScene == null);
+    	if (removePostScene == null) {
+    		initializeViewRemovePost();
+    	}
+    	clear(removePostid);
     	primaryStage.setScene(removePostScene);
+    	render.commitAfterLayout(removePostScene);
     }
     
     /** 
@@ -444,7 +577,7 @@ public class UserView {
     	retrieveTopNPost = new TextField();
     	retrieveUser = new TextField();
     	completeRetrieveTopButton = new Button("Confirm");
-    	cancelRetrievePostButton = new Button("Cancel");
+    	cancelRetrieveTopButton = new Button("Cancel");
         
         // Create the layout for the register scene
         VBox layout = new VBox(10);
@@ -455,7 +588,7 @@ public class UserView {
         layout.getChildren().addAll(label
         		, new Label("Please enter number of top most like posts:"), retrieveTopNPost
         		, new Label("Who (userid) you want to retrieve, leave blank for all"), retrieveUser
-        		, completeRetrieveTopButton, cancelRetrievePostButton);
+        		, completeRetrieveTopButton, cancelRetrieveTopButton);
         retrieveTopPostsScene = new Scene(layout, 600, 400); // set the scene
         
         // Set event handlers for buttons
@@ -463,40 +596,73 @@ public class UserView {
         	controller.handleDisplayTopPosts(e);
         });
 
-        cancelRetrievePostButton.setOnAction(e -> {
+        cancelRetrieveTopButton.setOnAction(e -> {
         	controller.handleCancelTopPosts(e);
         });
         
     }
     
     public void showRetrieveTopPostsScene() {
-    	initializeViewRetrieveTopPosts();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Retrieve Top Posts", retrieveTopPostsScene == null);
+    	if (retrieveTopPostsScene == null) {
+    		initializeViewRetrieveTopPosts();
+    	}
+    	clear(retrieveTopNPost, retrieveUser);
     	primaryStage.setScene(retrieveTopPostsScene);
+    	render.commitAfterLayout(retrieveTopPostsScene);
     }
     
     /** 
      * Display Top most liks Post Scene
-     * Set content and style
+     * A virtualized table only creates cells for the visible rows and reuses them while scrolling,
+     * so the cost depends on the window size rather than on N; sorting by a column sorts the loaded rows
      */
-    public void displayTopPostsScene(HashMap<Integer, Post> topPosts) {
+    public void initializeViewDisplayTopPosts() {
         
+    	closeRetrieveTopButton = new Button("Close");
+    	
+    	// columns read the posts of whichever loader is displayed
+    	topPostsTable = new TableView<>();
+    	topPostsTable.getColumns().add(column("Rank", 60, rank -> rank + 1));
+    	topPostsTable.getColumns().add(column("Postid", 80, rank -> topPosts.getPostid(rank)));
+    	topPostsTable.getColumns().add(column("Content", 260, rank -> topPosts.getContent(rank)));
+    	topPostsTable.getColumns().add(column("Author", 120, rank -> topPosts.getAuthor(rank)));
+    	topPostsTable.getColumns().add(column("Likes", 70, rank -> topPosts.getLikes(rank)));
+    	topPostsTable.getColumns().add(column("Shares", 70, rank -> topPosts.getShares(rank)));
+    	TableColumn<Integer, Long> dateColumn = column("Date", 130, rank -> topPosts.getTimestamp(rank));
+    	// sorts on the timestamp, shows the formatted date
+    	dateColumn.setCellFactory(c -> new TableCell<>() {
+    		@Override
+    		protected void updateItem(Long timestamp, boolean empty) {
+    			super.updateItem(timestamp, empty);
+    			setText(empty || timestamp == null ? null : PostDates.format(timestamp));
+    		}
+    	});
+    	topPostsTable.getColumns().add(dateColumn);
+    	topPostsTable.setPlaceholder(new Label("No posts"));
+    	
+    	// a row near the end of the loaded rows becoming visible reads the next page
+    	topPostsTable.setRowFactory(t -> new TableRow<>() {
+    		@Override
+    		protected void updateItem(Integer rank, boolean empty) {
+    			super.updateItem(rank, empty);
+    			if (!empty && getIndex() >= topPostsTable.getItems().size() - TOP_POSTS_PREFETCH_ROWS) {
+    				topPosts.loadNextPage();
+    			}
+    		}
+    	});
+    	
+    	topPostsStatus = new Label();
+    	
     	// Create the layout for the register scene
         VBox layout = new VBox(10);
         layout.setSpacing(10);
         layout.setPadding(new Insets(20));
-        for (Post post : topPosts.values()) {
-            VBox topNPost = new VBox(10); // Create a layout for each post
-            topNPost.setSpacing(10);
-            Label contentLabel = new Label("Content: " + post.getContent());
-            Label authorLabel = new Label("Author: " + post.getAuthor());
-            Label likesLabel = new Label("Likes: " + post.getLikes());
-            Label sharesLabel = new Label("Shares: " + post.getShares());
-            Label dateLabel = new Label("Shares: " + post.getDateTime());
-            topNPost.getChildren().addAll(contentLabel, authorLabel, likesLabel, sharesLabel, dateLabel);
-            layout.getChildren().addAll(topNPost);
-        }
-        displayTopPostsScene = new Scene(layout, 600, 400);
-        primaryStage.setScene(removePostScene);
+        Label label = new Label("Top Posts");
+        label.setStyle("-fx-font-size: 20; -fx-font-weight: bold;");
+        VBox.setVgrow(topPostsTable, Priority.ALWAYS);
+        layout.getChildren().addAll(label, topPostsTable, topPostsStatus, closeRetrieveTopButton);
+        displayTopPostsScene = new Scene(layout, 800, 600);
 
         // Set event handlers for buttons
         closeRetrieveTopButton.setOnAction(e -> {
@@ -504,6 +670,42 @@ public class UserView {
         });
     }
     
+    /**
+     * Show the top posts of a loader in the table
+     * @param loader data source of the rows, read further as the table scrolls
+     */
+    public void displayTopPostsScene(PostPageLoader loader) {
+    	SceneRenderEvent render = SceneRenderEvent.begin("Top Posts", displayTopPostsScene == null);
+    	if (displayTopPostsScene == null) {
+    		initializeViewDisplayTopPosts();
+    	}
+    	topPosts = loader;
+    	topPostsTable.getSortOrder().clear();
+    	
+    	// client-side sort of the loaded rows, pages that arrive later are merged into the sort order
+    	SortedList<Integer> rows = new SortedList<>(loader.getRanks());
+    	rows.comparatorProperty().bind(topPostsTable.comparatorProperty());
+    	topPostsTable.setItems(rows);
+    	topPostsTable.scrollTo(0);
+    	topPostsStatus.textProperty().bind(loader.statusProperty());
+    	primaryStage.setScene(displayTopPostsScene);
+    	render.commitAfterLayout(displayTopPostsScene);
+    }
+    
+    /**
+     * Read-only table column showing one field of the post at each rank
+     * @param title column header
+     * @param width preferred width
+     * @param field reads the field for a rank
+     * @return column, sortable by its values
+     */
+    private static <T> TableColumn<Integer, T> column(String title, double width, Function<Integer, T> field) {
+    	TableColumn<Integer, T> column = new TableColumn<>(title);
+    	column.setPrefWidth(width);
+    	column.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(field.apply(c.getValue())));
+    	return column;
+    }
+    
     /** 
      * Export Post Scene
      * Set content and style
@@ -526,7 +728,7 @@ public class UserView {
         		, new Label("Enter export postid"), exportPostid
         		, new Label("Enter export file name"), exportName
         		, new Label("Enter export folder name"), exportFolder
-        		, completeRetrieveTopButton, cancelExportPostButton);
+        		, confirmExportPostButton, cancelExportPostButton);
         exportPostScene = new Scene(layout, 600, 400); // set the scene
         
         // Set event handlers for buttons
@@ -542,8 +744,98 @@ public class UserView {
     }
     
     public void showExportPostScene() {
-    	initializeExportPostButton();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Export Post", exportPostScene == null);
+    	if (exportPostScene == null) {
+    		initializeExportPostButton();
+    	}
+    	clear(exportPostid, exportName, exportFolder);
     	primaryStage.setScene(exportPostScene);
+    	render.commitAfterLayout(exportPostScene);
+    }
+    
+    /** 
+     * Shares Distribution Scene
+     * Bucket kind and scope on top, the pie chart of the last distribution below
+     */
+    public void initializeViewSharesDistribution() {
+    	
+    	sharesBucketKind = new ChoiceBox<>();
+    	sharesBucketKind.getItems().addAll(SharesBuckets.Kind.values());
+    	sharesBucketParameter = new TextField();
+    	sharesBucketParameter.setPrefColumnCount(6);
+    	sharesUser = new TextField();
+    	sharesUser.setPrefColumnCount(6);
+    	sharesFrom = new TextField();
+    	sharesFrom.setPromptText("dd/MM/yyyy HH:mm");
+    	sharesTo = new TextField();
+    	sharesTo.setPromptText("dd/MM/yyyy HH:mm");
+    	showSharesButton = new Button("Show");
+    	closeSharesButton = new Button("Close");
+    	sharesChart = new PieChart();
+    	sharesChart.setLegendVisible(false);
+    	sharesChart.setAnimated(false);
+    	sharesStatus = new Label();
+    	
+    	// a sensible parameter for each kind of buckets
+    	sharesBucketKind.setOnAction(e -> {
+    		SharesBuckets.Kind kind = sharesBucketKind.getValue();
+    		sharesBucketParameter.setText(kind == SharesBuckets.Kind.FIXED ? "100" : "10");
+    	});
+        
+        // Create the layout for the shares distribution scene
+        VBox layout = new VBox(10);
+        layout.setSpacing(10);
+        layout.setPadding(new Insets(20));
+        Label label = new Label("Shares Distribution");
+        label.setStyle("-fx-font-size: 20; -fx-font-weight: bold;");
+        HBox buckets = new HBox(10, new Label("Buckets"), sharesBucketKind
+        		, new Label("width, base or number of buckets"), sharesBucketParameter);
+        buckets.setAlignment(Pos.CENTER_LEFT);
+        HBox scope = new HBox(10, new Label("Userid, blank for all"), sharesUser
+        		, new Label("From"), sharesFrom, new Label("Before"), sharesTo);
+        scope.setAlignment(Pos.CENTER_LEFT);
+        VBox.setVgrow(sharesChart, Priority.ALWAYS);
+        layout.getChildren().addAll(label, buckets, scope, showSharesButton, sharesChart, sharesStatus, closeSharesButton);
+        sharesDistributionScene = new Scene(layout, 800, 600); // set the scene
+        
+        // Set event handlers for buttons
+        showSharesButton.setOnAction(e -> {
+        	controller.handleShowSharesDistribution(e);
+        });
+        
+        closeSharesButton.setOnAction(e -> {
+        	controller.handleCloseSharesDistribution(e);
+        });
+        
+    }
+    
+    public void showSharesDistributionScene() {
+    	SceneRenderEvent render = SceneRenderEvent.begin("Shares Distribution", sharesDistributionScene == null);
+    	if (sharesDistributionScene == null) {
+    		initializeViewSharesDistribution();
+    	}
+    	sharesBucketKind.setValue(SharesBuckets.Kind.LOG);
+    	sharesBucketParameter.setText("10");
+    	clear(sharesUser, sharesFrom, sharesTo);
+    	sharesChart.getData().clear();
+    	sharesStatus.setText("");
+    	primaryStage.setScene(sharesDistributionScene);
+    	render.commitAfterLayout(sharesDistributionScene);
+    }
+    
+    /**
+     * Show a distribution in the pie chart, one slice per non-empty bucket
+     * @param distribution distribution to show
+     */
+    public void displaySharesDistribution(SharesDistribution distribution) {
+    	sharesChart.getData().clear();
+    	for (int i = 0; i < distribution.size(); i++) {
+    		sharesChart.getData().add(new PieChart.Data(String.format("%s shares: %d posts (%.1f%%)"
+    				, distribution.getLabel(i), distribution.getPosts(i), distribution.getFraction(i) * 100)
+    				, distribution.getPosts(i)));
+    	}
+    	sharesChart.setTitle(distribution.getScope() + ", " + distribution.getBuckets());
+    	sharesStatus.setText(distribution.getTotal() + " posts, from the " + distribution.getSource());
     }
     
     
@@ -583,8 +875,13 @@ public class UserView {
     }
     
     public void showImportPostScene() {
-    	initializeImportPostButton();
+    	SceneRenderEvent render = SceneRenderEvent.begin("Import Posts", bulkImportPostsScene == null);
+    	if (bulkImportPostsScene == null) {
+    		initializeImportPostButton();
+    	}
+    	clear(importName, importFolder);
     	primaryStage.setScene(bulkImportPostsScene);
+    	render.commitAfterLayout(bulkImportPostsScene);
     }
     
 
@@ -764,6 +1061,46 @@ public class UserView {
         return exportFolder.getText();
     }
     
+    /**
+     * Choice box Getter
+     * @return kind of shares distribution buckets
+     */
+    public SharesBuckets.Kind getSharesBucketKind() {
+        return sharesBucketKind.getValue();
+    }
+
+    /**
+     * Text field Getter
+     * @return bucket width, log base or number of quantile buckets
+     */
+    public String getSharesBucketParameter() {
+        return sharesBucketParameter.getText();
+    }
+
+    /**
+     * Text field Getter
+     * @return userid of the shares distribution, blank for all users
+     */
+    public String getSharesUser() {
+        return sharesUser.getText();
+    }
+
+    /**
+     * Text field Getter
+     * @return start of the shares distribution's time range, blank for none
+     */
+    public String getSharesFrom() {
+        return sharesFrom.getText();
+    }
+
+    /**
+     * Text field Getter
+     * @return end of the shares distribution's time range, blank for none
+     */
+    public String getSharesTo() {
+        return sharesTo.getText();
+    }
+    
     /**
      * Text field Getter
      * @return retrieve someone's post